@@ -7,6 +7,7 @@ import service.FitnessService;
 import Helpers.*;
 
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -149,7 +150,7 @@ public class UI {
                 }
                 LocalDateTime registrationDate = LocalDateTime.now();
                 List<FitnessClass> classes = new ArrayList<>();
-                int id = HelperFunctions.randomId();
+                int id = fitnessController.newId(Member.class);
                 Member member = new Member(name, password, registrationDate, null, classes);
                 member.setId(id);
                 fitnessController.addMember(member);
@@ -183,7 +184,7 @@ public class UI {
                     }
                 }
                 String specialisation = "not specified";
-                int id = HelperFunctions.randomId();
+                int id = fitnessController.newId(Trainer.class);
                 Trainer trainer = new Trainer(name, password, specialisation);
                 trainer.setId(id);
                 fitnessController.addTrainer(trainer);
@@ -409,11 +410,17 @@ public class UI {
                 }
                 case 5 -> {
                     System.out.println("------------------------------------------ ");
+                    fitnessController.displayTrainerRating(id);
+                    System.out.println("\n");
                     fitnessController.displayClassesOfTrainer(id);
                     System.out.println("\n");
-                    System.out.println("Choose a class to view feedback for (by ID): ");
-                    int classId = Integer.parseInt(scanner.nextLine());
-                    fitnessController.displayFeedback(classId);
+                    System.out.println("Choose a class to view feedback for (by ID), or enter words to search the feedback on your classes: ");
+                    String input = scanner.nextLine().trim();
+                    if (input.matches("\\d+")) {
+                        fitnessController.displayFeedback(Integer.parseInt(input));
+                    } else {
+                        fitnessController.searchTrainerFeedback(id, input);
+                    }
                     System.out.println("------------------------------------------ ");
                 }
                 case 6 -> {
@@ -471,7 +478,7 @@ public class UI {
                     int equipmentQuantity = Integer.parseInt(scanner.nextLine());
                     List<FitnessClass> equipmentClasses = new ArrayList<>();
                     Equipment newEquipment = new Equipment(equipmentName, equipmentQuantity, equipmentClasses);
-                    newEquipment.setId(HelperFunctions.randomId());
+                    newEquipment.setId(fitnessController.newId(Equipment.class));
                     fitnessController.addEquipment(newEquipment);
                     System.out.println("\n------------------------------------------ ");
                 }
@@ -528,7 +535,7 @@ public class UI {
                     System.out.println("\nEnter location address: ");
                     String locationAddress = scanner.nextLine();
                     Location newLocation = new Location(locationName, locationAddress);
-                    newLocation.setId(HelperFunctions.randomId());
+                    newLocation.setId(fitnessController.newId(Location.class));
                     fitnessController.addLocation(newLocation);
                     System.out.println("\n------------------------------------------ ");
                 }
@@ -570,8 +577,9 @@ public class UI {
             System.out.println("2. Add new room");
             System.out.println("3. Update existing room");
             System.out.println("4. Delete existing room");
-            System.out.println("5. Go back");
-            System.out.println("Enter your choice (1/2/3/4 or 5): ");
+            System.out.println("5. View room utilisation");
+            System.out.println("6. Go back");
+            System.out.println("Enter your choice (1/2/3/4/5 or 6): ");
 
             int choice = Integer.parseInt(scanner.nextLine());
             switch (choice){
@@ -590,7 +598,7 @@ public class UI {
                     int locationID = Integer.parseInt(scanner.nextLine());
                     Location location = fitnessController.getLocation(locationID);
                     Room newRoom = new Room(roomName, maxCapacity, location);
-                    newRoom.setId(HelperFunctions.randomId());
+                    newRoom.setId(fitnessController.newId(Room.class));
                     fitnessController.addRoom(newRoom);
                     System.out.println("\n------------------------------------------ ");
                 }
@@ -618,6 +626,14 @@ public class UI {
                     System.out.println("\n------------------------------------------ ");
                 }
                 case 5 -> {
+                    System.out.println("\nFrom month (YYYY-MM): ");
+                    YearMonth from = YearMonth.parse(scanner.nextLine().trim());
+                    System.out.println("To month (YYYY-MM): ");
+                    YearMonth to = YearMonth.parse(scanner.nextLine().trim());
+                    fitnessController.displayOccupancyReport(from, to);
+                    System.out.println("\n------------------------------------------ ");
+                }
+                case 6 -> {
                     System.out.println("------------------------------------------ ");
                     System.out.println("Back to menu. \n");
                     trainerUI(id, name, password);
@@ -650,7 +666,7 @@ public class UI {
                     System.out.println("\nEnter membership price: ");
                     int membershipPrice = Integer.parseInt(scanner.nextLine());
                     Membership newMembership = new Membership(membershipType, membershipPrice);
-                    newMembership.setId(HelperFunctions.randomId());
+                    newMembership.setId(fitnessController.newId(Membership.class));
                     fitnessController.addMembership(newMembership);
                     System.out.println("\n------------------------------------------ ");
                 }
@@ -692,7 +708,7 @@ public class UI {
             System.out.println("1. View upcoming classes");
             System.out.println("2. Register to class");
             System.out.println("3. Drop class");
-            System.out.println("4. Get similar classes");
+            System.out.println("4. Get class recommendations");
             System.out.println("5. Leave feedback");
             System.out.println("6. View feedback");
             System.out.println("7. Update account");
@@ -723,12 +739,15 @@ public class UI {
                     System.out.println("------------------------------------------ ");
                 }
                 case 4 -> {
+                    System.out.println("------------------------------------------ ");
+                    System.out.println("Members who took your classes also took: ");
+                    fitnessController.recommendForMember(id, 5);
                     System.out.println("------------------------------------------ ");
                     fitnessController.displayClassesByMember(id);
                     System.out.println("Choose a class to get a recommendations for similar classes (enter class ID): ");
                     int classId = Integer.parseInt(scanner.nextLine());
                     FitnessClass targetClass = fitnessController.findClassById(classId);
-                    fitnessController.getSimilarClasses(targetClass);
+                    fitnessController.recommendSimilarClasses(targetClass, 5);
                     System.out.println("------------------------------------------ ");
                 }
                 case 5 -> {
@@ -1233,90 +1252,42 @@ public class UI {
             System.out.println("1. InMemory storage");
             System.out.println("2. File storage");
             System.out.println("3. Data Base storage");
+            System.out.println("4. Memory-mapped file storage");
             System.out.println("Your option: ");
             int choice = Integer.parseInt(scanner.nextLine());
             switch (choice) {
                 case 1 -> {
                     InMemoryRepository<Equipment> equipmentInMemoRepo = new InMemoryRepository<>();
-                    equipmentInMemoRepo.create(weights);
-                    equipmentInMemoRepo.create(mattresses);
-                    equipmentInMemoRepo.create(treadmill);
-                    equipmentInMemoRepo.create(legPress);
-                    equipmentInMemoRepo.create(foamRoller);
-                    equipmentInMemoRepo.create(resistanceBands);
-                    equipmentInMemoRepo.create(pilatesRing);
-                    equipmentInMemoRepo.create(yogaBlocks);
-                    equipmentInMemoRepo.create(jumpRope);
-                    equipmentInMemoRepo.create(airBike);
-                    equipmentInMemoRepo.create(boxingGloves);
-                    equipmentInMemoRepo.create(headgear);
-                    equipmentInMemoRepo.create(punchingBags);
+                    equipmentInMemoRepo.createAll(List.of(
+                            weights, mattresses, treadmill, legPress, foamRoller, resistanceBands, pilatesRing,
+                            yogaBlocks, jumpRope, airBike, boxingGloves, headgear, punchingBags));
 
                     InMemoryRepository<Feedback> feedbackInMemoRepo = new InMemoryRepository<>();
-                    feedbackInMemoRepo.create(feedback1);
-                    feedbackInMemoRepo.create(feedback2);
-                    feedbackInMemoRepo.create(feedback3);
-                    feedbackInMemoRepo.create(feedback4);
-                    feedbackInMemoRepo.create(feedback5);
-                    feedbackInMemoRepo.create(feedback6);
-                    feedbackInMemoRepo.create(feedback7);
-                    feedbackInMemoRepo.create(feedback8);
-                    feedbackInMemoRepo.create(feedback9);
-                    feedbackInMemoRepo.create(feedback10);
-                    feedbackInMemoRepo.create(feedback11);
-                    feedbackInMemoRepo.create(feedback12);
-                    feedbackInMemoRepo.create(feedback13);
-                    feedbackInMemoRepo.create(feedback14);
-                    feedbackInMemoRepo.create(feedback15);
+                    feedbackInMemoRepo.createAll(List.of(
+                            feedback1, feedback2, feedback3, feedback4, feedback5, feedback6, feedback7, feedback8,
+                            feedback9, feedback10, feedback11, feedback12, feedback13, feedback14, feedback15));
 
                     InMemoryRepository<FitnessClass> fitnessClassInMemoRepo = new InMemoryRepository<>();
-                    fitnessClassInMemoRepo.create(class1);
-                    fitnessClassInMemoRepo.create(class2);
-                    fitnessClassInMemoRepo.create(class3);
-                    fitnessClassInMemoRepo.create(class4);
-                    fitnessClassInMemoRepo.create(class5);
-                    fitnessClassInMemoRepo.create(class6);
-                    fitnessClassInMemoRepo.create(class7);
-                    fitnessClassInMemoRepo.create(class8);
-                    fitnessClassInMemoRepo.create(class9);
-                    fitnessClassInMemoRepo.create(class10);
-                    fitnessClassInMemoRepo.create(class11);
-                    fitnessClassInMemoRepo.create(class12);
-                    fitnessClassInMemoRepo.create(class13);
-                    fitnessClassInMemoRepo.create(class14);
-                    fitnessClassInMemoRepo.create(class15);
+                    fitnessClassInMemoRepo.createAll(List.of(
+                            class1, class2, class3, class4, class5, class6, class7, class8, class9, class10, class11,
+                            class12, class13, class14, class15));
 
                     InMemoryRepository<Location> locationInMemoRepo = new InMemoryRepository<>();
-                    locationInMemoRepo.create(location1);
-                    locationInMemoRepo.create(location2);
+                    locationInMemoRepo.createAll(List.of(location1, location2));
 
                     InMemoryRepository<Member> memberInMemoRepo = new InMemoryRepository<>();
-                    memberInMemoRepo.create(member1);
-                    memberInMemoRepo.create(member2);
-                    memberInMemoRepo.create(member3);
-                    memberInMemoRepo.create(member4);
-                    memberInMemoRepo.create(member5);
+                    memberInMemoRepo.createAll(List.of(member1, member2, member3, member4, member5));
 
                     InMemoryRepository<Membership> membershipInMemoRepo = new InMemoryRepository<>();
-                    membershipInMemoRepo.create(basicMembership);
-                    membershipInMemoRepo.create(studentMembership);
-                    membershipInMemoRepo.create(premiumMembership);
+                    membershipInMemoRepo.createAll(List.of(basicMembership, studentMembership, premiumMembership));
 
                     InMemoryRepository<Room> roomInMemoRepo = new InMemoryRepository<>();
-                    roomInMemoRepo.create(room1);
-                    roomInMemoRepo.create(room2);
-                    roomInMemoRepo.create(room3);
-                    roomInMemoRepo.create(room4);
-                    roomInMemoRepo.create(room5);
+                    roomInMemoRepo.createAll(List.of(room1, room2, room3, room4, room5));
 
                     InMemoryRepository<Trainer> trainerInMemoRepo = new InMemoryRepository<>();
-                    trainerInMemoRepo.create(trainer1);
-                    trainerInMemoRepo.create(trainer2);
-                    trainerInMemoRepo.create(trainer3);
-                    trainerInMemoRepo.create(trainer4);
-                    trainerInMemoRepo.create(trainer5);
+                    trainerInMemoRepo.createAll(List.of(trainer1, trainer2, trainer3, trainer4, trainer5));
 
-                    FitnessService inMemoryService = new FitnessService(equipmentInMemoRepo, feedbackInMemoRepo, fitnessClassInMemoRepo, locationInMemoRepo, memberInMemoRepo, membershipInMemoRepo, roomInMemoRepo, trainerInMemoRepo);
+                    FitnessService inMemoryService = new FitnessService(equipmentInMemoRepo, new IndexedRepository<>(feedbackInMemoRepo), new IndexedRepository<>(fitnessClassInMemoRepo), locationInMemoRepo, memberInMemoRepo, membershipInMemoRepo, roomInMemoRepo, trainerInMemoRepo);
                     FitnessController controller = new FitnessController(inMemoryService);
                     UI ui = new UI(controller, membersList, trainersList);
                     ui.menu();
@@ -1325,86 +1296,38 @@ public class UI {
                 case 2 -> {
                     String filePath = "C:\\Users\\Dell\\IdeaProjects\\FitnessApp\\src\\files\\";
 
-                    FileRepository<Location> locationFileRepo = new FileRepository<>(filePath + "Location.txt");
-                    locationFileRepo.create(location1);
-                    locationFileRepo.create(location2);
-
-                    FileRepository<Room> roomFileRepo = new FileRepository<>(filePath + "Room.txt");
-                    roomFileRepo.create(room1);
-                    roomFileRepo.create(room2);
-                    roomFileRepo.create(room3);
-                    roomFileRepo.create(room4);
-                    roomFileRepo.create(room5);
-
-                    FileRepository<Trainer> trainerFileRepo = new FileRepository<>(filePath + "Trainer.txt");
-                    trainerFileRepo.create(trainer1);
-                    trainerFileRepo.create(trainer2);
-                    trainerFileRepo.create(trainer3);
-                    trainerFileRepo.create(trainer4);
-                    trainerFileRepo.create(trainer5);
-
-                    FileRepository<Equipment> equipmentFileRepo = new FileRepository<>(filePath + "Equipment.txt");
-                    equipmentFileRepo.create(weights);
-                    equipmentFileRepo.create(mattresses);
-                    equipmentFileRepo.create(treadmill);
-                    equipmentFileRepo.create(legPress);
-                    equipmentFileRepo.create(foamRoller);
-                    equipmentFileRepo.create(resistanceBands);
-                    equipmentFileRepo.create(pilatesRing);
-                    equipmentFileRepo.create(yogaBlocks);
-                    equipmentFileRepo.create(jumpRope);
-                    equipmentFileRepo.create(airBike);
-                    equipmentFileRepo.create(boxingGloves);
-                    equipmentFileRepo.create(headgear);
-                    equipmentFileRepo.create(punchingBags);
-
-                    FileRepository<Membership> membershipFileRepo = new FileRepository<>(filePath + "Membership.txt");
-                    membershipFileRepo.create(basicMembership);
-                    membershipFileRepo.create(studentMembership);
-                    membershipFileRepo.create(premiumMembership);
-
-                    FileRepository<Member> memberFileRepo = new FileRepository<>(filePath + "Member.txt");
-                    memberFileRepo.create(member1);
-                    memberFileRepo.create(member2);
-                    memberFileRepo.create(member3);
-                    memberFileRepo.create(member4);
-                    memberFileRepo.create(member5);
-
-                    FileRepository<FitnessClass> fitnessClassFileRepo = new FileRepository<>(filePath + "FitnessClass.txt");
-                    fitnessClassFileRepo.create(class1);
-                    fitnessClassFileRepo.create(class2);
-                    fitnessClassFileRepo.create(class3);
-                    fitnessClassFileRepo.create(class4);
-                    fitnessClassFileRepo.create(class5);
-                    fitnessClassFileRepo.create(class6);
-                    fitnessClassFileRepo.create(class7);
-                    fitnessClassFileRepo.create(class8);
-                    fitnessClassFileRepo.create(class9);
-                    fitnessClassFileRepo.create(class10);
-                    fitnessClassFileRepo.create(class11);
-                    fitnessClassFileRepo.create(class12);
-                    fitnessClassFileRepo.create(class13);
-                    fitnessClassFileRepo.create(class14);
-                    fitnessClassFileRepo.create(class15);
-
-                    FileRepository<Feedback> feedbackFileRepo = new FileRepository<>(filePath + "Feedback.txt");
-                    feedbackFileRepo.create(feedback1);
-                    feedbackFileRepo.create(feedback2);
-                    feedbackFileRepo.create(feedback3);
-                    feedbackFileRepo.create(feedback4);
-                    feedbackFileRepo.create(feedback5);
-                    feedbackFileRepo.create(feedback6);
-                    feedbackFileRepo.create(feedback7);
-                    feedbackFileRepo.create(feedback8);
-                    feedbackFileRepo.create(feedback9);
-                    feedbackFileRepo.create(feedback10);
-                    feedbackFileRepo.create(feedback11);
-                    feedbackFileRepo.create(feedback12);
-                    feedbackFileRepo.create(feedback13);
-                    feedbackFileRepo.create(feedback14);
-                    feedbackFileRepo.create(feedback15);
-
-                    FitnessService fileService = new FitnessService(equipmentFileRepo, feedbackFileRepo, fitnessClassFileRepo, locationFileRepo, memberFileRepo, membershipFileRepo, roomFileRepo, trainerFileRepo);
+                    LogStructuredFileRepository<Location> locationFileRepo = new LogStructuredFileRepository<>(filePath + "Location.log");
+                    locationFileRepo.createAll(List.of(location1, location2));
+
+                    LogStructuredFileRepository<Room> roomFileRepo = new LogStructuredFileRepository<>(filePath + "Room.log");
+                    roomFileRepo.createAll(List.of(room1, room2, room3, room4, room5));
+
+                    LogStructuredFileRepository<Trainer> trainerFileRepo = new LogStructuredFileRepository<>(filePath + "Trainer.log");
+                    trainerFileRepo.createAll(List.of(trainer1, trainer2, trainer3, trainer4, trainer5));
+
+                    LogStructuredFileRepository<Equipment> equipmentFileRepo = new LogStructuredFileRepository<>(filePath + "Equipment.log");
+                    equipmentFileRepo.createAll(List.of(
+                            weights, mattresses, treadmill, legPress, foamRoller, resistanceBands, pilatesRing,
+                            yogaBlocks, jumpRope, airBike, boxingGloves, headgear, punchingBags));
+
+                    LogStructuredFileRepository<Membership> membershipFileRepo = new LogStructuredFileRepository<>(filePath + "Membership.log");
+                    membershipFileRepo.createAll(List.of(basicMembership, studentMembership, premiumMembership));
+
+                    LogStructuredFileRepository<Member> memberFileRepo = new LogStructuredFileRepository<>(filePath + "Member.log");
+                    memberFileRepo.createAll(List.of(member1, member2, member3, member4, member5));
+
+                    LogStructuredFileRepository<FitnessClass> fitnessClassFileRepo = new LogStructuredFileRepository<>(filePath + "FitnessClass.log");
+                    fitnessClassFileRepo.createAll(List.of(
+                            class1, class2, class3, class4, class5, class6, class7, class8, class9, class10, class11,
+                            class12, class13, class14, class15));
+
+                    LogStructuredFileRepository<Feedback> feedbackFileRepo = new LogStructuredFileRepository<>(filePath + "Feedback.log");
+                    feedbackFileRepo.createAll(List.of(
+                            feedback1, feedback2, feedback3, feedback4, feedback5, feedback6, feedback7, feedback8,
+                            feedback9, feedback10, feedback11, feedback12, feedback13, feedback14, feedback15));
+
+                    FitnessService fileService = new FitnessService(equipmentFileRepo, new IndexedRepository<>(feedbackFileRepo), new IndexedRepository<>(fitnessClassFileRepo), locationFileRepo, memberFileRepo, membershipFileRepo, roomFileRepo, trainerFileRepo,
+                            UnitOfWork.NONE, new HiLoIdAllocator(new FileBlockSource(filePath)));
                     FitnessController controller = new FitnessController(fileService);
                     UI ui = new UI(controller, membersList, trainersList);
                     ui.menu();
@@ -1414,91 +1337,85 @@ public class UI {
                     String DB_URL = "jdbc:postgresql://localhost:5432/Fitness";
                     String DB_USER = "postgres";
                     String DB_PASSWORD = "danamat07";
+                    DBRepositoryContext dbContext = new DBRepositoryContext(DB_URL, DB_USER, DB_PASSWORD);
+
+                    LocationDBRepository locationDBRepo = dbContext.getLocationRepository();
+                    locationDBRepo.createAll(List.of(location1, location2));
+
+                    RoomDBRepository roomDBRepo = dbContext.getRoomRepository();
+                    roomDBRepo.createAll(List.of(room1, room2, room3, room4, room5));
 
-                    LocationDBRepository locationDBRepo = new LocationDBRepository(DB_URL, DB_USER, DB_PASSWORD);
-                    locationDBRepo.create(location1);
-                    locationDBRepo.create(location2);
-
-                    RoomDBRepository roomDBRepo = new RoomDBRepository(DB_URL, DB_USER, DB_PASSWORD);
-                    roomDBRepo.create(room1);
-                    roomDBRepo.create(room2);
-                    roomDBRepo.create(room3);
-                    roomDBRepo.create(room4);
-                    roomDBRepo.create(room5);
-
-                    TrainerDBRepository trainerDBRepo = new TrainerDBRepository(DB_URL, DB_USER, DB_PASSWORD);
-                    trainerDBRepo.create(trainer1);
-                    trainerDBRepo.create(trainer2);
-                    trainerDBRepo.create(trainer3);
-                    trainerDBRepo.create(trainer4);
-                    trainerDBRepo.create(trainer5);
-
-                    EquipmentDBRepository equipmentDBRepo = new EquipmentDBRepository(DB_URL, DB_USER, DB_PASSWORD);
-                    equipmentDBRepo.create(weights);
-                    equipmentDBRepo.create(mattresses);
-                    equipmentDBRepo.create(treadmill);
-                    equipmentDBRepo.create(legPress);
-                    equipmentDBRepo.create(foamRoller);
-                    equipmentDBRepo.create(resistanceBands);
-                    equipmentDBRepo.create(pilatesRing);
-                    equipmentDBRepo.create(yogaBlocks);
-                    equipmentDBRepo.create(jumpRope);
-                    equipmentDBRepo.create(airBike);
-                    equipmentDBRepo.create(boxingGloves);
-                    equipmentDBRepo.create(headgear);
-                    equipmentDBRepo.create(punchingBags);
-
-                    MembershipDBRepository membershipDBRepo = new MembershipDBRepository(DB_URL, DB_USER, DB_PASSWORD);
-                    membershipDBRepo.create(basicMembership);
-                    membershipDBRepo.create(studentMembership);
-                    membershipDBRepo.create(premiumMembership);
-
-                    MemberDBRepository memberDBRepo = new MemberDBRepository(DB_URL, DB_USER, DB_PASSWORD);
-                    memberDBRepo.create(member1);
-                    memberDBRepo.create(member2);
-                    memberDBRepo.create(member3);
-                    memberDBRepo.create(member4);
-                    memberDBRepo.create(member5);
-
-                    FitnessClassDBRepository fitnessClassDBRepo = new FitnessClassDBRepository(DB_URL, DB_USER, DB_PASSWORD);
-                    fitnessClassDBRepo.create(class1);
-                    fitnessClassDBRepo.create(class2);
-                    fitnessClassDBRepo.create(class3);
-                    fitnessClassDBRepo.create(class4);
-                    fitnessClassDBRepo.create(class5);
-                    fitnessClassDBRepo.create(class6);
-                    fitnessClassDBRepo.create(class7);
-                    fitnessClassDBRepo.create(class8);
-                    fitnessClassDBRepo.create(class9);
-                    fitnessClassDBRepo.create(class10);
-                    fitnessClassDBRepo.create(class11);
-                    fitnessClassDBRepo.create(class12);
-                    fitnessClassDBRepo.create(class13);
-                    fitnessClassDBRepo.create(class14);
-                    fitnessClassDBRepo.create(class15);
-
-                    FeedbackDBRepository feedbackDBRepo = new FeedbackDBRepository(DB_URL, DB_USER, DB_PASSWORD);
-                    feedbackDBRepo.create(feedback1);
-                    feedbackDBRepo.create(feedback2);
-                    feedbackDBRepo.create(feedback3);
-                    feedbackDBRepo.create(feedback4);
-                    feedbackDBRepo.create(feedback5);
-                    feedbackDBRepo.create(feedback6);
-                    feedbackDBRepo.create(feedback7);
-                    feedbackDBRepo.create(feedback8);
-                    feedbackDBRepo.create(feedback9);
-                    feedbackDBRepo.create(feedback10);
-                    feedbackDBRepo.create(feedback11);
-                    feedbackDBRepo.create(feedback12);
-                    feedbackDBRepo.create(feedback13);
-                    feedbackDBRepo.create(feedback14);
-                    feedbackDBRepo.create(feedback15);
-
-                    FitnessService DBService = new FitnessService(equipmentDBRepo, feedbackDBRepo, fitnessClassDBRepo, locationDBRepo, memberDBRepo, membershipDBRepo, roomDBRepo, trainerDBRepo);
+                    TrainerDBRepository trainerDBRepo = dbContext.getTrainerRepository();
+                    trainerDBRepo.createAll(List.of(trainer1, trainer2, trainer3, trainer4, trainer5));
+
+                    EquipmentDBRepository equipmentDBRepo = dbContext.getEquipmentRepository();
+                    equipmentDBRepo.createAll(List.of(
+                            weights, mattresses, treadmill, legPress, foamRoller, resistanceBands, pilatesRing,
+                            yogaBlocks, jumpRope, airBike, boxingGloves, headgear, punchingBags));
+
+                    MembershipDBRepository membershipDBRepo = dbContext.getMembershipRepository();
+                    membershipDBRepo.createAll(List.of(basicMembership, studentMembership, premiumMembership));
+
+                    MemberDBRepository memberDBRepo = dbContext.getMemberRepository();
+                    memberDBRepo.createAll(List.of(member1, member2, member3, member4, member5));
+
+                    FitnessClassDBRepository fitnessClassDBRepo = dbContext.getFitnessClassRepository();
+                    fitnessClassDBRepo.createAll(List.of(
+                            class1, class2, class3, class4, class5, class6, class7, class8, class9, class10, class11,
+                            class12, class13, class14, class15));
+
+                    FeedbackDBRepository feedbackDBRepo = dbContext.getFeedbackRepository();
+                    feedbackDBRepo.createAll(List.of(
+                            feedback1, feedback2, feedback3, feedback4, feedback5, feedback6, feedback7, feedback8,
+                            feedback9, feedback10, feedback11, feedback12, feedback13, feedback14, feedback15));
+
+                    FitnessService DBService = new FitnessService(equipmentDBRepo, new IndexedRepository<>(feedbackDBRepo, dbContext), new IndexedRepository<>(fitnessClassDBRepo, dbContext), locationDBRepo, memberDBRepo, membershipDBRepo, roomDBRepo, trainerDBRepo, dbContext,
+                            new HiLoIdAllocator(new SequenceBlockSource(dbContext.getDataSource())));
                     FitnessController controller = new FitnessController(DBService);
                     UI ui = new UI(controller, membersList, trainersList);
                     ui.menu();
                 }
+
+                case 4 -> {
+                    String directory = "C:\\Users\\Dell\\IdeaProjects\\FitnessApp\\src\\files\\mapped\\";
+                    MappedRepositoryContext mappedContext = new MappedRepositoryContext(directory);
+
+                    MappedFileRepository<Location> locationMappedRepo = mappedContext.getLocationRepository();
+                    locationMappedRepo.createAll(List.of(location1, location2));
+
+                    MappedFileRepository<Room> roomMappedRepo = mappedContext.getRoomRepository();
+                    roomMappedRepo.createAll(List.of(room1, room2, room3, room4, room5));
+
+                    MappedFileRepository<Trainer> trainerMappedRepo = mappedContext.getTrainerRepository();
+                    trainerMappedRepo.createAll(List.of(trainer1, trainer2, trainer3, trainer4, trainer5));
+
+                    MappedFileRepository<Equipment> equipmentMappedRepo = mappedContext.getEquipmentRepository();
+                    equipmentMappedRepo.createAll(List.of(
+                            weights, mattresses, treadmill, legPress, foamRoller, resistanceBands, pilatesRing,
+                            yogaBlocks, jumpRope, airBike, boxingGloves, headgear, punchingBags));
+
+                    MappedFileRepository<Membership> membershipMappedRepo = mappedContext.getMembershipRepository();
+                    membershipMappedRepo.createAll(List.of(basicMembership, studentMembership, premiumMembership));
+
+                    MappedFileRepository<Member> memberMappedRepo = mappedContext.getMemberRepository();
+                    memberMappedRepo.createAll(List.of(member1, member2, member3, member4, member5));
+
+                    MappedFileRepository<FitnessClass> fitnessClassMappedRepo = mappedContext.getFitnessClassRepository();
+                    fitnessClassMappedRepo.createAll(List.of(
+                            class1, class2, class3, class4, class5, class6, class7, class8, class9, class10, class11,
+                            class12, class13, class14, class15));
+
+                    MappedFileRepository<Feedback> feedbackMappedRepo = mappedContext.getFeedbackRepository();
+                    feedbackMappedRepo.createAll(List.of(
+                            feedback1, feedback2, feedback3, feedback4, feedback5, feedback6, feedback7, feedback8,
+                            feedback9, feedback10, feedback11, feedback12, feedback13, feedback14, feedback15));
+
+                    FitnessService mappedService = new FitnessService(equipmentMappedRepo, new IndexedRepository<>(feedbackMappedRepo), new IndexedRepository<>(fitnessClassMappedRepo), locationMappedRepo, memberMappedRepo, membershipMappedRepo, roomMappedRepo, trainerMappedRepo,
+                            UnitOfWork.NONE, new HiLoIdAllocator(new FileBlockSource(directory)));
+                    FitnessController controller = new FitnessController(mappedService);
+                    UI ui = new UI(controller, membersList, trainersList);
+                    ui.menu();
+                }
             }
         }
         scanner.close();
@@ -1,9 +1,13 @@
 package controller;
 import model.*;
+import repository.RatingIndex;
 import service.FitnessService;
+import service.OccupancyReport;
 
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The FitnessController class serves as the intermediary between the service layer (FitnessService) and the user interface
@@ -439,6 +443,15 @@ public class FitnessController {
         return null;
     }
 
+    /**
+     * Returns a new ID for an entity of the given type, to be set before the entity is added.
+     * @param type The type of the entity.
+     * @return An ID that has not been handed out for this type before.
+     */
+    public int newId(Class<? extends HasId> type) {
+        return fitnessService.newId(type);
+    }
+
     /**
      * Adds a new member to the system.
      * If an IllegalArgumentException is thrown, it logs the error message.
@@ -802,6 +815,40 @@ public class FitnessController {
         }
     }
 
+    /**
+     * Retrieves and displays the upcoming classes most similar to the specified target class, best first.
+     * @param targetClass The class to find similar classes for.
+     * @param k           The maximum number of classes to display.
+     * @throws IllegalArgumentException if there is an error fetching the recommendations.
+     */
+    public void recommendSimilarClasses(FitnessClass targetClass, int k) {
+        try {
+            List<FitnessClass> recommendations = fitnessService.recommendSimilarClasses(targetClass, k);
+            for (FitnessClass fitnessClass : recommendations) {
+                System.out.println(fitnessClass.toStringLessInfo() + "\n");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Retrieves and displays the upcoming classes most often taken together with the classes of a member.
+     * @param memberId The ID of the member.
+     * @param k        The maximum number of classes to display.
+     * @throws IllegalArgumentException if there is an error fetching the recommendations.
+     */
+    public void recommendForMember(int memberId, int k) {
+        try {
+            List<FitnessClass> recommendations = fitnessService.recommendForMember(memberId, k);
+            for (FitnessClass fitnessClass : recommendations) {
+                System.out.println(fitnessClass.toStringLessInfo() + "\n");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
     /**
      * Registers a member to a specified fitness class.
      * @throws IllegalArgumentException if registration fails due to invalid IDs or other issues.
@@ -834,6 +881,10 @@ public class FitnessController {
      */
     public void displayFeedback(int classID){
         try {
+            RatingIndex.RatingStats rating = fitnessService.getClassRating(classID);
+            if (rating.count() > 0) {
+                System.out.printf("Average rating: %.1f/5 (%d ratings)%n%n", rating.average(), rating.count());
+            }
             List<Feedback> feedbackList = fitnessService.getClassFeedback(classID);
             for(Feedback feedback: feedbackList){
                 System.out.println("Rating: " + feedback.getRating() + "/5\nComment: " + feedback.getComment() + "\n");
@@ -843,6 +894,69 @@ public class FitnessController {
         }
     }
 
+    /**
+     * Displays the average rating of a trainer over all their classes and how often each rating was given.
+     * @param trainerId The ID of the trainer.
+     */
+    public void displayTrainerRating(int trainerId) {
+        RatingIndex.RatingStats rating = fitnessService.getTrainerRating(trainerId);
+        if (rating.count() == 0) {
+            System.out.println("No ratings yet.");
+            return;
+        }
+        System.out.printf("Average rating: %.1f/5 (%d ratings)%n", rating.average(), rating.count());
+        for (int stars = RatingIndex.RatingStats.MAX_RATING; stars >= 1; stars--) {
+            System.out.println(stars + "/5: " + rating.countOf(stars));
+        }
+    }
+
+    /**
+     * Searches the feedback on the classes of a trainer for comments containing all the given words, and displays
+     * the matching feedback with the class it was left for.
+     * @param trainerId The ID of the trainer.
+     * @param query     The words to search for.
+     */
+    public void searchTrainerFeedback(int trainerId, String query) {
+        try {
+            List<Feedback> feedbackList = fitnessService.searchTrainerFeedback(trainerId, query, true);
+            if (feedbackList.isEmpty()) {
+                System.out.println("No feedback matches \"" + query + "\".");
+            }
+            for (Feedback feedback : feedbackList) {
+                System.out.println(feedback.getFitnessClass().getName() + " - Rating: " + feedback.getRating()
+                        + "/5\nComment: " + feedback.getComment() + "\n");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Displays the utilisation and fill rate of every room and location over the given months, and the busiest hour
+     * of every location.
+     * @param from The first month, inclusive.
+     * @param to   The last month, inclusive.
+     */
+    public void displayOccupancyReport(YearMonth from, YearMonth to) {
+        try {
+            OccupancyReport report = fitnessService.getOccupancyReport(from, to);
+            for (Room room : fitnessService.getAllRooms()) {
+                System.out.printf("%s: utilisation %.1f%%, fill rate %.1f%%%n", room.getName(),
+                        100 * report.roomUtilisation().getOrDefault(room.getId(), 0.0),
+                        100 * report.roomFillRate().getOrDefault(room.getId(), 0.0));
+            }
+            for (Map.Entry<Integer, Double> location : report.locationUtilisation().entrySet()) {
+                int busiestHour = report.busiestHour(location.getKey());
+                System.out.printf("Location %d: utilisation %.1f%%, fill rate %.1f%%, busiest hour %s%n",
+                        location.getKey(), 100 * location.getValue(),
+                        100 * report.locationFillRate().getOrDefault(location.getKey(), 0.0),
+                        busiestHour < 0 ? "none" : OccupancyReport.formatHourOfWeek(busiestHour));
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
     /**
      * Displays all fitness classes taught by a specific trainer.
      * @throws IllegalArgumentException if no classes are found for the specified trainer.
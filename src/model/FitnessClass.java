@@ -4,8 +4,14 @@ import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.List;
 
-public class FitnessClass implements HasId {
+public class FitnessClass implements Versioned {
+    /**
+     * Kept at the value computed before the version field was added, so existing data files stay readable.
+     */
+    private static final long serialVersionUID = -769198637903366013L;
+
     private int id;
+    private int version;
     private String name;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
@@ -41,6 +47,16 @@ public class FitnessClass implements HasId {
         this.id = id;
     }
 
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     //Getters
 
     public String getName() {
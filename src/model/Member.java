@@ -3,9 +3,15 @@ package model;
 import java.time.LocalDateTime;
 import java.util.List;
 
-public class Member extends User implements HasId {
+public class Member extends User implements Versioned {
+
+    /**
+     * Kept at the value computed before the version field was added, so existing data files stay readable.
+     */
+    private static final long serialVersionUID = 4440057101454309312L;
 
     private int id;
+    private int version;
     private LocalDateTime registrationDate;
     private Membership membership;
     private List<FitnessClass> fitnessClasses;
@@ -28,6 +34,16 @@ public class Member extends User implements HasId {
         this.id = id;
     }
 
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     // Getters
 
     public LocalDateTime getRegistrationDate() {
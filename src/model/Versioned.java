@@ -0,0 +1,20 @@
+package model;
+
+/**
+ * Represents an entity whose updates are checked against concurrent changes (optimistic concurrency).
+ * <p>Every successful update increments the version. An update is rejected if the version of the given object no
+ * longer matches the stored one, i.e. if somebody else has updated the entity since the object was read.</p>
+ */
+public interface Versioned extends HasId {
+    /**
+     * Retrieves the version of the state this object was read with.
+     * @return The version, 0 for an entity that has never been updated.
+     */
+    int getVersion();
+
+    /**
+     * Sets the version of the object. Called by the repositories when the object is read or updated.
+     * @param version The version to be set.
+     */
+    void setVersion(int version);
+}
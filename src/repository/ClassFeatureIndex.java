@@ -0,0 +1,227 @@
+package repository;
+
+import model.Equipment;
+import model.FitnessClass;
+import model.HasId;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Inverted indexes from equipment and trainers to the fitness classes using them, so that finding classes similar
+ * to a given one only looks at the classes sharing a piece of equipment or the trainer with it, not at the whole
+ * catalogue.
+ * <p>Candidates are scored by the weighted Jaccard overlap of their equipment with that of the target, where rare
+ * equipment weighs more than equipment used by most classes ({@code ln(1 + classes / classes using it)}), plus
+ * {@link #TRAINER_BOOST} if they have the same trainer and up to {@link #TIME_BOOST} the closer they start to the
+ * target. The best K are kept in a bounded heap, so ranking n candidates costs O(n log K).</p>
+ * <p>Trainers and equipment are identified by their IDs. Those whose ID is unset (0) are identified by instance
+ * instead, so that entities not stored yet still match themselves but not each other. All methods are
+ * synchronized.</p>
+ */
+public class ClassFeatureIndex implements RepositoryIndex<FitnessClass> {
+
+    /**
+     * The score added for a candidate with the same trainer as the target.
+     */
+    public static final double TRAINER_BOOST = 0.5;
+
+    /**
+     * The score added for a candidate starting at the same time as the target; it halves a week apart.
+     */
+    public static final double TIME_BOOST = 0.25;
+
+    private static final double TIME_BOOST_HALF_LIFE_MINUTES = Duration.ofDays(7).toMinutes();
+
+    private final Map<Object, Set<Integer>> classesByEquipment = new HashMap<>();
+    private final Map<Object, Set<Integer>> classesByTrainer = new HashMap<>();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    /**
+     * Adds a class to the postings of its trainer and equipment, replacing its previous entry.
+     * @param fitnessClass The class in its current state.
+     */
+    @Override
+    public synchronized void put(FitnessClass fitnessClass) {
+        remove(fitnessClass.getId());
+        Entry entry = entry(fitnessClass);
+        for (Object equipmentKey : entry.equipmentKeys()) {
+            classesByEquipment.computeIfAbsent(equipmentKey, key -> new HashSet<>()).add(fitnessClass.getId());
+        }
+        if (entry.trainerKey() != null) {
+            classesByTrainer.computeIfAbsent(entry.trainerKey(), key -> new HashSet<>()).add(fitnessClass.getId());
+        }
+        entries.put(fitnessClass.getId(), entry);
+    }
+
+    /**
+     * Removes a class from the postings of its trainer and equipment.
+     * @param id The ID of the removed class.
+     */
+    @Override
+    public synchronized void remove(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (Object equipmentKey : entry.equipmentKeys()) {
+            removePosting(classesByEquipment, equipmentKey, id);
+        }
+        if (entry.trainerKey() != null) {
+            removePosting(classesByTrainer, entry.trainerKey(), id);
+        }
+    }
+
+    /**
+     * Returns the IDs of the classes that have the same trainer as the target and share at least one piece of
+     * equipment with it. Only the classes of the target's trainer are looked at.
+     * @param target The class to compare against; it does not need to be indexed and is itself left out.
+     * @param after  Only classes starting after this time are returned.
+     * @return The IDs of the matching classes, in no particular order.
+     */
+    public synchronized List<Integer> sameTrainerAndEquipment(FitnessClass target, LocalDateTime after) {
+        Entry targetEntry = entry(target);
+        List<Integer> classIds = new ArrayList<>();
+        if (targetEntry.trainerKey() == null) {
+            return classIds;
+        }
+        Set<Object> targetEquipment = targetEntry.equipmentKeys();
+        for (int classId : classesByTrainer.getOrDefault(targetEntry.trainerKey(), Set.of())) {
+            Entry entry = entries.get(classId);
+            if (classId != target.getId() && startsAfter(entry, after)
+                    && entry.equipmentKeys().stream().anyMatch(targetEquipment::contains)) {
+                classIds.add(classId);
+            }
+        }
+        return classIds;
+    }
+
+    /**
+     * Returns the K classes most similar to the target, out of those sharing a piece of equipment or the trainer
+     * with it.
+     * @param target The class to compare against; it does not need to be indexed and is itself left out.
+     * @param after  Only classes starting after this time are considered.
+     * @param k      The maximum number of classes to return.
+     * @return The best scored classes, best first.
+     * @throws IllegalArgumentException If k is negative.
+     */
+    public synchronized List<ScoredClass> mostSimilar(FitnessClass target, LocalDateTime after, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("The number of classes must not be negative.");
+        }
+        if (k == 0) {
+            return new ArrayList<>();
+        }
+        Entry targetEntry = entry(target);
+        Set<Integer> candidates = new HashSet<>();
+        for (Object equipmentKey : targetEntry.equipmentKeys()) {
+            candidates.addAll(classesByEquipment.getOrDefault(equipmentKey, Set.of()));
+        }
+        if (targetEntry.trainerKey() != null) {
+            candidates.addAll(classesByTrainer.getOrDefault(targetEntry.trainerKey(), Set.of()));
+        }
+        candidates.remove(target.getId());
+
+        Comparator<ScoredClass> worstFirst = Comparator.comparingDouble(ScoredClass::score)
+                .thenComparing(ScoredClass::classId, Comparator.reverseOrder());
+        PriorityQueue<ScoredClass> best = new PriorityQueue<>(worstFirst);
+        double targetWeight = weight(targetEntry.equipmentKeys());
+        for (int classId : candidates) {
+            Entry entry = entries.get(classId);
+            if (!startsAfter(entry, after)) {
+                continue;
+            }
+            best.add(new ScoredClass(classId, score(targetEntry, targetWeight, entry)));
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+        List<ScoredClass> ranked = new ArrayList<>(best);
+        ranked.sort(worstFirst.reversed());
+        return ranked;
+    }
+
+    private double score(Entry target, double targetWeight, Entry candidate) {
+        double shared = 0;
+        for (Object equipmentKey : candidate.equipmentKeys()) {
+            if (target.equipmentKeys().contains(equipmentKey)) {
+                shared += weight(equipmentKey);
+            }
+        }
+        double union = targetWeight + weight(candidate.equipmentKeys()) - shared;
+        double score = union == 0 ? 0 : shared / union;
+        if (target.trainerKey() != null && target.trainerKey().equals(candidate.trainerKey())) {
+            score += TRAINER_BOOST;
+        }
+        if (target.start() != null && candidate.start() != null) {
+            long minutes = Math.abs(Duration.between(target.start(), candidate.start()).toMinutes());
+            score += TIME_BOOST / (1 + minutes / TIME_BOOST_HALF_LIFE_MINUTES);
+        }
+        return score;
+    }
+
+    private double weight(Set<Object> equipmentKeys) {
+        double weight = 0;
+        for (Object equipmentKey : equipmentKeys) {
+            weight += weight(equipmentKey);
+        }
+        return weight;
+    }
+
+    private double weight(Object equipmentKey) {
+        Set<Integer> postings = classesByEquipment.get(equipmentKey);
+        int classesUsingIt = postings == null ? 1 : Math.max(1, postings.size());
+        return Math.log1p((double) Math.max(1, entries.size()) / classesUsingIt);
+    }
+
+    private static boolean startsAfter(Entry entry, LocalDateTime after) {
+        return entry.start() != null && entry.start().isAfter(after);
+    }
+
+    private static Entry entry(FitnessClass fitnessClass) {
+        Set<Object> equipmentKeys = new HashSet<>();
+        if (fitnessClass.getEquipment() != null) {
+            for (Equipment equipment : fitnessClass.getEquipment()) {
+                if (equipment != null) {
+                    equipmentKeys.add(key(equipment));
+                }
+            }
+        }
+        Object trainerKey = fitnessClass.getTrainer() == null ? null : key(fitnessClass.getTrainer());
+        return new Entry(trainerKey, equipmentKeys, fitnessClass.getStartTime());
+    }
+
+    /**
+     * Returns the key a trainer or piece of equipment is indexed by: its ID, or the instance itself if the ID is unset.
+     * The model classes do not override equals, so an instance key only matches the same instance.
+     */
+    private static Object key(HasId entity) {
+        return entity.getId() != 0 ? Integer.valueOf(entity.getId()) : entity;
+    }
+
+    private static void removePosting(Map<Object, Set<Integer>> postings, Object key, int classId) {
+        Set<Integer> classIds = postings.get(key);
+        if (classIds != null && classIds.remove(classId) && classIds.isEmpty()) {
+            postings.remove(key);
+        }
+    }
+
+    /**
+     * A candidate class and its similarity score; higher is more similar.
+     * @param classId The ID of the class.
+     * @param score   The similarity score.
+     */
+    public record ScoredClass(int classId, double score) {
+    }
+
+    private record Entry(Object trainerKey, Set<Object> equipmentKeys, LocalDateTime start) {
+    }
+}
@@ -0,0 +1,77 @@
+package repository;
+
+import model.FitnessClass;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+/**
+ * Keeps the current trainer of every fitness class, for the indexes of another repository that file entities under
+ * the trainer of their class, like the feedback in {@link RatingIndex} and {@link FeedbackTextIndex}.
+ * <p>Listeners are told the ID of a class whenever its trainer may have changed, after the new trainer has been
+ * recorded and without any lock of this index held, so a listener may look the trainer up again under its own lock.
+ * Deleting a class drops its entry without telling the listeners.</p>
+ */
+public class ClassTrainerIndex implements RepositoryIndex<FitnessClass> {
+
+    private final Map<Integer, Integer> trainerByClass = new HashMap<>();
+    private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Records the trainer of a class and tells the listeners if it is a new class or its trainer has changed.
+     * @param fitnessClass The class in its current state.
+     */
+    @Override
+    public void put(FitnessClass fitnessClass) {
+        Integer trainerId = fitnessClass.getTrainer() == null ? null : fitnessClass.getTrainer().getId();
+        synchronized (this) {
+            if (trainerByClass.containsKey(fitnessClass.getId())
+                    && Objects.equals(trainerByClass.get(fitnessClass.getId()), trainerId)) {
+                return;
+            }
+            trainerByClass.put(fitnessClass.getId(), trainerId);
+        }
+        for (IntConsumer listener : listeners) {
+            listener.accept(fitnessClass.getId());
+        }
+    }
+
+    /**
+     * Forgets the trainer of a deleted class.
+     * @param id The ID of the removed class.
+     */
+    @Override
+    public synchronized void remove(int id) {
+        trainerByClass.remove(id);
+    }
+
+    /**
+     * Tells whether the trainer of a class is known, i.e. the class is stored in the indexed repository.
+     * @param classId The ID of the class.
+     * @return true if the class has been indexed and not deleted since.
+     */
+    public synchronized boolean contains(int classId) {
+        return trainerByClass.containsKey(classId);
+    }
+
+    /**
+     * Returns the current trainer of a class.
+     * @param classId The ID of the class.
+     * @return The ID of the trainer, or null if the class has no trainer or is not known.
+     */
+    public synchronized Integer trainerOf(int classId) {
+        return trainerByClass.get(classId);
+    }
+
+    /**
+     * Registers a listener to be called with the ID of a class whenever its trainer may have changed.
+     * @param listener The listener.
+     */
+    public void addListener(IntConsumer listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,355 @@
+package repository;
+
+import model.FitnessClass;
+import model.Member;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Recommends classes from the enrolment history: members who took the same classes as you also took these.
+ * <p>The index keeps the member x class co-enrolment matrix, built from the members of every fitness class, and a
+ * table of the {@code neighbourCount} most similar classes of every class. Two classes are similar when the same
+ * members enrol in both; their similarity is the cosine of their member sets,
+ * {@code shared members / sqrt(members of a * members of b)}.</p>
+ * <p>When the members of a class change, that class and every class sharing a member with it are marked dirty, and a
+ * background refresh recomputes the neighbours of the dirty classes only, on the common fork/join pool, and then
+ * publishes a new table. Recommendations are served from the published table without locking, so they may lag
+ * slightly behind the latest enrolments; {@link #refresh()} brings the table up to date.</p>
+ */
+public class CoEnrollmentIndex implements RepositoryIndex<FitnessClass> {
+
+    /**
+     * The number of neighbours kept per class when no other number is given.
+     */
+    public static final int DEFAULT_NEIGHBOUR_COUNT = 20;
+
+    /**
+     * Dirty classes are split among fork/join tasks until a task has at most this many.
+     */
+    private static final int CLASSES_PER_TASK = 32;
+
+    private final int neighbourCount;
+    private final Map<Integer, Set<Integer>> membersByClass = new HashMap<>();
+    private final Map<Integer, Set<Integer>> classesByMember = new HashMap<>();
+    private final Map<Integer, LocalDateTime> startTimes = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = new HashSet<>();
+    private final Object refreshLock = new Object();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "co-enrollment-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean refreshScheduled;
+    private volatile Map<Integer, Neighbours> neighbours = Map.of();
+
+    /**
+     * Constructs a CoEnrollmentIndex keeping {@link #DEFAULT_NEIGHBOUR_COUNT} neighbours per class.
+     */
+    public CoEnrollmentIndex() {
+        this(DEFAULT_NEIGHBOUR_COUNT);
+    }
+
+    /**
+     * Constructs a CoEnrollmentIndex.
+     * @param neighbourCount The number of most similar classes kept per class.
+     * @throws IllegalArgumentException If the neighbour count is not positive.
+     */
+    public CoEnrollmentIndex(int neighbourCount) {
+        if (neighbourCount <= 0) {
+            throw new IllegalArgumentException("Neighbour count must be positive.");
+        }
+        this.neighbourCount = neighbourCount;
+    }
+
+    /**
+     * Records the members of a class and schedules a refresh if they have changed.
+     * @param fitnessClass The class in its current state.
+     */
+    @Override
+    public void put(FitnessClass fitnessClass) {
+        if (fitnessClass.getStartTime() != null) {
+            startTimes.put(fitnessClass.getId(), fitnessClass.getStartTime());
+        } else {
+            startTimes.remove(fitnessClass.getId());
+        }
+        Set<Integer> members = new HashSet<>();
+        if (fitnessClass.getMembers() != null) {
+            for (Member member : fitnessClass.getMembers()) {
+                if (member != null) {
+                    members.add(member.getId());
+                }
+            }
+        }
+        setMembers(fitnessClass.getId(), members);
+    }
+
+    /**
+     * Forgets a class and schedules a refresh of the classes it shared members with.
+     * @param id The ID of the removed class.
+     */
+    @Override
+    public void remove(int id) {
+        startTimes.remove(id);
+        setMembers(id, Set.of());
+    }
+
+    /**
+     * Recomputes the neighbours of every class, e.g. after the similarity measure has changed.
+     */
+    public void rebuild() {
+        synchronized (this) {
+            dirty.addAll(membersByClass.keySet());
+        }
+        refresh();
+    }
+
+    /**
+     * Recomputes the neighbours of the classes whose members have changed and publishes them. Returns once every change
+     * made before the call is reflected in the table.
+     */
+    public void refresh() {
+        synchronized (refreshLock) {
+            Snapshot snapshot;
+            synchronized (this) {
+                refreshScheduled = false;
+                if (dirty.isEmpty()) {
+                    return;
+                }
+                snapshot = snapshot();
+                dirty.clear();
+            }
+            Neighbours[] computed = new Neighbours[snapshot.classIds.length];
+            ForkJoinPool.commonPool().invoke(new NeighbourTask(snapshot, computed, 0, computed.length));
+            Map<Integer, Neighbours> table = new HashMap<>(neighbours);
+            for (int i = 0; i < computed.length; i++) {
+                if (computed[i].classIds().length == 0) {
+                    table.remove(snapshot.classIds[i]);
+                } else {
+                    table.put(snapshot.classIds[i], computed[i]);
+                }
+            }
+            neighbours = table;
+        }
+    }
+
+    /**
+     * Returns the most similar classes of a class, most similar first, from the published table.
+     * @param classId The ID of the class.
+     * @return The neighbours of the class, empty if it has none.
+     */
+    public List<Recommendation> neighbours(int classId) {
+        Neighbours entry = neighbours.get(classId);
+        List<Recommendation> result = new ArrayList<>();
+        if (entry != null) {
+            for (int i = 0; i < entry.classIds().length; i++) {
+                result.add(new Recommendation(entry.classIds()[i], entry.scores()[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Recommends classes to a member: the neighbours of the classes they are enrolled in, scored by the sum of their
+     * similarities to those classes. Classes the member is already enrolled in are left out.
+     * @param memberId The ID of the member.
+     * @param after    Only classes starting after this time are recommended.
+     * @param k        The maximum number of classes to recommend.
+     * @return Up to k recommendations, best first.
+     * @throws IllegalArgumentException If k is negative.
+     */
+    public List<Recommendation> recommendForMember(int memberId, LocalDateTime after, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("The number of classes must not be negative.");
+        }
+        Set<Integer> enrolled;
+        synchronized (this) {
+            enrolled = new HashSet<>(classesByMember.getOrDefault(memberId, Set.of()));
+        }
+        Map<Integer, Neighbours> table = neighbours;
+        Map<Integer, Double> scores = new HashMap<>();
+        for (int classId : enrolled) {
+            Neighbours entry = table.get(classId);
+            if (entry == null) {
+                continue;
+            }
+            for (int i = 0; i < entry.classIds().length; i++) {
+                int candidate = entry.classIds()[i];
+                LocalDateTime start = startTimes.get(candidate);
+                if (!enrolled.contains(candidate) && start != null && start.isAfter(after)) {
+                    scores.merge(candidate, (double) entry.scores()[i], Double::sum);
+                }
+            }
+        }
+        Comparator<Recommendation> worstFirst = Comparator.comparingDouble(Recommendation::score)
+                .thenComparing(Recommendation::classId, Comparator.reverseOrder());
+        PriorityQueue<Recommendation> best = new PriorityQueue<>(worstFirst);
+        for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+            best.add(new Recommendation(score.getKey(), score.getValue()));
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+        List<Recommendation> ranked = new ArrayList<>(best);
+        ranked.sort(worstFirst.reversed());
+        return ranked;
+    }
+
+    private synchronized void setMembers(int classId, Set<Integer> members) {
+        Set<Integer> previous = membersByClass.getOrDefault(classId, Set.of());
+        if (previous.equals(members)) {
+            return;
+        }
+        Set<Integer> affectedMembers = new HashSet<>(previous);
+        affectedMembers.addAll(members);
+        for (int memberId : previous) {
+            if (!members.contains(memberId)) {
+                Set<Integer> classes = classesByMember.get(memberId);
+                classes.remove(classId);
+                if (classes.isEmpty()) {
+                    classesByMember.remove(memberId);
+                }
+            }
+        }
+        for (int memberId : members) {
+            classesByMember.computeIfAbsent(memberId, key -> new HashSet<>()).add(classId);
+        }
+        if (members.isEmpty()) {
+            membersByClass.remove(classId);
+        } else {
+            membersByClass.put(classId, members);
+        }
+        dirty.add(classId);
+        for (int memberId : affectedMembers) {
+            dirty.addAll(classesByMember.getOrDefault(memberId, Set.of()));
+        }
+        if (!refreshScheduled) {
+            refreshScheduled = true;
+            refresher.execute(this::refresh);
+        }
+    }
+
+    /**
+     * Copies the part of the matrix needed to recompute the dirty classes, so that the computation runs without
+     * holding the lock.
+     */
+    private Snapshot snapshot() {
+        int[] classIds = dirty.stream().mapToInt(Integer::intValue).toArray();
+        Map<Integer, int[]> members = new HashMap<>();
+        Map<Integer, int[]> classes = new HashMap<>();
+        Map<Integer, Integer> sizes = new HashMap<>();
+        for (int classId : classIds) {
+            Set<Integer> classMembers = membersByClass.getOrDefault(classId, Set.of());
+            members.put(classId, toArray(classMembers));
+            for (int memberId : classMembers) {
+                classes.computeIfAbsent(memberId, key -> {
+                    Set<Integer> memberClasses = classesByMember.get(key);
+                    for (int other : memberClasses) {
+                        sizes.computeIfAbsent(other, id -> membersByClass.get(id).size());
+                    }
+                    return toArray(memberClasses);
+                });
+            }
+        }
+        return new Snapshot(classIds, members, classes, sizes);
+    }
+
+    private Neighbours computeNeighbours(Snapshot snapshot, int classId) {
+        int[] members = snapshot.membersByClass.get(classId);
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (int memberId : members) {
+            for (int other : snapshot.classesByMember.get(memberId)) {
+                if (other != classId) {
+                    shared.merge(other, 1, Integer::sum);
+                }
+            }
+        }
+        Comparator<Recommendation> worstFirst = Comparator.comparingDouble(Recommendation::score)
+                .thenComparing(Recommendation::classId, Comparator.reverseOrder());
+        PriorityQueue<Recommendation> best = new PriorityQueue<>(worstFirst);
+        for (Map.Entry<Integer, Integer> entry : shared.entrySet()) {
+            double similarity = entry.getValue()
+                    / Math.sqrt((double) members.length * snapshot.sizes.get(entry.getKey()));
+            best.add(new Recommendation(entry.getKey(), similarity));
+            if (best.size() > neighbourCount) {
+                best.poll();
+            }
+        }
+        List<Recommendation> ranked = new ArrayList<>(best);
+        ranked.sort(worstFirst.reversed());
+        int[] classIds = new int[ranked.size()];
+        float[] scores = new float[ranked.size()];
+        for (int i = 0; i < ranked.size(); i++) {
+            classIds[i] = ranked.get(i).classId();
+            scores[i] = (float) ranked.get(i).score();
+        }
+        return new Neighbours(classIds, scores);
+    }
+
+    private static int[] toArray(Set<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * A recommended class and its score; higher is better.
+     * @param classId The ID of the class.
+     * @param score   The score of the class.
+     */
+    public record Recommendation(int classId, double score) {
+    }
+
+    /**
+     * The neighbours of one class, most similar first, stored as parallel arrays to keep the table compact.
+     */
+    private record Neighbours(int[] classIds, float[] scores) {
+    }
+
+    private record Snapshot(int[] classIds, Map<Integer, int[]> membersByClass, Map<Integer, int[]> classesByMember,
+                            Map<Integer, Integer> sizes) {
+    }
+
+    /**
+     * Recomputes the neighbours of a range of the dirty classes, splitting the range in halves until it is small.
+     */
+    private class NeighbourTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Snapshot snapshot;
+        private final Neighbours[] computed;
+        private final int from;
+        private final int to;
+
+        NeighbourTask(Snapshot snapshot, Neighbours[] computed, int from, int to) {
+            this.snapshot = snapshot;
+            this.computed = computed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CLASSES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    computed[i] = computeNeighbours(snapshot, snapshot.classIds[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new NeighbourTask(snapshot, computed, from, middle),
+                    new NeighbourTask(snapshot, computed, middle, to));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package repository;
+import model.HasId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread-safe in-memory repository for managing entities of type T, for use by several sessions in one JVM.
+ * <p>Unlike {@link InMemoryRepository}, which checks for an ID and then acts on it, every operation on a single entity
+ * is one atomic {@link ConcurrentHashMap} call, so two threads can never both create the same ID or both see an entity
+ * that the other has just deleted. Reads never block and scale with the number of threads.</p>
+ * <p>Iteration is weakly consistent: {@link #values()} is a live view that neither copies nor locks and reflects some
+ * of the changes made while it is traversed, and {@link #getAll()} fills its list from that view.</p>
+ * @param <T> The type of objects managed by this repository. T must extend HasId.
+ */
+public class ConcurrentInMemoryRepository<T extends HasId> implements IRepository<T> {
+
+    private final ConcurrentHashMap<Integer, T> storage = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a new entity to the repository. The entity's ID must be unique.
+     * @param obj The object to be added to the repository. Must not be null.
+     * @throws IllegalArgumentException if an entity with the same ID already exists.
+     */
+    @Override
+    public void create(T obj) {
+        if (storage.putIfAbsent(obj.getId(), obj) != null) {
+            throw new IllegalArgumentException("Entity with ID " + obj.getId() + " already exists.");
+        }
+    }
+
+    /**
+     * Retrieves an entity by its unique ID without blocking.
+     * @param id The unique identifier of the entity to retrieve.
+     * @return The entity of type T associated with the given ID, or null if no such entity exists.
+     */
+    @Override
+    public T read(int id) {
+        return storage.get(id);
+    }
+
+    /**
+     * Updates an existing entity in the repository. A {@link model.Versioned} entity is only replaced if it carries the
+     * stored version, which is then incremented; the check and the replacement are one atomic step.
+     * @param obj The object containing updated data. Its ID must already exist in the repository.
+     * @throws IllegalArgumentException if the entity does not exist in the repository.
+     * @throws ConcurrentModificationException if the entity has been updated since {@code obj} was read.
+     */
+    @Override
+    public void update(T obj) {
+        replace(obj);
+    }
+
+    /**
+     * Atomically replaces an existing entity with the result of the given function. Since the function always sees
+     * the current state, a {@link model.Versioned} result never conflicts; it gets the next version.
+     * Other updates of the same ID wait until the function returns, so it should be short and must not access this
+     * repository.
+     * @param id     The unique identifier of the entity to update.
+     * @param change The function computing the new entity from the current one.
+     * @return The new entity.
+     * @throws IllegalArgumentException if the entity does not exist in the repository.
+     */
+    public T compute(int id, UnaryOperator<T> change) {
+        T updated = storage.computeIfPresent(id, (key, current) -> {
+            int version = Versions.of(current);
+            T changed = change.apply(current);
+            Versions.set(changed, version + 1);
+            return changed;
+        });
+        if (updated == null) {
+            throw new IllegalArgumentException("Entity with ID " + id + " doesn't exist.");
+        }
+        return updated;
+    }
+
+    /**
+     * Deletes an entity from the repository by its unique ID.
+     * @param id The unique identifier of the entity to delete.
+     * @throws IllegalArgumentException if no entity with the given ID exists.
+     */
+    @Override
+    public void delete(int id) {
+        if (storage.remove(id) == null) {
+            throw new IllegalArgumentException("Entity with ID " + id + " doesn't exist.");
+        }
+    }
+
+    /**
+     * Retrieves all entities currently stored in the repository.
+     * The list is filled from a weakly consistent traversal, so it does not wait for concurrent writers.
+     * @return A list of all entities managed by the repository. If no entities exist, returns an empty list.
+     */
+    @Override
+    public List<T> getAll() {
+        return new ArrayList<>(storage.values());
+    }
+
+    /**
+     * Returns a live, unmodifiable view of all entities. Iterating it neither copies nor locks the data and never
+     * throws a {@link java.util.ConcurrentModificationException}; entities added or removed during the iteration may
+     * or may not be seen.
+     * @return A view of the entities managed by the repository.
+     */
+    public Collection<T> values() {
+        return Collections.unmodifiableCollection(storage.values());
+    }
+
+    /**
+     * Adds several new entities to the repository. Each entity is added atomically; if one is rejected, those already
+     * added by this call are removed again. Other threads may see the batch partially applied in the meantime.
+     * @param objs The objects to be added to the repository. Must not be null.
+     * @throws IllegalArgumentException if an entity with the same ID already exists or the ID occurs twice in {@code objs}.
+     */
+    @Override
+    public void createAll(Collection<T> objs) {
+        List<T> added = new ArrayList<>();
+        for (T obj : objs) {
+            if (storage.putIfAbsent(obj.getId(), obj) != null) {
+                added.forEach(done -> storage.remove(done.getId(), done));
+                throw new IllegalArgumentException("Entity with ID " + obj.getId() + " already exists.");
+            }
+            added.add(obj);
+        }
+    }
+
+    /**
+     * Updates several existing entities in the repository. Each entity is replaced atomically; if one is rejected,
+     * those already replaced by this call get their previous state back, unless another thread changed them since.
+     * @param objs The objects containing updated data. Their IDs must already exist in the repository.
+     * @throws IllegalArgumentException if one of the entities does not exist in the repository.
+     * @throws ConcurrentModificationException if one of the entities has been updated since it was read.
+     */
+    @Override
+    public void updateAll(Collection<T> objs) {
+        List<Map.Entry<T, T>> replaced = new ArrayList<>();
+        List<Integer> versions = new ArrayList<>();
+        for (T obj : objs) {
+            int version = Versions.of(obj);
+            try {
+                replaced.add(Map.entry(obj, replace(obj)));
+                versions.add(version);
+            } catch (IllegalArgumentException | ConcurrentModificationException e) {
+                for (int i = replaced.size() - 1; i >= 0; i--) {
+                    Map.Entry<T, T> entry = replaced.get(i);
+                    if (storage.replace(entry.getKey().getId(), entry.getKey(), entry.getValue())) {
+                        Versions.set(entry.getKey(), versions.get(i));
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Replaces an entity after checking its version, in one atomic step.
+     * @return The previously stored entity.
+     */
+    private T replace(T obj) {
+        List<T> previous = new ArrayList<>(1);
+        storage.compute(obj.getId(), (key, current) -> {
+            if (current == null) {
+                throw new IllegalArgumentException("Entity with ID " + obj.getId() + " doesn't exist.");
+            }
+            Versions.check(current, obj);
+            previous.add(current);
+            Versions.set(obj, Versions.of(current) + 1);
+            return obj;
+        });
+        return previous.get(0);
+    }
+
+    /**
+     * Deletes several entities from the repository. Each entity is removed atomically; if one is missing, those
+     * already removed by this call are put back, unless another thread created the ID again since.
+     * @param ids The unique identifiers of the entities to delete.
+     * @throws IllegalArgumentException if no entity exists for one of the given IDs.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        List<T> removed = new ArrayList<>();
+        for (int id : ids) {
+            T previous = storage.remove(id);
+            if (previous == null) {
+                removed.forEach(done -> storage.putIfAbsent(done.getId(), done));
+                throw new IllegalArgumentException("Entity with ID " + id + " doesn't exist.");
+            }
+            removed.add(previous);
+        }
+    }
+
+}
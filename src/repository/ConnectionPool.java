@@ -0,0 +1,378 @@
+package repository;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A bounded JDBC connection pool exposed as a {@link DataSource}.
+ * <p>The pool never holds more than {@code maxSize} physical connections. Connections that stay idle longer than
+ * {@code idleTimeoutMillis} are closed by a background housekeeping thread, and connections that have been borrowed
+ * for longer than {@code leakThresholdMillis} are reported together with the stack trace of the code that borrowed them.</p>
+ * <p>Borrowing is reentrant per thread: while a thread holds a connection, further calls to {@link #getConnection()}
+ * from the same thread share the same physical connection. This keeps nested repository calls (e.g. a fitness class
+ * loading its trainer and room) on a single connection instead of draining the pool.</p>
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    public static final int DEFAULT_MAX_SIZE = 4;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_LEAK_THRESHOLD_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    public static final long DEFAULT_CONNECTION_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final String dbUrl;
+    private final String dbUser;
+    private final String dbPassword;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final long connectionTimeoutMillis;
+
+    private final Semaphore permits;
+    private final Deque<IdleConnection> idleConnections = new ArrayDeque<>();
+    private final Map<Lease, Boolean> activeLeases = new ConcurrentHashMap<>();
+    private final ThreadLocal<Lease> currentLease = new ThreadLocal<>();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    private PrintWriter logWriter;
+
+    /**
+     * Constructs a ConnectionPool with the default size, idle timeout and leak threshold.
+     * @param dbUrl      The URL of the database to connect to.
+     * @param dbUser     The username to use when connecting to the database.
+     * @param dbPassword The password to use when connecting to the database.
+     */
+    public ConnectionPool(String dbUrl, String dbUser, String dbPassword) {
+        this(dbUrl, dbUser, dbPassword, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_LEAK_THRESHOLD_MILLIS,
+                DEFAULT_CONNECTION_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Constructs a ConnectionPool with the given limits.
+     * @param dbUrl                   The URL of the database to connect to.
+     * @param dbUser                  The username to use when connecting to the database.
+     * @param dbPassword              The password to use when connecting to the database.
+     * @param maxSize                 The maximum number of physical connections open at the same time.
+     * @param idleTimeoutMillis       How long an unused connection is kept before it is closed.
+     * @param leakThresholdMillis     How long a connection may stay borrowed before it is reported as a possible leak.
+     * @param connectionTimeoutMillis How long {@link #getConnection()} waits for a free connection before failing.
+     * @throws IllegalArgumentException if {@code maxSize} is not positive.
+     */
+    public ConnectionPool(String dbUrl, String dbUser, String dbPassword, int maxSize, long idleTimeoutMillis,
+                          long leakThresholdMillis, long connectionTimeoutMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be greater than zero.");
+        }
+        this.dbUrl = dbUrl;
+        this.dbUser = dbUser;
+        this.dbPassword = dbPassword;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, leakThresholdMillis) / 2);
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool.
+     * <p>If the calling thread already holds a connection, the same physical connection is shared. Otherwise an idle
+     * connection is reused or, if the pool is not yet full, a new one is opened. Closing the returned connection
+     * hands it back to the pool.</p>
+     * @return A pooled connection.
+     * @throws SQLException If the pool is closed, no connection becomes available in time, or a new connection cannot be opened.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+        Lease lease = currentLease.get();
+        if (lease != null) {
+            lease.holds++;
+            return lease.newHandle();
+        }
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection after " + connectionTimeoutMillis + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+        Connection physical;
+        try {
+            physical = takeIdleOrOpen();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        lease = new Lease(physical);
+        currentLease.set(lease);
+        activeLeases.put(lease, Boolean.TRUE);
+        return lease.newHandle();
+    }
+
+    /**
+     * Not supported: every pooled connection uses the credentials given at construction time.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections always use the configured credentials.");
+    }
+
+    /**
+     * Returns the number of connections currently borrowed from the pool.
+     * @return The number of active leases.
+     */
+    public int getActiveCount() {
+        return activeLeases.size();
+    }
+
+    /**
+     * Returns the number of open connections currently waiting in the pool.
+     * @return The number of idle connections.
+     */
+    public int getIdleCount() {
+        synchronized (idleConnections) {
+            return idleConnections.size();
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops the housekeeping thread.
+     * Connections that are still borrowed are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        synchronized (idleConnections) {
+            for (IdleConnection idle : idleConnections) {
+                closeQuietly(idle.connection);
+            }
+            idleConnections.clear();
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection that is still open, or opens a new one.
+     * @return An open physical connection.
+     * @throws SQLException If a new connection cannot be opened.
+     */
+    private Connection takeIdleOrOpen() throws SQLException {
+        while (true) {
+            IdleConnection idle;
+            synchronized (idleConnections) {
+                idle = idleConnections.pollFirst();
+            }
+            if (idle == null) {
+                return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+            }
+            if (!idle.connection.isClosed()) {
+                return idle.connection;
+            }
+        }
+    }
+
+    /**
+     * Hands a physical connection back to the pool once its last holder has closed it.
+     * Any open transaction is rolled back so the next borrower starts from a clean state.
+     * @param lease The lease being released.
+     */
+    private void release(Lease lease) {
+        currentLease.remove();
+        activeLeases.remove(lease);
+        try {
+            Connection physical = lease.physical;
+            if (!physical.isClosed()) {
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (closed) {
+                    physical.close();
+                } else {
+                    synchronized (idleConnections) {
+                        idleConnections.addFirst(new IdleConnection(physical, System.currentTimeMillis()));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            closeQuietly(lease.physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes connections that have been idle for too long and reports leases held beyond the leak threshold.
+     */
+    private void houseKeep() {
+        long now = System.currentTimeMillis();
+        synchronized (idleConnections) {
+            Iterator<IdleConnection> iterator = idleConnections.descendingIterator();
+            while (iterator.hasNext()) {
+                IdleConnection idle = iterator.next();
+                if (now - idle.lastUsed < idleTimeoutMillis) {
+                    break;
+                }
+                iterator.remove();
+                closeQuietly(idle.connection);
+            }
+        }
+        for (Lease lease : activeLeases.keySet()) {
+            if (!lease.reported && now - lease.borrowedAt >= leakThresholdMillis) {
+                lease.reported = true;
+                System.err.println("Possible connection leak: connection borrowed by " + lease.owner.getName()
+                        + " has been held for " + (now - lease.borrowedAt) + " ms.");
+                lease.origin.printStackTrace();
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // the connection is discarded either way
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <U> U unwrap(Class<U> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("ConnectionPool does not wrap " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * An open physical connection waiting in the pool, with the time it was last handed back.
+     */
+    private record IdleConnection(Connection connection, long lastUsed) {
+    }
+
+    /**
+     * A physical connection borrowed by one thread. Every nested {@link #getConnection()} call on that thread
+     * adds a hold; the connection goes back to the pool when the last hold is closed.
+     */
+    private final class Lease {
+        private final Connection physical;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final Thread owner = Thread.currentThread();
+        private final Throwable origin = new Throwable("Connection borrowed here");
+        private int holds = 1;
+        private volatile boolean reported;
+
+        private Lease(Connection physical) {
+            this.physical = physical;
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    /**
+     * The connection handed to callers. It forwards every call to the physical connection, except {@code close()},
+     * which releases one hold on the lease instead of closing the socket.
+     */
+    private final class Handle implements InvocationHandler {
+        private final Lease lease;
+        private boolean handleClosed;
+
+        private Handle(Lease lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        if (--lease.holds == 0) {
+                            release(lease);
+                        }
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return handleClosed || lease.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "PooledConnection[" + lease.physical + "]";
+                }
+                default -> {
+                    if (handleClosed) {
+                        throw new SQLException("Connection is closed.");
+                    }
+                    try {
+                        return method.invoke(lease.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,50 +1,253 @@
 package repository;
 
 import model.HasId;
+import model.Versioned;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Abstract class that provides a base for database repositories.
- * This class is responsible for managing the connection to the database and is used as a foundation for repositories
+ * This class is responsible for obtaining connections to the database and is used as a foundation for repositories
  * that interact with specific types of objects in the database.
+ * Connections are borrowed from the pool of the {@link DBRepositoryContext} the repository belongs to, one per
+ * operation, and handed back as soon as the operation's try-with-resources block ends.
  * It implements the {@link IRepository} interface and {@link AutoCloseable} to ensure the proper management of database resources.
  * @param <T> The type of objects this repository handles, which must implement the {@link HasId} interface.
  */
 public abstract class DBRepository<T extends HasId> implements IRepository<T>, AutoCloseable {
 
     /**
-     * The database connection used by the repository to interact with the database.
+     * The maximum number of rows sent to the database in one JDBC batch.
      */
-    protected Connection connection;
+    protected static final int BATCH_SIZE = 500;
 
     /**
-     * Constructs a DBRepository instance with the provided database connection details.
-     * Establishes a connection to the database using the specified URL, user, and password.
-     * @param dbUrl      The URL of the database to connect to.
-     * @param dbUser     The username to use when connecting to the database.
-     * @param dbPassword The password to use when connecting to the database.
-     * @throws RuntimeException If the connection cannot be established due to an SQLException.
+     * The repository context providing the shared connection pool and the related repositories.
      */
-    DBRepository(String dbUrl, String dbUser, String dbPassword) {
-        try {
-            this.connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+    protected final DBRepositoryContext context;
+
+    /**
+     * Constructs a DBRepository instance that borrows its connections from the given context.
+     * No connection is opened until the first operation is executed.
+     * @param context The repository context providing the connection pool.
+     */
+    DBRepository(DBRepositoryContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Borrows a connection from the context's pool. The caller must close it to give it back,
+     * typically by declaring it in a try-with-resources statement.
+     * @return A pooled database connection.
+     * @throws SQLException If no connection can be obtained.
+     */
+    protected Connection getConnection() throws SQLException {
+        return context.getDataSource().getConnection();
+    }
+
+    /**
+     * Binds a collection of IDs as a single SQL array parameter, for bulk queries of the form {@code WHERE id = ANY(?)}.
+     * @param connection The connection the statement was prepared on.
+     * @param statement  The statement to bind the parameter on.
+     * @param index      The index of the parameter.
+     * @param ids        The IDs to bind.
+     * @throws SQLException If the array cannot be created or bound.
+     */
+    protected static void setIdArray(Connection connection, PreparedStatement statement, int index, Collection<Integer> ids)
+            throws SQLException {
+        statement.setArray(index, connection.createArrayOf("integer", ids.toArray()));
+    }
+
+    /**
+     * Runs the given work on one pooled connection inside a single transaction, committing it if the work completes
+     * and rolling it back if it fails. If the calling thread already holds the connection with auto-commit turned off,
+     * the work joins that transaction and leaves committing to its owner.
+     * @param work The statements to execute.
+     * @throws SQLException If a statement fails or the transaction cannot be committed.
+     */
+    protected void inTransaction(SqlWork work) throws SQLException {
+        try (Connection connection = getConnection()) {
+            if (!connection.getAutoCommit()) {
+                work.run(connection);
+                return;
+            }
+            connection.setAutoCommit(false);
+            try {
+                work.run(connection);
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Executes one statement for each of the given items as JDBC batches of at most {@link #BATCH_SIZE} rows,
+     * so a bulk operation costs a few round trips instead of one per item.
+     * @param connection The connection to execute the statement on.
+     * @param sql        The statement to execute.
+     * @param items      The items to bind, one batch entry each.
+     * @param binder     Binds the parameters of one item.
+     * @param <E>        The item type.
+     * @return The update count of every item, in the order of the items.
+     * @throws SQLException If a statement fails.
+     */
+    protected static <E> int[] executeBatch(Connection connection, String sql, Collection<? extends E> items,
+                                            StatementBinder<E> binder) throws SQLException {
+        int[] counts = new int[items.size()];
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int pending = 0;
+            int done = 0;
+            for (E item : items) {
+                binder.bind(statement, item);
+                statement.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    done = copyCounts(statement.executeBatch(), counts, done);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                copyCounts(statement.executeBatch(), counts, done);
+            }
+        }
+        return counts;
+    }
+
+    private static int copyCounts(int[] batch, int[] counts, int offset) {
+        System.arraycopy(batch, 0, counts, offset, batch.length);
+        return offset + batch.length;
+    }
+
+    /**
+     * Checks the update counts of a batch of compare-and-set updates ({@code ... WHERE id=? AND version=?}).
+     * A count of 0 means that the row was changed or deleted since the entity was read: its cached instance is
+     * dropped, so the next read loads the current state, and the batch is rejected, which rolls back the transaction.
+     * @param objs   The updated entities, in the order they were bound.
+     * @param counts The update counts returned by {@link #executeBatch(Connection, String, Collection, StatementBinder)}.
+     * @param <E>    The entity type.
+     * @throws ConcurrentModificationException If one of the rows was not updated.
+     */
+    protected <E extends Versioned> void checkVersions(Collection<E> objs, int[] counts) {
+        int i = 0;
+        for (E obj : objs) {
+            if (counts[i++] == 0) {
+                forget(obj.getClass(), obj.getId());
+                throw Versions.conflict(obj);
+            }
+        }
+    }
+
+    /**
+     * Executes a statement with a single ID parameter once for each of the given IDs, as JDBC batches.
+     * @param connection The connection to execute the statement on.
+     * @param sql        The statement to execute, e.g. {@code DELETE FROM room WHERE id=?}.
+     * @param ids        The IDs to bind.
+     * @throws SQLException If a statement fails.
+     */
+    protected static void executeBatch(Connection connection, String sql, int... ids) throws SQLException {
+        List<Integer> boxed = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            boxed.add(id);
         }
-        catch (SQLException e) {
-            throw new RuntimeException(e);
+        executeBatch(connection, sql, boxed, (statement, id) -> statement.setInt(1, id));
+    }
+
+    /**
+     * Returns the instance of an entity already materialised in the current identity scope.
+     * @param type The entity type.
+     * @param id   The entity ID.
+     * @param <E>  The entity type.
+     * @return The known instance, or null if no scope is open or the entity has not been loaded yet.
+     */
+    protected <E extends HasId> E cached(Class<E> type, int id) {
+        IdentityMap identityMap = context.currentIdentityMap();
+        return identityMap == null ? null : identityMap.get(type, id);
+    }
+
+    /**
+     * Registers an entity in the current identity scope, if one is open.
+     * Entities with associations are registered before those are loaded, so cyclic references find them.
+     * @param entity The entity to register.
+     * @param <E>    The entity type.
+     * @return The same entity.
+     */
+    protected <E extends HasId> E remember(E entity) {
+        IdentityMap identityMap = context.currentIdentityMap();
+        if (identityMap != null) {
+            identityMap.put(entity);
         }
+        return entity;
     }
 
     /**
-     * Closes the database connection when the repository is no longer needed.
-     * This method is called automatically when using the try-with-resources statement.
-     * @throws Exception If an error occurs while closing the connection.
+     * Copies the entities of the given IDs that are already materialised in the current identity scope into
+     * {@code found}, and returns the IDs that still have to be read from the database.
+     * @param type  The entity type.
+     * @param ids   The requested IDs.
+     * @param found The map receiving the entities already known, keyed by ID.
+     * @param <E>   The entity type.
+     * @return The IDs that are not known yet.
+     */
+    protected <E extends HasId> Set<Integer> takeCached(Class<E> type, Collection<Integer> ids, Map<Integer, E> found) {
+        Set<Integer> missing = new HashSet<>();
+        for (Integer id : ids) {
+            E known = cached(type, id);
+            if (known != null) {
+                found.put(id, known);
+            } else {
+                missing.add(id);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Removes an entity from the current identity scope, if one is open.
+     * @param type The entity type.
+     * @param id   The entity ID.
+     */
+    protected void forget(Class<?> type, int id) {
+        IdentityMap identityMap = context.currentIdentityMap();
+        if (identityMap != null) {
+            identityMap.remove(type, id);
+        }
+    }
+
+    /**
+     * Releases the repository. Connections are owned by the pool of the {@link DBRepositoryContext},
+     * so closing a single repository does not close anything; close the context instead.
      */
     @Override
-    public void close() throws Exception {
-        connection.close();
+    public void close() {
+    }
+
+    /**
+     * Work executed on a connection by {@link #inTransaction(SqlWork)}.
+     */
+    @FunctionalInterface
+    protected interface SqlWork {
+        void run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Binds the parameters of a prepared statement for one item of a batch.
+     * @param <E> The item type.
+     */
+    @FunctionalInterface
+    protected interface StatementBinder<E> {
+        void bind(PreparedStatement statement, E item) throws SQLException;
     }
 
-}
\ No newline at end of file
+}
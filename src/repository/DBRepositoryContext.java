@@ -0,0 +1,221 @@
+package repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Owns the connection pool used by the database repositories and hands out one shared instance of each
+ * {@code *DBRepository}.
+ * <p>Repositories that need related data (e.g. a fitness class loading its trainer and room) look their siblings up
+ * through this context instead of constructing new ones, so each repository is built exactly once and all of them
+ * borrow connections from the same bounded pool.</p>
+ * <p>The context is also the {@link UnitOfWork} of its repositories: see {@link #run(Supplier)}.</p>
+ */
+public class DBRepositoryContext implements UnitOfWork, AutoCloseable {
+
+    private final DataSource dataSource;
+    private final ConnectionPool ownedPool;
+    private final ThreadLocal<IdentityMap> identityMap = new ThreadLocal<>();
+    private final ThreadLocal<List<Runnable>> afterCommitActions = new ThreadLocal<>();
+
+    private EquipmentDBRepository equipmentRepository;
+    private FeedbackDBRepository feedbackRepository;
+    private FitnessClassDBRepository fitnessClassRepository;
+    private LocationDBRepository locationRepository;
+    private MemberDBRepository memberRepository;
+    private MembershipDBRepository membershipRepository;
+    private RoomDBRepository roomRepository;
+    private TrainerDBRepository trainerRepository;
+
+    /**
+     * Constructs a DBRepositoryContext backed by a new {@link ConnectionPool} with default settings.
+     * The pool is closed together with the context.
+     * @param dbUrl      The URL of the database to connect to.
+     * @param dbUser     The username to use when connecting to the database.
+     * @param dbPassword The password to use when connecting to the database.
+     */
+    public DBRepositoryContext(String dbUrl, String dbUser, String dbPassword) {
+        this.ownedPool = new ConnectionPool(dbUrl, dbUser, dbPassword);
+        this.dataSource = ownedPool;
+    }
+
+    /**
+     * Constructs a DBRepositoryContext on top of an existing data source. The caller stays responsible for closing it.
+     * @param dataSource The data source the repositories borrow their connections from.
+     */
+    public DBRepositoryContext(DataSource dataSource) {
+        this.ownedPool = null;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Returns the data source shared by all repositories of this context.
+     * @return The shared data source.
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Opens an identity scope on the calling thread. Until it is closed, every entity read by the repositories of this
+     * context on this thread is materialised once per (type, id) and reused for later reads.
+     * <p>Scopes nest: if one is already open, the returned scope joins it and closing it does nothing. Repositories open
+     * a scope around each read, so a single call never loads the same row twice; callers can open a wider scope
+     * around a whole request.</p>
+     * @return The scope, to be closed when the unit of work ends.
+     */
+    public Scope openIdentityScope() {
+        if (identityMap.get() != null) {
+            return () -> { };
+        }
+        identityMap.set(new IdentityMap());
+        return identityMap::remove;
+    }
+
+    /**
+     * Returns the identity map of the scope open on the calling thread.
+     * @return The current identity map, or null if no scope is open.
+     */
+    public IdentityMap currentIdentityMap() {
+        return identityMap.get();
+    }
+
+    /**
+     * Runs the given work in one database transaction, committed once at the end.
+     * <p>The calling thread holds one connection while the work runs. The repositories of this context borrow from a
+     * {@link ConnectionPool}, which hands a thread the connection it already holds, so every statement of the work,
+     * including the batches of {@code createAll}, {@code updateAll} and {@code deleteAll}, runs on that connection
+     * and in this transaction. The work also runs in one identity scope (see {@link #openIdentityScope()}).</p>
+     * <p>If the work throws, the transaction is rolled back. If a transaction is already open on the thread's
+     * connection, the work joins it and leaves committing to its owner. Actions queued with
+     * {@link #afterCommit(Runnable)} run once the transaction has been committed, and are dropped if it is rolled
+     * back.</p>
+     * @param work The repository calls to run.
+     * @param <R>  The type of the result.
+     * @return The result of the work.
+     * @throws RuntimeException If the transaction cannot be started, committed or rolled back.
+     */
+    @Override
+    public <R> R run(Supplier<R> work) {
+        Scope scope = openIdentityScope();
+        try (Connection connection = dataSource.getConnection()) {
+            if (!connection.getAutoCommit()) {
+                return work.get();
+            }
+            List<Runnable> actions = new ArrayList<>();
+            connection.setAutoCommit(false);
+            afterCommitActions.set(actions);
+            R result;
+            try {
+                result = work.get();
+                connection.commit();
+            } catch (SQLException | RuntimeException | Error e) {
+                // rolled back before auto-commit is restored, which would otherwise commit the partial work
+                connection.rollback();
+                throw e;
+            } finally {
+                afterCommitActions.remove();
+                connection.setAutoCommit(true);
+            }
+            actions.forEach(Runnable::run);
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to run unit of work", e);
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Queues the given action until the transaction opened by {@link #run(Supplier)} on the calling thread commits,
+     * or runs it at once if no such transaction is open.
+     * @param action The action to run after the commit.
+     */
+    @Override
+    public void afterCommit(Runnable action) {
+        List<Runnable> actions = afterCommitActions.get();
+        if (actions == null) {
+            action.run();
+        } else {
+            actions.add(action);
+        }
+    }
+
+    public synchronized EquipmentDBRepository getEquipmentRepository() {
+        if (equipmentRepository == null) {
+            equipmentRepository = new EquipmentDBRepository(this);
+        }
+        return equipmentRepository;
+    }
+
+    public synchronized FeedbackDBRepository getFeedbackRepository() {
+        if (feedbackRepository == null) {
+            feedbackRepository = new FeedbackDBRepository(this);
+        }
+        return feedbackRepository;
+    }
+
+    public synchronized FitnessClassDBRepository getFitnessClassRepository() {
+        if (fitnessClassRepository == null) {
+            fitnessClassRepository = new FitnessClassDBRepository(this);
+        }
+        return fitnessClassRepository;
+    }
+
+    public synchronized LocationDBRepository getLocationRepository() {
+        if (locationRepository == null) {
+            locationRepository = new LocationDBRepository(this);
+        }
+        return locationRepository;
+    }
+
+    public synchronized MemberDBRepository getMemberRepository() {
+        if (memberRepository == null) {
+            memberRepository = new MemberDBRepository(this);
+        }
+        return memberRepository;
+    }
+
+    public synchronized MembershipDBRepository getMembershipRepository() {
+        if (membershipRepository == null) {
+            membershipRepository = new MembershipDBRepository(this);
+        }
+        return membershipRepository;
+    }
+
+    public synchronized RoomDBRepository getRoomRepository() {
+        if (roomRepository == null) {
+            roomRepository = new RoomDBRepository(this);
+        }
+        return roomRepository;
+    }
+
+    public synchronized TrainerDBRepository getTrainerRepository() {
+        if (trainerRepository == null) {
+            trainerRepository = new TrainerDBRepository(this);
+        }
+        return trainerRepository;
+    }
+
+    /**
+     * Closes the connection pool if this context created it.
+     */
+    @Override
+    public void close() {
+        if (ownedPool != null) {
+            ownedPool.close();
+        }
+    }
+
+    /**
+     * A unit of work opened on a {@link DBRepositoryContext}; closing it ends the unit of work.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,24 @@
+package repository;
+
+/**
+ * Implemented by fitness class repositories that can enrol members atomically in their own storage, so that the
+ * capacity of a class holds even when several application instances share that storage.
+ */
+public interface EnrollmentRepository {
+
+    /**
+     * Takes a seat in a class for a member and records the registration, as one atomic operation.
+     * @param classId  The ID of the fitness class.
+     * @param memberId The ID of the member.
+     * @return true if the member was enrolled, false if the class is full or the member is already enrolled.
+     */
+    boolean enroll(int classId, int memberId);
+
+    /**
+     * Removes the registration of a member from a class and frees their seat, as one atomic operation.
+     * @param classId  The ID of the fitness class.
+     * @param memberId The ID of the member.
+     * @return true if the member was withdrawn, false if they were not enrolled.
+     */
+    boolean withdraw(int classId, int memberId);
+}
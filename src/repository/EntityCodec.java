@@ -0,0 +1,37 @@
+package repository;
+
+import model.HasId;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts entities of one type to and from a compact binary layout, used by {@link MappedFileRepository}.
+ * <p>Fields are written in a fixed order; references to other entities are written as their int ID only and are
+ * turned back into objects through an {@link EntityResolver} when the record is decoded.</p>
+ * <p>Codecs of {@link model.Versioned} entities write the version as the last field, as an int. Records written
+ * before the entity was versioned end without it and decode with version 0.</p>
+ * @param <T> The type of entities handled by this codec.
+ */
+public interface EntityCodec<T extends HasId> {
+
+    /**
+     * Writes the fields of an entity.
+     * @param entity The entity to encode.
+     * @param out    The output to write to.
+     * @throws IOException If the output cannot be written.
+     */
+    void encode(T entity, DataOutput out) throws IOException;
+
+    /**
+     * Reads an entity from a buffer positioned at the start of its encoded fields.
+     * The new instance is registered with the resolver before its references are resolved, so cyclic references
+     * resolve to it instead of decoding it again.
+     * @param id       The ID of the entity, stored in the record header.
+     * @param in       The buffer to read from.
+     * @param resolver Resolves the IDs of referenced entities.
+     * @return The decoded entity.
+     */
+    T decode(int id, ByteBuffer in, EntityResolver resolver);
+}
@@ -0,0 +1,278 @@
+package repository;
+
+import model.*;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The binary codecs of the model entities, for use with {@link MappedFileRepository}.
+ * <p>Strings are written as their UTF-8 length followed by the bytes, timestamps as epoch second and nanosecond,
+ * and references as the ID of the referenced entity. A null value is written as a length of -1 or as
+ * {@link #NULL_ID}.</p>
+ */
+public final class EntityCodecs {
+
+    /**
+     * The ID written in place of a null reference.
+     */
+    static final int NULL_ID = Integer.MIN_VALUE;
+
+    public static final EntityCodec<Equipment> EQUIPMENT = new EntityCodec<>() {
+        @Override
+        public void encode(Equipment equipment, DataOutput out) throws IOException {
+            writeString(out, equipment.getName());
+            out.writeInt(equipment.getQuantity());
+            writeIds(out, equipment.getFitnessClasses());
+        }
+
+        @Override
+        public Equipment decode(int id, ByteBuffer in, EntityResolver resolver) {
+            Equipment equipment = new Equipment(readString(in), in.getInt(), null);
+            equipment.setId(id);
+            resolver.register(equipment);
+            equipment.setFitnessClasses(resolveAll(in, FitnessClass.class, resolver));
+            return equipment;
+        }
+    };
+
+    public static final EntityCodec<Feedback> FEEDBACK = new EntityCodec<>() {
+        @Override
+        public void encode(Feedback feedback, DataOutput out) throws IOException {
+            writeId(out, feedback.getMember());
+            writeId(out, feedback.getFitnessClass());
+            out.writeInt(feedback.getRating());
+            writeString(out, feedback.getComment());
+        }
+
+        @Override
+        public Feedback decode(int id, ByteBuffer in, EntityResolver resolver) {
+            int memberId = in.getInt();
+            int fitnessClassId = in.getInt();
+            Feedback feedback = new Feedback(null, null, in.getInt(), readString(in));
+            feedback.setId(id);
+            resolver.register(feedback);
+            feedback.setMember(resolve(memberId, Member.class, resolver));
+            feedback.setFitnessClass(resolve(fitnessClassId, FitnessClass.class, resolver));
+            return feedback;
+        }
+    };
+
+    public static final EntityCodec<FitnessClass> FITNESS_CLASS = new EntityCodec<>() {
+        @Override
+        public void encode(FitnessClass fitnessClass, DataOutput out) throws IOException {
+            writeString(out, fitnessClass.getName());
+            writeDateTime(out, fitnessClass.getStartTime());
+            writeDateTime(out, fitnessClass.getEndTime());
+            writeId(out, fitnessClass.getTrainer());
+            writeId(out, fitnessClass.getRoom());
+            out.writeInt(fitnessClass.getParticipantsCount());
+            writeId(out, fitnessClass.getLocation());
+            writeIds(out, fitnessClass.getFeedback());
+            writeIds(out, fitnessClass.getEquipment());
+            writeIds(out, fitnessClass.getMembers());
+            out.writeInt(fitnessClass.getVersion());
+        }
+
+        @Override
+        public FitnessClass decode(int id, ByteBuffer in, EntityResolver resolver) {
+            String name = readString(in);
+            LocalDateTime startTime = readDateTime(in);
+            LocalDateTime endTime = readDateTime(in);
+            int trainerId = in.getInt();
+            int roomId = in.getInt();
+            int participantsCount = in.getInt();
+            int locationId = in.getInt();
+            FitnessClass fitnessClass = new FitnessClass(name, startTime, endTime, null, null, participantsCount,
+                    null, null, null, null);
+            fitnessClass.setId(id);
+            resolver.register(fitnessClass);
+            fitnessClass.setTrainer(resolve(trainerId, Trainer.class, resolver));
+            fitnessClass.setRoom(resolve(roomId, Room.class, resolver));
+            fitnessClass.setLocation(resolve(locationId, Location.class, resolver));
+            fitnessClass.setFeedback(resolveAll(in, Feedback.class, resolver));
+            fitnessClass.setEquipment(resolveAll(in, Equipment.class, resolver));
+            fitnessClass.setMembers(resolveAll(in, Member.class, resolver));
+            fitnessClass.setVersion(readVersion(in));
+            return fitnessClass;
+        }
+    };
+
+    public static final EntityCodec<Location> LOCATION = new EntityCodec<>() {
+        @Override
+        public void encode(Location location, DataOutput out) throws IOException {
+            writeString(out, location.getName());
+            writeString(out, location.getAddress());
+        }
+
+        @Override
+        public Location decode(int id, ByteBuffer in, EntityResolver resolver) {
+            Location location = new Location(readString(in), readString(in));
+            location.setId(id);
+            resolver.register(location);
+            return location;
+        }
+    };
+
+    public static final EntityCodec<Member> MEMBER = new EntityCodec<>() {
+        @Override
+        public void encode(Member member, DataOutput out) throws IOException {
+            writeString(out, member.getName());
+            writeString(out, member.getPassword());
+            writeDateTime(out, member.getRegistrationDate());
+            writeId(out, member.getMembership());
+            writeIds(out, member.getFitnessClasses());
+            out.writeInt(member.getVersion());
+        }
+
+        @Override
+        public Member decode(int id, ByteBuffer in, EntityResolver resolver) {
+            Member member = new Member(readString(in), readString(in), readDateTime(in), null, null);
+            int membershipId = in.getInt();
+            member.setId(id);
+            resolver.register(member);
+            member.setMembership(resolve(membershipId, Membership.class, resolver));
+            member.setFitnessClasses(resolveAll(in, FitnessClass.class, resolver));
+            member.setVersion(readVersion(in));
+            return member;
+        }
+    };
+
+    public static final EntityCodec<Membership> MEMBERSHIP = new EntityCodec<>() {
+        @Override
+        public void encode(Membership membership, DataOutput out) throws IOException {
+            writeString(out, membership.getType());
+            out.writeFloat(membership.getPrice());
+        }
+
+        @Override
+        public Membership decode(int id, ByteBuffer in, EntityResolver resolver) {
+            Membership membership = new Membership(readString(in), in.getFloat());
+            membership.setId(id);
+            resolver.register(membership);
+            return membership;
+        }
+    };
+
+    public static final EntityCodec<Room> ROOM = new EntityCodec<>() {
+        @Override
+        public void encode(Room room, DataOutput out) throws IOException {
+            writeString(out, room.getName());
+            out.writeInt(room.getMaxCapacity());
+            writeId(out, room.getLocation());
+        }
+
+        @Override
+        public Room decode(int id, ByteBuffer in, EntityResolver resolver) {
+            Room room = new Room(readString(in), in.getInt(), null);
+            int locationId = in.getInt();
+            room.setId(id);
+            resolver.register(room);
+            room.setLocation(resolve(locationId, Location.class, resolver));
+            return room;
+        }
+    };
+
+    public static final EntityCodec<Trainer> TRAINER = new EntityCodec<>() {
+        @Override
+        public void encode(Trainer trainer, DataOutput out) throws IOException {
+            writeString(out, trainer.getName());
+            writeString(out, trainer.getPassword());
+            writeString(out, trainer.getSpecialisation());
+        }
+
+        @Override
+        public Trainer decode(int id, ByteBuffer in, EntityResolver resolver) {
+            Trainer trainer = new Trainer(readString(in), readString(in), readString(in));
+            trainer.setId(id);
+            resolver.register(trainer);
+            return trainer;
+        }
+    };
+
+    private EntityCodecs() {
+    }
+
+    /**
+     * Reads the version written after the other fields. Must be called once all other fields have been read: records
+     * written before entities were versioned end there, and any bytes left are the version field.
+     */
+    private static int readVersion(ByteBuffer in) {
+        return in.remaining() >= Integer.BYTES ? in.getInt() : 0;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDateTime(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeLong(value == null ? Long.MIN_VALUE : value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value == null ? 0 : value.getNano());
+    }
+
+    private static LocalDateTime readDateTime(ByteBuffer in) {
+        long epochSecond = in.getLong();
+        int nano = in.getInt();
+        return epochSecond == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+
+    private static void writeId(DataOutput out, HasId reference) throws IOException {
+        out.writeInt(reference == null ? NULL_ID : reference.getId());
+    }
+
+    private static void writeIds(DataOutput out, List<? extends HasId> references) throws IOException {
+        if (references == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(references.size());
+        for (HasId reference : references) {
+            writeId(out, reference);
+        }
+    }
+
+    private static <E extends HasId> E resolve(int id, Class<E> type, EntityResolver resolver) {
+        return id == NULL_ID ? null : resolver.resolve(type, id);
+    }
+
+    /**
+     * Reads a list of IDs and resolves them, leaving out references to entities that no longer exist.
+     */
+    private static <E extends HasId> List<E> resolveAll(ByteBuffer in, Class<E> type, EntityResolver resolver) {
+        int count = in.getInt();
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = in.getInt();
+        }
+        List<E> entities = new ArrayList<>(count);
+        for (int id : ids) {
+            E entity = resolve(id, type, resolver);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,35 @@
+package repository;
+
+import model.HasId;
+
+import java.util.function.Supplier;
+
+/**
+ * Turns the IDs stored by an {@link EntityCodec} back into entity instances while a record is decoded.
+ */
+public interface EntityResolver {
+
+    /**
+     * Returns the entity of the given type and ID, reusing the instance already decoded in the current scope.
+     * @param type The entity type.
+     * @param id   The entity ID.
+     * @param <E>  The entity type.
+     * @return The entity, or null if it does not exist.
+     */
+    <E extends HasId> E resolve(Class<E> type, int id);
+
+    /**
+     * Registers an entity that is being decoded, so references to it within the current scope resolve to it.
+     * @param entity The entity being decoded.
+     */
+    void register(HasId entity);
+
+    /**
+     * Runs the given work in one resolution scope: every entity is decoded at most once while it runs.
+     * Nested calls join the scope that is already open.
+     * @param work The work to run.
+     * @param <R>  The result type.
+     * @return The result of the work.
+     */
+    <R> R inScope(Supplier<R> work);
+}
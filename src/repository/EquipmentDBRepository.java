@@ -3,11 +3,17 @@ package repository;
 import model.Equipment;
 import model.FitnessClass;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The EquipmentDBRepository class provides CRUD operations for the `Equipment` model using a relational database.
@@ -15,20 +21,16 @@ import java.util.List;
  */
 public class EquipmentDBRepository extends DBRepository<Equipment> {
 
-    // Instance of FitnessClassDBRepository to handle FitnessClass-related data
-    FitnessClassDBRepository fitnessClassDBRepository;
+    private static final String INSERT_SQL = "INSERT INTO equipment (id ,name, quantity) VALUES(?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE equipment SET name=?, quantity=? WHERE id=?";
 
     /**
-     * Constructs an EquipmentDBRepository instance with the provided database connection details.
-     * It also initializes the FitnessClassDBRepository to handle fitness class data.
-     * @param dbUrl      The URL of the database to connect to.
-     * @param dbUser     The username to use when connecting to the database.
-     * @param dbPassword The password to use when connecting to the database.
-     * @throws RuntimeException If the connection cannot be established due to an SQLException.
+     * Constructs an EquipmentDBRepository that borrows its connections from the given repository context.
+     * Fitness classes linked to a piece of equipment are loaded through the context's FitnessClassDBRepository.
+     * @param context The repository context providing the connection pool and the related repositories.
      */
-    public EquipmentDBRepository(String dbUrl, String dbUser, String dbPassword) {
-        super(dbUrl, dbUser, dbPassword);
-        this.fitnessClassDBRepository = new FitnessClassDBRepository(dbUrl, dbUser, dbPassword);
+    public EquipmentDBRepository(DBRepositoryContext context) {
+        super(context);
     }
 
     /**
@@ -38,11 +40,8 @@ public class EquipmentDBRepository extends DBRepository<Equipment> {
      */
     @Override
     public void create(Equipment obj) {
-        String sql = "INSERT INTO equipment (id ,name, quantity) VALUES(?, ?, ?)";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setInt(1,obj.getId());
-            statement.setString(2,obj.getName());
-            statement.setInt(3,obj.getQuantity());
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(INSERT_SQL)){
+            bindInsert(statement, obj);
             statement.execute();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create equipment", e);
@@ -57,8 +56,13 @@ public class EquipmentDBRepository extends DBRepository<Equipment> {
      */
     @Override
     public Equipment read(int id) {
+        Equipment known = cached(Equipment.class, id);
+        if (known != null) {
+            return known;
+        }
         String sql = "SELECT * FROM equipment WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)){
             statement.setInt(1,id);
             ResultSet resultSet = statement.executeQuery();
             if(resultSet.next()){
@@ -68,6 +72,8 @@ public class EquipmentDBRepository extends DBRepository<Equipment> {
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to read equipment", e);
+        } finally {
+            scope.close();
         }
     }
 
@@ -78,12 +84,10 @@ public class EquipmentDBRepository extends DBRepository<Equipment> {
      */
     @Override
     public void update(Equipment obj) {
-        String sql = "UPDATE equipment SET name=?, quantity=? WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setString(1,obj.getName());
-            statement.setInt(2,obj.getQuantity());
-            statement.setInt(3,obj.getId());
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)){
+            bindUpdate(statement, obj);
             statement.execute();
+            remember(obj);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update equipment", e);
         }
@@ -91,64 +95,175 @@ public class EquipmentDBRepository extends DBRepository<Equipment> {
 
     /**
      * Deletes equipment from the database by its ID.
+     * <p>The equipment and its associations in the `equipment_fitnessClass` table are deleted in one transaction,
+     * see {@link #deleteAll(int...)}.</p>
      * @param id The ID of the equipment to be deleted.
      * @throws RuntimeException If a SQL error occurs while deleting the data.
      */
     @Override
     public void delete(int id) {
-        String sql = "DELETE FROM equipment WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setInt(1,id);
-            statement.execute();
+        deleteAll(id);
+    }
+
+    /**
+     * Inserts the given equipment in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The equipment to be created.
+     */
+    @Override
+    public void createAll(Collection<Equipment> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, INSERT_SQL, objs, EquipmentDBRepository::bindInsert));
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to delete equipment", e);
+            throw new RuntimeException("Failed to create equipment", e);
         }
-        String sql2 = "DELETE FROM equipment_fitnessClass WHERE equipmentID=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql2)){
-            statement.setInt(1,id);
-            statement.execute();
+    }
+
+    /**
+     * Updates the given equipment in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The equipment containing updated information.
+     */
+    @Override
+    public void updateAll(Collection<Equipment> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, UPDATE_SQL, objs, EquipmentDBRepository::bindUpdate));
+            objs.forEach(this::remember);
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw new RuntimeException("Failed to update equipment", e);
+        }
+    }
+
+    /**
+     * Deletes the equipment with the given IDs in a single transaction, sending the rows to the database in JDBC batches.
+     * @param ids The IDs of the equipment to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        for (int id : ids) {
+            forget(Equipment.class, id);
+        }
+        try {
+            inTransaction(connection -> {
+                executeBatch(connection, "DELETE FROM equipment_fitnessClass WHERE equipmentID=?", ids);
+                executeBatch(connection, "DELETE FROM equipment WHERE id=?", ids);
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete equipment", e);
         }
     }
 
     /**
      * Retrieves all equipment from the database.
+     * The fitness classes using each piece of equipment are loaded in bulk for the whole list, with a fixed number
+     * of queries instead of one lookup per row.
      * @return A list of all Equipment objects stored in the database.
      * @throws RuntimeException If a SQL error occurs while retrieving the data.
      */
     @Override
     public List<Equipment> getAll() {
         String sql = "SELECT * FROM equipment";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet resultSet = statement.executeQuery();
-            List<Equipment> equipmentList = new ArrayList<>();
-            while (resultSet.next()) {
-                ArrayList<FitnessClass> fitnessClasses = getEquipmentFitnessClasses(resultSet.getInt("id"));
-                equipmentList.add(extractFromResultSet(resultSet));
+            Map<Integer, Equipment> equipment = extractAllFromResultSet(resultSet);
+            if (!equipment.isEmpty()) {
+                List<int[]> links = FitnessClassDBRepository.readLinks(connection,
+                        "SELECT equipmentID, classID FROM equipment_fitnessClass WHERE equipmentID = ANY(?)", equipment.keySet());
+                Set<Integer> classIds = new HashSet<>();
+                for (int[] link : links) {
+                    classIds.add(link[1]);
+                }
+                Map<Integer, FitnessClass> fitnessClasses = context.getFitnessClassRepository().readByIds(classIds);
+                for (int[] link : links) {
+                    FitnessClass fitnessClass = fitnessClasses.get(link[1]);
+                    List<FitnessClass> equipmentClasses = equipment.get(link[0]).getFitnessClasses();
+                    if (fitnessClass != null && !equipmentClasses.contains(fitnessClass)) {
+                        equipmentClasses.add(fitnessClass);
+                    }
+                }
             }
-            return equipmentList;
+            return new ArrayList<>(equipment.values());
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve all equipment", e);
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Retrieves the equipment whose IDs are in the given collection with a single query.
+     * The fitness class lists are left empty; this is used while loading fitness classes in bulk, and the caller
+     * links the equipment to the classes it has loaded.
+     * @param ids The IDs of the equipment to retrieve.
+     * @return A map from ID to Equipment for every ID that exists in the database.
+     * @throws RuntimeException If a SQL error occurs while retrieving the data.
+     */
+    Map<Integer, Equipment> readByIds(Collection<Integer> ids) {
+        Map<Integer, Equipment> equipment = new LinkedHashMap<>();
+        Set<Integer> missing = takeCached(Equipment.class, ids, equipment);
+        if (missing.isEmpty()) {
+            return equipment;
+        }
+        String sql = "SELECT * FROM equipment WHERE id = ANY(?)";
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            setIdArray(connection, statement, 1, missing);
+            equipment.putAll(extractAllFromResultSet(statement.executeQuery()));
+            return equipment;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve equipment by id", e);
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Extracts every row of a ResultSet into Equipment objects without loading their fitness classes.
+     * Equipment already materialised in the current identity scope is reused.
+     * @param resultSet The ResultSet containing the equipment rows.
+     * @return A map from ID to Equipment, in the order returned by the database.
+     * @throws SQLException If an error occurs while accessing the ResultSet.
+     */
+    private Map<Integer, Equipment> extractAllFromResultSet(ResultSet resultSet) throws SQLException {
+        Map<Integer, Equipment> equipment = new LinkedHashMap<>();
+        while (resultSet.next()) {
+            Equipment known = cached(Equipment.class, resultSet.getInt("id"));
+            if (known != null) {
+                equipment.put(known.getId(), known);
+                continue;
+            }
+            Equipment item = new Equipment(
+                    resultSet.getString("name"),
+                    resultSet.getInt("quantity"),
+                    new ArrayList<>()
+            );
+            item.setId(resultSet.getInt("id"));
+            equipment.put(item.getId(), remember(item));
         }
+        return equipment;
     }
 
     /**
      * Extracts an Equipment object from a ResultSet row.
+     * If the equipment has already been materialised in the current identity scope, that instance is returned instead.
      * @param resultSet The ResultSet containing the database row.
      * @return An Equipment object constructed from the database row data.
      * @throws SQLException If an error occurs while accessing the ResultSet.
      */
     public Equipment extractFromResultSet(ResultSet resultSet) throws SQLException {
         try {
-            ArrayList<FitnessClass> fitnessClasses = getEquipmentFitnessClasses(resultSet.getInt("id"));
+            Equipment known = cached(Equipment.class, resultSet.getInt("id"));
+            if (known != null) {
+                return known;
+            }
             Equipment equipment = new Equipment(
                     resultSet.getString("name"),
                     resultSet.getInt("quantity"),
                     new ArrayList<>()
             );
-            equipment.setFitnessClasses(fitnessClasses);
             equipment.setId(resultSet.getInt("id"));
+            // registered before the classes are loaded, so the classes using this equipment reuse this instance
+            remember(equipment);
+            equipment.setFitnessClasses(getEquipmentFitnessClasses(equipment.getId()));
             return equipment;
         } catch (SQLException e) {
             throw new RuntimeException("Error extracting equipment from ResultSet", e);
@@ -167,18 +282,30 @@ public class EquipmentDBRepository extends DBRepository<Equipment> {
         ArrayList<FitnessClass> fitnessClasses = new ArrayList<>();
         String sqlClasses =
                 "SELECT fc.id, fc.name, fc.startTime, fc.endTime, fc.trainer, fc.room, fc.participantsCount, " +
-                        "fc.location" +
+                        "fc.location, fc.version" +
                         " FROM fitnessClass as fc "
                         + "where id in (SELECT equipment_fitnessClass.classID FROM equipment_fitnessClass WHERE equipmentID = ?)";
-        try(PreparedStatement statementClasses = connection.prepareStatement(sqlClasses)){
+        try(Connection connection = getConnection(); PreparedStatement statementClasses = connection.prepareStatement(sqlClasses)){
             statementClasses.setInt(1, id);
             ResultSet resultClasses = statementClasses.executeQuery();
             while(resultClasses.next()){
-                fitnessClasses.add(fitnessClassDBRepository.extractFromResultSet(resultClasses));
+                fitnessClasses.add(context.getFitnessClassRepository().extractFromResultSet(resultClasses));
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
         return fitnessClasses;
     }
+
+    private static void bindInsert(PreparedStatement statement, Equipment obj) throws SQLException {
+        statement.setInt(1,obj.getId());
+        statement.setString(2,obj.getName());
+        statement.setInt(3,obj.getQuantity());
+    }
+
+    private static void bindUpdate(PreparedStatement statement, Equipment obj) throws SQLException {
+        statement.setString(1,obj.getName());
+        statement.setInt(2,obj.getQuantity());
+        statement.setInt(3,obj.getId());
+    }
 }
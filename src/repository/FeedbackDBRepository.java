@@ -2,11 +2,18 @@ package repository;
 
 import model.*;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The FeedbackDBRepository class provides CRUD operations for the `Feedback` model using a relational database.
@@ -14,23 +21,16 @@ import java.util.List;
  */
 public class FeedbackDBRepository extends DBRepository<Feedback> {
 
-    // Instances of related repositories to interact with Member and FitnessClass data
-    MemberDBRepository memberDBRepository;
-    FitnessClassDBRepository fitnessClassDBRepository;
+    private static final String INSERT_SQL = "INSERT INTO feedback (id, member, fitnessClass, rating, comment) VALUES(?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE feedback SET member=?, fitnessClass=?, rating=?, comment=? WHERE id=?";
 
     /**
-     * Constructs a FeedbackDBRepository instance with the provided database connection details.
-     * This also initializes the MemberDBRepository and FitnessClassDBRepository to handle member and class data.
-     * Establishes a connection to the database using the specified URL, user, and password.
-     * @param dbUrl      The URL of the database to connect to.
-     * @param dbUser     The username to use when connecting to the database.
-     * @param dbPassword The password to use when connecting to the database.
-     * @throws RuntimeException If the connection cannot be established due to an SQLException.
+     * Constructs a FeedbackDBRepository that borrows its connections from the given repository context.
+     * The member and fitness class of each feedback are loaded through the repositories shared by the same context.
+     * @param context The repository context providing the connection pool and the related repositories.
      */
-    public FeedbackDBRepository(String dbUrl, String dbUser, String dbPassword) {
-        super(dbUrl, dbUser, dbPassword);
-        this.memberDBRepository = new MemberDBRepository(dbUrl, dbUser, dbPassword);
-        this.fitnessClassDBRepository = new FitnessClassDBRepository(dbUrl, dbUser, dbPassword);
+    public FeedbackDBRepository(DBRepositoryContext context) {
+        super(context);
     }
 
     /**
@@ -42,13 +42,8 @@ public class FeedbackDBRepository extends DBRepository<Feedback> {
      */
     @Override
     public void create(Feedback obj) {
-        String sql = "INSERT INTO feedback (id, member, fitnessClass, rating, comment) VALUES(?, ?, ?, ?, ?)";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setInt(1,obj.getId());
-            statement.setInt(2,obj.getMember().getId());
-            statement.setInt(3,obj.getFitnessClass().getId());
-            statement.setInt(4,obj.getRating());
-            statement.setString(5,obj.getComment());
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(INSERT_SQL)){
+            bindInsert(statement, obj);
             statement.execute();
         } catch (SQLException e) {
             throw new RuntimeException("Error while inserting feedback", e);
@@ -65,8 +60,13 @@ public class FeedbackDBRepository extends DBRepository<Feedback> {
      */
     @Override
     public Feedback read(int id) {
+        Feedback known = cached(Feedback.class, id);
+        if (known != null) {
+            return known;
+        }
         String sql = "SELECT * FROM feedback WHERE id=?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
@@ -76,6 +76,8 @@ public class FeedbackDBRepository extends DBRepository<Feedback> {
             }
         } catch (SQLException e) {
             throw new RuntimeException("Error while fetching feedback", e);
+        } finally {
+            scope.close();
         }
     }
 
@@ -88,14 +90,10 @@ public class FeedbackDBRepository extends DBRepository<Feedback> {
      */
     @Override
     public void update(Feedback obj) {
-        String sql = "UPDATE feedback SET member=?, fitnessClass=?, rating=?, comment=? WHERE id=?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setInt(1, obj.getMember().getId());
-            statement.setInt(2, obj.getFitnessClass().getId());
-            statement.setInt(3, obj.getRating());
-            statement.setString(4, obj.getComment());
-            statement.setInt(5, obj.getId());
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+            bindUpdate(statement, obj);
             statement.execute();
+            remember(obj);
         } catch (SQLException e) {
             throw new RuntimeException("Error while updating feedback", e);
         }
@@ -109,8 +107,9 @@ public class FeedbackDBRepository extends DBRepository<Feedback> {
      */
     @Override
     public void delete(int id) {
+        forget(Feedback.class, id);
         String sql = "DELETE FROM feedback WHERE id=?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             statement.execute();
         } catch (SQLException e) {
@@ -118,46 +117,113 @@ public class FeedbackDBRepository extends DBRepository<Feedback> {
         }
     }
 
+    /**
+     * Inserts the given feedback in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The feedback to be created.
+     */
+    @Override
+    public void createAll(Collection<Feedback> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, INSERT_SQL, objs, FeedbackDBRepository::bindInsert));
+        } catch (SQLException e) {
+            throw new RuntimeException("Error while inserting feedback", e);
+        }
+    }
+
+    /**
+     * Updates the given feedback in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The feedback containing updated information.
+     */
+    @Override
+    public void updateAll(Collection<Feedback> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, UPDATE_SQL, objs, FeedbackDBRepository::bindUpdate));
+            objs.forEach(this::remember);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error while updating feedback", e);
+        }
+    }
+
+    /**
+     * Deletes the feedback with the given IDs in a single transaction, sending the rows to the database in JDBC batches.
+     * @param ids The IDs of the feedback to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        for (int id : ids) {
+            forget(Feedback.class, id);
+        }
+        try {
+            inTransaction(connection -> executeBatch(connection, "DELETE FROM feedback WHERE id=?", ids));
+        } catch (SQLException e) {
+            throw new RuntimeException("Error while deleting feedback", e);
+        }
+    }
+
     /**
      * Retrieves all feedback records from the database.
      * This method fetches all feedback entries present in the database and returns them as a list of Feedback objects.
-     * Each Feedback object is populated with the associated Member and FitnessClass.
+     * Each Feedback object is populated with the associated Member and FitnessClass. The fitness classes are loaded in
+     * bulk and already carry their feedback, so the feedback objects are taken from them instead of being read one by one.
      * @return A list of all feedbacks in the database.
      * @throws RuntimeException If an SQL error occurs during the fetch operation.
      */
     @Override
     public List<Feedback> getAll() {
-        String sql = "SELECT * FROM feedback";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        String sql = "SELECT id, fitnessClass FROM feedback";
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet resultSet = statement.executeQuery();
-            List<Feedback> feedbacks = new ArrayList<>();
+            Map<Integer, Integer> classIds = new LinkedHashMap<>();
             while (resultSet.next()) {
-                feedbacks.add(extractFromResultSet(resultSet));
+                classIds.put(resultSet.getInt("id"), resultSet.getInt("fitnessClass"));
+            }
+            Map<Integer, Feedback> loaded = new HashMap<>();
+            for (FitnessClass fitnessClass : context.getFitnessClassRepository().readByIds(new HashSet<>(classIds.values())).values()) {
+                for (Feedback feedback : fitnessClass.getFeedback()) {
+                    loaded.put(feedback.getId(), feedback);
+                }
+            }
+            List<Feedback> feedbacks = new ArrayList<>();
+            for (Integer id : classIds.keySet()) {
+                Feedback feedback = loaded.get(id);
+                // feedback pointing to a class that no longer exists is not part of any loaded class
+                feedbacks.add(feedback != null ? feedback : read(id));
             }
             return feedbacks;
         } catch (SQLException e) {
             throw new RuntimeException("Error while fetching all feedback", e);
+        } finally {
+            scope.close();
         }
     }
 
     /**
      * Extracts the Feedback object from a ResultSet.
      * This helper method creates a Feedback object from a row in the ResultSet and populates it with the necessary details,
-     * including the associated Member and FitnessClass.
+     * including the associated Member and FitnessClass. Feedback already materialised in the current identity scope is reused.
      * @param resultSet The ResultSet object containing the feedback data.
      * @return A Feedback object populated with the data from the ResultSet.
      * @throws SQLException If an error occurs while reading data from the ResultSet.
      */
     private Feedback extractFromResultSet(ResultSet resultSet) throws SQLException {
-        Member member = memberDBRepository.read(resultSet.getInt("member"));
-        FitnessClass fitnessClass = fitnessClassDBRepository.read(resultSet.getInt("fitnessClass"));
+        Feedback known = cached(Feedback.class, resultSet.getInt("id"));
+        if (known != null) {
+            return known;
+        }
+        int memberId = resultSet.getInt("member");
+        int fitnessClassId = resultSet.getInt("fitnessClass");
         Feedback feedback = new Feedback(
-                member,
-                fitnessClass,
+                null,
+                null,
                 resultSet.getInt("rating"),
                 resultSet.getString("comment")
         );
         feedback.setId(resultSet.getInt("id"));
+        // registered before the class is loaded, since the class loads its own feedback list
+        remember(feedback);
+        feedback.setMember(context.getMemberRepository().read(memberId));
+        feedback.setFitnessClass(context.getFitnessClassRepository().read(fitnessClassId));
         return feedback;
     }
 
@@ -172,7 +238,8 @@ public class FeedbackDBRepository extends DBRepository<Feedback> {
     public ArrayList<Feedback> getFeedbackByClassId(int classId) {
         ArrayList<Feedback> feedbackList = new ArrayList<>();
         String sql = "SELECT * FROM feedback WHERE fitnessClass = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, classId);
             ResultSet resultSet = statement.executeQuery();
             while (resultSet.next()) {
@@ -180,7 +247,67 @@ public class FeedbackDBRepository extends DBRepository<Feedback> {
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve feedback for fitness class with id " + classId, e);
+        } finally {
+            scope.close();
         }
         return feedbackList;
     }
+
+    /**
+     * Retrieves the feedback of a set of fitness classes with a single query.
+     * This is used while loading fitness classes in bulk: each feedback is linked to the already loaded class and to
+     * its author from {@code members}. Authors missing from {@code members} are loaded with one more query and added to it.
+     * @param fitnessClasses The loaded fitness classes, keyed by ID.
+     * @param members        The loaded members, keyed by ID.
+     * @return The feedback of the given classes.
+     * @throws RuntimeException If an SQL error occurs during the fetch operation.
+     */
+    List<Feedback> getFeedbackByClassIds(Map<Integer, FitnessClass> fitnessClasses, Map<Integer, Member> members) {
+        List<Feedback> feedbackList = new ArrayList<>();
+        String sql = "SELECT * FROM feedback WHERE fitnessClass = ANY(?)";
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            setIdArray(connection, statement, 1, fitnessClasses.keySet());
+            ResultSet resultSet = statement.executeQuery();
+            Map<Feedback, Integer> memberIds = new HashMap<>();
+            while (resultSet.next()) {
+                Feedback known = cached(Feedback.class, resultSet.getInt("id"));
+                if (known != null) {
+                    feedbackList.add(known);
+                    continue;
+                }
+                Feedback feedback = new Feedback(
+                        null,
+                        fitnessClasses.get(resultSet.getInt("fitnessClass")),
+                        resultSet.getInt("rating"),
+                        resultSet.getString("comment")
+                );
+                feedback.setId(resultSet.getInt("id"));
+                feedbackList.add(remember(feedback));
+                memberIds.put(feedback, resultSet.getInt("member"));
+            }
+            Set<Integer> missingMembers = new HashSet<>(memberIds.values());
+            missingMembers.removeAll(members.keySet());
+            members.putAll(context.getMemberRepository().readByIds(missingMembers));
+            memberIds.forEach((feedback, memberId) -> feedback.setMember(members.get(memberId)));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve feedback for fitness classes", e);
+        }
+        return feedbackList;
+    }
+
+    private static void bindInsert(PreparedStatement statement, Feedback obj) throws SQLException {
+        statement.setInt(1,obj.getId());
+        statement.setInt(2,obj.getMember().getId());
+        statement.setInt(3,obj.getFitnessClass().getId());
+        statement.setInt(4,obj.getRating());
+        statement.setString(5,obj.getComment());
+    }
+
+    private static void bindUpdate(PreparedStatement statement, Feedback obj) throws SQLException {
+        statement.setInt(1, obj.getMember().getId());
+        statement.setInt(2, obj.getFitnessClass().getId());
+        statement.setInt(3, obj.getRating());
+        statement.setString(4, obj.getComment());
+        statement.setInt(5, obj.getId());
+    }
 }
@@ -0,0 +1,202 @@
+package repository;
+
+import model.Feedback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A full-text inverted index over the comments of feedback, so that searching comments looks up the posting lists of
+ * the query terms instead of scanning every comment.
+ * <p>Comments are split into terms at every character that is not a letter or digit and lower-cased, so "Too
+ * crowded!" is indexed as {@code too} and {@code crowded}. Each term maps to the IDs of the feedback containing it.
+ * The feedback of each trainer is kept as one more posting list, so a per-trainer search is one more intersection.
+ * Feedback belongs to the current trainer of its class, as kept by a {@link ClassTrainerIndex} on the class
+ * repository; when a class changes hands, its feedback moves to the new trainer's posting list.</p>
+ * <p>An "all terms" query intersects the posting lists, starting from the shortest one, so its cost is bounded by
+ * the rarest term; an "any term" query unites them. All methods are synchronized.</p>
+ */
+public class FeedbackTextIndex implements RepositoryIndex<Feedback> {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<String, Set<Integer>> feedbackByTerm = new HashMap<>();
+    private final Map<Integer, Set<Integer>> feedbackByTrainer = new HashMap<>();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<Integer, Set<Integer>> feedbackByClass = new HashMap<>();
+    private final ClassTrainerIndex classTrainers;
+
+    /**
+     * Constructs an empty FeedbackTextIndex that follows the trainers of the classes through the given index.
+     * @param classTrainers The index of the class trainers, added to the fitness class repository.
+     */
+    public FeedbackTextIndex(ClassTrainerIndex classTrainers) {
+        this.classTrainers = classTrainers;
+        classTrainers.addListener(this::trainerChanged);
+    }
+
+    /**
+     * Indexes the comment of a feedback, replacing the terms indexed for it before.
+     * @param feedback The feedback in its current state.
+     */
+    @Override
+    public synchronized void put(Feedback feedback) {
+        remove(feedback.getId());
+        Set<String> terms = terms(feedback.getComment());
+        Integer classId = feedback.getFitnessClass() == null ? null : feedback.getFitnessClass().getId();
+        Integer trainerId = null;
+        if (classId != null) {
+            trainerId = classTrainers.contains(classId) ? classTrainers.trainerOf(classId)
+                    : feedback.getFitnessClass().getTrainer() == null ? null : feedback.getFitnessClass().getTrainer().getId();
+            feedbackByClass.computeIfAbsent(classId, key -> new HashSet<>()).add(feedback.getId());
+        }
+        for (String term : terms) {
+            feedbackByTerm.computeIfAbsent(term, key -> new HashSet<>()).add(feedback.getId());
+        }
+        if (trainerId != null) {
+            feedbackByTrainer.computeIfAbsent(trainerId, key -> new HashSet<>()).add(feedback.getId());
+        }
+        entries.put(feedback.getId(), new Entry(terms, classId, trainerId));
+    }
+
+    /**
+     * Removes a feedback from the posting lists of its terms and trainer.
+     * @param id The ID of the removed feedback.
+     */
+    @Override
+    public synchronized void remove(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (String term : entry.terms()) {
+            removePosting(feedbackByTerm, term, id);
+        }
+        if (entry.trainerId() != null) {
+            removePosting(feedbackByTrainer, entry.trainerId(), id);
+        }
+        if (entry.classId() != null) {
+            removePosting(feedbackByClass, entry.classId(), id);
+        }
+    }
+
+    /**
+     * Moves the feedback of a fitness class to the posting list of its current trainer. Costs O(number of feedback on
+     * the class).
+     */
+    private synchronized void trainerChanged(int classId) {
+        if (!classTrainers.contains(classId)) {
+            return;
+        }
+        Integer trainerId = classTrainers.trainerOf(classId);
+        for (int id : feedbackByClass.getOrDefault(classId, Set.of())) {
+            Entry entry = entries.get(id);
+            if (Objects.equals(entry.trainerId(), trainerId)) {
+                continue;
+            }
+            if (entry.trainerId() != null) {
+                removePosting(feedbackByTrainer, entry.trainerId(), id);
+            }
+            if (trainerId != null) {
+                feedbackByTrainer.computeIfAbsent(trainerId, key -> new HashSet<>()).add(id);
+            }
+            entries.put(id, new Entry(entry.terms(), classId, trainerId));
+        }
+    }
+
+    /**
+     * Finds the feedback whose comment contains every term of the query.
+     * @param query     The words to search for; punctuation and case are ignored.
+     * @param trainerId If not null, only feedback on the classes of this trainer is returned.
+     * @return The IDs of the matching feedback in ascending order; empty if the query has no terms.
+     */
+    public synchronized List<Integer> matchAll(String query, Integer trainerId) {
+        List<Set<Integer>> postings = new ArrayList<>();
+        for (String term : terms(query)) {
+            postings.add(feedbackByTerm.getOrDefault(term, Set.of()));
+        }
+        if (postings.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (trainerId != null) {
+            postings.add(feedbackByTrainer.getOrDefault(trainerId, Set.of()));
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        List<Integer> ids = new ArrayList<>();
+        for (int id : postings.get(0)) {
+            if (inAll(postings, id)) {
+                ids.add(id);
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Finds the feedback whose comment contains at least one term of the query.
+     * @param query     The words to search for; punctuation and case are ignored.
+     * @param trainerId If not null, only feedback on the classes of this trainer is returned.
+     * @return The IDs of the matching feedback in ascending order; empty if the query has no terms.
+     */
+    public synchronized List<Integer> matchAny(String query, Integer trainerId) {
+        Set<Integer> trainerFeedback = trainerId == null ? null : feedbackByTrainer.getOrDefault(trainerId, Set.of());
+        Set<Integer> matches = new HashSet<>();
+        for (String term : terms(query)) {
+            for (int id : feedbackByTerm.getOrDefault(term, Set.of())) {
+                if (trainerFeedback == null || trainerFeedback.contains(id)) {
+                    matches.add(id);
+                }
+            }
+        }
+        List<Integer> ids = new ArrayList<>(matches);
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Splits a text into its distinct lower-case terms, in order of their first occurrence.
+     * @param text The text to split; may be null.
+     * @return The terms of the text.
+     */
+    public static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String term : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static boolean inAll(List<Set<Integer>> postings, int id) {
+        for (int i = 1; i < postings.size(); i++) {
+            if (!postings.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <K> void removePosting(Map<K, Set<Integer>> postings, K key, int id) {
+        Set<Integer> ids = postings.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            postings.remove(key);
+        }
+    }
+
+    private record Entry(Set<String> terms, Integer classId, Integer trainerId) {
+    }
+}
@@ -0,0 +1,61 @@
+package repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link HiLoIdAllocator.BlockSource} persisting the next block number of each entity type in a small counter file
+ * ({@code <type>.hilo}) in a directory, for repositories that keep their data in files.
+ * <p>The counter file is locked while a block is reserved, so applications sharing the directory never reserve the
+ * same block, and it is forced to disk before the block is handed out, so a block is not reserved again after a
+ * crash. Within one application, share a single FileBlockSource per directory, because the file lock only excludes
+ * other processes.</p>
+ */
+public class FileBlockSource implements HiLoIdAllocator.BlockSource {
+
+    private final Path directory;
+
+    /**
+     * Constructs a FileBlockSource keeping its counter files in the given directory.
+     * @param directory The directory of the counter files.
+     */
+    public FileBlockSource(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Reserves the next block of the given entity type by incrementing its counter file.
+     * @param name The simple name of the entity type.
+     * @return The number of the reserved block.
+     * @throws UncheckedIOException If the counter file cannot be read or written.
+     */
+    @Override
+    public synchronized long reserveBlock(String name) {
+        Path path = directory.resolve(name + ".hilo");
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    ByteBuffer counter = ByteBuffer.allocate(Long.BYTES);
+                    long block = channel.read(counter, 0) == Long.BYTES ? counter.getLong(0) : 0;
+                    channel.write(counter.putLong(0, block + 1).rewind(), 0);
+                    channel.force(true);
+                    return block;
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to reserve an ID block in " + path, e);
+        }
+    }
+}
@@ -3,29 +3,78 @@ package repository;
 import model.HasId;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
  * Provides a file-based repository for managing objects of type T.
  * This class uses serialization to store and retrieve objects from a file.
+ * <p>By default every mutation reads the file, applies the change and rewrites the file before returning.
+ * In write-behind mode the data is loaded once and kept in memory: mutations only change the in-memory copy,
+ * and a background thread writes it to the file as one group commit, either periodically or as soon as a given
+ * number of unflushed mutations has accumulated. {@link #flush()} and {@link #close()} write pending changes
+ * synchronously.</p>
  * @param <T> The type of objects to be stored in the repository, which must implement the HasId interface.
  */
-public class FileRepository<T extends HasId> implements IRepository<T> {
+public class FileRepository<T extends HasId> implements IRepository<T>, AutoCloseable {
 
     /**
      * The path to the file where data is stored.
      */
     private final String filePath;
 
+    /**
+     * The in-memory copy of the data in write-behind mode, or null if every mutation is written through.
+     */
+    private final Map<Integer, T> cache;
+    private final int maxDirtyCount;
+    private final ScheduledExecutorService flusher;
+    private final Object flushLock = new Object();
+    private int dirtyCount;
+    private boolean flushRequested;
+
     /**
      * Constructs a FileRepository instance with the given file path.
      * @param filePath The file path to be used for data storage.
      */
     public FileRepository(String filePath) {
         this.filePath = filePath;
+        this.cache = null;
+        this.maxDirtyCount = 0;
+        this.flusher = null;
+    }
+
+    /**
+     * Constructs a FileRepository instance in write-behind mode.
+     * Pending mutations are written to the file every {@code flushIntervalMillis} milliseconds, or earlier once
+     * {@code maxDirtyCount} mutations are pending.
+     * @param filePath            The file path to be used for data storage.
+     * @param flushIntervalMillis The maximum time, in milliseconds, a mutation stays unwritten.
+     * @param maxDirtyCount       The number of pending mutations that triggers a write.
+     */
+    public FileRepository(String filePath, long flushIntervalMillis, int maxDirtyCount) {
+        this.filePath = filePath;
+        this.cache = readDataFromFile();
+        this.maxDirtyCount = maxDirtyCount;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-repository-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushInBackground, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -45,17 +94,24 @@ public class FileRepository<T extends HasId> implements IRepository<T> {
      */
     @Override
     public T read(int id) {
+        if (cache != null) {
+            synchronized (this) {
+                return cache.get(id);
+            }
+        }
         return readDataFromFile().get(id);
     }
 
     /**
      * Updates an existing object in the repository.
-     * Replaces the object with the same ID in the file.
+     * Replaces the object with the same ID in the file. A {@link model.Versioned} object is only written if it carries
+     * the stored version, which is then incremented.
      * @param obj The updated object to replace the existing entry.
+     * @throws ConcurrentModificationException If the object has been updated since it was read; the file is not changed.
      */
     @Override
     public void update(T obj) {
-        doInFile(data -> data.replace(obj.getId(), obj));
+        doInFile(data -> replaceAll(data, List.of(obj)));
     }
 
     /**
@@ -73,19 +129,147 @@ public class FileRepository<T extends HasId> implements IRepository<T> {
      */
     @Override
     public List<T> getAll() {
+        if (cache != null) {
+            synchronized (this) {
+                return new ArrayList<>(cache.values());
+            }
+        }
         return readDataFromFile().values().stream().toList();
     }
 
     /**
-     * Performs a modification on the in-memory data and writes the changes back to the file.
-     * @param function A consumer that modifies the in-memory data map.
+     * Creates several new objects in the repository, reading and rewriting the file only once.
+     * Objects whose ID already exists in the file are skipped, as in {@link #create(HasId)}.
+     * @param objs The objects to be added.
+     */
+    @Override
+    public void createAll(Collection<T> objs) {
+        doInFile(data -> objs.forEach(obj -> data.putIfAbsent(obj.getId(), obj)));
+    }
+
+    /**
+     * Updates several existing objects in the repository, reading and rewriting the file only once.
+     * Objects whose ID is not in the file are ignored, as in {@link #update(HasId)}.
+     * @param objs The updated objects to replace the existing entries.
+     * @throws ConcurrentModificationException If one of the objects has been updated since it was read; none of them
+     *         is written.
+     */
+    @Override
+    public void updateAll(Collection<T> objs) {
+        doInFile(data -> replaceAll(data, objs));
+    }
+
+    /**
+     * Deletes several objects from the repository, reading and rewriting the file only once.
+     * @param ids The IDs of the objects to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        doInFile(data -> {
+            for (int id : ids) {
+                data.remove(id);
+            }
+        });
+    }
+
+    /**
+     * Writes all pending mutations to the file and forces them to the storage device.
+     * Does nothing if the repository is not in write-behind mode or nothing is pending.
+     * @throws UncheckedIOException If the file cannot be written; the mutations stay pending.
+     */
+    public void flush() {
+        if (cache == null) {
+            return;
+        }
+        synchronized (flushLock) {
+            byte[] snapshot;
+            int flushedCount;
+            try {
+                synchronized (this) {
+                    flushRequested = false;
+                    if (dirtyCount == 0) {
+                        return;
+                    }
+                    snapshot = serialize(cache);
+                    flushedCount = dirtyCount;
+                }
+                replaceFile(snapshot);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to flush " + filePath, e);
+            }
+            synchronized (this) {
+                dirtyCount -= flushedCount;
+            }
+        }
+    }
+
+    /**
+     * Stops the background writer and writes all pending mutations. Does nothing if the repository is not in
+     * write-behind mode.
+     */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
+
+    // Replaces the stored objects that exist, after checking the versions of all of them.
+    private static <T extends HasId> void replaceAll(Map<Integer, T> data, Collection<T> objs) {
+        for (T obj : objs) {
+            T stored = data.get(obj.getId());
+            if (stored != null) {
+                Versions.check(stored, obj);
+            }
+        }
+        for (T obj : objs) {
+            T stored = data.get(obj.getId());
+            if (stored != null) {
+                Versions.set(obj, Versions.of(stored) + 1);
+                data.put(obj.getId(), obj);
+            }
+        }
+    }
+
+    /**
+     * Performs a modification on the data. The file is read, modified and rewritten, unless the repository is in
+     * write-behind mode, in which case only the in-memory copy is modified and a write is requested once enough
+     * mutations are pending.
+     * @param function A consumer that modifies the data map.
      */
     private void doInFile(Consumer<Map<Integer, T>> function) {
+        if (cache != null) {
+            boolean flushNow;
+            synchronized (this) {
+                function.accept(cache);
+                dirtyCount++;
+                flushNow = dirtyCount >= maxDirtyCount && !flushRequested;
+                flushRequested |= flushNow;
+            }
+            if (flushNow) {
+                try {
+                    flusher.execute(this::flushInBackground);
+                } catch (RejectedExecutionException e) {
+                    // closing; close() writes the pending mutations itself
+                }
+            }
+            return;
+        }
         Map<Integer, T> data = readDataFromFile();
         function.accept(data);
         writeDataToFile(data);
     }
 
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // keep the scheduled flushes running; the mutations stay pending
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Reads all data from the file into a Map.
      * If the file does not exist or is empty, an empty map is returned.
@@ -109,10 +293,40 @@ public class FileRepository<T extends HasId> implements IRepository<T> {
      * @param data The data map to be serialized and written to the file.
      */
     private void writeDataToFile(Map<Integer, T> data) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            oos.writeObject(data);
+        try {
+            replaceFile(serialize(data));
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Serializes the data into a byte array, so that it can be written after the data has changed again.
+     * @param data The data map to be serialized.
+     * @return The serialized data.
+     * @throws IOException If an object cannot be serialized.
+     */
+    private static byte[] serialize(Map<Integer, ?> data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the serialized data into a temporary file next to the data file, forces it to the storage device and
+     * atomically renames it over the data file, so a crash while writing leaves the previous version intact.
+     * @param data The serialized data map.
+     * @throws IOException If the file cannot be written or replaced.
+     */
+    private void replaceFile(byte[] data) throws IOException {
+        File tempFile = new File(filePath + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+            fos.write(data);
+            fos.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), Path.of(filePath), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
 }
\ No newline at end of file
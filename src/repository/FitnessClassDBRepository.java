@@ -2,43 +2,54 @@ package repository;
 
 import model.*;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The FitnessClassDBRepository class provides CRUD operations for the `FitnessClass` model using a relational database.
  * It extends the generic {@code DBRepository} class, which provides a base implementation for managing database connections.
  * This class handles operations such as creating, retrieving, updating, and deleting fitness class data in the database.
+ * <p>Updates use optimistic concurrency: the `version` column is compared with the version the class was read with
+ * and incremented by every write to the row, including enrolments.</p>
  */
-public class FitnessClassDBRepository extends DBRepository<FitnessClass> {
+public class FitnessClassDBRepository extends DBRepository<FitnessClass> implements EnrollmentRepository {
 
-    // Repositories for related data models
-    TrainerDBRepository trainerDBRepository;
-    RoomDBRepository roomDBRepository;
-    LocationDBRepository locationDBRepository;
-    FeedbackDBRepository feedbackDBRepository;
-    MemberDBRepository memberDBRepository;
-    EquipmentDBRepository equipmentDBRepository;
+    private static final String INSERT_SQL = "INSERT INTO fitnessClass (id, name, startTime, endTime, trainer, room, participantsCount, location, version) " +
+            "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE fitnessClass SET name=?, startTime=?, endTime=?, trainer=?, room=?, " +
+            "participantsCount=?, location=?, version=version+1 WHERE id=? AND version=?";
+    private static final String ENROLL_SQL = "WITH link AS (" +
+            "INSERT INTO member_fitnessClass (memberID, classID) VALUES (?, ?) " +
+            "ON CONFLICT (memberID, classID) DO NOTHING RETURNING classID), " +
+            "seat AS (UPDATE fitnessClass SET participantsCount = participantsCount + 1, version = version + 1 " +
+            "WHERE id IN (SELECT classID FROM link) " +
+            "AND participantsCount < (SELECT maxCapacity FROM room WHERE room.id = fitnessClass.room) RETURNING id) " +
+            "SELECT (SELECT COUNT(*) FROM link), (SELECT COUNT(*) FROM seat)";
+    private static final String UNLINK_SQL = "DELETE FROM member_fitnessClass WHERE memberID=? AND classID=?";
+    private static final String WITHDRAW_SQL = "WITH link AS (" +
+            "DELETE FROM member_fitnessClass WHERE memberID=? AND classID=? RETURNING classID) " +
+            "UPDATE fitnessClass SET participantsCount = participantsCount - 1, version = version + 1 " +
+            "WHERE id IN (SELECT classID FROM link)";
 
     /**
-     * Constructs a {@code FitnessClassDBRepository} instance with the provided database connection details.
-     * @param dbUrl      The URL of the database to connect to.
-     * @param dbUser     The username to use when connecting to the database.
-     * @param dbPassword The password to use when connecting to the database.
-     * @throws RuntimeException If the connection cannot be established due to an {@code SQLException}.
+     * Constructs a {@code FitnessClassDBRepository} that borrows its connections from the given repository context.
+     * Trainers, rooms, locations, feedback, members and equipment are loaded through the repositories shared by the same context.
+     * @param context The repository context providing the connection pool and the related repositories.
      */
-    public FitnessClassDBRepository(String dbUrl, String dbUser, String dbPassword) {
-        super(dbUrl, dbUser, dbPassword);
-        this.trainerDBRepository = new TrainerDBRepository(dbUrl, dbUser, dbPassword);
-        this.roomDBRepository = new RoomDBRepository(dbUrl, dbUser, dbPassword);
-        this.locationDBRepository = new LocationDBRepository(dbUrl, dbUser, dbPassword);
-        this.feedbackDBRepository = new FeedbackDBRepository(dbUrl, dbUser, dbPassword);
-        this.memberDBRepository = new MemberDBRepository(dbUrl, dbUser, dbPassword);
-        this.equipmentDBRepository = new EquipmentDBRepository(dbUrl, dbUser, dbPassword);
+    public FitnessClassDBRepository(DBRepositoryContext context) {
+        super(context);
     }
 
     /**
@@ -50,16 +61,8 @@ public class FitnessClassDBRepository extends DBRepository<FitnessClass> {
      */
     @Override
     public void create(FitnessClass obj) {
-        String sql = "INSERT INTO fitnessClass (id ,name, startTime, endTime, trainer, room, participantsCount, location) VALUES(?, ?, ?)";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setInt(1,obj.getId());
-            statement.setString(2,obj.getName());
-            statement.setTimestamp(3, Timestamp.valueOf(obj.getStartTime()));
-            statement.setTimestamp(4, Timestamp.valueOf(obj.getEndTime()));
-            statement.setInt(5,obj.getTrainer().getId());
-            statement.setInt(6,obj.getRoom().getId());
-            statement.setInt(7,obj.getParticipantsCount());
-            statement.setInt(8,obj.getLocation().getId());
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(INSERT_SQL)){
+            bindInsert(statement, obj);
             statement.execute();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create fitness class", e);
@@ -75,8 +78,13 @@ public class FitnessClassDBRepository extends DBRepository<FitnessClass> {
      */
     @Override
     public FitnessClass read(int id) {
+        FitnessClass known = cached(FitnessClass.class, id);
+        if (known != null) {
+            return known;
+        }
         String sql = "SELECT * FROM fitnessClass WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)){
             statement.setInt(1,id);
             ResultSet resultSet = statement.executeQuery();
             if(resultSet.next()){
@@ -86,30 +94,30 @@ public class FitnessClassDBRepository extends DBRepository<FitnessClass> {
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to read fitness class", e);
+        } finally {
+            scope.close();
         }
     }
 
     /**
      * Updates the details of an existing `FitnessClass` in the database.
-     * <p>This method executes an SQL `UPDATE` query to modify the properties of a fitness class using the provided `FitnessClass` object.</p>
+     * <p>This method executes an SQL `UPDATE` query to modify the properties of a fitness class using the provided `FitnessClass` object.
+     * The row is only updated if its `version` still matches the version the object was read with; the version is then
+     * incremented in the row and in the object.</p>
      * @param obj The `FitnessClass` object containing the updated details.
+     * @throws ConcurrentModificationException If the class was changed or deleted since the object was read.
      * @throws RuntimeException If an error occurs during the database query.
      */
     @Override
     public void update(FitnessClass obj) {
-        String sql = "UPDATE fitnessClass SET name=?, startTime=?, endTime=?, trainer=?, room=?, " +
-                "participantsCount=?, location=? WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setString(1,obj.getName());
-            statement.setString(2,obj.getName());
-            statement.setTimestamp(3, Timestamp.valueOf(obj.getStartTime()));
-            statement.setTimestamp(4, Timestamp.valueOf(obj.getEndTime()));
-            statement.setInt(5,obj.getTrainer().getId());
-            statement.setInt(6,obj.getRoom().getId());
-            statement.setInt(7,obj.getParticipantsCount());
-            statement.setInt(8,obj.getLocation().getId());
-            statement.setInt(9,obj.getId());
-            statement.execute();
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)){
+            bindUpdate(statement, obj);
+            if (statement.executeUpdate() == 0) {
+                forget(FitnessClass.class, obj.getId());
+                throw Versions.conflict(obj);
+            }
+            obj.setVersion(obj.getVersion() + 1);
+            remember(obj);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update fitness class", e);
         }
@@ -117,88 +125,348 @@ public class FitnessClassDBRepository extends DBRepository<FitnessClass> {
 
     /**
      * Deletes a `FitnessClass` and its related records from the database.
-     * <p>This method first deletes the fitness class from the `fitnessClass` table, then removes its associations
-     * in the `member_fitnessClass` and `equipment_fitnessClass` tables.</p>
+     * <p>The fitness class and its associations in the `member_fitnessClass` and `equipment_fitnessClass` tables are
+     * deleted in one transaction, see {@link #deleteAll(int...)}.</p>
      * @param id The ID of the `FitnessClass` to delete.
      * @throws RuntimeException If an error occurs during the deletion process.
      */
     @Override
     public void delete(int id) {
-        String sql1 = "DELETE FROM fitnessClass WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql1)){
-            statement.setInt(1,id);
-            statement.execute();
+        deleteAll(id);
+    }
+
+    /**
+     * Enrols a member in a fitness class with a single statement, in one short transaction.
+     * <p>The `member_fitnessClass` row is inserted with `ON CONFLICT DO NOTHING`, so the unique constraint on
+     * `(memberID, classID)` decides whether the member is already enrolled, also against enrolments committed
+     * concurrently by other application instances. Only if the row was inserted is the seat taken, by a conditional
+     * `UPDATE` that increments `participantsCount` while it is below the capacity of the class's room; concurrent
+     * enrolments are serialised by the row lock of the class and can never overbook it. If the class turned out to be
+     * full, the inserted row is deleted again in the same transaction.</p>
+     * <p>The cached instances of the class and the member are dropped, so the next read sees the new registration.</p>
+     * @param classId  The ID of the fitness class.
+     * @param memberId The ID of the member.
+     * @return true if the member was enrolled, false if the class is full or the member is already enrolled.
+     * @throws RuntimeException If an error occurs while executing the statement.
+     */
+    @Override
+    public boolean enroll(int classId, int memberId) {
+        boolean[] enrolled = new boolean[1];
+        try {
+            inTransaction(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(ENROLL_SQL)) {
+                    statement.setInt(1, memberId);
+                    statement.setInt(2, classId);
+                    ResultSet resultSet = statement.executeQuery();
+                    resultSet.next();
+                    boolean linked = resultSet.getInt(1) == 1;
+                    enrolled[0] = resultSet.getInt(2) == 1;
+                    if (linked && !enrolled[0]) {
+                        try (PreparedStatement unlink = connection.prepareStatement(UNLINK_SQL)) {
+                            unlink.setInt(1, memberId);
+                            unlink.setInt(2, classId);
+                            unlink.executeUpdate();
+                        }
+                    }
+                }
+            });
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw new RuntimeException("Failed to enroll member in fitness class", e);
+        } finally {
+            forget(FitnessClass.class, classId);
+            forget(Member.class, memberId);
         }
-        String sql2 = "DELETE FROM member_fitnessClass WHERE classID=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql2)){
-            statement.setInt(1,id);
-            statement.execute();
+        return enrolled[0];
+    }
+
+    /**
+     * Withdraws a member from a fitness class with a single statement, deleting the `member_fitnessClass` row and
+     * decrementing `participantsCount` only if that row existed.
+     * @param classId  The ID of the fitness class.
+     * @param memberId The ID of the member.
+     * @return true if the member was withdrawn, false if they were not enrolled.
+     * @throws RuntimeException If an error occurs while executing the statement.
+     */
+    @Override
+    public boolean withdraw(int classId, int memberId) {
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(WITHDRAW_SQL)){
+            statement.setInt(1, memberId);
+            statement.setInt(2, classId);
+            boolean withdrawn = statement.executeUpdate() == 1;
+            forget(FitnessClass.class, classId);
+            forget(Member.class, memberId);
+            return withdrawn;
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw new RuntimeException("Failed to withdraw member from fitness class", e);
         }
-        String sql3 = "DELETE FROM equipment_fitnessClass WHERE classID=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql3)){
-            statement.setInt(1,id);
-            statement.execute();
+    }
+
+    /**
+     * Inserts the given fitness classes in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The fitness classes to be created.
+     */
+    @Override
+    public void createAll(Collection<FitnessClass> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, INSERT_SQL, objs, FitnessClassDBRepository::bindInsert));
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw new RuntimeException("Failed to create fitness classes", e);
+        }
+    }
+
+    /**
+     * Updates the given fitness classes in a single transaction, sending the rows to the database in JDBC batches.
+     * If the version of one of them no longer matches its row, the whole transaction is rolled back.
+     * @param objs The fitness classes containing updated information.
+     * @throws ConcurrentModificationException If one of the classes was changed or deleted since it was read.
+     */
+    @Override
+    public void updateAll(Collection<FitnessClass> objs) {
+        try {
+            inTransaction(connection -> checkVersions(objs,
+                    executeBatch(connection, UPDATE_SQL, objs, FitnessClassDBRepository::bindUpdate)));
+            objs.forEach(obj -> {
+                obj.setVersion(obj.getVersion() + 1);
+                remember(obj);
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update fitness classes", e);
+        }
+    }
+
+    /**
+     * Deletes the fitness classes with the given IDs in a single transaction, sending the rows to the database in JDBC batches.
+     * The link rows are deleted before the classes, so no step leaves rows pointing to a deleted class.
+     * @param ids The IDs of the fitness classes to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        for (int id : ids) {
+            forget(FitnessClass.class, id);
+        }
+        try {
+            inTransaction(connection -> {
+                executeBatch(connection, "DELETE FROM member_fitnessClass WHERE classID=?", ids);
+                executeBatch(connection, "DELETE FROM equipment_fitnessClass WHERE classID=?", ids);
+                executeBatch(connection, "DELETE FROM fitnessClass WHERE id=?", ids);
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete fitness classes", e);
         }
     }
 
     /**
      * Retrieves all fitness classes from the database.
-     * <p>This method executes a query to fetch all records from the `fitnessClass` table and returns them as a list.</p>
+     * <p>This method executes a query to fetch all records from the `fitnessClass` table and loads their associations
+     * in bulk (see {@link #readByIds(Collection)}), so the number of queries does not grow with the number of classes.</p>
      * @return A list of all `FitnessClass` objects from the database.
      * @throws RuntimeException If an error occurs while retrieving the fitness classes.
      */
     @Override
     public List<FitnessClass> getAll() {
         String sql = "SELECT * FROM fitnessClass";
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)){
+            ResultSet resultSet = statement.executeQuery();
+            return new ArrayList<>(extractAllFromResultSet(connection, resultSet).values());
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve all fitness classes", e);
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Retrieves the fitness classes whose IDs are in the given collection, together with their associations.
+     * <p>Instead of querying the trainer, room, location, feedback, members and equipment of every class separately,
+     * each association is loaded with one {@code WHERE id = ANY(?)} query for the whole set of classes and linked
+     * in memory. The number of queries is therefore fixed, whatever the number of classes.</p>
+     * @param ids The IDs of the fitness classes to retrieve.
+     * @return A map from ID to `FitnessClass`, in the order returned by the database.
+     * @throws RuntimeException If an error occurs while retrieving the fitness classes.
+     */
+    public Map<Integer, FitnessClass> readByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        String sql = "SELECT * FROM fitnessClass WHERE id = ANY(?)";
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)){
+            setIdArray(connection, statement, 1, ids);
+            ResultSet resultSet = statement.executeQuery();
+            return extractAllFromResultSet(connection, resultSet);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve fitness classes by id", e);
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Extracts every row of a `ResultSet` into `FitnessClass` objects and loads their associations in bulk.
+     * <p>Members and equipment get the loaded classes they are linked to added to their own class lists, so both
+     * sides of the relation point to the same instances. Classes already materialised in the current identity scope
+     * are reused as they are.</p>
+     * @param connection The connection the bulk queries are executed on.
+     * @param resultSet  The `ResultSet` containing the fitness class rows.
+     * @return A map from ID to fully populated `FitnessClass`.
+     * @throws SQLException If an error occurs while reading the data.
+     */
+    private Map<Integer, FitnessClass> extractAllFromResultSet(Connection connection, ResultSet resultSet) throws SQLException {
+        Map<Integer, FitnessClass> fitnessClasses = new LinkedHashMap<>();
+        Map<Integer, int[]> references = new HashMap<>();
+        while(resultSet.next()){
+            FitnessClass known = cached(FitnessClass.class, resultSet.getInt("id"));
+            if (known != null) {
+                fitnessClasses.put(known.getId(), known);
+                continue;
+            }
+            FitnessClass fitnessClass = new FitnessClass(
+                    resultSet.getString("name"),
+                    resultSet.getTimestamp("startTime").toLocalDateTime(),
+                    resultSet.getTimestamp("endTime").toLocalDateTime(),
+                    null,
+                    null,
+                    resultSet.getInt("participantsCount"),
+                    null,
+                    new ArrayList<>(),
+                    new ArrayList<>(),
+                    new ArrayList<>()
+            );
+            fitnessClass.setId(resultSet.getInt("id"));
+            fitnessClass.setVersion(resultSet.getInt("version"));
+            fitnessClasses.put(fitnessClass.getId(), remember(fitnessClass));
+            references.put(fitnessClass.getId(),
+                    new int[]{resultSet.getInt("trainer"), resultSet.getInt("room"), resultSet.getInt("location")});
+        }
+        if (references.isEmpty()) {
+            return fitnessClasses;
+        }
+        // only the classes not materialised before need their associations loaded
+        Map<Integer, FitnessClass> loaded = new HashMap<>();
+        for (Integer id : references.keySet()) {
+            loaded.put(id, fitnessClasses.get(id));
+        }
+
+        Set<Integer> trainerIds = new HashSet<>();
+        Set<Integer> roomIds = new HashSet<>();
+        Set<Integer> locationIds = new HashSet<>();
+        for (int[] reference : references.values()) {
+            trainerIds.add(reference[0]);
+            roomIds.add(reference[1]);
+            locationIds.add(reference[2]);
+        }
+        Map<Integer, Trainer> trainers = context.getTrainerRepository().readByIds(trainerIds);
+        Map<Integer, Room> rooms = context.getRoomRepository().readByIds(roomIds);
+        Map<Integer, Location> locations = context.getLocationRepository().readByIds(locationIds);
+        for (FitnessClass fitnessClass : loaded.values()) {
+            int[] reference = references.get(fitnessClass.getId());
+            fitnessClass.setTrainer(trainers.get(reference[0]));
+            fitnessClass.setRoom(rooms.get(reference[1]));
+            fitnessClass.setLocation(locations.get(reference[2]));
+        }
+
+        List<int[]> memberLinks = readLinks(connection,
+                "SELECT memberID, classID FROM member_fitnessClass WHERE classID = ANY(?)", loaded.keySet());
+        Set<Integer> memberIds = new HashSet<>();
+        for (int[] link : memberLinks) {
+            memberIds.add(link[0]);
+        }
+        Map<Integer, Member> members = context.getMemberRepository().readByIds(memberIds);
+        for (int[] link : memberLinks) {
+            Member member = members.get(link[0]);
+            FitnessClass fitnessClass = loaded.get(link[1]);
+            if (member != null) {
+                fitnessClass.getMembers().add(member);
+                if (!member.getFitnessClasses().contains(fitnessClass)) {
+                    member.getFitnessClasses().add(fitnessClass);
+                }
+            }
+        }
+
+        for (Feedback feedback : context.getFeedbackRepository().getFeedbackByClassIds(loaded, members)) {
+            feedback.getFitnessClass().getFeedback().add(feedback);
+        }
+
+        List<int[]> equipmentLinks = readLinks(connection,
+                "SELECT equipmentID, classID FROM equipment_fitnessClass WHERE classID = ANY(?)", loaded.keySet());
+        Set<Integer> equipmentIds = new HashSet<>();
+        for (int[] link : equipmentLinks) {
+            equipmentIds.add(link[0]);
+        }
+        Map<Integer, Equipment> equipment = context.getEquipmentRepository().readByIds(equipmentIds);
+        for (int[] link : equipmentLinks) {
+            Equipment item = equipment.get(link[0]);
+            FitnessClass fitnessClass = loaded.get(link[1]);
+            if (item != null) {
+                fitnessClass.getEquipment().add(item);
+                if (!item.getFitnessClasses().contains(fitnessClass)) {
+                    item.getFitnessClasses().add(fitnessClass);
+                }
+            }
+        }
+        return fitnessClasses;
+    }
+
+    /**
+     * Reads the rows of a two-column link table (e.g. `member_fitnessClass`) for a set of IDs.
+     * @param connection The connection to execute the query on.
+     * @param sql        A query selecting two integer columns, with a single array parameter.
+     * @param ids        The IDs bound to the array parameter.
+     * @return The link rows, each as a pair of IDs in the order the columns were selected.
+     * @throws SQLException If an error occurs while executing the query.
+     */
+    static List<int[]> readLinks(Connection connection, String sql, Collection<Integer> ids) throws SQLException {
+        List<int[]> links = new ArrayList<>();
         try(PreparedStatement statement = connection.prepareStatement(sql)){
+            setIdArray(connection, statement, 1, ids);
             ResultSet resultSet = statement.executeQuery();
-            List<FitnessClass> fitnessClasses = new ArrayList<>();
             while(resultSet.next()){
-                fitnessClasses.add(extractFromResultSet(resultSet));
+                links.add(new int[]{resultSet.getInt(1), resultSet.getInt(2)});
             }
-            return fitnessClasses;
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to retrieve all fitness classes", e);
         }
+        return links;
     }
 
     /**
      * Extracts a `FitnessClass` object from a `ResultSet` based on the current row.
      * <p>This method retrieves a fitness class' details, including its trainer, room, location, feedback, members, and equipment,
-     * from the `ResultSet`, and returns a fully populated `FitnessClass` object.</p>
+     * from the `ResultSet`, and returns a fully populated `FitnessClass` object. If the class has already been
+     * materialised in the current identity scope, that instance is returned instead.</p>
      * @param resultSet The `ResultSet` containing the data of a fitness class.
      * @return A `FitnessClass` object populated with data from the `ResultSet`.
      * @throws SQLException If an error occurs while reading data from the `ResultSet`.
      */
     public FitnessClass extractFromResultSet(ResultSet resultSet) throws SQLException {
-        Trainer trainer = trainerDBRepository.read(resultSet.getInt("trainer"));
-        Room room = roomDBRepository.read(resultSet.getInt("room"));
-        Location location = locationDBRepository.read(resultSet.getInt("location"));
-        ArrayList<Feedback> feedbacks = feedbackDBRepository.getFeedbackByClassId(resultSet.getInt("id"));
-        ArrayList<Member> members = getFitnessClassMembers(resultSet.getInt("id"));
-        ArrayList<Equipment> equipment = getFitnessClassEquipment(resultSet.getInt("id"));
+        FitnessClass known = cached(FitnessClass.class, resultSet.getInt("id"));
+        if (known != null) {
+            return known;
+        }
+        int trainerId = resultSet.getInt("trainer");
+        int roomId = resultSet.getInt("room");
+        int locationId = resultSet.getInt("location");
         FitnessClass fitnessClass = new FitnessClass(
                 resultSet.getString("name"),
                 resultSet.getTimestamp("startTime").toLocalDateTime(),
                 resultSet.getTimestamp("endTime").toLocalDateTime(),
-                trainer,
-                room,
+                null,
+                null,
                 resultSet.getInt("participantsCount"),
-                location,
+                null,
                 new ArrayList<>(),
                 new ArrayList<>(),
                 new ArrayList<>()
         );
-        fitnessClass.setFeedback(feedbacks);
-        fitnessClass.setMembers(members);
-        fitnessClass.setEquipment(equipment);
         fitnessClass.setId(resultSet.getInt("id"));
+        fitnessClass.setVersion(resultSet.getInt("version"));
+        // registered before the associations are loaded, so members and equipment pointing back to it reuse this instance
+        remember(fitnessClass);
+        fitnessClass.setTrainer(context.getTrainerRepository().read(trainerId));
+        fitnessClass.setRoom(context.getRoomRepository().read(roomId));
+        fitnessClass.setLocation(context.getLocationRepository().read(locationId));
+        fitnessClass.setFeedback(context.getFeedbackRepository().getFeedbackByClassId(fitnessClass.getId()));
+        fitnessClass.setMembers(getFitnessClassMembers(fitnessClass.getId()));
+        fitnessClass.setEquipment(getFitnessClassEquipment(fitnessClass.getId()));
         return fitnessClass;
     }
 
@@ -215,11 +483,11 @@ public class FitnessClassDBRepository extends DBRepository<FitnessClass> {
                 "SELECT eq.id, eq.name, eq.quantity" +
                         " FROM equipment as eq "
                         + "where id in (SELECT equipment_fitnessClass.equipmentID FROM equipment_fitnessClass WHERE classID = ?)";
-        try(PreparedStatement statementEquipment = connection.prepareStatement(sqlEquipment)){
+        try(Connection connection = getConnection(); PreparedStatement statementEquipment = connection.prepareStatement(sqlEquipment)){
             statementEquipment.setInt(1, id);
             ResultSet resultEquipment = statementEquipment.executeQuery();
             while(resultEquipment.next()){
-                equipment.add(equipmentDBRepository.extractFromResultSet(resultEquipment));
+                equipment.add(context.getEquipmentRepository().extractFromResultSet(resultEquipment));
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -237,18 +505,42 @@ public class FitnessClassDBRepository extends DBRepository<FitnessClass> {
     private ArrayList<Member> getFitnessClassMembers(Integer id) {
         ArrayList<Member> members = new ArrayList<>();
         String sqlMembers =
-                "SELECT m.id, m.name, m.password, m.registrationDate, m.membership" +
+                "SELECT m.id, m.name, m.password, m.registrationDate, m.membership, m.version" +
                         " FROM member as m "
                         + "where id in (SELECT member_fitnessClass.memberID FROM member_fitnessClass WHERE classID = ?)";
-        try(PreparedStatement statementMembers = connection.prepareStatement(sqlMembers)){
+        try(Connection connection = getConnection(); PreparedStatement statementMembers = connection.prepareStatement(sqlMembers)){
             statementMembers.setInt(1, id);
             ResultSet resultMembers = statementMembers.executeQuery();
             while(resultMembers.next()){
-                members.add(memberDBRepository.extractFromResultSet(resultMembers));
+                members.add(context.getMemberRepository().extractFromResultSet(resultMembers));
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
         return members;
     }
+
+    private static void bindInsert(PreparedStatement statement, FitnessClass obj) throws SQLException {
+        statement.setInt(1,obj.getId());
+        statement.setString(2,obj.getName());
+        statement.setTimestamp(3, Timestamp.valueOf(obj.getStartTime()));
+        statement.setTimestamp(4, Timestamp.valueOf(obj.getEndTime()));
+        statement.setInt(5,obj.getTrainer().getId());
+        statement.setInt(6,obj.getRoom().getId());
+        statement.setInt(7,obj.getParticipantsCount());
+        statement.setInt(8,obj.getLocation().getId());
+        statement.setInt(9,obj.getVersion());
+    }
+
+    private static void bindUpdate(PreparedStatement statement, FitnessClass obj) throws SQLException {
+        statement.setString(1,obj.getName());
+        statement.setTimestamp(2, Timestamp.valueOf(obj.getStartTime()));
+        statement.setTimestamp(3, Timestamp.valueOf(obj.getEndTime()));
+        statement.setInt(4,obj.getTrainer().getId());
+        statement.setInt(5,obj.getRoom().getId());
+        statement.setInt(6,obj.getParticipantsCount());
+        statement.setInt(7,obj.getLocation().getId());
+        statement.setInt(8,obj.getId());
+        statement.setInt(9,obj.getVersion());
+    }
 }
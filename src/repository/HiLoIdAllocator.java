@@ -0,0 +1,129 @@
+package repository;
+
+import model.HasId;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An {@link IdAllocator} using the hi/lo scheme: it reserves blocks of consecutive IDs from a {@link BlockSource}
+ * (the "hi" part) and hands out the IDs of the current block of each entity type from an {@link AtomicInteger}
+ * (the "lo" part), without locking. Only the thread that exhausts a block goes back to the block source, so a shared
+ * database sequence or counter file is touched once per {@code blockSize} IDs.
+ * <p>IDs start at {@link #FIRST_ID}, above the random IDs given to records created before this allocator existed.
+ * IDs of a block that is reserved but not used up, e.g. because the application stops, are skipped.</p>
+ */
+public class HiLoIdAllocator implements IdAllocator {
+
+    /**
+     * The first ID handed out for every entity type.
+     */
+    public static final int FIRST_ID = 10_000;
+
+    /**
+     * The number of IDs reserved at once when no block size is given.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 100;
+
+    private final BlockSource blockSource;
+    private final int blockSize;
+    private final Map<String, AtomicReference<Block>> blocks = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a HiLoIdAllocator reserving blocks of {@link #DEFAULT_BLOCK_SIZE} IDs.
+     * @param blockSource Reserves the blocks.
+     */
+    public HiLoIdAllocator(BlockSource blockSource) {
+        this(blockSource, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructs a HiLoIdAllocator.
+     * @param blockSource Reserves the blocks.
+     * @param blockSize   The number of IDs reserved at once.
+     * @throws IllegalArgumentException If the block size is not positive.
+     */
+    public HiLoIdAllocator(BlockSource blockSource, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        this.blockSource = blockSource;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the next ID of the current block of the given type, reserving a new block first if it is used up.
+     * @param type The type of the entity the ID is for.
+     * @return An ID that has not been handed out for this type before.
+     * @throws IllegalStateException If the ID space of the type is exhausted.
+     */
+    @Override
+    public int nextId(Class<? extends HasId> type) {
+        AtomicReference<Block> current = blocks.computeIfAbsent(type.getSimpleName(),
+                name -> new AtomicReference<>(Block.EMPTY));
+        while (true) {
+            Block block = current.get();
+            int id = block.next.getAndIncrement();
+            if (id < block.end) {
+                return id;
+            }
+            synchronized (current) {
+                if (current.get() == block) {
+                    current.set(reserve(type.getSimpleName()));
+                }
+            }
+        }
+    }
+
+    private Block reserve(String name) {
+        long hi = blockSource.reserveBlock(name);
+        long first = FIRST_ID + hi * blockSize;
+        if (hi < 0 || first + blockSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The ID space of " + name + " is exhausted.");
+        }
+        return new Block((int) first, (int) first + blockSize);
+    }
+
+    /**
+     * Reserves blocks of IDs for a {@link HiLoIdAllocator}.
+     */
+    public interface BlockSource {
+
+        /**
+         * Reserves the next block of the given entity type. Block numbers start at 0 and are never handed out twice
+         * for the same type, also not to other allocators sharing this source.
+         * @param name The simple name of the entity type.
+         * @return The number of the reserved block.
+         */
+        long reserveBlock(String name);
+    }
+
+    /**
+     * A {@link BlockSource} counting blocks in memory, for repositories that do not outlive the application.
+     */
+    public static class InMemoryBlockSource implements BlockSource {
+
+        private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+        @Override
+        public long reserveBlock(String name) {
+            return counters.computeIfAbsent(name, key -> new AtomicLong()).getAndIncrement();
+        }
+    }
+
+    private static final class Block {
+
+        static final Block EMPTY = new Block(0, 0);
+
+        final AtomicInteger next;
+        final int end;
+
+        Block(int first, int end) {
+            this.next = new AtomicInteger(first);
+            this.end = end;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package repository;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -41,4 +42,23 @@ public interface IRepository<T> {
      * @return A list of all objects of type T. If no objects exist, returns an empty list.
      */
     List<T> getAll();
+
+    /**
+     * Creates several new entities of type T in the repository in one operation.
+     * @param objs The objects to be created. Must not be null.
+     */
+    void createAll(Collection<T> objs);
+
+    /**
+     * Updates several existing entities of type T in the repository in one operation.
+     * @param objs The objects containing updated information.
+     *             Every object must already exist in the repository.
+     */
+    void updateAll(Collection<T> objs);
+
+    /**
+     * Deletes several entities of type T from the repository in one operation.
+     * @param ids The unique identifiers of the objects to be deleted.
+     */
+    void deleteAll(int... ids);
 }
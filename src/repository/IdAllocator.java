@@ -0,0 +1,19 @@
+package repository;
+
+import model.HasId;
+
+/**
+ * Hands out the IDs of newly created entities.
+ * <p>IDs are unique per entity type: two calls for the same type never return the same ID, even when they are made
+ * concurrently from different threads.</p>
+ */
+public interface IdAllocator {
+
+    /**
+     * Returns a new ID for an entity of the given type.
+     * @param type The type of the entity the ID is for.
+     * @return An ID that has not been handed out for this type before.
+     * @throws IllegalStateException If the ID space of the type is exhausted.
+     */
+    int nextId(Class<? extends HasId> type);
+}
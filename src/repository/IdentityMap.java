@@ -0,0 +1,62 @@
+package repository;
+
+import model.HasId;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the entities materialised from the database during one unit of work (a repository call or a wider
+ * scope opened through {@link DBRepositoryContext#openIdentityScope()}).
+ * <p>Each (type, id) pair maps to exactly one instance, so an entity referenced many times in a graph is read and
+ * built only once, and cyclic references such as {@code Member} &harr; {@code FitnessClass} resolve to the instance
+ * already being built instead of recursing.</p>
+ */
+public class IdentityMap {
+
+    private final Map<Class<?>, Map<Integer, HasId>> entities = new HashMap<>();
+
+    /**
+     * Returns the instance already materialised for the given type and ID.
+     * @param type The entity type.
+     * @param id   The entity ID.
+     * @param <T>  The entity type.
+     * @return The known instance, or null if it has not been loaded in this unit of work.
+     */
+    public <T extends HasId> T get(Class<T> type, int id) {
+        Map<Integer, HasId> byId = entities.get(type);
+        return byId == null ? null : type.cast(byId.get(id));
+    }
+
+    /**
+     * Registers an entity, replacing any instance previously known for the same type and ID.
+     * @param entity The entity to register.
+     */
+    public void put(HasId entity) {
+        entities.computeIfAbsent(entity.getClass(), type -> new HashMap<>()).put(entity.getId(), entity);
+    }
+
+    /**
+     * Forgets the instance known for the given type and ID, e.g. after it has been deleted.
+     * @param type The entity type.
+     * @param id   The entity ID.
+     */
+    public void remove(Class<?> type, int id) {
+        Map<Integer, HasId> byId = entities.get(type);
+        if (byId != null) {
+            byId.remove(id);
+        }
+    }
+
+    /**
+     * Returns the number of entities currently tracked.
+     * @return The number of tracked entities.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Integer, HasId> byId : entities.values()) {
+            size += byId.size();
+        }
+        return size;
+    }
+}
@@ -1,20 +1,23 @@
 package repository;
 import model.HasId;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * A generic in-memory repository implementation for managing entities of type T
  * that extends the Identifiable interface. This repository provides a simple
  * and efficient way to perform CRUD operations using an in-memory data structure.
+ * The entities are kept in an {@link IntObjectMap}, so looking them up by ID neither boxes the ID nor allocates.
  * @param <T> The type of objects managed by this repository. T must extend Identifiable.
  */
 public class InMemoryRepository<T extends HasId> implements IRepository<T> {
 
-    private final Map<Integer, T> storage = new HashMap<>();
+    private final IntObjectMap<T> storage = new IntObjectMap<>();
 
     /**
      * Adds a new entity to the repository. The entity's ID must be unique.
@@ -26,7 +29,7 @@ public class InMemoryRepository<T extends HasId> implements IRepository<T> {
         if (storage.containsKey(obj.getId())) {
             throw new IllegalArgumentException("Entity with ID " + obj.getId() + " already exists.");
         }
-        storage.putIfAbsent(obj.getId(), obj);
+        storage.put(obj.getId(), obj);
     }
 
     /**
@@ -40,16 +43,21 @@ public class InMemoryRepository<T extends HasId> implements IRepository<T> {
     }
 
     /**
-     * Updates an existing entity in the repository.
+     * Updates an existing entity in the repository. A {@link model.Versioned} entity is only replaced if it carries the
+     * stored version, which is then incremented.
      * @param obj The object containing updated data. Its ID must already exist in the repository.
      * @throws IllegalArgumentException if the entity does not exist in the repository.
+     * @throws ConcurrentModificationException if the entity has been updated since {@code obj} was read.
      */
     @Override
     public void update(T obj) {
-        if (!storage.containsKey(obj.getId())) {
+        T stored = storage.get(obj.getId());
+        if (stored == null) {
             throw new IllegalArgumentException("Entity with ID " + obj.getId() + " doesn't exist.");
         }
-        storage.replace(obj.getId(), obj);
+        Versions.check(stored, obj);
+        Versions.set(obj, Versions.of(stored) + 1);
+        storage.put(obj.getId(), obj);
     }
 
     /**
@@ -74,4 +82,60 @@ public class InMemoryRepository<T extends HasId> implements IRepository<T> {
         return new ArrayList<>(storage.values());
     }
 
+    /**
+     * Adds several new entities to the repository. Either all of them are added or, if one is rejected, none is.
+     * @param objs The objects to be added to the repository. Must not be null.
+     * @throws IllegalArgumentException if an entity with the same ID already exists or the ID occurs twice in {@code objs}.
+     */
+    @Override
+    public void createAll(Collection<T> objs) {
+        Set<Integer> ids = new HashSet<>();
+        for (T obj : objs) {
+            if (storage.containsKey(obj.getId()) || !ids.add(obj.getId())) {
+                throw new IllegalArgumentException("Entity with ID " + obj.getId() + " already exists.");
+            }
+        }
+        for (T obj : objs) {
+            storage.put(obj.getId(), obj);
+        }
+    }
+
+    /**
+     * Updates several existing entities in the repository. Either all of them are updated or, if one is rejected, none is.
+     * @param objs The objects containing updated data. Their IDs must already exist in the repository.
+     * @throws IllegalArgumentException if one of the entities does not exist in the repository.
+     * @throws ConcurrentModificationException if one of the entities has been updated since it was read.
+     */
+    @Override
+    public void updateAll(Collection<T> objs) {
+        for (T obj : objs) {
+            T stored = storage.get(obj.getId());
+            if (stored == null) {
+                throw new IllegalArgumentException("Entity with ID " + obj.getId() + " doesn't exist.");
+            }
+            Versions.check(stored, obj);
+        }
+        for (T obj : objs) {
+            Versions.set(obj, Versions.of(storage.get(obj.getId())) + 1);
+            storage.put(obj.getId(), obj);
+        }
+    }
+
+    /**
+     * Deletes several entities from the repository. Either all of them are deleted or, if one is rejected, none is.
+     * @param ids The unique identifiers of the entities to delete.
+     * @throws IllegalArgumentException if no entity exists for one of the given IDs.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        for (int id : ids) {
+            if (!storage.containsKey(id)) {
+                throw new IllegalArgumentException("Entity with ID " + id + " doesn't exist.");
+            }
+        }
+        for (int id : ids) {
+            storage.remove(id);
+        }
+    }
+
 }
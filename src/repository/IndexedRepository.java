@@ -0,0 +1,256 @@
+package repository;
+
+import model.HasId;
+
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Wraps another repository and keeps a set of {@link RepositoryIndex secondary indexes} in sync with it.
+ * <p>Every write is passed on to the wrapped repository first. Its index changes are handed to the wrapper's
+ * {@link UnitOfWork} with {@link UnitOfWork#afterCommit(Runnable)}, so they are applied once the write has taken
+ * effect: a write rejected by the repository, or made in a unit of work that is rolled back afterwards, leaves the
+ * indexes untouched. Reads go straight to the wrapped repository.</p>
+ * <p>The indexes only see writes made through this wrapper; writes made to the wrapped repository directly, or by
+ * another process sharing its storage, are not reflected until {@link #refresh()} is called. Index changes are
+ * applied one at a time, so a refresh never interleaves with another change.</p>
+ * @param <T> The type of objects to be stored in the repository, which must implement the HasId interface.
+ */
+public class IndexedRepository<T extends HasId> implements IRepository<T> {
+
+    private final IRepository<T> delegate;
+    private final UnitOfWork unitOfWork;
+    private final List<RepositoryIndex<T>> indexes = new CopyOnWriteArrayList<>();
+    private final Set<Integer> indexedIds = new HashSet<>();
+
+    /**
+     * Constructs an IndexedRepository around a repository whose writes take effect one by one, without any index yet.
+     * @param delegate The repository holding the data.
+     */
+    public IndexedRepository(IRepository<T> delegate) {
+        this(delegate, UnitOfWork.NONE);
+    }
+
+    /**
+     * Constructs an IndexedRepository around the given repository, without any index yet.
+     * @param delegate   The repository holding the data.
+     * @param unitOfWork The unit of work the repository's writes take part in, which tells when they take effect.
+     */
+    public IndexedRepository(IRepository<T> delegate, UnitOfWork unitOfWork) {
+        this.delegate = delegate;
+        this.unitOfWork = unitOfWork;
+    }
+
+    /**
+     * Fills the given index with the current content of the repository and keeps it up to date from now on.
+     * Writes made by other threads while the index is being filled may be missed, so indexes should be added before
+     * the repository is shared.
+     * @param index The index to add.
+     */
+    public void addIndex(RepositoryIndex<T> index) {
+        addIndexes(List.of(index));
+    }
+
+    /**
+     * Fills the given indexes with the current content of the repository and keeps them up to date from now on.
+     * The content is read once for all of them, instead of once per index as with {@link #addIndex(RepositoryIndex)}.
+     * The same caveat about concurrent writes applies.
+     * @param newIndexes The indexes to add.
+     */
+    public synchronized void addIndexes(Collection<? extends RepositoryIndex<T>> newIndexes) {
+        if (newIndexes.isEmpty()) {
+            return;
+        }
+        for (T obj : delegate.getAll()) {
+            for (RepositoryIndex<T> index : newIndexes) {
+                index.put(obj);
+            }
+            indexedIds.add(obj.getId());
+        }
+        indexes.addAll(newIndexes);
+    }
+
+    /**
+     * Brings the indexes in line with the current content of the wrapped repository, including writes that were not
+     * made through this wrapper: every object is indexed again and objects no longer stored are removed. This reads
+     * the whole repository, so it should not be called while a unit of work of the repository is running, whose
+     * writes might still be rolled back. An object found in the middle of an in-place change is left to the writer,
+     * whose own write through this wrapper indexes it.
+     */
+    public synchronized void refresh() {
+        Set<Integer> stored = new HashSet<>();
+        for (T obj : delegate.getAll()) {
+            try {
+                indexes.forEach(index -> index.put(obj));
+            } catch (ConcurrentModificationException e) {
+                // changed in place by a writer right now, which indexes it through this wrapper once it is done
+            }
+            stored.add(obj.getId());
+        }
+        for (int id : indexedIds) {
+            if (!stored.contains(id)) {
+                indexes.forEach(index -> index.remove(id));
+            }
+        }
+        indexedIds.clear();
+        indexedIds.addAll(stored);
+    }
+
+    /**
+     * Returns the index of the given type that has been added to this repository.
+     * @param type The class of the index.
+     * @param <I>  The type of the index.
+     * @return The index, or null if no index of that type has been added.
+     */
+    public <I extends RepositoryIndex<T>> I getIndex(Class<I> type) {
+        for (RepositoryIndex<T> index : indexes) {
+            if (type.isInstance(index)) {
+                return type.cast(index);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the given type, adding a new one created by the given factory if there is none yet.
+     * @param type    The class of the index.
+     * @param factory Creates an empty index of that type.
+     * @param <I>     The type of the index.
+     * @return The index.
+     */
+    public synchronized <I extends RepositoryIndex<T>> I getOrAddIndex(Class<I> type, Supplier<I> factory) {
+        I index = getIndex(type);
+        if (index == null) {
+            index = factory.get();
+            addIndex(index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the wrapped repository.
+     * @return The repository holding the data.
+     */
+    public IRepository<T> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Re-indexes an object whose change has been stored in the wrapped repository by other means than this wrapper,
+     * e.g. by a single conditional statement in the database.
+     * @param obj The object in its current state.
+     */
+    public void reindex(T obj) {
+        putAll(List.of(obj));
+    }
+
+    /**
+     * Creates the object in the wrapped repository and adds it to the indexes.
+     * @param obj The object to be added.
+     */
+    @Override
+    public void create(T obj) {
+        delegate.create(obj);
+        putAll(List.of(obj));
+    }
+
+    /**
+     * Reads an object from the wrapped repository.
+     * @param id The ID of the object to be retrieved.
+     * @return The object with the specified ID, or null if no such object exists.
+     */
+    @Override
+    public T read(int id) {
+        return delegate.read(id);
+    }
+
+    /**
+     * Updates the object in the wrapped repository and re-indexes it.
+     * @param obj The updated object.
+     */
+    @Override
+    public void update(T obj) {
+        delegate.update(obj);
+        putAll(List.of(obj));
+    }
+
+    /**
+     * Deletes the object from the wrapped repository and from the indexes.
+     * @param id The ID of the object to be deleted.
+     */
+    @Override
+    public void delete(int id) {
+        delegate.delete(id);
+        removeAll(new int[] {id});
+    }
+
+    /**
+     * Retrieves all objects from the wrapped repository.
+     * @return A list of all objects.
+     */
+    @Override
+    public List<T> getAll() {
+        return delegate.getAll();
+    }
+
+    /**
+     * Creates the objects in the wrapped repository and adds them to the indexes.
+     * @param objs The objects to be added.
+     */
+    @Override
+    public void createAll(Collection<T> objs) {
+        delegate.createAll(objs);
+        putAll(List.copyOf(objs));
+    }
+
+    /**
+     * Updates the objects in the wrapped repository and re-indexes them.
+     * @param objs The updated objects.
+     */
+    @Override
+    public void updateAll(Collection<T> objs) {
+        delegate.updateAll(objs);
+        putAll(List.copyOf(objs));
+    }
+
+    /**
+     * Deletes the objects from the wrapped repository and from the indexes.
+     * @param ids The IDs of the objects to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        delegate.deleteAll(ids);
+        removeAll(ids.clone());
+    }
+
+    private void putAll(List<T> objs) {
+        unitOfWork.afterCommit(() -> {
+            synchronized (this) {
+                for (RepositoryIndex<T> index : indexes) {
+                    objs.forEach(index::put);
+                }
+                objs.forEach(obj -> indexedIds.add(obj.getId()));
+            }
+        });
+    }
+
+    private void removeAll(int[] ids) {
+        unitOfWork.afterCommit(() -> {
+            synchronized (this) {
+                for (RepositoryIndex<T> index : indexes) {
+                    for (int id : ids) {
+                        index.remove(id);
+                    }
+                }
+                for (int id : ids) {
+                    indexedIds.remove(id);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,225 @@
+package repository;
+
+import model.FitnessClass;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Base class of the indexes that keep the time slots of fitness classes per owner, e.g. per room or per trainer, so
+ * that overlap checks and free slot searches only look at the classes of one owner around the requested time.
+ * <p>The slots of every owner are kept sorted by start time, together with the length of the longest slot. Any slot
+ * overlapping {@code [start, end)} must start between {@code start - longest} and {@code end}, so an overlap check is a
+ * range scan of that window: O(log n) plus the few slots found in it. Slots may overlap each other, e.g. for classes
+ * stored before collisions were checked.</p>
+ * <p>Times are stored as epoch minutes (UTC), start times rounded down and end times rounded up. Classes without a
+ * start or end time are not indexed. All methods are synchronized.</p>
+ */
+public abstract class IntervalIndex implements RepositoryIndex<FitnessClass> {
+
+    private final Map<Integer, Slots> slotsByOwner = new HashMap<>();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    /**
+     * Returns the IDs of the owners whose schedule the given class belongs to.
+     * @param fitnessClass The indexed class.
+     * @return The owner IDs, empty if the class has none.
+     */
+    protected abstract int[] owners(FitnessClass fitnessClass);
+
+    /**
+     * Adds a class to the schedules of its owners, replacing its previous slot.
+     * @param fitnessClass The class in its current state.
+     */
+    @Override
+    public synchronized void put(FitnessClass fitnessClass) {
+        remove(fitnessClass.getId());
+        if (fitnessClass.getStartTime() == null || fitnessClass.getEndTime() == null) {
+            return;
+        }
+        Slot slot = new Slot(startMinute(fitnessClass.getStartTime()), endMinute(fitnessClass.getEndTime()),
+                fitnessClass.getId());
+        int[] owners = owners(fitnessClass);
+        for (int owner : owners) {
+            slotsByOwner.computeIfAbsent(owner, key -> new Slots()).add(slot);
+        }
+        entries.put(fitnessClass.getId(), new Entry(slot, owners));
+    }
+
+    /**
+     * Removes a class from the schedules of its owners.
+     * @param id The ID of the removed class.
+     */
+    @Override
+    public synchronized void remove(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (int owner : entry.owners()) {
+            Slots slots = slotsByOwner.get(owner);
+            slots.remove(entry.slot());
+            if (slots.sorted.isEmpty()) {
+                slotsByOwner.remove(owner);
+            }
+        }
+    }
+
+    /**
+     * Returns the IDs of the classes of the given owner that overlap the given time range.
+     * @param owner          The owner ID.
+     * @param start          The start of the range, inclusive.
+     * @param end            The end of the range, exclusive.
+     * @param excludeClassId The ID of a class to leave out, e.g. the class being checked itself.
+     * @return The IDs of the overlapping classes, in order of their start time.
+     */
+    public synchronized List<Integer> overlapping(int owner, LocalDateTime start, LocalDateTime end, int excludeClassId) {
+        List<Integer> classIds = new ArrayList<>();
+        for (Slot slot : overlapping(owner, startMinute(start), endMinute(end), excludeClassId)) {
+            classIds.add(slot.classId());
+        }
+        return classIds;
+    }
+
+    /**
+     * Returns the time slots of the classes of the given owner that overlap the given time range, without loading
+     * the classes themselves.
+     * @param owner The owner ID.
+     * @param start The start of the range, inclusive.
+     * @param end   The end of the range, exclusive.
+     * @return The time slots, in order of their start time.
+     */
+    public synchronized List<TimeSlot> timeSlots(int owner, LocalDateTime start, LocalDateTime end) {
+        List<TimeSlot> timeSlots = new ArrayList<>();
+        for (Slot slot : overlapping(owner, startMinute(start), endMinute(end), Integer.MIN_VALUE)) {
+            timeSlots.add(new TimeSlot(slot.classId(), toDateTime(slot.start()), toDateTime(slot.end())));
+        }
+        return timeSlots;
+    }
+
+    /**
+     * Checks whether the given owner has a class overlapping the given time range.
+     * @param owner          The owner ID.
+     * @param start          The start of the range, inclusive.
+     * @param end            The end of the range, exclusive.
+     * @param excludeClassId The ID of a class to leave out, e.g. the class being checked itself.
+     * @return true if at least one class overlaps the range.
+     */
+    public synchronized boolean overlaps(int owner, LocalDateTime start, LocalDateTime end, int excludeClassId) {
+        return !overlapping(owner, start, end, excludeClassId).isEmpty();
+    }
+
+    /**
+     * Finds the earliest time at or after {@code from} at which the given owner is free for the given duration.
+     * @param owner  The owner ID.
+     * @param from   The earliest acceptable start time.
+     * @param length The required length of the free slot.
+     * @return The start of the earliest free slot.
+     */
+    public synchronized LocalDateTime nextFreeSlot(int owner, LocalDateTime from, Duration length) {
+        Slots slots = slotsByOwner.get(owner);
+        long candidate = startMinute(from);
+        long minutes = Math.max(1, (length.getSeconds() + 59) / 60);
+        if (slots != null) {
+            for (Slot slot : slots.sorted.tailSet(new Slot(candidate - slots.longest(), 0, Integer.MIN_VALUE))) {
+                if (slot.start() >= candidate + minutes) {
+                    break;
+                }
+                candidate = Math.max(candidate, slot.end());
+            }
+        }
+        LocalDateTime free = toDateTime(candidate);
+        return free.isBefore(from) ? from : free;
+    }
+
+    private List<Slot> overlapping(int owner, long start, long end, int excludeClassId) {
+        List<Slot> overlapping = new ArrayList<>();
+        Slots slots = slotsByOwner.get(owner);
+        if (slots == null || start >= end) {
+            return overlapping;
+        }
+        Slot from = new Slot(start - slots.longest(), 0, Integer.MIN_VALUE);
+        Slot to = new Slot(end, 0, Integer.MIN_VALUE);
+        for (Slot slot : slots.sorted.subSet(from, to)) {
+            if (slot.end() > start && slot.classId() != excludeClassId) {
+                overlapping.add(slot);
+            }
+        }
+        return overlapping;
+    }
+
+    /**
+     * Converts a time to epoch minutes, rounding down.
+     */
+    static long startMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * Converts a time to epoch minutes, rounding up.
+     */
+    static long endMinute(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        return Math.floorDiv(seconds, 60) + (Math.floorMod(seconds, 60) != 0 || time.getNano() != 0 ? 1 : 0);
+    }
+
+    static LocalDateTime toDateTime(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * The time slot of one indexed class, rounded to whole minutes.
+     * @param classId The ID of the class.
+     * @param start   The start time of the class.
+     * @param end     The end time of the class.
+     */
+    public record TimeSlot(int classId, LocalDateTime start, LocalDateTime end) {
+    }
+
+    /**
+     * The time slot of one class, in epoch minutes; ordered by start time and class ID.
+     */
+    private record Slot(long start, long end, int classId) implements Comparable<Slot> {
+
+        @Override
+        public int compareTo(Slot other) {
+            int byStart = Long.compare(start, other.start);
+            return byStart != 0 ? byStart : Integer.compare(classId, other.classId);
+        }
+    }
+
+    private record Entry(Slot slot, int[] owners) {
+    }
+
+    /**
+     * The slots of one owner, with a count of the slots of every length, so that the longest length is known again
+     * after the longest slot is removed and the scan window shrinks back with it.
+     */
+    private static final class Slots {
+        private final TreeSet<Slot> sorted = new TreeSet<>();
+        private final TreeMap<Long, Integer> lengths = new TreeMap<>();
+
+        private void add(Slot slot) {
+            if (sorted.add(slot)) {
+                lengths.merge(slot.end() - slot.start(), 1, Integer::sum);
+            }
+        }
+
+        private void remove(Slot slot) {
+            if (sorted.remove(slot)) {
+                lengths.computeIfPresent(slot.end() - slot.start(), (length, count) -> count == 1 ? null : count - 1);
+            }
+        }
+
+        private long longest() {
+            return lengths.isEmpty() ? 0 : lengths.lastKey();
+        }
+    }
+}
@@ -2,10 +2,15 @@ package repository;
 
 import model.Location;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.sql.SQLException;
 
 /**
@@ -14,15 +19,15 @@ import java.sql.SQLException;
  */
 public class LocationDBRepository extends DBRepository<Location> {
 
+    private static final String INSERT_SQL = "INSERT INTO location (id, name, address) VALUES (?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE location SET name = ?, address = ? WHERE id = ?";
+
     /**
-     * Constructs a LocationDBRepository with the specified database connection details.
-     * @param dbUrl      The database URL.
-     * @param dbUser     The username for the database connection.
-     * @param dbPassword The password for the database connection.
-     * @throws RuntimeException If the connection cannot be established due to an SQLException.
+     * Constructs a LocationDBRepository that borrows its connections from the given repository context.
+     * @param context The repository context providing the connection pool and the related repositories.
      */
-    public LocationDBRepository(String dbUrl, String dbUser, String dbPassword) {
-        super(dbUrl, dbUser, dbPassword);
+    public LocationDBRepository(DBRepositoryContext context) {
+        super(context);
     }
 
     /**
@@ -32,11 +37,8 @@ public class LocationDBRepository extends DBRepository<Location> {
      */
     @Override
     public void create(Location obj) {
-        String sql = "INSERT INTO location (id, name, address) VALUES (?, ?, ?)";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setInt(1,obj.getId());
-            statement.setString(2,obj.getName());
-            statement.setString(3,obj.getAddress());
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(INSERT_SQL)){
+            bindInsert(statement, obj);
             statement.execute();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create location", e);
@@ -51,12 +53,16 @@ public class LocationDBRepository extends DBRepository<Location> {
      */
     @Override
     public Location read(int id) {
+        Location known = cached(Location.class, id);
+        if (known != null) {
+            return known;
+        }
         String sql = "SELECT * FROM location WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
-                return extractFromResultSet(resultSet);
+                return remember(extractFromResultSet(resultSet));
             } else {
                 return null;
             }
@@ -72,12 +78,10 @@ public class LocationDBRepository extends DBRepository<Location> {
      */
     @Override
     public void update(Location obj) {
-        String sql = "UPDATE location SET name = ?, address = ? WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, obj.getName());
-            statement.setString(2, obj.getAddress());
-            statement.setInt(3, obj.getId());
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+            bindUpdate(statement, obj);
             statement.execute();
+            remember(obj);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update location", e);
         }
@@ -90,8 +94,9 @@ public class LocationDBRepository extends DBRepository<Location> {
      */
     @Override
     public void delete(int id) {
+        forget(Location.class, id);
         String sql = "DELETE FROM location WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             statement.execute();
         } catch (SQLException e) {
@@ -99,6 +104,49 @@ public class LocationDBRepository extends DBRepository<Location> {
         }
     }
 
+    /**
+     * Inserts the given locations in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The locations to be created.
+     */
+    @Override
+    public void createAll(Collection<Location> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, INSERT_SQL, objs, LocationDBRepository::bindInsert));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to create locations", e);
+        }
+    }
+
+    /**
+     * Updates the given locations in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The locations containing updated information.
+     */
+    @Override
+    public void updateAll(Collection<Location> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, UPDATE_SQL, objs, LocationDBRepository::bindUpdate));
+            objs.forEach(this::remember);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update locations", e);
+        }
+    }
+
+    /**
+     * Deletes the locations with the given IDs in a single transaction, sending the rows to the database in JDBC batches.
+     * @param ids The IDs of the locations to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        for (int id : ids) {
+            forget(Location.class, id);
+        }
+        try {
+            inTransaction(connection -> executeBatch(connection, "DELETE FROM location WHERE id = ?", ids));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete locations", e);
+        }
+    }
+
     /**
      * Retrieves all locations from the database.
      * @return A list of all Location objects stored in the database.
@@ -107,7 +155,7 @@ public class LocationDBRepository extends DBRepository<Location> {
     @Override
     public List<Location> getAll() {
         String sql = "SELECT * FROM location";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet resultSet = statement.executeQuery();
             List<Location> locations = new ArrayList<>();
             while (resultSet.next()) {
@@ -119,6 +167,33 @@ public class LocationDBRepository extends DBRepository<Location> {
         }
     }
 
+    /**
+     * Retrieves all locations whose IDs are in the given collection with a single query.
+     * Used when loading lists of related entities, so that a listing does not issue one query per row.
+     * @param ids The IDs of the locations to retrieve.
+     * @return A map from ID to Location for every ID that exists in the database.
+     * @throws RuntimeException If a SQL error occurs while retrieving the data.
+     */
+    public Map<Integer, Location> readByIds(Collection<Integer> ids) {
+        Map<Integer, Location> locations = new HashMap<>();
+        Set<Integer> missing = takeCached(Location.class, ids, locations);
+        if (missing.isEmpty()) {
+            return locations;
+        }
+        String sql = "SELECT * FROM location WHERE id = ANY(?)";
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            setIdArray(connection, statement, 1, missing);
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                Location location = remember(extractFromResultSet(resultSet));
+                locations.put(location.getId(), location);
+            }
+            return locations;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve locations by id", e);
+        }
+    }
+
     /**
      * Extracts a Location object from a ResultSet row.
      * @param resultSet The ResultSet containing the database row.
@@ -133,4 +208,16 @@ public class LocationDBRepository extends DBRepository<Location> {
         location.setId(resultSet.getInt("id"));
         return location;
     }
+
+    private static void bindInsert(PreparedStatement statement, Location obj) throws SQLException {
+        statement.setInt(1,obj.getId());
+        statement.setString(2,obj.getName());
+        statement.setString(3,obj.getAddress());
+    }
+
+    private static void bindUpdate(PreparedStatement statement, Location obj) throws SQLException {
+        statement.setString(1, obj.getName());
+        statement.setString(2, obj.getAddress());
+        statement.setInt(3, obj.getId());
+    }
 }
@@ -0,0 +1,119 @@
+package repository;
+
+import model.HasId;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * The record format shared by the append-only files of {@link LogStructuredFileRepository} and
+ * {@link SnapshotWalRepository}: {@code [int length][int crc32][byte type][int id][payload]}, where {@code length}
+ * covers everything after the CRC and the payload is the serialised object (empty for deletions).
+ */
+final class LogRecords {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    static final int BODY_PREFIX_SIZE = Byte.BYTES + Integer.BYTES;
+
+    private LogRecords() {
+    }
+
+    /**
+     * Receives the records found by {@link #scan(ByteBuffer, Visitor)}.
+     */
+    @FunctionalInterface
+    interface Visitor {
+        void accept(byte type, int id, ByteBuffer payload, int offset, int size);
+    }
+
+    /**
+     * Encodes a record storing the current state of an object.
+     * @param obj The object to store.
+     * @return The encoded record, ready to be written.
+     */
+    static ByteBuffer put(HasId obj) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(obj);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialise object " + obj.getId(), e);
+        }
+        return encode(PUT, obj.getId(), bytes.toByteArray());
+    }
+
+    /**
+     * Encodes a record marking an object as deleted.
+     * @param id The ID of the deleted object.
+     * @return The encoded record, ready to be written.
+     */
+    static ByteBuffer delete(int id) {
+        return encode(DELETE, id, new byte[0]);
+    }
+
+    /**
+     * Deserialises the payload of a record.
+     * @param payload The payload bytes.
+     * @param <T>     The type of the stored object.
+     * @return The stored object.
+     * @throws IOException If the payload is not a valid serialised object.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T deserialize(ByteBuffer payload) throws IOException {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (T) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+    }
+
+    /**
+     * Walks the records stored in a buffer, from its position to its limit, and stops at the first record that is
+     * incomplete or fails its checksum.
+     * @param data    The records.
+     * @param visitor Receives each valid record, with its offset and total size.
+     * @return The offset just after the last valid record.
+     */
+    static int scan(ByteBuffer data, Visitor visitor) {
+        int position = data.position();
+        while (position + HEADER_SIZE <= data.limit()) {
+            int length = data.getInt(position);
+            int crc = data.getInt(position + Integer.BYTES);
+            if (length < BODY_PREFIX_SIZE || position + HEADER_SIZE + length > data.limit()) {
+                break;
+            }
+            ByteBuffer body = data.slice(position + HEADER_SIZE, length);
+            if (checksum(body.duplicate()) != crc) {
+                break;
+            }
+            byte type = body.get();
+            int id = body.getInt();
+            visitor.accept(type, id, body.slice(), position, HEADER_SIZE + length);
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Computes the checksum of the remaining bytes of a buffer.
+     * @param bytes The bytes to check.
+     * @return The CRC32 of the bytes.
+     */
+    static int checksum(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer encode(byte type, int id, byte[] payload) {
+        ByteBuffer body = ByteBuffer.allocate(BODY_PREFIX_SIZE + payload.length);
+        body.put(type).putInt(id).put(payload).flip();
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + body.capacity());
+        record.putInt(body.capacity()).putInt(checksum(body.duplicate())).put(body);
+        return record.flip();
+    }
+}
@@ -0,0 +1,439 @@
+package repository;
+
+import model.HasId;
+import model.Versioned;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Provides an append-only, log-structured file repository for managing objects of type T.
+ * <p>Instead of rewriting the whole file on every change like {@link FileRepository}, each mutation is appended to the
+ * end of the file as a record, so a write costs O(size of the object) instead of O(size of the data set). An in-memory
+ * index maps every live ID to the offset of its latest record, so {@link #read(int)} seeks straight to it.</p>
+ * <p>Superseded and deleted records stay in the file until a compaction rewrites it with only the live records.
+ * Compaction runs on a background thread once more than half of the file is garbage, or on demand through
+ * {@link #compact()}.</p>
+ * <p>Records use the layout described in {@link LogRecords}. A torn record at the end of the file, e.g. after a crash
+ * mid-append, is detected by its length or checksum and cut off when the file is opened.</p>
+ * @param <T> The type of objects to be stored in the repository, which must implement the HasId interface.
+ */
+public class LogStructuredFileRepository<T extends HasId> implements IRepository<T>, AutoCloseable {
+
+    /**
+     * Files smaller than this are never compacted automatically.
+     */
+    private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final Map<Integer, Long> index = new HashMap<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "log-repository-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private FileChannel channel;
+    private long liveBytes;
+    private boolean compactionScheduled;
+
+    /**
+     * Held for the whole of a compaction, so that only one runs at a time.
+     */
+    private final Object compactionLock = new Object();
+
+    /**
+     * Constructs a LogStructuredFileRepository on the given file, creating it if it does not exist yet
+     * and rebuilding the index from its records otherwise.
+     * @param filePath The file path to be used for data storage.
+     */
+    public LogStructuredFileRepository(String filePath) {
+        this.path = Path.of(filePath);
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open log file " + filePath, e);
+        }
+    }
+
+    /**
+     * Creates a new object in the repository.
+     * Adds the object if no object with the same ID exists yet.
+     * @param obj The object to be added.
+     */
+    @Override
+    public synchronized void create(T obj) {
+        if (!index.containsKey(obj.getId())) {
+            append(List.of(LogRecords.put(obj)));
+        }
+    }
+
+    /**
+     * Reads an object from the repository by its ID, with a single positioned read of its latest record.
+     * @param id The ID of the object to be retrieved.
+     * @return The object with the specified ID, or null if no such object exists.
+     */
+    @Override
+    public synchronized T read(int id) {
+        Long offset = index.get(id);
+        return offset == null ? null : readRecord(offset);
+    }
+
+    /**
+     * Updates an existing object in the repository by appending its new state.
+     * Objects whose ID does not exist are ignored. A {@link model.Versioned} object is only written if it carries the
+     * version of the latest record, which is read back for the check, and is then written with the next version.
+     * @param obj The updated object to replace the existing entry.
+     * @throws ConcurrentModificationException If the object has been updated since it was read.
+     */
+    @Override
+    public synchronized void update(T obj) {
+        updateAll(List.of(obj));
+    }
+
+    /**
+     * Deletes an object from the repository by appending a deletion record.
+     * @param id The ID of the object to be deleted.
+     */
+    @Override
+    public synchronized void delete(int id) {
+        if (index.containsKey(id)) {
+            append(List.of(LogRecords.delete(id)));
+        }
+    }
+
+    /**
+     * Retrieves all objects from the repository.
+     * @return A list of all objects currently stored in the repository.
+     */
+    @Override
+    public synchronized List<T> getAll() {
+        List<T> all = new ArrayList<>(index.size());
+        for (long offset : index.values()) {
+            all.add(readRecord(offset));
+        }
+        return all;
+    }
+
+    /**
+     * Creates several new objects in the repository with a single append.
+     * Objects whose ID already exists are skipped, as in {@link #create(HasId)}.
+     * @param objs The objects to be added.
+     */
+    @Override
+    public synchronized void createAll(Collection<T> objs) {
+        Set<Integer> added = new HashSet<>();
+        List<ByteBuffer> records = new ArrayList<>();
+        for (T obj : objs) {
+            if (!index.containsKey(obj.getId()) && added.add(obj.getId())) {
+                records.add(LogRecords.put(obj));
+            }
+        }
+        append(records);
+    }
+
+    /**
+     * Updates several existing objects in the repository with a single append.
+     * Objects whose ID does not exist are ignored, as in {@link #update(HasId)}.
+     * @param objs The updated objects to replace the existing entries.
+     * @throws ConcurrentModificationException If one of the objects has been updated since it was read; none of them
+     *         is written.
+     */
+    @Override
+    public synchronized void updateAll(Collection<T> objs) {
+        List<T> updated = new ArrayList<>();
+        List<Integer> storedVersions = new ArrayList<>();
+        for (T obj : objs) {
+            Long offset = index.get(obj.getId());
+            if (offset != null) {
+                int storedVersion = obj instanceof Versioned ? Versions.of(readRecord(offset)) : 0;
+                if (obj instanceof Versioned && storedVersion != Versions.of(obj)) {
+                    throw Versions.conflict(obj);
+                }
+                updated.add(obj);
+                storedVersions.add(storedVersion);
+            }
+        }
+        List<ByteBuffer> records = new ArrayList<>();
+        for (int i = 0; i < updated.size(); i++) {
+            Versions.set(updated.get(i), storedVersions.get(i) + 1);
+            records.add(LogRecords.put(updated.get(i)));
+        }
+        try {
+            append(records);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < updated.size(); i++) {
+                Versions.set(updated.get(i), storedVersions.get(i));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes several objects from the repository with a single append.
+     * @param ids The IDs of the objects to be deleted.
+     */
+    @Override
+    public synchronized void deleteAll(int... ids) {
+        Set<Integer> deleted = new HashSet<>();
+        List<ByteBuffer> records = new ArrayList<>();
+        for (int id : ids) {
+            if (index.containsKey(id) && deleted.add(id)) {
+                records.add(LogRecords.delete(id));
+            }
+        }
+        append(records);
+    }
+
+    /**
+     * Rewrites the file so that it only contains the latest record of every live object.
+     * <p>The live records are copied byte for byte into a temporary file without holding the repository lock, so reads
+     * and writes continue meanwhile. The lock is only taken again to copy the records appended in the meantime, and
+     * then the temporary file atomically replaces the log.</p>
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            Map<Integer, Long> live;
+            long copiedEnd;
+            FileChannel source;
+            synchronized (this) {
+                compactionScheduled = false;
+                live = new HashMap<>(index);
+                source = channel;
+                copiedEnd = getFileSize();
+            }
+            Path tempPath = path.resolveSibling(path.getFileName() + ".compact");
+            try (FileChannel target = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                Map<Integer, Long> newIndex = new HashMap<>();
+                long position = 0;
+                for (Map.Entry<Integer, Long> entry : live.entrySet()) {
+                    long offset = entry.getValue();
+                    long size = LogRecords.HEADER_SIZE + readInt(source, offset);
+                    transfer(source, offset, size, target);
+                    newIndex.put(entry.getKey(), position);
+                    position += size;
+                }
+                synchronized (this) {
+                    long tailSize = channel.size() - copiedEnd;
+                    transfer(channel, copiedEnd, tailSize, target);
+                    for (long offset = copiedEnd; offset < copiedEnd + tailSize; ) {
+                        long size = LogRecords.HEADER_SIZE + readInt(channel, offset);
+                        ByteBuffer prefix = ByteBuffer.allocate(LogRecords.BODY_PREFIX_SIZE);
+                        readFully(prefix, offset + LogRecords.HEADER_SIZE);
+                        int id = prefix.getInt(Byte.BYTES);
+                        if (prefix.get(0) == LogRecords.PUT) {
+                            newIndex.put(id, position);
+                        } else {
+                            newIndex.remove(id);
+                        }
+                        offset += size;
+                        position += size;
+                    }
+                    target.force(true);
+                    replaceLog(tempPath, newIndex);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to compact log file " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Replaces the log with the compacted file and switches the index over to it. Must be called with the repository
+     * lock held.
+     */
+    private void replaceLog(Path tempPath, Map<Integer, Long> newIndex) {
+        try {
+            channel.close();
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replace log file " + path, e);
+        }
+        index.clear();
+        index.putAll(newIndex);
+    }
+
+    private static void transfer(FileChannel source, long offset, long size, FileChannel target) throws IOException {
+        long copied = 0;
+        while (copied < size) {
+            copied += source.transferTo(offset + copied, size - copied, target);
+        }
+    }
+
+    /**
+     * Returns the current size of the log file, including records that are no longer live.
+     * @return The file size in bytes.
+     */
+    public synchronized long getFileSize() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops the background compaction and closes the log file.
+     */
+    @Override
+    public synchronized void close() {
+        compactor.shutdownNow();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Scans the log from the beginning and rebuilds the index, cutting off a torn record at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private void recover() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(LogRecords.HEADER_SIZE);
+        while (position + LogRecords.HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length < LogRecords.BODY_PREFIX_SIZE || position + LogRecords.HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(body, position + LogRecords.HEADER_SIZE);
+            if (LogRecords.checksum(ByteBuffer.wrap(body.array())) != crc) {
+                break;
+            }
+            body.flip();
+            byte type = body.get();
+            int id = body.getInt();
+            apply(type, id, position, LogRecords.HEADER_SIZE + length);
+            position += LogRecords.HEADER_SIZE + length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+        }
+        channel.position(position);
+    }
+
+    /**
+     * Appends the given records to the end of the log in one write and updates the index.
+     * If the write fails, the file is truncated back to its previous end, so a partly written record does not remain
+     * in front of the next append.
+     * @param records The encoded records.
+     */
+    private void append(List<ByteBuffer> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        long start = getFileSize();
+        try {
+            ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+            long total = 0;
+            for (ByteBuffer buffer : buffers) {
+                total += buffer.remaining();
+            }
+            long written = 0;
+            channel.position(start);
+            while (written < total) {
+                written += channel.write(buffers);
+            }
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException("Failed to append to log file " + path, e);
+            try {
+                channel.truncate(start);
+            } catch (IOException truncateFailure) {
+                failure.addSuppressed(truncateFailure);
+            }
+            throw failure;
+        }
+        try {
+            long position = start;
+            for (ByteBuffer record : records) {
+                record.rewind();
+                record.getInt();
+                record.getInt();
+                byte type = record.get();
+                int id = record.getInt();
+                apply(type, id, position, record.limit());
+                position += record.limit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to index log file " + path, e);
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * Applies one record to the index and to the live size accounting.
+     */
+    private void apply(byte type, int id, long offset, long size) throws IOException {
+        Long previous = type == LogRecords.PUT ? index.put(id, offset) : index.remove(id);
+        if (previous != null) {
+            liveBytes -= LogRecords.HEADER_SIZE + readInt(previous);
+        }
+        if (type == LogRecords.PUT) {
+            liveBytes += size;
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        long size = getFileSize();
+        if (!compactionScheduled && size >= MIN_COMPACTION_SIZE && liveBytes * 2 < size) {
+            compactionScheduled = true;
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (UncheckedIOException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+    }
+
+    private T readRecord(long offset) {
+        try {
+            int length = readInt(offset);
+            ByteBuffer payload = ByteBuffer.allocate(length - LogRecords.BODY_PREFIX_SIZE);
+            readFully(payload, offset + LogRecords.HEADER_SIZE + LogRecords.BODY_PREFIX_SIZE);
+            return LogRecords.deserialize(payload.flip());
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt record at offset " + offset + " in " + path, e);
+        }
+    }
+
+    private int readInt(long offset) throws IOException {
+        return readInt(channel, offset);
+    }
+
+    private int readInt(FileChannel source, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        readFully(source, buffer, offset);
+        return buffer.getInt(0);
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        readFully(channel, buffer, offset);
+    }
+
+    private void readFully(FileChannel source, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of log file " + path);
+            }
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package repository;
+
+import model.HasId;
+import model.Versioned;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Provides a file repository that keeps its records in a memory-mapped file, encoded with an {@link EntityCodec}.
+ * <p>Unlike {@link FileRepository}, no Java serialisation is involved: each entity is written in a fixed binary
+ * layout and references to other entities are stored as their IDs, so a record never drags a copy of the object
+ * graph along. A read copies a single record out of the mapped buffer with one bulk get and decodes its fields
+ * directly, with none of the reflection and handle bookkeeping of an {@code ObjectInputStream}.
+ * Referenced entities are resolved through the {@link MappedRepositoryContext} the repository belongs to.</p>
+ * <p>File layout: a header {@code [int magic][int format][long end]} followed by records
+ * {@code [int length][byte type][int id][payload][int checksum]}, the checksum being the CRC-32 of the rest of the
+ * record. Mutations are appended and forced to the storage device before {@code end} is updated, so a record
+ * interrupted by a crash is ignored when the file is opened again; opening also verifies the checksums and drops the
+ * tail of the file from the first damaged record on. When the file is full, it is compacted if at least half of it
+ * holds superseded records, and doubled in size otherwise. Compaction writes the live records to a new file that then
+ * replaces the old one, so a crash during compaction leaves the old file intact. Files written before records had
+ * checksums are rewritten in the current format when they are opened.</p>
+ * @param <T> The type of objects to be stored in the repository, which must implement the HasId interface.
+ */
+public class MappedFileRepository<T extends HasId> implements IRepository<T>, AutoCloseable {
+
+    private static final int MAGIC = 0x46495431;
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int FORMAT_OFFSET = 4;
+    private static final int END_OFFSET = 8;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+    private static final int CHECKSUM_SIZE = Integer.BYTES;
+    private static final int LEGACY_FORMAT = 0;
+    private static final int CHECKSUMMED_FORMAT = 1;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    /**
+     * A resolver that resolves every reference to null, for decoding a record only to read its own fields.
+     */
+    private static final EntityResolver UNRESOLVED = new EntityResolver() {
+        @Override
+        public <E extends HasId> E resolve(Class<E> type, int id) {
+            return null;
+        }
+
+        @Override
+        public void register(HasId entity) {
+        }
+
+        @Override
+        public <R> R inScope(Supplier<R> work) {
+            return work.get();
+        }
+    };
+
+    private final Path path;
+    private final Class<T> type;
+    private final EntityCodec<T> codec;
+    private final EntityResolver resolver;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Integer> index = new HashMap<>();
+    private MappedByteBuffer buffer;
+    private int end;
+    private int liveBytes;
+    private int checksumSize = CHECKSUM_SIZE;
+
+    /**
+     * Constructs a MappedFileRepository on the given file, creating it if it does not exist yet.
+     * @param filePath The file path to be used for data storage.
+     * @param type     The type of the stored entities.
+     * @param codec    The codec used to encode and decode the entities.
+     * @param resolver Resolves the references of decoded entities.
+     */
+    MappedFileRepository(String filePath, Class<T> type, EntityCodec<T> codec, EntityResolver resolver) {
+        this.path = Path.of(filePath);
+        this.type = type;
+        this.codec = codec;
+        this.resolver = resolver;
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open mapped file " + filePath, e);
+        }
+    }
+
+    /**
+     * Creates a new object in the repository.
+     * Adds the object if no object with the same ID exists yet.
+     * @param obj The object to be added.
+     */
+    @Override
+    public void create(T obj) {
+        createAll(List.of(obj));
+    }
+
+    /**
+     * Reads an object from the repository by its ID, decoding it directly from the mapped file.
+     * @param id The ID of the object to be retrieved.
+     * @return The object with the specified ID, or null if no such object exists.
+     */
+    @Override
+    public T read(int id) {
+        return resolver.inScope(() -> resolver.resolve(type, id));
+    }
+
+    /**
+     * Updates an existing object in the repository by appending its new state.
+     * Objects whose ID does not exist are ignored. A {@link model.Versioned} object is only written if it carries the
+     * version of the latest record, and is then written with the next version.
+     * @param obj The updated object to replace the existing entry.
+     * @throws ConcurrentModificationException If the object has been updated since it was read.
+     */
+    @Override
+    public void update(T obj) {
+        updateAll(List.of(obj));
+    }
+
+    /**
+     * Deletes an object from the repository by appending a deletion record.
+     * @param id The ID of the object to be deleted.
+     */
+    @Override
+    public void delete(int id) {
+        deleteAll(id);
+    }
+
+    /**
+     * Retrieves all objects from the repository. Entities referenced by several of them are decoded only once.
+     * @return A list of all objects currently stored in the repository.
+     */
+    @Override
+    public List<T> getAll() {
+        List<Integer> ids;
+        lock.readLock().lock();
+        try {
+            ids = new ArrayList<>(index.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return resolver.inScope(() -> {
+            List<T> all = new ArrayList<>(ids.size());
+            for (int id : ids) {
+                T entity = resolver.resolve(type, id);
+                if (entity != null) {
+                    all.add(entity);
+                }
+            }
+            return all;
+        });
+    }
+
+    /**
+     * Creates several new objects in the repository with a single append.
+     * Objects whose ID already exists are skipped, as in {@link #create(HasId)}.
+     * @param objs The objects to be added.
+     */
+    @Override
+    public void createAll(Collection<T> objs) {
+        lock.writeLock().lock();
+        try {
+            Set<Integer> added = new HashSet<>();
+            List<ByteBuffer> records = new ArrayList<>();
+            for (T obj : objs) {
+                if (!index.containsKey(obj.getId()) && added.add(obj.getId())) {
+                    records.add(encode(PUT, obj.getId(), obj));
+                }
+            }
+            append(records);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates several existing objects in the repository with a single append.
+     * Objects whose ID does not exist are ignored, as in {@link #update(HasId)}.
+     * @param objs The updated objects to replace the existing entries.
+     * @throws ConcurrentModificationException If one of the objects has been updated since it was read; none of them
+     *         is written.
+     */
+    @Override
+    public void updateAll(Collection<T> objs) {
+        lock.writeLock().lock();
+        try {
+            List<T> updated = new ArrayList<>();
+            List<Integer> storedVersions = new ArrayList<>();
+            for (T obj : objs) {
+                Integer offset = index.get(obj.getId());
+                if (offset != null) {
+                    int storedVersion = obj instanceof Versioned ? storedVersion(obj.getId(), offset) : 0;
+                    if (obj instanceof Versioned && storedVersion != Versions.of(obj)) {
+                        throw Versions.conflict(obj);
+                    }
+                    updated.add(obj);
+                    storedVersions.add(storedVersion);
+                }
+            }
+            List<ByteBuffer> records = new ArrayList<>();
+            for (int i = 0; i < updated.size(); i++) {
+                T obj = updated.get(i);
+                Versions.set(obj, storedVersions.get(i) + 1);
+                records.add(encode(PUT, obj.getId(), obj));
+            }
+            try {
+                append(records);
+            } catch (RuntimeException e) {
+                for (int i = 0; i < updated.size(); i++) {
+                    Versions.set(updated.get(i), storedVersions.get(i));
+                }
+                throw e;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the version of a versioned entity by decoding its latest record. References are left unresolved, so no
+     * other repository is accessed while the write lock is held. Records written before entities were versioned have
+     * no version field and decode with version 0.
+     */
+    private int storedVersion(int id, int offset) {
+        ByteBuffer record = buffer.slice(offset + RECORD_HEADER_SIZE, buffer.getInt(offset));
+        return Versions.of(codec.decode(id, record, UNRESOLVED));
+    }
+
+    /**
+     * Deletes several objects from the repository with a single append.
+     * @param ids The IDs of the objects to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        lock.writeLock().lock();
+        try {
+            Set<Integer> deleted = new HashSet<>();
+            List<ByteBuffer> records = new ArrayList<>();
+            for (int id : ids) {
+                if (index.containsKey(id) && deleted.add(id)) {
+                    records.add(encode(DELETE, id, null));
+                }
+            }
+            append(records);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Decodes the latest record of the given ID. Called by the resolver, which makes sure an entity is decoded at
+     * most once per scope.
+     * <p>The record is copied out of the mapped file with one bulk read while the read lock is held, and decoded after
+     * the lock is released: decoding resolves references into other repositories, and holding this lock meanwhile
+     * could deadlock with a writer waiting on one of them.</p>
+     * @param id The ID of the entity.
+     * @return The decoded entity, or null if no such entity exists.
+     */
+    T load(int id) {
+        byte[] record;
+        lock.readLock().lock();
+        try {
+            Integer offset = index.get(id);
+            if (offset == null) {
+                return null;
+            }
+            record = new byte[buffer.getInt(offset)];
+            buffer.get(offset + RECORD_HEADER_SIZE, record);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return codec.decode(id, ByteBuffer.wrap(record), resolver);
+    }
+
+    /**
+     * Rewrites the file so that it only contains the latest record of every live object.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            compact(Math.max(INITIAL_CAPACITY, 2 * (FILE_HEADER_SIZE + liveBytes)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the file currently in use, including superseded records.
+     * @return The used size in bytes.
+     */
+    public int getUsedSize() {
+        lock.readLock().lock();
+        try {
+            return end;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the changes made to the mapped file to the storage device.
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the mapped file. The mapping itself is released once the repository is garbage collected.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void open() throws IOException {
+        long size = Files.exists(path) ? Files.size(path) : 0;
+        if (size < FILE_HEADER_SIZE) {
+            map(INITIAL_CAPACITY);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(FORMAT_OFFSET, CHECKSUMMED_FORMAT);
+            end = FILE_HEADER_SIZE;
+            buffer.putLong(END_OFFSET, end);
+            return;
+        }
+        map(size);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException(path + " is not a mapped repository file");
+        }
+        int format = buffer.getInt(FORMAT_OFFSET);
+        if (format != LEGACY_FORMAT && format != CHECKSUMMED_FORMAT) {
+            throw new IllegalStateException(path + " has unknown format " + format);
+        }
+        checksumSize = format == CHECKSUMMED_FORMAT ? CHECKSUM_SIZE : 0;
+        end = (int) Math.min(buffer.getLong(END_OFFSET), buffer.capacity());
+        int offset = FILE_HEADER_SIZE;
+        while (offset < end && isIntact(offset)) {
+            apply(buffer.get(offset + Integer.BYTES), buffer.getInt(offset + Integer.BYTES + Byte.BYTES), offset);
+            offset += recordSize(offset);
+        }
+        if (offset < end) {
+            end = offset;
+            buffer.putLong(END_OFFSET, end);
+            buffer.force();
+        }
+        if (format == LEGACY_FORMAT) {
+            compact(Math.max(INITIAL_CAPACITY, 2 * (FILE_HEADER_SIZE + liveBytes + CHECKSUM_SIZE * index.size())));
+        }
+    }
+
+    /**
+     * Checks that the record at the given offset lies within the used part of the file and matches its checksum.
+     */
+    private boolean isIntact(int offset) {
+        if (end - offset < RECORD_HEADER_SIZE + checksumSize) {
+            return false;
+        }
+        int length = buffer.getInt(offset);
+        if (length < 0 || length > end - offset - RECORD_HEADER_SIZE - checksumSize) {
+            return false;
+        }
+        int size = RECORD_HEADER_SIZE + length;
+        return checksumSize == 0 || buffer.getInt(offset + size) == checksum(buffer, offset, size);
+    }
+
+    private int recordSize(int offset) {
+        return RECORD_HEADER_SIZE + buffer.getInt(offset) + checksumSize;
+    }
+
+    private static int checksum(ByteBuffer source, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(source.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private void map(long capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    private ByteBuffer encode(byte recordType, int id, T obj) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeByte(recordType);
+            out.writeInt(id);
+            if (obj != null) {
+                codec.encode(obj, out);
+            }
+            out.writeInt(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode object " + id, e);
+        }
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int checksumOffset = record.capacity() - CHECKSUM_SIZE;
+        record.putInt(0, checksumOffset - RECORD_HEADER_SIZE);
+        record.putInt(checksumOffset, checksum(record, 0, checksumOffset));
+        return record;
+    }
+
+    /**
+     * Writes the given records after the current end of the file and forces them to the storage device, then
+     * publishes the new end in the header.
+     */
+    private void append(List<ByteBuffer> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        int total = 0;
+        for (ByteBuffer record : records) {
+            total += record.capacity();
+        }
+        ensureCapacity(total);
+        int offset = end;
+        for (ByteBuffer record : records) {
+            buffer.put(offset, record, 0, record.capacity());
+            offset += record.capacity();
+        }
+        buffer.force(end, total);
+        buffer.putLong(END_OFFSET, offset);
+        offset = end;
+        for (ByteBuffer record : records) {
+            apply(record.get(Integer.BYTES), record.getInt(Integer.BYTES + Byte.BYTES), offset);
+            offset += record.capacity();
+        }
+        end = offset;
+    }
+
+    /**
+     * Applies one record to the index and to the live size accounting.
+     */
+    private void apply(byte recordType, int id, int offset) {
+        Integer previous = recordType == PUT ? index.put(id, offset) : index.remove(id);
+        if (previous != null) {
+            liveBytes -= recordSize(previous);
+        }
+        if (recordType == PUT) {
+            liveBytes += recordSize(offset);
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (end + needed <= buffer.capacity()) {
+            return;
+        }
+        int garbage = end - FILE_HEADER_SIZE - liveBytes;
+        long required = (long) FILE_HEADER_SIZE + liveBytes + needed;
+        if (garbage >= liveBytes) {
+            compact((int) Math.max(INITIAL_CAPACITY, 2 * required));
+            return;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < end + (long) needed) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Mapped file " + path + " cannot grow beyond 2 GB");
+        }
+        try {
+            map(capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow mapped file " + path, e);
+        }
+    }
+
+    /**
+     * Writes the live records, in file order, to a new file with the given capacity, forces it to the storage device
+     * and atomically renames it over the data file, so a crash while compacting leaves the old file intact.
+     */
+    private void compact(int capacity) {
+        List<Map.Entry<Integer, Integer>> live = new ArrayList<>(index.entrySet());
+        live.sort(Map.Entry.comparingByValue());
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<Integer, Integer> newIndex = new HashMap<>();
+        MappedByteBuffer compacted;
+        int offset = FILE_HEADER_SIZE;
+        try {
+            Files.deleteIfExists(tempPath);
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                compacted = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+            compacted.putInt(0, MAGIC);
+            compacted.putInt(FORMAT_OFFSET, CHECKSUMMED_FORMAT);
+            for (Map.Entry<Integer, Integer> entry : live) {
+                int source = entry.getValue();
+                int size = RECORD_HEADER_SIZE + buffer.getInt(source);
+                newIndex.put(entry.getKey(), offset);
+                compacted.put(offset, buffer, source, size);
+                compacted.putInt(offset + size, checksum(compacted, offset, size));
+                offset += size + CHECKSUM_SIZE;
+            }
+            compacted.putLong(END_OFFSET, offset);
+            compacted.force();
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact mapped file " + path, e);
+        }
+        buffer = compacted;
+        checksumSize = CHECKSUM_SIZE;
+        end = offset;
+        liveBytes = end - FILE_HEADER_SIZE;
+        index.clear();
+        index.putAll(newIndex);
+    }
+}
@@ -0,0 +1,139 @@
+package repository;
+
+import model.*;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Owns one {@link MappedFileRepository} per entity type, stored side by side in a directory, and resolves the
+ * references between them.
+ * <p>Records only store the IDs of the entities they reference. While an entity is decoded, this context turns those
+ * IDs back into objects through the repository of the referenced type, using an {@link IdentityMap} per scope so that
+ * every entity is decoded once and cyclic references such as {@code Member} &harr; {@code FitnessClass} resolve to
+ * the instance being decoded.</p>
+ */
+public class MappedRepositoryContext implements EntityResolver, AutoCloseable {
+
+    private final Map<Class<?>, MappedFileRepository<?>> repositories = new HashMap<>();
+    private final ThreadLocal<IdentityMap> identityMap = new ThreadLocal<>();
+
+    private final MappedFileRepository<Equipment> equipmentRepository;
+    private final MappedFileRepository<Feedback> feedbackRepository;
+    private final MappedFileRepository<FitnessClass> fitnessClassRepository;
+    private final MappedFileRepository<Location> locationRepository;
+    private final MappedFileRepository<Member> memberRepository;
+    private final MappedFileRepository<Membership> membershipRepository;
+    private final MappedFileRepository<Room> roomRepository;
+    private final MappedFileRepository<Trainer> trainerRepository;
+
+    /**
+     * Constructs a MappedRepositoryContext storing one file per entity type in the given directory,
+     * e.g. {@code Member.dat}.
+     * @param directory The directory holding the data files.
+     */
+    public MappedRepositoryContext(String directory) {
+        new File(directory).mkdirs();
+        equipmentRepository = open(directory, Equipment.class, EntityCodecs.EQUIPMENT);
+        feedbackRepository = open(directory, Feedback.class, EntityCodecs.FEEDBACK);
+        fitnessClassRepository = open(directory, FitnessClass.class, EntityCodecs.FITNESS_CLASS);
+        locationRepository = open(directory, Location.class, EntityCodecs.LOCATION);
+        memberRepository = open(directory, Member.class, EntityCodecs.MEMBER);
+        membershipRepository = open(directory, Membership.class, EntityCodecs.MEMBERSHIP);
+        roomRepository = open(directory, Room.class, EntityCodecs.ROOM);
+        trainerRepository = open(directory, Trainer.class, EntityCodecs.TRAINER);
+    }
+
+    public MappedFileRepository<Equipment> getEquipmentRepository() {
+        return equipmentRepository;
+    }
+
+    public MappedFileRepository<Feedback> getFeedbackRepository() {
+        return feedbackRepository;
+    }
+
+    public MappedFileRepository<FitnessClass> getFitnessClassRepository() {
+        return fitnessClassRepository;
+    }
+
+    public MappedFileRepository<Location> getLocationRepository() {
+        return locationRepository;
+    }
+
+    public MappedFileRepository<Member> getMemberRepository() {
+        return memberRepository;
+    }
+
+    public MappedFileRepository<Membership> getMembershipRepository() {
+        return membershipRepository;
+    }
+
+    public MappedFileRepository<Room> getRoomRepository() {
+        return roomRepository;
+    }
+
+    public MappedFileRepository<Trainer> getTrainerRepository() {
+        return trainerRepository;
+    }
+
+    /**
+     * Returns the entity of the given type and ID, decoding it from its repository unless it has already been decoded
+     * in the current scope.
+     * @param type The entity type.
+     * @param id   The entity ID.
+     * @param <E>  The entity type.
+     * @return The entity, or null if it does not exist.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E extends HasId> E resolve(Class<E> type, int id) {
+        return inScope(() -> {
+            E known = identityMap.get().get(type, id);
+            if (known != null) {
+                return known;
+            }
+            MappedFileRepository<E> repository = (MappedFileRepository<E>) repositories.get(type);
+            return repository == null ? null : repository.load(id);
+        });
+    }
+
+    @Override
+    public void register(HasId entity) {
+        IdentityMap map = identityMap.get();
+        if (map != null) {
+            map.put(entity);
+        }
+    }
+
+    @Override
+    public <R> R inScope(Supplier<R> work) {
+        if (identityMap.get() != null) {
+            return work.get();
+        }
+        identityMap.set(new IdentityMap());
+        try {
+            return work.get();
+        } finally {
+            identityMap.remove();
+        }
+    }
+
+    /**
+     * Flushes all repositories of this context.
+     */
+    @Override
+    public void close() {
+        for (MappedFileRepository<?> repository : repositories.values()) {
+            repository.close();
+        }
+    }
+
+    private <E extends HasId> MappedFileRepository<E> open(String directory, Class<E> type, EntityCodec<E> codec) {
+        String filePath = new File(directory, type.getSimpleName() + ".dat").getPath();
+        MappedFileRepository<E> repository = new MappedFileRepository<>(filePath, type, codec, this);
+        repositories.put(type, repository);
+        return repository;
+    }
+}
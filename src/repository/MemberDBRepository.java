@@ -4,12 +4,20 @@ import model.FitnessClass;
 import model.Member;
 import model.Membership;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The MemberDBRepository class provides CRUD operations for the `Member` model using a relational database.
@@ -17,24 +25,17 @@ import java.util.List;
  */
 public class MemberDBRepository extends DBRepository<Member>{
 
-    // Instance of MembershipDBRepository to interact with membership-related data in the database
-    MembershipDBRepository membershipDBRepository;
-    // Instance of FitnessClassDBRepository to interact with membership-related data in the database
-    FitnessClassDBRepository fitnessClassDBRepository;
+    private static final String INSERT_SQL = "INSERT INTO member (id, name, password, registrationDate, membership, version) VALUES(?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE member SET name=?, password=?, registrationDate=?, membership=?, version=version+1 " +
+            "WHERE id=? AND version=?";
 
     /**
-     * Constructs a DBRepository instance with the provided database connection details.
-     * It also initializes the MembershipDBRepository and FitnessClassDBRepository to handle member data.
-     * Establishes a connection to the database using the specified URL, user, and password.
-     * @param dbUrl      The URL of the database to connect to.
-     * @param dbUser     The username to use when connecting to the database.
-     * @param dbPassword The password to use when connecting to the database.
-     * @throws RuntimeException If the connection cannot be established due to an SQLException.
+     * Constructs a MemberDBRepository that borrows its connections from the given repository context.
+     * Memberships and fitness classes are loaded through the repositories shared by the same context.
+     * @param context The repository context providing the connection pool and the related repositories.
      */
-    public MemberDBRepository(String dbUrl, String dbUser, String dbPassword) {
-        super(dbUrl, dbUser, dbPassword);
-        this.membershipDBRepository = new MembershipDBRepository(dbUrl, dbUser, dbPassword);
-        this.fitnessClassDBRepository = new FitnessClassDBRepository(dbUrl, dbUser, dbPassword);
+    public MemberDBRepository(DBRepositoryContext context) {
+        super(context);
     }
 
     /**
@@ -46,13 +47,8 @@ public class MemberDBRepository extends DBRepository<Member>{
      */
     @Override
     public void create(Member obj) {
-        String sql = "INSERT INTO member (id, name, password, registrationDate, membership) VALUES(?, ?, ?, ?, ?)";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setInt(1,obj.getId());
-            statement.setString(2,obj.getName());
-            statement.setString(3,obj.getPassword());
-            statement.setTimestamp(4, Timestamp.valueOf(obj.getRegistrationDate()));
-            statement.setInt(5,obj.getMembership().getId());
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(INSERT_SQL)){
+            bindInsert(statement, obj);
             statement.execute();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create member", e);
@@ -69,8 +65,13 @@ public class MemberDBRepository extends DBRepository<Member>{
      */
     @Override
     public Member read(int id) {
+        Member known = cached(Member.class, id);
+        if (known != null) {
+            return known;
+        }
         String sql = "SELECT * FROM member WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)){
             statement.setInt(1,id);
             ResultSet resultSet = statement.executeQuery();
             if(resultSet.next()){
@@ -80,6 +81,8 @@ public class MemberDBRepository extends DBRepository<Member>{
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to read member", e);
+        } finally {
+            scope.close();
         }
     }
 
@@ -87,19 +90,22 @@ public class MemberDBRepository extends DBRepository<Member>{
      * Updates an existing member's information in the database.
      * <p>This method updates the member's details such as name, password, registration date, and membership
      * in the `member` table using the provided `Member` object.</p>
+     * The row is only updated if its `version` still matches the version the object was read with; the version is
+     * then incremented in the row and in the object.
      * @param obj The `Member` object containing the updated information for the member.
+     * @throws ConcurrentModificationException If the member was changed or deleted since the object was read.
      * @throws RuntimeException If there is an error executing the SQL query or updating the database.
      */
     @Override
     public void update(Member obj) {
-        String sql = "UPDATE member SET name=?, password=?, registrationDate=?, membership=? WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setString(1,obj.getName());
-            statement.setString(2,obj.getPassword());
-            statement.setTimestamp(3, Timestamp.valueOf(obj.getRegistrationDate()));
-            statement.setInt(4,obj.getMembership().getId());
-            statement.setInt(5,obj.getId());
-            statement.execute();
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)){
+            bindUpdate(statement, obj);
+            if (statement.executeUpdate() == 0) {
+                forget(Member.class, obj.getId());
+                throw Versions.conflict(obj);
+            }
+            obj.setVersion(obj.getVersion() + 1);
+            remember(obj);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update member", e);
         }
@@ -107,63 +113,187 @@ public class MemberDBRepository extends DBRepository<Member>{
 
     /**
      * Deletes a member and their associated data from the database.
-     * <p>This method deletes the member from the `member` table and also removes any associations in
-     * the `member_FitnessClass` table that link the member to fitness classes.</p>
+     * <p>The member and their associations in the `member_FitnessClass` table are removed in one transaction, see
+     * {@link #deleteAll(int...)}.</p>
      * @param id The ID of the member to be deleted.
      * @throws RuntimeException If there is an error executing the SQL queries or deleting the data.
      */
     @Override
     public void delete(int id) {
-        String sql = "DELETE FROM member WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setInt(1,id);
-            statement.execute();
+        deleteAll(id);
+    }
+
+    /**
+     * Inserts the given members in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The members to be created.
+     */
+    @Override
+    public void createAll(Collection<Member> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, INSERT_SQL, objs, MemberDBRepository::bindInsert));
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to delete member", e);
+            throw new RuntimeException("Failed to create members", e);
         }
-        String sql2 = "DELETE FROM member_FitnessClass WHERE memberID=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql2)){
-            statement.setInt(1,id);
-            statement.execute();
+    }
+
+    /**
+     * Updates the given members in a single transaction, sending the rows to the database in JDBC batches.
+     * If the version of one of them no longer matches its row, the whole transaction is rolled back.
+     * @param objs The members containing updated information.
+     * @throws ConcurrentModificationException If one of the members was changed or deleted since it was read.
+     */
+    @Override
+    public void updateAll(Collection<Member> objs) {
+        try {
+            inTransaction(connection -> checkVersions(objs,
+                    executeBatch(connection, UPDATE_SQL, objs, MemberDBRepository::bindUpdate)));
+            objs.forEach(obj -> {
+                obj.setVersion(obj.getVersion() + 1);
+                remember(obj);
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update members", e);
+        }
+    }
+
+    /**
+     * Deletes the members with the given IDs in a single transaction, sending the rows to the database in JDBC batches.
+     * Their associations in the `member_FitnessClass` table are deleted before the members.
+     * @param ids The IDs of the members to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        for (int id : ids) {
+            forget(Member.class, id);
+        }
+        try {
+            inTransaction(connection -> {
+                executeBatch(connection, "DELETE FROM member_FitnessClass WHERE memberID=?", ids);
+                executeBatch(connection, "DELETE FROM member WHERE id=?", ids);
+            });
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to delete member", e);
+            throw new RuntimeException("Failed to delete members", e);
         }
     }
 
     /**
      * Retrieves all members from the database.
-     * <p>This method queries the `member` table and returns a list of all members. Each member is
-     * constructed using the data retrieved from the database.</p>
+     * <p>This method queries the `member` table and returns a list of all members. Memberships and enrolled fitness
+     * classes are loaded in bulk for the whole list instead of once per member, so the number of queries does not
+     * grow with the number of members.</p>
      * @return A list of all `Member` objects from the database.
      * @throws RuntimeException If there is an error executing the SQL query or retrieving the data.
      */
     @Override
     public List<Member> getAll() {
         String sql = "SELECT * FROM member";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)){
             ResultSet resultSet = statement.executeQuery();
-            List<Member> members = new ArrayList<>();
-            while(resultSet.next()){
-                members.add(extractFromResultSet(resultSet));
+            Map<Integer, Member> members = extractAllFromResultSet(resultSet);
+            if (!members.isEmpty()) {
+                List<int[]> links = FitnessClassDBRepository.readLinks(connection,
+                        "SELECT memberID, classID FROM member_fitnessClass WHERE memberID = ANY(?)", members.keySet());
+                Set<Integer> classIds = new HashSet<>();
+                for (int[] link : links) {
+                    classIds.add(link[1]);
+                }
+                Map<Integer, FitnessClass> fitnessClasses = context.getFitnessClassRepository().readByIds(classIds);
+                for (int[] link : links) {
+                    FitnessClass fitnessClass = fitnessClasses.get(link[1]);
+                    List<FitnessClass> memberClasses = members.get(link[0]).getFitnessClasses();
+                    if (fitnessClass != null && !memberClasses.contains(fitnessClass)) {
+                        memberClasses.add(fitnessClass);
+                    }
+                }
             }
-            return members;
+            return new ArrayList<>(members.values());
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve all members", e);
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Retrieves the members whose IDs are in the given collection, with their memberships, using one query for the
+     * members and one for the memberships.
+     * <p>The fitness class lists of newly read members are left empty: this method is used while loading fitness
+     * classes in bulk, and the caller links the members to the classes it has loaded. Members already materialised in
+     * the current identity scope are returned as they are.</p>
+     * @param ids The IDs of the members to retrieve.
+     * @return A map from ID to `Member` for every ID that exists in the database.
+     * @throws RuntimeException If there is an error executing the SQL query or retrieving the data.
+     */
+    Map<Integer, Member> readByIds(Collection<Integer> ids) {
+        Map<Integer, Member> members = new LinkedHashMap<>();
+        Set<Integer> missing = takeCached(Member.class, ids, members);
+        if (missing.isEmpty()) {
+            return members;
+        }
+        String sql = "SELECT * FROM member WHERE id = ANY(?)";
+        DBRepositoryContext.Scope scope = context.openIdentityScope();
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)){
+            setIdArray(connection, statement, 1, missing);
+            members.putAll(extractAllFromResultSet(statement.executeQuery()));
+            return members;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve members by id", e);
+        } finally {
+            scope.close();
         }
     }
 
+    /**
+     * Extracts every row of a `ResultSet` into `Member` objects and loads their memberships with a single query.
+     * The fitness class lists are left empty.
+     * @param resultSet The `ResultSet` containing the member rows.
+     * @return A map from ID to `Member`, in the order returned by the database.
+     * @throws SQLException If there is an error accessing the data in the `ResultSet`.
+     */
+    private Map<Integer, Member> extractAllFromResultSet(ResultSet resultSet) throws SQLException {
+        Map<Integer, Member> members = new LinkedHashMap<>();
+        Map<Integer, Integer> membershipIds = new HashMap<>();
+        while(resultSet.next()){
+            Member known = cached(Member.class, resultSet.getInt("id"));
+            if (known != null) {
+                members.put(known.getId(), known);
+                continue;
+            }
+            Member member = new Member(
+                    resultSet.getString("name"),
+                    resultSet.getString("password"),
+                    resultSet.getTimestamp("registrationDate").toLocalDateTime(),
+                    null,
+                    new ArrayList<>()
+            );
+            member.setId(resultSet.getInt("id"));
+            member.setVersion(resultSet.getInt("version"));
+            members.put(member.getId(), remember(member));
+            membershipIds.put(member.getId(), resultSet.getInt("membership"));
+        }
+        Map<Integer, Membership> memberships =
+                context.getMembershipRepository().readByIds(new HashSet<>(membershipIds.values()));
+        membershipIds.forEach((memberId, membershipId) -> members.get(memberId).setMembership(memberships.get(membershipId)));
+        return members;
+    }
+
     /**
      * Extracts a `Member` object from the provided `ResultSet`.
      * <p>This method reads data from a `ResultSet` and constructs a `Member` object using the values
      * from the database. It also retrieves the related `Membership` and `FitnessClass` objects for
-     * the member.</p>
+     * the member. If the member has already been materialised in the current identity scope, that instance is
+     * returned instead.</p>
      * @param resultSet The `ResultSet` containing the member data.
      * @return A `Member` object populated with the data from the `ResultSet`.
      * @throws SQLException If there is an error accessing the data in the `ResultSet`.
      */
     public Member extractFromResultSet(ResultSet resultSet) throws SQLException {
-        Membership membership = membershipDBRepository.read(resultSet.getInt("membership"));
-        ArrayList<FitnessClass> fitnessClasses = getMemberFitnessClasses(resultSet.getInt("id"));
+        Member known = cached(Member.class, resultSet.getInt("id"));
+        if (known != null) {
+            return known;
+        }
+        Membership membership = context.getMembershipRepository().read(resultSet.getInt("membership"));
         Member member = new Member(
                 resultSet.getString("name"),
                 resultSet.getString("password"),
@@ -171,8 +301,11 @@ public class MemberDBRepository extends DBRepository<Member>{
                 membership,
                 new ArrayList<>()
         );
-        member.setFitnessClasses(fitnessClasses);
         member.setId(resultSet.getInt("id"));
+        member.setVersion(resultSet.getInt("version"));
+        // registered before the classes are loaded, so the classes listing this member reuse this instance
+        remember(member);
+        member.setFitnessClasses(getMemberFitnessClasses(member.getId()));
         return member;
     }
 
@@ -188,18 +321,36 @@ public class MemberDBRepository extends DBRepository<Member>{
         ArrayList<FitnessClass> fitnessClasses = new ArrayList<>();
         String sqlMembersClasses =
                 "SELECT fc.id, fc.name, fc.startTime, fc.endTime, fc.trainer, fc.room, fc.participantsCount, " +
-                        "fc.location" +
+                        "fc.location, fc.version" +
                         " FROM fitnessClass as fc "
                         + "where id in (SELECT member_fitnessClass.classID FROM member_fitnessClass WHERE memberID = ?)";
-        try(PreparedStatement statementMembersClasses = connection.prepareStatement(sqlMembersClasses)){
+        try(Connection connection = getConnection(); PreparedStatement statementMembersClasses = connection.prepareStatement(sqlMembersClasses)){
             statementMembersClasses.setInt(1, id);
             ResultSet resultSetMembersClasses = statementMembersClasses.executeQuery();
             while(resultSetMembersClasses.next()){
-                fitnessClasses.add(fitnessClassDBRepository.extractFromResultSet(resultSetMembersClasses));
+                fitnessClasses.add(context.getFitnessClassRepository().extractFromResultSet(resultSetMembersClasses));
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
         return fitnessClasses;
     }
+
+    private static void bindInsert(PreparedStatement statement, Member obj) throws SQLException {
+        statement.setInt(1,obj.getId());
+        statement.setString(2,obj.getName());
+        statement.setString(3,obj.getPassword());
+        statement.setTimestamp(4, Timestamp.valueOf(obj.getRegistrationDate()));
+        statement.setInt(5,obj.getMembership().getId());
+        statement.setInt(6,obj.getVersion());
+    }
+
+    private static void bindUpdate(PreparedStatement statement, Member obj) throws SQLException {
+        statement.setString(1,obj.getName());
+        statement.setString(2,obj.getPassword());
+        statement.setTimestamp(3, Timestamp.valueOf(obj.getRegistrationDate()));
+        statement.setInt(4,obj.getMembership().getId());
+        statement.setInt(5,obj.getId());
+        statement.setInt(6,obj.getVersion());
+    }
 }
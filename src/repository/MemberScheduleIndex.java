@@ -0,0 +1,23 @@
+package repository;
+
+import model.FitnessClass;
+import model.Member;
+
+/**
+ * Keeps the time slots of the fitness classes per registered member, to detect overlapping registrations and to show
+ * a member's timetable without loading their classes.
+ */
+public class MemberScheduleIndex extends IntervalIndex {
+
+    @Override
+    protected int[] owners(FitnessClass fitnessClass) {
+        if (fitnessClass.getMembers() == null) {
+            return new int[0];
+        }
+        return fitnessClass.getMembers().stream()
+                .filter(member -> member != null)
+                .mapToInt(Member::getId)
+                .distinct()
+                .toArray();
+    }
+}
@@ -2,23 +2,28 @@ package repository;
 
 import model.Membership;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class MembershipDBRepository extends DBRepository<Membership> {
 
+    private static final String INSERT_SQL = "INSERT INTO membership (id, type, price) VALUES (?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE membership SET type = ?, price = ? WHERE id = ?";
+
     /**
-     * Constructs a DBRepository instance with the provided database connection details.
-     * Establishes a connection to the database using the specified URL, user, and password.
-     * @param dbUrl      The URL of the database to connect to.
-     * @param dbUser     The username to use when connecting to the database.
-     * @param dbPassword The password to use when connecting to the database.
+     * Constructs a MembershipDBRepository that borrows its connections from the given repository context.
+     * @param context The repository context providing the connection pool and the related repositories.
      */
-    public MembershipDBRepository(String dbUrl, String dbUser, String dbPassword) {
-        super(dbUrl, dbUser, dbPassword);
+    public MembershipDBRepository(DBRepositoryContext context) {
+        super(context);
     }
 
     /**
@@ -29,11 +34,8 @@ public class MembershipDBRepository extends DBRepository<Membership> {
      */
     @Override
     public void create(Membership obj) {
-        String sql = "INSERT INTO membership (id, type, price) VALUES (?, ?, ?)";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setInt(1,obj.getId());
-            statement.setString(2,obj.getType());
-            statement.setFloat(3,obj.getPrice());
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(INSERT_SQL)){
+            bindInsert(statement, obj);
             statement.execute();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create membership", e);
@@ -48,12 +50,16 @@ public class MembershipDBRepository extends DBRepository<Membership> {
      */
     @Override
     public Membership read(int id) {
+        Membership known = cached(Membership.class, id);
+        if (known != null) {
+            return known;
+        }
         String sql = "SELECT * FROM membership WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
-                return extractFromResultSet(resultSet);
+                return remember(extractFromResultSet(resultSet));
             } else {
                 return null;
             }
@@ -69,12 +75,10 @@ public class MembershipDBRepository extends DBRepository<Membership> {
      */
     @Override
     public void update(Membership obj) {
-        String sql = "UPDATE membership SET type = ?, price = ? WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, obj.getType());
-            statement.setFloat(2, obj.getPrice());
-            statement.setInt(3, obj.getId());
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+            bindUpdate(statement, obj);
             statement.execute();
+            remember(obj);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update membership", e);
         }
@@ -87,8 +91,9 @@ public class MembershipDBRepository extends DBRepository<Membership> {
      */
     @Override
     public void delete(int id) {
+        forget(Membership.class, id);
         String sql = "DELETE FROM membership WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             statement.execute();
         } catch (SQLException e) {
@@ -96,6 +101,49 @@ public class MembershipDBRepository extends DBRepository<Membership> {
         }
     }
 
+    /**
+     * Inserts the given memberships in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The memberships to be created.
+     */
+    @Override
+    public void createAll(Collection<Membership> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, INSERT_SQL, objs, MembershipDBRepository::bindInsert));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to create memberships", e);
+        }
+    }
+
+    /**
+     * Updates the given memberships in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The memberships containing updated information.
+     */
+    @Override
+    public void updateAll(Collection<Membership> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, UPDATE_SQL, objs, MembershipDBRepository::bindUpdate));
+            objs.forEach(this::remember);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update memberships", e);
+        }
+    }
+
+    /**
+     * Deletes the memberships with the given IDs in a single transaction, sending the rows to the database in JDBC batches.
+     * @param ids The IDs of the memberships to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        for (int id : ids) {
+            forget(Membership.class, id);
+        }
+        try {
+            inTransaction(connection -> executeBatch(connection, "DELETE FROM membership WHERE id = ?", ids));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete memberships", e);
+        }
+    }
+
     /**
      * Retrieves all memberships from the database.
      * @return A list of all Membership objects stored in the database.
@@ -104,7 +152,7 @@ public class MembershipDBRepository extends DBRepository<Membership> {
     @Override
     public List<Membership> getAll() {
         String sql = "SELECT * FROM membership";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet resultSet = statement.executeQuery();
             List<Membership> memberships = new ArrayList<>();
             while (resultSet.next()) {
@@ -116,6 +164,33 @@ public class MembershipDBRepository extends DBRepository<Membership> {
         }
     }
 
+    /**
+     * Retrieves all memberships whose IDs are in the given collection with a single query.
+     * Used when loading lists of related entities, so that a listing does not issue one query per row.
+     * @param ids The IDs of the memberships to retrieve.
+     * @return A map from ID to Membership for every ID that exists in the database.
+     * @throws RuntimeException If a SQL error occurs while retrieving the data.
+     */
+    public Map<Integer, Membership> readByIds(Collection<Integer> ids) {
+        Map<Integer, Membership> memberships = new HashMap<>();
+        Set<Integer> missing = takeCached(Membership.class, ids, memberships);
+        if (missing.isEmpty()) {
+            return memberships;
+        }
+        String sql = "SELECT * FROM membership WHERE id = ANY(?)";
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            setIdArray(connection, statement, 1, missing);
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                Membership membership = remember(extractFromResultSet(resultSet));
+                memberships.put(membership.getId(), membership);
+            }
+            return memberships;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve memberships by id", e);
+        }
+    }
+
     /**
      * Extracts a Membership object from a ResultSet row.
      * @param resultSet The ResultSet containing the database row.
@@ -130,4 +205,16 @@ public class MembershipDBRepository extends DBRepository<Membership> {
         membership.setId(resultSet.getInt("id"));
         return membership;
     }
-}
\ No newline at end of file
+
+    private static void bindInsert(PreparedStatement statement, Membership obj) throws SQLException {
+        statement.setInt(1,obj.getId());
+        statement.setString(2,obj.getType());
+        statement.setFloat(3,obj.getPrice());
+    }
+
+    private static void bindUpdate(PreparedStatement statement, Membership obj) throws SQLException {
+        statement.setString(1, obj.getType());
+        statement.setFloat(2, obj.getPrice());
+        statement.setInt(3, obj.getId());
+    }
+}
@@ -0,0 +1,364 @@
+package repository;
+
+import model.FitnessClass;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregates how the rooms and locations are used by the fitness classes, per calendar month, for the occupancy and
+ * utilisation analytics.
+ * <p>The classes are kept in one bucket per month of their start time. The first time a month is queried, its
+ * classes are copied into a columnar snapshot (one primitive array per field) and aggregated on the common fork/join
+ * pool; the result is cached until a class of that month is added, changed or removed. A query over a range of months
+ * merges the cached buckets, computing the missing ones in parallel, so a year of history costs twelve merges once
+ * its months are cached.</p>
+ * <p>Per room the aggregate holds the booked minutes, the number of classes, the registered participants and the
+ * seats offered (the room capacity, once per class). Per location it holds a heatmap of the participant-minutes in
+ * every hour of the week, Monday 0:00 first. Classes without a start time, end time or room are not counted. Times are
+ * taken as local times, as they are stored. The capacity is taken from the room of each class when the class is
+ * indexed; {@link #setRoomCapacity(int, int)} updates it when the room changes.</p>
+ */
+public class OccupancyIndex implements RepositoryIndex<FitnessClass> {
+
+    /**
+     * The number of hour slots in a heatmap: 7 days of 24 hours.
+     */
+    public static final int HOURS_PER_WEEK = 7 * 24;
+
+    /**
+     * Snapshots are split among fork/join tasks until a task has at most this many classes.
+     */
+    private static final int CLASSES_PER_TASK = 1024;
+
+    private static final int MINUTES_PER_HOUR = 60;
+    private static final int MINUTES_PER_DAY = 24 * MINUTES_PER_HOUR;
+
+    /**
+     * 1970-01-01, epoch day 0, was a Thursday: day 3 of a week starting on Monday.
+     */
+    private static final int EPOCH_DAY_OF_WEEK = 3;
+
+    private final Map<YearMonth, Map<Integer, Row>> rowsByMonth = new HashMap<>();
+    private final Map<Integer, YearMonth> monthOfClass = new HashMap<>();
+    private final Map<YearMonth, Long> versions = new HashMap<>();
+    private final Map<YearMonth, Occupancy> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a class to the bucket of the month it starts in, moving it if it has moved to another month, and drops the
+     * cached aggregates of the months involved.
+     * @param fitnessClass The class in its current state.
+     */
+    @Override
+    public synchronized void put(FitnessClass fitnessClass) {
+        remove(fitnessClass.getId());
+        LocalDateTime start = fitnessClass.getStartTime();
+        LocalDateTime end = fitnessClass.getEndTime();
+        if (start == null || end == null || fitnessClass.getRoom() == null) {
+            return;
+        }
+        Integer locationId = fitnessClass.getLocation() != null ? Integer.valueOf(fitnessClass.getLocation().getId())
+                : fitnessClass.getRoom().getLocation() != null ? Integer.valueOf(fitnessClass.getRoom().getLocation().getId())
+                : null;
+        Row row = new Row(minute(start), Math.max(minute(start), minute(end)), fitnessClass.getRoom().getId(),
+                locationId, fitnessClass.getParticipantsCount(), fitnessClass.getRoom().getMaxCapacity());
+        YearMonth month = YearMonth.from(start);
+        rowsByMonth.computeIfAbsent(month, key -> new HashMap<>()).put(fitnessClass.getId(), row);
+        monthOfClass.put(fitnessClass.getId(), month);
+        invalidate(month);
+    }
+
+    /**
+     * Removes a class from its month and drops the cached aggregate of that month.
+     * @param id The ID of the removed class.
+     */
+    @Override
+    public synchronized void remove(int id) {
+        YearMonth month = monthOfClass.remove(id);
+        if (month == null) {
+            return;
+        }
+        Map<Integer, Row> rows = rowsByMonth.get(month);
+        rows.remove(id);
+        if (rows.isEmpty()) {
+            rowsByMonth.remove(month);
+        }
+        invalidate(month);
+    }
+
+    /**
+     * Records a new capacity of a room in the classes held in it, and drops the cached aggregates of their months, so
+     * that fill rates follow changes to the room. Costs O(number of indexed classes).
+     * @param roomId   The ID of the room.
+     * @param capacity The new capacity of the room.
+     */
+    public synchronized void setRoomCapacity(int roomId, int capacity) {
+        for (Map.Entry<YearMonth, Map<Integer, Row>> month : rowsByMonth.entrySet()) {
+            boolean changed = false;
+            for (Map.Entry<Integer, Row> entry : month.getValue().entrySet()) {
+                Row row = entry.getValue();
+                if (row.roomId() == roomId && row.capacity() != capacity) {
+                    entry.setValue(new Row(row.start(), row.end(), roomId, row.locationId(), row.participants(), capacity));
+                    changed = true;
+                }
+            }
+            if (changed) {
+                invalidate(month.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the usage of the rooms and locations by the classes starting in the given months.
+     * @param from The first month, inclusive.
+     * @param to   The last month, inclusive.
+     * @return The merged aggregates of the months.
+     * @throws IllegalArgumentException If the last month is before the first.
+     */
+    public Occupancy occupancy(YearMonth from, YearMonth to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("The last month cannot be before the first month.");
+        }
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        Accumulator total = new Accumulator();
+        months.parallelStream().map(this::occupancyOf).toList().forEach(total::add);
+        return total.toOccupancy();
+    }
+
+    private Occupancy occupancyOf(YearMonth month) {
+        Occupancy cached = cache.get(month);
+        if (cached != null) {
+            return cached;
+        }
+        Columns columns;
+        long version;
+        synchronized (this) {
+            columns = new Columns(rowsByMonth.getOrDefault(month, Map.of()).values());
+            version = versions.getOrDefault(month, 0L);
+        }
+        Occupancy occupancy = ForkJoinPool.commonPool()
+                .invoke(new AggregateTask(columns, 0, columns.size)).toOccupancy();
+        synchronized (this) {
+            if (versions.getOrDefault(month, 0L) == version) {
+                cache.put(month, occupancy);
+            }
+        }
+        return occupancy;
+    }
+
+    private void invalidate(YearMonth month) {
+        versions.merge(month, 1L, Long::sum);
+        cache.remove(month);
+    }
+
+    private static long minute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * The usage of the rooms and locations over some months.
+     * @param rooms     The usage of each room, by room ID.
+     * @param peakHours The participant-minutes in each hour of the week, Monday 0:00 first, by location ID.
+     */
+    public record Occupancy(Map<Integer, RoomUsage> rooms, Map<Integer, long[]> peakHours) {
+
+        /**
+         * Returns the heatmaps of the locations. The arrays are copies, so changing them affects neither this
+         * occupancy nor the aggregates cached by the index.
+         * @return The participant-minutes in each hour of the week, Monday 0:00 first, by location ID.
+         */
+        @Override
+        public Map<Integer, long[]> peakHours() {
+            Map<Integer, long[]> heatmaps = new HashMap<>();
+            peakHours.forEach((locationId, heatmap) -> heatmaps.put(locationId, heatmap.clone()));
+            return Collections.unmodifiableMap(heatmaps);
+        }
+    }
+
+    /**
+     * The usage of one room.
+     * @param roomId        The ID of the room.
+     * @param locationId    The ID of the location of the room's classes, or null if they have none.
+     * @param bookedMinutes The total length of the room's classes.
+     * @param classes       The number of classes held in the room.
+     * @param participants  The number of participants registered for those classes.
+     * @param seats         The room capacity summed over those classes.
+     */
+    public record RoomUsage(int roomId, Integer locationId, long bookedMinutes, long classes, long participants,
+                            long seats) {
+
+        /**
+         * Returns the share of the offered seats that were taken.
+         * @return participants / seats, or 0 if no seats were offered.
+         */
+        public double fillRate() {
+            return seats == 0 ? 0 : (double) participants / seats;
+        }
+    }
+
+    private record Row(long start, long end, int roomId, Integer locationId, int participants, int capacity) {
+    }
+
+    /**
+     * The classes of one month as parallel primitive arrays, so the aggregation scans contiguous memory.
+     */
+    private static final class Columns {
+        final int size;
+        final long[] start;
+        final long[] end;
+        final int[] roomId;
+        final int[] locationId;
+        final boolean[] hasLocation;
+        final int[] participants;
+        final int[] capacity;
+
+        Columns(Collection<Row> rows) {
+            size = rows.size();
+            start = new long[size];
+            end = new long[size];
+            roomId = new int[size];
+            locationId = new int[size];
+            hasLocation = new boolean[size];
+            participants = new int[size];
+            capacity = new int[size];
+            int i = 0;
+            for (Row row : rows) {
+                start[i] = row.start();
+                end[i] = row.end();
+                roomId[i] = row.roomId();
+                hasLocation[i] = row.locationId() != null;
+                locationId[i] = hasLocation[i] ? row.locationId() : 0;
+                participants[i] = row.participants();
+                capacity[i] = row.capacity();
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Aggregates a range of a snapshot, splitting it in halves until it is small and merging the halves.
+     */
+    private static final class AggregateTask extends RecursiveTask<Accumulator> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Columns columns;
+        private final int from;
+        private final int to;
+
+        AggregateTask(Columns columns, int from, int to) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from <= CLASSES_PER_TASK) {
+                Accumulator accumulator = new Accumulator();
+                for (int i = from; i < to; i++) {
+                    accumulator.add(columns, i);
+                }
+                return accumulator;
+            }
+            int middle = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(columns, from, middle);
+            left.fork();
+            Accumulator right = new AggregateTask(columns, middle, to).compute();
+            Accumulator merged = left.join();
+            merged.add(right);
+            return merged;
+        }
+    }
+
+    /**
+     * Mutable partial aggregate of some classes or months.
+     */
+    private static final class Accumulator {
+        final Map<Integer, long[]> rooms = new HashMap<>();
+        final Map<Integer, Integer> roomLocations = new HashMap<>();
+        final Map<Integer, long[]> peakHours = new HashMap<>();
+
+        void add(Columns columns, int i) {
+            long minutes = columns.end[i] - columns.start[i];
+            Integer locationId = columns.hasLocation[i] ? columns.locationId[i] : null;
+            addRoom(columns.roomId[i], locationId, minutes, 1, columns.participants[i], columns.capacity[i]);
+            if (locationId == null || columns.participants[i] == 0) {
+                return;
+            }
+            long[] heatmap = peakHours.computeIfAbsent(locationId, key -> new long[HOURS_PER_WEEK]);
+            for (long minute = columns.start[i]; minute < columns.end[i]; ) {
+                long hourEnd = Math.min(columns.end[i], (Math.floorDiv(minute, MINUTES_PER_HOUR) + 1) * MINUTES_PER_HOUR);
+                heatmap[hourOfWeek(minute)] += (hourEnd - minute) * columns.participants[i];
+                minute = hourEnd;
+            }
+        }
+
+        void add(Accumulator other) {
+            for (Map.Entry<Integer, long[]> room : other.rooms.entrySet()) {
+                long[] usage = room.getValue();
+                addRoom(room.getKey(), other.roomLocations.get(room.getKey()), usage[0], usage[1], usage[2], usage[3]);
+            }
+            other.peakHours.forEach(this::addPeakHours);
+        }
+
+        void add(Occupancy occupancy) {
+            for (RoomUsage room : occupancy.rooms().values()) {
+                addRoom(room.roomId(), room.locationId(), room.bookedMinutes(), room.classes(), room.participants(),
+                        room.seats());
+            }
+            occupancy.peakHours.forEach(this::addPeakHours);
+        }
+
+        Occupancy toOccupancy() {
+            Map<Integer, RoomUsage> roomUsage = new HashMap<>();
+            for (Map.Entry<Integer, long[]> room : rooms.entrySet()) {
+                long[] usage = room.getValue();
+                roomUsage.put(room.getKey(), new RoomUsage(room.getKey(), roomLocations.get(room.getKey()), usage[0],
+                        usage[1], usage[2], usage[3]));
+            }
+            Map<Integer, long[]> heatmaps = new HashMap<>();
+            peakHours.forEach((locationId, heatmap) -> heatmaps.put(locationId, Arrays.copyOf(heatmap, HOURS_PER_WEEK)));
+            return new Occupancy(Collections.unmodifiableMap(roomUsage), Collections.unmodifiableMap(heatmaps));
+        }
+
+        private void addRoom(int roomId, Integer locationId, long minutes, long classes, long participants, long seats) {
+            long[] usage = rooms.computeIfAbsent(roomId, key -> new long[4]);
+            usage[0] += minutes;
+            usage[1] += classes;
+            usage[2] += participants;
+            usage[3] += seats;
+            if (locationId != null) {
+                roomLocations.put(roomId, locationId);
+            }
+        }
+
+        private void addPeakHours(int locationId, long[] other) {
+            long[] heatmap = peakHours.computeIfAbsent(locationId, key -> new long[HOURS_PER_WEEK]);
+            for (int hour = 0; hour < HOURS_PER_WEEK; hour++) {
+                heatmap[hour] += other[hour];
+            }
+        }
+
+        private static int hourOfWeek(long minute) {
+            long day = Math.floorDiv(minute, MINUTES_PER_DAY);
+            int dayOfWeek = Math.floorMod(day + EPOCH_DAY_OF_WEEK, 7);
+            int hour = Math.floorMod(minute, MINUTES_PER_DAY) / MINUTES_PER_HOUR;
+            return dayOfWeek * 24 + hour;
+        }
+    }
+}
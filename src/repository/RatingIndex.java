@@ -0,0 +1,230 @@
+package repository;
+
+import model.Feedback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Keeps running rating aggregates per fitness class and per trainer, so that averages, spreads and rankings are read
+ * in O(1) instead of loading and averaging every piece of feedback.
+ * <p>Each aggregate holds the number of ratings, their sum, the sum of their squares and a histogram of the ratings 1
+ * to 5. Feedback counts towards the current trainer of its class, as kept by a {@link ClassTrainerIndex} on the class
+ * repository; when a class changes hands, its ratings move to the new trainer. Feedback on a class the class trainer
+ * index does not know counts towards the trainer of the class the feedback refers to. Ratings outside 1 to 5 count
+ * towards the sums but not the histogram. All methods are synchronized, so a reader never sees half an update.</p>
+ */
+public class RatingIndex implements RepositoryIndex<Feedback> {
+
+    private final ClassTrainerIndex classTrainers;
+    private final Map<Integer, Aggregate> byClass = new HashMap<>();
+    private final Map<Integer, Aggregate> byTrainer = new HashMap<>();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<Integer, Set<Integer>> feedbackByClass = new HashMap<>();
+
+    /**
+     * Constructs an empty RatingIndex that follows the trainers of the classes through the given index.
+     * @param classTrainers The index of the class trainers, added to the fitness class repository.
+     */
+    public RatingIndex(ClassTrainerIndex classTrainers) {
+        this.classTrainers = classTrainers;
+        classTrainers.addListener(this::trainerChanged);
+    }
+
+    /**
+     * Adds the rating of a feedback to the aggregates of its class and trainer, replacing its previous rating.
+     * @param feedback The feedback in its current state.
+     */
+    @Override
+    public synchronized void put(Feedback feedback) {
+        remove(feedback.getId());
+        if (feedback.getFitnessClass() == null) {
+            return;
+        }
+        int classId = feedback.getFitnessClass().getId();
+        Integer trainerId = classTrainers.contains(classId) ? classTrainers.trainerOf(classId)
+                : feedback.getFitnessClass().getTrainer() == null ? null : feedback.getFitnessClass().getTrainer().getId();
+        Entry entry = new Entry(classId, trainerId, feedback.getRating());
+        byClass.computeIfAbsent(classId, key -> new Aggregate()).add(entry.rating(), 1);
+        if (trainerId != null) {
+            byTrainer.computeIfAbsent(trainerId, key -> new Aggregate()).add(entry.rating(), 1);
+        }
+        feedbackByClass.computeIfAbsent(classId, key -> new HashSet<>()).add(feedback.getId());
+        entries.put(feedback.getId(), entry);
+    }
+
+    /**
+     * Removes the rating of a feedback from the aggregates of its class and trainer.
+     * @param id The ID of the removed feedback.
+     */
+    @Override
+    public synchronized void remove(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        subtract(byClass, entry.classId(), entry.rating());
+        if (entry.trainerId() != null) {
+            subtract(byTrainer, entry.trainerId(), entry.rating());
+        }
+        Set<Integer> classFeedback = feedbackByClass.get(entry.classId());
+        classFeedback.remove(id);
+        if (classFeedback.isEmpty()) {
+            feedbackByClass.remove(entry.classId());
+        }
+    }
+
+    /**
+     * Moves the ratings of a fitness class to its current trainer. Costs O(number of ratings of the class).
+     */
+    private synchronized void trainerChanged(int classId) {
+        if (!classTrainers.contains(classId)) {
+            return;
+        }
+        Integer trainerId = classTrainers.trainerOf(classId);
+        for (int feedbackId : feedbackByClass.getOrDefault(classId, Set.of())) {
+            Entry entry = entries.get(feedbackId);
+            if (Objects.equals(entry.trainerId(), trainerId)) {
+                continue;
+            }
+            if (entry.trainerId() != null) {
+                subtract(byTrainer, entry.trainerId(), entry.rating());
+            }
+            if (trainerId != null) {
+                byTrainer.computeIfAbsent(trainerId, key -> new Aggregate()).add(entry.rating(), 1);
+            }
+            entries.put(feedbackId, new Entry(classId, trainerId, entry.rating()));
+        }
+    }
+
+    /**
+     * Returns the rating aggregate of a fitness class.
+     * @param classId The ID of the class.
+     * @return The aggregate, with a count of 0 if the class has no feedback.
+     */
+    public synchronized RatingStats forClass(int classId) {
+        return stats(byClass.get(classId));
+    }
+
+    /**
+     * Returns the rating aggregate of a trainer over the feedback on all their classes.
+     * @param trainerId The ID of the trainer.
+     * @return The aggregate, with a count of 0 if the trainer has no feedback.
+     */
+    public synchronized RatingStats forTrainer(int trainerId) {
+        return stats(byTrainer.get(trainerId));
+    }
+
+    /**
+     * Returns the IDs of the trainers with at least the given number of ratings, best average first. Only the
+     * aggregates are looked at, one per trainer.
+     * @param minCount The minimum number of ratings a trainer needs to be ranked.
+     * @return The trainer IDs, best average first; ties are ordered by the number of ratings, then by ID.
+     */
+    public synchronized List<Integer> trainersByAverage(int minCount) {
+        List<Integer> trainerIds = new ArrayList<>();
+        for (Map.Entry<Integer, Aggregate> entry : byTrainer.entrySet()) {
+            if (entry.getValue().count >= Math.max(1, minCount)) {
+                trainerIds.add(entry.getKey());
+            }
+        }
+        trainerIds.sort((a, b) -> {
+            Aggregate first = byTrainer.get(a);
+            Aggregate second = byTrainer.get(b);
+            int byAverage = Double.compare((double) second.sum / second.count, (double) first.sum / first.count);
+            if (byAverage != 0) {
+                return byAverage;
+            }
+            int byCount = Long.compare(second.count, first.count);
+            return byCount != 0 ? byCount : Integer.compare(a, b);
+        });
+        return trainerIds;
+    }
+
+    private static void subtract(Map<Integer, Aggregate> aggregates, int key, int rating) {
+        Aggregate aggregate = aggregates.get(key);
+        aggregate.add(rating, -1);
+        if (aggregate.count == 0) {
+            aggregates.remove(key);
+        }
+    }
+
+    private static RatingStats stats(Aggregate aggregate) {
+        if (aggregate == null) {
+            return new RatingStats(0, 0, 0, new long[RatingStats.MAX_RATING]);
+        }
+        return new RatingStats(aggregate.count, aggregate.sum, aggregate.sumOfSquares, aggregate.histogram.clone());
+    }
+
+    /**
+     * A snapshot of the ratings of a class or trainer.
+     * @param count        The number of ratings.
+     * @param sum          The sum of the ratings.
+     * @param sumOfSquares The sum of the squared ratings.
+     * @param histogram    The number of ratings of 1 to 5, at index 0 to 4.
+     */
+    public record RatingStats(long count, long sum, long sumOfSquares, long[] histogram) {
+
+        /**
+         * The highest rating counted in the histogram; the lowest is 1.
+         */
+        public static final int MAX_RATING = 5;
+
+        /**
+         * Returns the average rating.
+         * @return The average, or 0 if there are no ratings.
+         */
+        public double average() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the population variance of the ratings.
+         * @return The variance, or 0 if there are no ratings.
+         */
+        public double variance() {
+            if (count == 0) {
+                return 0;
+            }
+            double average = average();
+            return Math.max(0, (double) sumOfSquares / count - average * average);
+        }
+
+        /**
+         * Returns the number of ratings with the given value.
+         * @param rating A rating from 1 to 5.
+         * @return The number of ratings with that value.
+         * @throws IllegalArgumentException If the rating is not between 1 and 5.
+         */
+        public long countOf(int rating) {
+            if (rating < 1 || rating > MAX_RATING) {
+                throw new IllegalArgumentException("Rating must be between 1 and " + MAX_RATING + ".");
+            }
+            return histogram[rating - 1];
+        }
+    }
+
+    private static final class Aggregate {
+        long count;
+        long sum;
+        long sumOfSquares;
+        final long[] histogram = new long[RatingStats.MAX_RATING];
+
+        void add(int rating, int sign) {
+            count += sign;
+            sum += (long) sign * rating;
+            sumOfSquares += (long) sign * rating * rating;
+            if (rating >= 1 && rating <= RatingStats.MAX_RATING) {
+                histogram[rating - 1] += sign;
+            }
+        }
+    }
+
+    private record Entry(int classId, Integer trainerId, int rating) {
+    }
+}
@@ -0,0 +1,24 @@
+package repository;
+
+import model.HasId;
+
+/**
+ * A secondary index over the entities of a repository, kept up to date by an {@link IndexedRepository}.
+ * Implementations must be safe to query while another thread updates them.
+ * @param <T> The type of the indexed entities.
+ */
+public interface RepositoryIndex<T extends HasId> {
+
+    /**
+     * Adds an entity to the index, replacing the entry previously indexed under its ID.
+     * The entity may have been changed in place since it was last indexed.
+     * @param obj The entity in its current state.
+     */
+    void put(T obj);
+
+    /**
+     * Removes the entry indexed under the given ID, if any.
+     * @param id The ID of the removed entity.
+     */
+    void remove(int id);
+}
@@ -3,11 +3,17 @@ package repository;
 import model.Location;
 import model.Room;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The RoomDBRepository class provides CRUD operations for the `Room` model using a relational database.
@@ -15,21 +21,16 @@ import java.util.List;
  */
 public class RoomDBRepository extends DBRepository<Room> {
 
-    // Instance of LocationDBRepository to interact with location-related data in the database
-    LocationDBRepository locationDBRepository;
+    private static final String INSERT_SQL = "INSERT INTO room (id, name, maxCapacity, location) VALUES(?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE room SET name=?, maxCapacity=?, location=? WHERE id=?";
 
     /**
-     * Constructs a DBRepository instance with the provided database connection details.
-     * It also initializes the LocationDBRepository to handle location data.
-     * Establishes a connection to the database using the specified URL, user, and password.
-     * @param dbUrl      The URL of the database to connect to.
-     * @param dbUser     The username to use when connecting to the database.
-     * @param dbPassword The password to use when connecting to the database.
-     * @throws RuntimeException If the connection cannot be established due to an SQLException.
+     * Constructs a RoomDBRepository that borrows its connections from the given repository context.
+     * The location of each room is loaded through the context's LocationDBRepository.
+     * @param context The repository context providing the connection pool and the related repositories.
      */
-    public RoomDBRepository(String dbUrl, String dbUser, String dbPassword) {
-        super(dbUrl, dbUser, dbPassword);
-        this.locationDBRepository = new LocationDBRepository(dbUrl, dbUser, dbPassword);
+    public RoomDBRepository(DBRepositoryContext context) {
+        super(context);
     }
 
     /**
@@ -40,12 +41,8 @@ public class RoomDBRepository extends DBRepository<Room> {
      */
     @Override
     public void create(Room obj) {
-        String sql = "INSERT INTO room (id, name, maxCapacity, location) VALUES(?, ?, ?, ?)";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setInt(1,obj.getId());
-            statement.setString(2,obj.getName());
-            statement.setInt(3,obj.getMaxCapacity());
-            statement.setInt(4,obj.getLocation().getId());
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(INSERT_SQL)){
+            bindInsert(statement, obj);
             statement.execute();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create room", e);
@@ -62,13 +59,17 @@ public class RoomDBRepository extends DBRepository<Room> {
      */
     @Override
     public Room read(int id) {
+        Room known = cached(Room.class, id);
+        if (known != null) {
+            return known;
+        }
         String sql = "SELECT * FROM room WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)){
             statement.setInt(1,id);
             ResultSet resultSet = statement.executeQuery();
             if(resultSet.next()){
-                Location location = locationDBRepository.read(resultSet.getInt("location"));
-                return extractFromResultSet(resultSet, location);
+                Location location = context.getLocationRepository().read(resultSet.getInt("location"));
+                return remember(extractFromResultSet(resultSet, location));
             } else {
                 return null;
             }
@@ -85,13 +86,10 @@ public class RoomDBRepository extends DBRepository<Room> {
      */
     @Override
     public void update(Room obj) {
-        String sql = "UPDATE room SET name=?, maxCapacity=?, locationID=? WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setString(1,obj.getName());
-            statement.setInt(2,obj.getMaxCapacity());
-            statement.setInt(3,obj.getLocation().getId());
-            statement.setInt(4,obj.getId());
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)){
+            bindUpdate(statement, obj);
             statement.execute();
+            remember(obj);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update room", e);
         }
@@ -105,8 +103,9 @@ public class RoomDBRepository extends DBRepository<Room> {
      */
     @Override
     public void delete(int id) {
+        forget(Room.class, id);
         String sql = "DELETE FROM room WHERE id=?";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)){
             statement.setInt(1,id);
             statement.execute();
         } catch (SQLException e) {
@@ -114,29 +113,107 @@ public class RoomDBRepository extends DBRepository<Room> {
         }
     }
 
+    /**
+     * Inserts the given rooms in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The rooms to be created.
+     */
+    @Override
+    public void createAll(Collection<Room> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, INSERT_SQL, objs, RoomDBRepository::bindInsert));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to create rooms", e);
+        }
+    }
+
+    /**
+     * Updates the given rooms in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The rooms containing updated information.
+     */
+    @Override
+    public void updateAll(Collection<Room> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, UPDATE_SQL, objs, RoomDBRepository::bindUpdate));
+            objs.forEach(this::remember);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update rooms", e);
+        }
+    }
+
+    /**
+     * Deletes the rooms with the given IDs in a single transaction, sending the rows to the database in JDBC batches.
+     * @param ids The IDs of the rooms to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        for (int id : ids) {
+            forget(Room.class, id);
+        }
+        try {
+            inTransaction(connection -> executeBatch(connection, "DELETE FROM room WHERE id=?", ids));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete rooms", e);
+        }
+    }
+
     /**
      * Retrieves all rooms from the database.
      * This method fetches all rooms present in the database and returns them as a list of Room objects.
-     * Each room object is populated with its associated location.
+     * Each room object is populated with its associated location; the locations are read with a single query.
      * @return A list of all rooms in the database.
      * @throws RuntimeException If an SQL error occurs during the fetch operation.
      */
     @Override
     public List<Room> getAll() {
         String sql = "SELECT * FROM room";
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
+        try(Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)){
             ResultSet resultSet = statement.executeQuery();
             List<Room> rooms = new ArrayList<>();
+            Map<Room, Integer> locationIds = new HashMap<>();
             while(resultSet.next()){
-                Location location = locationDBRepository.read(resultSet.getInt("location"));
-                rooms.add(extractFromResultSet(resultSet, location));
+                Room room = extractFromResultSet(resultSet, null);
+                locationIds.put(room, resultSet.getInt("location"));
+                rooms.add(room);
             }
+            Map<Integer, Location> locations = context.getLocationRepository().readByIds(new HashSet<>(locationIds.values()));
+            locationIds.forEach((room, locationId) -> room.setLocation(locations.get(locationId)));
             return rooms;
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve all rooms", e);
         }
     }
 
+    /**
+     * Retrieves all rooms whose IDs are in the given collection.
+     * The rooms are read with one query and their locations with one more, regardless of how many rooms are requested.
+     * @param ids The IDs of the rooms to retrieve.
+     * @return A map from ID to Room for every ID that exists in the database.
+     * @throws RuntimeException If an SQL error occurs during the fetch operation.
+     */
+    public Map<Integer, Room> readByIds(Collection<Integer> ids) {
+        Map<Integer, Room> rooms = new HashMap<>();
+        Set<Integer> missing = takeCached(Room.class, ids, rooms);
+        if (missing.isEmpty()) {
+            return rooms;
+        }
+        String sql = "SELECT * FROM room WHERE id = ANY(?)";
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            setIdArray(connection, statement, 1, missing);
+            ResultSet resultSet = statement.executeQuery();
+            Map<Room, Integer> locationIds = new HashMap<>();
+            while (resultSet.next()) {
+                Room room = remember(extractFromResultSet(resultSet, null));
+                locationIds.put(room, resultSet.getInt("location"));
+                rooms.put(room.getId(), room);
+            }
+            Map<Integer, Location> locations = context.getLocationRepository().readByIds(new HashSet<>(locationIds.values()));
+            locationIds.forEach((room, locationId) -> room.setLocation(locations.get(locationId)));
+            return rooms;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve rooms by id", e);
+        }
+    }
+
     /**
      * Extracts the Room object from a ResultSet.
      * This helper method creates a Room object from a row in the ResultSet and populates it with the necessary details.
@@ -154,4 +231,18 @@ public class RoomDBRepository extends DBRepository<Room> {
         room.setId(resultSet.getInt("id"));
         return room;
     }
-}
\ No newline at end of file
+
+    private static void bindInsert(PreparedStatement statement, Room obj) throws SQLException {
+        statement.setInt(1,obj.getId());
+        statement.setString(2,obj.getName());
+        statement.setInt(3,obj.getMaxCapacity());
+        statement.setInt(4,obj.getLocation().getId());
+    }
+
+    private static void bindUpdate(PreparedStatement statement, Room obj) throws SQLException {
+        statement.setString(1,obj.getName());
+        statement.setInt(2,obj.getMaxCapacity());
+        statement.setInt(3,obj.getLocation().getId());
+        statement.setInt(4,obj.getId());
+    }
+}
@@ -0,0 +1,14 @@
+package repository;
+
+import model.FitnessClass;
+
+/**
+ * Keeps the time slots of the fitness classes per room, to detect double bookings of a room and to find free slots.
+ */
+public class RoomScheduleIndex extends IntervalIndex {
+
+    @Override
+    protected int[] owners(FitnessClass fitnessClass) {
+        return fitnessClass.getRoom() == null ? new int[0] : new int[]{fitnessClass.getRoom().getId()};
+    }
+}
@@ -0,0 +1,59 @@
+package repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link HiLoIdAllocator.BlockSource} reserving blocks from one database sequence per entity type
+ * ({@code <type>_hilo_seq}, created on first use), for the database repositories.
+ * <p>Sequence values are never handed out twice and are not rolled back with the transaction that drew them, so
+ * every application connected to the database reserves different blocks.</p>
+ */
+public class SequenceBlockSource implements HiLoIdAllocator.BlockSource {
+
+    private final DataSource dataSource;
+    private final Set<String> createdSequences = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a SequenceBlockSource drawing from the sequences of the given data source.
+     * @param dataSource The data source of the database holding the sequences.
+     */
+    public SequenceBlockSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Reserves the next block of the given entity type by drawing the next value of its sequence.
+     * @param name The simple name of the entity type.
+     * @return The number of the reserved block.
+     * @throws RuntimeException If a SQL error occurs while drawing from the sequence.
+     */
+    @Override
+    public long reserveBlock(String name) {
+        String sequence = name.toLowerCase(Locale.ROOT) + "_hilo_seq";
+        try (Connection connection = dataSource.getConnection()) {
+            if (!createdSequences.contains(sequence)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE SEQUENCE IF NOT EXISTS " + sequence + " MINVALUE 0 START WITH 0");
+                }
+                createdSequences.add(sequence);
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT nextval(?)")) {
+                statement.setString(1, sequence);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to reserve an ID block from " + sequence, e);
+        }
+    }
+}
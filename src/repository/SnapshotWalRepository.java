@@ -0,0 +1,427 @@
+package repository;
+
+import model.HasId;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Provides a crash-safe file repository that keeps its data in memory and persists it as a snapshot plus a
+ * write-ahead log (WAL).
+ * <p>Every mutation is appended to the current WAL segment and forced to disk before the call returns; bulk
+ * operations append and force all of their records at once. Once a segment holds {@code snapshotThreshold} records,
+ * a new segment is started and a background thread writes a snapshot of the data to a temporary file, forces it and
+ * atomically renames it over the previous snapshot. Segments covered by the snapshot are deleted afterwards, so a
+ * crash at any point leaves either the old or the new snapshot plus every segment written since.</p>
+ * <p>On startup the snapshot is loaded and only the WAL segments written after it are replayed. A torn record at
+ * the end of a segment is ignored.</p>
+ * <p>Files, for a base path {@code data/Member}: {@code data/Member.snapshot} and {@code data/Member.wal.<n>}.</p>
+ * @param <T> The type of objects to be stored in the repository, which must implement the HasId interface.
+ */
+public class SnapshotWalRepository<T extends HasId> implements IRepository<T>, AutoCloseable {
+
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String WAL_SUFFIX = ".wal.";
+
+    private final Path basePath;
+    private final int snapshotThreshold;
+    private final Map<Integer, T> data = new HashMap<>();
+    private final Object snapshotLock = new Object();
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wal-repository-snapshotter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private FileChannel wal;
+    private long segment;
+    private int segmentRecords;
+
+    /**
+     * The length of the current WAL segment up to the end of the last record that was logged successfully.
+     */
+    private long walEnd;
+
+    /**
+     * The last segment covered by the snapshot on disk. Guarded by {@code snapshotLock}.
+     */
+    private long snapshotSegment;
+
+    /**
+     * Constructs a SnapshotWalRepository on the given base path, recovering the data from the newest snapshot and the
+     * WAL segments written after it.
+     * @param basePath          The path the snapshot and WAL file names are derived from.
+     * @param snapshotThreshold The number of WAL records after which a new snapshot is taken.
+     */
+    public SnapshotWalRepository(String basePath, int snapshotThreshold) {
+        this.basePath = Path.of(basePath).toAbsolutePath();
+        this.snapshotThreshold = snapshotThreshold;
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover " + basePath, e);
+        }
+    }
+
+    /**
+     * Creates a new object in the repository.
+     * Adds the object if no object with the same ID exists yet.
+     * @param obj The object to be added.
+     */
+    @Override
+    public void create(T obj) {
+        createAll(List.of(obj));
+    }
+
+    /**
+     * Reads an object from the repository by its ID.
+     * @param id The ID of the object to be retrieved.
+     * @return The object with the specified ID, or null if no such object exists.
+     */
+    @Override
+    public synchronized T read(int id) {
+        return data.get(id);
+    }
+
+    /**
+     * Updates an existing object in the repository.
+     * Objects whose ID does not exist are ignored. A {@link model.Versioned} object is only written if it carries the
+     * stored version, which is then incremented.
+     * @param obj The updated object to replace the existing entry.
+     * @throws ConcurrentModificationException If the object has been updated since it was read.
+     */
+    @Override
+    public void update(T obj) {
+        updateAll(List.of(obj));
+    }
+
+    /**
+     * Deletes an object from the repository by its ID.
+     * @param id The ID of the object to be deleted.
+     */
+    @Override
+    public void delete(int id) {
+        deleteAll(id);
+    }
+
+    /**
+     * Retrieves all objects from the repository.
+     * @return A list of all objects currently stored in the repository.
+     */
+    @Override
+    public synchronized List<T> getAll() {
+        return new ArrayList<>(data.values());
+    }
+
+    /**
+     * Creates several new objects in the repository, logging them with a single write.
+     * Objects whose ID already exists are skipped, as in {@link #create(HasId)}.
+     * @param objs The objects to be added.
+     */
+    @Override
+    public synchronized void createAll(Collection<T> objs) {
+        Map<Integer, T> added = new LinkedHashMap<>();
+        for (T obj : objs) {
+            if (!data.containsKey(obj.getId())) {
+                added.putIfAbsent(obj.getId(), obj);
+            }
+        }
+        List<ByteBuffer> records = new ArrayList<>();
+        added.values().forEach(obj -> records.add(LogRecords.put(obj)));
+        log(records);
+        data.putAll(added);
+        snapshotIfNeeded();
+    }
+
+    /**
+     * Updates several existing objects in the repository, logging them with a single write.
+     * Objects whose ID does not exist are ignored, as in {@link #update(HasId)}.
+     * @param objs The updated objects to replace the existing entries.
+     * @throws ConcurrentModificationException If one of the objects has been updated since it was read; none of them
+     *         is written.
+     */
+    @Override
+    public synchronized void updateAll(Collection<T> objs) {
+        List<T> updated = new ArrayList<>();
+        for (T obj : objs) {
+            T stored = data.get(obj.getId());
+            if (stored != null) {
+                Versions.check(stored, obj);
+                updated.add(obj);
+            }
+        }
+        int[] versions = new int[updated.size()];
+        List<ByteBuffer> records = new ArrayList<>();
+        for (int i = 0; i < updated.size(); i++) {
+            T obj = updated.get(i);
+            versions[i] = Versions.of(obj);
+            Versions.set(obj, Versions.of(data.get(obj.getId())) + 1);
+            records.add(LogRecords.put(obj));
+        }
+        try {
+            log(records);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < updated.size(); i++) {
+                Versions.set(updated.get(i), versions[i]);
+            }
+            throw e;
+        }
+        updated.forEach(obj -> data.put(obj.getId(), obj));
+        snapshotIfNeeded();
+    }
+
+    /**
+     * Deletes several objects from the repository, logging them with a single write.
+     * @param ids The IDs of the objects to be deleted.
+     */
+    @Override
+    public synchronized void deleteAll(int... ids) {
+        Set<Integer> deleted = new LinkedHashSet<>();
+        for (int id : ids) {
+            if (data.containsKey(id)) {
+                deleted.add(id);
+            }
+        }
+        List<ByteBuffer> records = new ArrayList<>();
+        deleted.forEach(id -> records.add(LogRecords.delete(id)));
+        log(records);
+        deleted.forEach(data::remove);
+        snapshotIfNeeded();
+    }
+
+    /**
+     * Takes a snapshot now and waits until it is on disk and the WAL segments it covers are deleted.
+     */
+    public void snapshot() {
+        byte[] snapshot;
+        long coveredSegment;
+        synchronized (this) {
+            snapshot = serializeSnapshot(segment);
+            coveredSegment = rollSegment();
+        }
+        writeSnapshot(snapshot, coveredSegment);
+    }
+
+    /**
+     * Stops taking snapshots and closes the current WAL segment. Everything logged so far is already on disk.
+     */
+    @Override
+    public synchronized void close() {
+        snapshotter.shutdown();
+        try {
+            wal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the snapshot, if any, replays the WAL segments written after it and opens a new segment for appending.
+     * @throws IOException If the files cannot be read.
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(basePath.getParent());
+        long coveredSegment = 0;
+        Path snapshotPath = snapshotPath();
+        if (Files.exists(snapshotPath)) {
+            try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+                coveredSegment = ois.readLong();
+                @SuppressWarnings("unchecked")
+                Map<Integer, T> snapshot = (Map<Integer, T>) ois.readObject();
+                data.putAll(snapshot);
+            } catch (ClassNotFoundException e) {
+                throw new InvalidObjectException(e.getMessage());
+            }
+        }
+        segment = coveredSegment;
+        snapshotSegment = coveredSegment;
+        for (long walSegment : walSegments()) {
+            if (walSegment > coveredSegment) {
+                replay(walPath(walSegment));
+            }
+            segment = Math.max(segment, walSegment);
+        }
+        segment++;
+        wal = FileChannel.open(walPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        walEnd = wal.size();
+    }
+
+    private void replay(Path walPath) throws IOException {
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(walPath));
+        LogRecords.scan(records, (type, id, payload, offset, size) -> {
+            if (type == LogRecords.PUT) {
+                try {
+                    T obj = LogRecords.deserialize(payload);
+                    data.put(id, obj);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Corrupt record at offset " + offset + " in " + walPath, e);
+                }
+            } else {
+                data.remove(id);
+            }
+        });
+    }
+
+    /**
+     * Appends the given records to the current WAL segment and forces them to disk.
+     * Must be called with the repository lock held, before the records are applied to the data.
+     * If the write or the force fails, the segment is truncated back to the end of the last logged record, so neither
+     * a torn record hides the records logged after it nor a rejected mutation is replayed after a restart. Bytes left
+     * behind by a failed truncation are cut off before the next append.
+     */
+    private void log(List<ByteBuffer> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        long total = 0;
+        try {
+            if (wal.size() != walEnd) {
+                wal.truncate(walEnd);
+            }
+            ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+            for (ByteBuffer buffer : buffers) {
+                total += buffer.remaining();
+            }
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                wal.write(buffers);
+            }
+            wal.force(false);
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException("Failed to write the WAL of " + basePath, e);
+            try {
+                wal.truncate(walEnd);
+            } catch (IOException truncateFailure) {
+                failure.addSuppressed(truncateFailure);
+            }
+            throw failure;
+        }
+        walEnd += total;
+        segmentRecords += records.size();
+    }
+
+    /**
+     * Starts a background snapshot once the current segment is full. Must be called with the repository lock held,
+     * after the logged records have been applied, so the snapshot includes everything in the segments it covers.
+     * The data is serialized while the lock is held, so entities changed afterwards cannot leak into the snapshot;
+     * only writing the bytes is left to the background thread.
+     */
+    private void snapshotIfNeeded() {
+        if (segmentRecords < snapshotThreshold) {
+            return;
+        }
+        byte[] snapshot;
+        try {
+            snapshot = serializeSnapshot(segment);
+        } catch (UncheckedIOException e) {
+            // the mutation is already logged; the snapshot is retried after the next one
+            e.printStackTrace();
+            return;
+        }
+        long coveredSegment = rollSegment();
+        snapshotter.execute(() -> {
+            try {
+                writeSnapshot(snapshot, coveredSegment);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Serializes the data together with the last WAL segment it covers. Must be called with the repository lock held.
+     * @param coveredSegment The number of the current segment, which is closed right after.
+     * @return The serialized snapshot.
+     */
+    private byte[] serializeSnapshot(long coveredSegment) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeLong(coveredSegment);
+            oos.writeObject(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize the snapshot of " + basePath, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Closes the current WAL segment and starts a new one. Must be called with the repository lock held.
+     * @return The number of the segment that was closed.
+     */
+    private long rollSegment() {
+        long closed = segment;
+        try {
+            wal.close();
+            segment++;
+            wal = FileChannel.open(walPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            walEnd = wal.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start a new WAL segment for " + basePath, e);
+        }
+        segmentRecords = 0;
+        return closed;
+    }
+
+    /**
+     * Writes a serialized snapshot covering all WAL segments up to the given one to a temporary file, forces it,
+     * renames it atomically over the previous snapshot and deletes the covered segments. A snapshot older than the one
+     * already on disk is dropped.
+     */
+    private void writeSnapshot(byte[] snapshot, long coveredSegment) {
+        synchronized (snapshotLock) {
+            if (coveredSegment <= snapshotSegment) {
+                return;
+            }
+            Path tempPath = basePath.resolveSibling(basePath.getFileName() + SNAPSHOT_SUFFIX + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(tempPath.toFile())) {
+                fos.write(snapshot);
+                fos.getFD().sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write the snapshot of " + basePath, e);
+            }
+            try {
+                Files.move(tempPath, snapshotPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                for (long walSegment : walSegments()) {
+                    if (walSegment <= coveredSegment) {
+                        Files.deleteIfExists(walPath(walSegment));
+                    }
+                }
+                snapshotSegment = coveredSegment;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to install the snapshot of " + basePath, e);
+            }
+        }
+    }
+
+    private Path snapshotPath() {
+        return basePath.resolveSibling(basePath.getFileName() + SNAPSHOT_SUFFIX);
+    }
+
+    private Path walPath(long walSegment) {
+        return basePath.resolveSibling(basePath.getFileName() + WAL_SUFFIX + walSegment);
+    }
+
+    /**
+     * Lists the numbers of the WAL segments on disk, in ascending order.
+     */
+    private List<Long> walSegments() throws IOException {
+        String prefix = basePath.getFileName() + WAL_SUFFIX;
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(basePath.getParent(), prefix + "*")) {
+            for (Path file : files) {
+                try {
+                    segments.add(Long.parseLong(file.getFileName().toString().substring(prefix.length())));
+                } catch (NumberFormatException e) {
+                    // not a segment of this repository
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
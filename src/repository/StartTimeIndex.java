@@ -0,0 +1,99 @@
+package repository;
+
+import model.FitnessClass;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Orders fitness classes by their start time so that "classes starting after T" is a range scan over the classes that
+ * qualify instead of a filter and sort over every class ever scheduled.
+ * <p>Only the start time and ID of each class are kept, in a skip list sorted by both; queries return class IDs, and
+ * the classes themselves are read from the repository, so callers always get their current state. Queries do not
+ * lock and see a weakly consistent view; updates are serialised. Classes without a start time are not indexed.</p>
+ */
+public class StartTimeIndex implements RepositoryIndex<FitnessClass> {
+
+    private final ConcurrentSkipListSet<Key> classes = new ConcurrentSkipListSet<>();
+    private final Map<Integer, Key> keys = new HashMap<>();
+
+    /**
+     * Adds a class to the index, moving it if its start time has changed.
+     * @param fitnessClass The class in its current state.
+     */
+    @Override
+    public synchronized void put(FitnessClass fitnessClass) {
+        remove(fitnessClass.getId());
+        if (fitnessClass.getStartTime() != null) {
+            Key key = new Key(fitnessClass.getStartTime(), fitnessClass.getId());
+            keys.put(fitnessClass.getId(), key);
+            classes.add(key);
+        }
+    }
+
+    /**
+     * Removes a class from the index.
+     * @param id The ID of the removed class.
+     */
+    @Override
+    public synchronized void remove(int id) {
+        Key key = keys.remove(id);
+        if (key != null) {
+            classes.remove(key);
+        }
+    }
+
+    /**
+     * Returns the IDs of all classes starting strictly after the given time, earliest first.
+     * @param time The lower bound of the start time, exclusive.
+     * @return The class IDs in ascending order of the classes' start time.
+     */
+    public List<Integer> startingAfter(LocalDateTime time) {
+        List<Integer> ids = new ArrayList<>();
+        for (Key key : tail(time)) {
+            ids.add(key.id());
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the IDs of one page of the classes starting strictly after the given time, earliest first.
+     * @param time   The lower bound of the start time, exclusive.
+     * @param offset The number of classes to skip.
+     * @param limit  The maximum number of classes to return.
+     * @return At most {@code limit} class IDs in ascending order of the classes' start time.
+     */
+    public List<Integer> startingAfter(LocalDateTime time, int offset, int limit) {
+        List<Integer> page = new ArrayList<>();
+        Iterator<Key> iterator = tail(time).iterator();
+        for (int skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next().id());
+        }
+        return page;
+    }
+
+    private NavigableSet<Key> tail(LocalDateTime time) {
+        return classes.tailSet(new Key(time, Integer.MAX_VALUE), false);
+    }
+
+    /**
+     * Sort key of a class; the ID keeps classes starting at the same time apart.
+     */
+    private record Key(LocalDateTime startTime, int id) implements Comparable<Key> {
+
+        @Override
+        public int compareTo(Key other) {
+            int byTime = startTime.compareTo(other.startTime);
+            return byTime != 0 ? byTime : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -2,11 +2,16 @@ package repository;
 
 import model.Trainer;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The TrainerDBRepository class provides CRUD operations for the `Trainer` model using a relational database.
@@ -14,15 +19,15 @@ import java.util.List;
  */
 public class TrainerDBRepository extends DBRepository<Trainer> {
 
+    private static final String INSERT_SQL = "INSERT INTO trainer (id, name, password, specialisation) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE trainer SET name = ?, password = ?, specialisation = ? WHERE id = ?";
+
     /**
-     * Constructs a TrainerDBRepository with the specified database connection details.
-     * @param dbUrl      The database URL.
-     * @param dbUser     The username for the database connection.
-     * @param dbPassword The password for the database connection.
-     * @throws RuntimeException If the connection cannot be established due to an SQLException.
+     * Constructs a TrainerDBRepository that borrows its connections from the given repository context.
+     * @param context The repository context providing the connection pool and the related repositories.
      */
-    public TrainerDBRepository(String dbUrl, String dbUser, String dbPassword) {
-        super(dbUrl, dbUser, dbPassword);
+    public TrainerDBRepository(DBRepositoryContext context) {
+        super(context);
     }
 
     /**
@@ -32,12 +37,8 @@ public class TrainerDBRepository extends DBRepository<Trainer> {
      */
     @Override
     public void create(Trainer obj) {
-        String sql = "INSERT INTO trainer (id, name, password, specialisation) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setInt(1, obj.getId());
-            statement.setString(2, obj.getName());
-            statement.setString(3, obj.getPassword());
-            statement.setString(4, obj.getSpecialisation());
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            bindInsert(statement, obj);
             statement.execute();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create trainer", e);
@@ -52,12 +53,16 @@ public class TrainerDBRepository extends DBRepository<Trainer> {
      */
     @Override
     public Trainer read(int id) {
+        Trainer known = cached(Trainer.class, id);
+        if (known != null) {
+            return known;
+        }
         String sql = "SELECT * FROM trainer WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
-                return extractFromResultSet(resultSet);
+                return remember(extractFromResultSet(resultSet));
             } else {
                 return null;
             }
@@ -73,13 +78,10 @@ public class TrainerDBRepository extends DBRepository<Trainer> {
      */
     @Override
     public void update(Trainer obj) {
-        String sql = "UPDATE trainer SET name = ?, password = ?, specialisation = ? WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, obj.getName());
-            statement.setString(2, obj.getPassword());
-            statement.setString(3, obj.getSpecialisation());
-            statement.setInt(4, obj.getId());
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+            bindUpdate(statement, obj);
             statement.execute();
+            remember(obj);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update trainer", e);
         }
@@ -92,8 +94,9 @@ public class TrainerDBRepository extends DBRepository<Trainer> {
      */
     @Override
     public void delete(int id) {
+        forget(Trainer.class, id);
         String sql = "DELETE FROM trainer WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             statement.execute();
         } catch (SQLException e) {
@@ -101,6 +104,49 @@ public class TrainerDBRepository extends DBRepository<Trainer> {
         }
     }
 
+    /**
+     * Inserts the given trainers in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The trainers to be created.
+     */
+    @Override
+    public void createAll(Collection<Trainer> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, INSERT_SQL, objs, TrainerDBRepository::bindInsert));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to create trainers", e);
+        }
+    }
+
+    /**
+     * Updates the given trainers in a single transaction, sending the rows to the database in JDBC batches.
+     * @param objs The trainers containing updated information.
+     */
+    @Override
+    public void updateAll(Collection<Trainer> objs) {
+        try {
+            inTransaction(connection -> executeBatch(connection, UPDATE_SQL, objs, TrainerDBRepository::bindUpdate));
+            objs.forEach(this::remember);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update trainers", e);
+        }
+    }
+
+    /**
+     * Deletes the trainers with the given IDs in a single transaction, sending the rows to the database in JDBC batches.
+     * @param ids The IDs of the trainers to be deleted.
+     */
+    @Override
+    public void deleteAll(int... ids) {
+        for (int id : ids) {
+            forget(Trainer.class, id);
+        }
+        try {
+            inTransaction(connection -> executeBatch(connection, "DELETE FROM trainer WHERE id = ?", ids));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete trainers", e);
+        }
+    }
+
     /**
      * Retrieves all trainers from the database.
      * @return A list of all Trainer objects stored in the database.
@@ -109,7 +155,7 @@ public class TrainerDBRepository extends DBRepository<Trainer> {
     @Override
     public List<Trainer> getAll() {
         String sql = "SELECT * FROM trainer";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet resultSet = statement.executeQuery();
             List<Trainer> trainers = new ArrayList<>();
             while (resultSet.next()) {
@@ -121,6 +167,33 @@ public class TrainerDBRepository extends DBRepository<Trainer> {
         }
     }
 
+    /**
+     * Retrieves all trainers whose IDs are in the given collection with a single query.
+     * Used when loading lists of related entities, so that a listing does not issue one query per row.
+     * @param ids The IDs of the trainers to retrieve.
+     * @return A map from ID to Trainer for every ID that exists in the database.
+     * @throws RuntimeException If a SQL error occurs while retrieving the data.
+     */
+    public Map<Integer, Trainer> readByIds(Collection<Integer> ids) {
+        Map<Integer, Trainer> trainers = new HashMap<>();
+        Set<Integer> missing = takeCached(Trainer.class, ids, trainers);
+        if (missing.isEmpty()) {
+            return trainers;
+        }
+        String sql = "SELECT * FROM trainer WHERE id = ANY(?)";
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            setIdArray(connection, statement, 1, missing);
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                Trainer trainer = remember(extractFromResultSet(resultSet));
+                trainers.put(trainer.getId(), trainer);
+            }
+            return trainers;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve trainers by id", e);
+        }
+    }
+
     /**
      * Extracts a Trainer object from a ResultSet row.
      * @param resultSet The ResultSet containing the database row.
@@ -136,4 +209,18 @@ public class TrainerDBRepository extends DBRepository<Trainer> {
         trainer.setId(resultSet.getInt("id"));
         return trainer;
     }
+
+    private static void bindInsert(PreparedStatement statement, Trainer obj) throws SQLException {
+        statement.setInt(1, obj.getId());
+        statement.setString(2, obj.getName());
+        statement.setString(3, obj.getPassword());
+        statement.setString(4, obj.getSpecialisation());
+    }
+
+    private static void bindUpdate(PreparedStatement statement, Trainer obj) throws SQLException {
+        statement.setString(1, obj.getName());
+        statement.setString(2, obj.getPassword());
+        statement.setString(3, obj.getSpecialisation());
+        statement.setInt(4, obj.getId());
+    }
 }
@@ -0,0 +1,15 @@
+package repository;
+
+import model.FitnessClass;
+
+/**
+ * Keeps the time slots of the fitness classes per trainer, to detect double bookings of a trainer and to find
+ * trainers who are free at a given time.
+ */
+public class TrainerScheduleIndex extends IntervalIndex {
+
+    @Override
+    protected int[] owners(FitnessClass fitnessClass) {
+        return fitnessClass.getTrainer() == null ? new int[0] : new int[]{fitnessClass.getTrainer().getId()};
+    }
+}
@@ -0,0 +1,51 @@
+package repository;
+
+import java.util.function.Supplier;
+
+/**
+ * Groups the repository calls of one business operation, so that they take effect together or not at all.
+ * <p>Units of work nest: a unit started while another one is running on the same thread joins it, and only the
+ * outermost unit commits.</p>
+ */
+public interface UnitOfWork {
+
+    /**
+     * A unit of work for repositories whose calls take effect one by one, e.g. in memory or in files. It simply runs
+     * the work.
+     */
+    UnitOfWork NONE = new UnitOfWork() {
+        @Override
+        public <R> R run(Supplier<R> work) {
+            return work.get();
+        }
+    };
+
+    /**
+     * Runs the given work as one unit. If the work throws, none of its changes take effect.
+     * @param work The repository calls to run.
+     * @param <R>  The type of the result.
+     * @return The result of the work.
+     */
+    <R> R run(Supplier<R> work);
+
+    /**
+     * Runs the given work as one unit. If the work throws, none of its changes take effect.
+     * @param work The repository calls to run.
+     */
+    default void run(Runnable work) {
+        run(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the given action once the changes made so far by the unit running on the calling thread have taken effect,
+     * e.g. to bring an in-memory index in line with them. If that unit fails, the action is dropped. Outside a unit,
+     * and for repositories whose calls take effect one by one, the action runs at once.
+     * @param action The action to run after the commit.
+     */
+    default void afterCommit(Runnable action) {
+        action.run();
+    }
+}
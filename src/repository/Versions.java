@@ -0,0 +1,61 @@
+package repository;
+
+import model.HasId;
+import model.Versioned;
+
+import java.util.ConcurrentModificationException;
+
+/**
+ * The compare-and-set check shared by the repositories for {@link Versioned} entities.
+ * <p>An update of a versioned entity is accepted only if the object carries the version that is currently stored;
+ * the stored version is then incremented. Entities that are not versioned are always accepted. When a repository
+ * stores the very instance it is given, the check only catches updates made through other copies, e.g. objects read
+ * from another repository instance or deserialised from a file.</p>
+ */
+final class Versions {
+
+    private Versions() {
+    }
+
+    /**
+     * Returns the version of an entity.
+     * @param entity The entity.
+     * @return Its version, or 0 if it is not versioned.
+     */
+    static int of(HasId entity) {
+        return entity instanceof Versioned versioned ? versioned.getVersion() : 0;
+    }
+
+    /**
+     * Sets the version of an entity, if it is versioned.
+     * @param entity  The entity.
+     * @param version The version to be set.
+     */
+    static void set(HasId entity, int version) {
+        if (entity instanceof Versioned versioned) {
+            versioned.setVersion(version);
+        }
+    }
+
+    /**
+     * Checks that an update was made on the currently stored version of an entity.
+     * @param stored  The stored state of the entity.
+     * @param updated The updated object.
+     * @throws ConcurrentModificationException If the entity has been updated since the object was read.
+     */
+    static void check(HasId stored, HasId updated) {
+        if (updated instanceof Versioned && of(stored) != of(updated)) {
+            throw conflict(updated);
+        }
+    }
+
+    /**
+     * Creates the exception thrown when an update is rejected because it was made on a stale version.
+     * @param updated The rejected object.
+     * @return The exception.
+     */
+    static ConcurrentModificationException conflict(HasId updated) {
+        return new ConcurrentModificationException(updated.getClass().getSimpleName() + " with ID " + updated.getId()
+                + " was changed or deleted by someone else since version " + of(updated) + " was read.");
+    }
+}
@@ -1,10 +1,32 @@
 package service;
 import model.*;
+import repository.ClassFeatureIndex;
+import repository.ClassTrainerIndex;
+import repository.CoEnrollmentIndex;
+import repository.EnrollmentRepository;
+import repository.FeedbackTextIndex;
+import repository.HiLoIdAllocator;
 import repository.IRepository;
-import Helpers.*;
+import repository.IdAllocator;
+import repository.IndexedRepository;
+import repository.IntervalIndex;
+import repository.MemberScheduleIndex;
+import repository.OccupancyIndex;
+import repository.RatingIndex;
+import repository.RepositoryIndex;
+import repository.RoomScheduleIndex;
+import repository.StartTimeIndex;
+import repository.TrainerScheduleIndex;
+import repository.UnitOfWork;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * The FitnessService class provides business logic and services for managing fitness-related operations.
@@ -13,17 +35,56 @@ import java.util.*;
  */
 public class FitnessService {
 
+    /**
+     * Membership types whose members are promoted from a waitlist first, highest priority first.
+     * Members with any other membership type follow them, first come, first served.
+     */
+    private static final List<String> PRIORITY_MEMBERSHIP_TYPES = List.of("Premium");
+
+    /**
+     * How often a read-modify-write operation is attempted before a version conflict is given up on.
+     */
+    private static final int MAX_CONFLICT_ATTEMPTS = 5;
+
+    /**
+     * How long the rooms are open every day, the basis of their utilisation.
+     */
+    public static final Duration OPENING_HOURS_PER_DAY = Duration.ofHours(16);
+
     private final IRepository<Equipment> equipmentRepository;
-    private final IRepository<Feedback> feedbackRepository;
-    private final IRepository<FitnessClass> fitnessClassRepository;
+    private final IndexedRepository<Feedback> feedbackRepository;
+    private final IndexedRepository<FitnessClass> fitnessClassRepository;
     private final IRepository<Location> locationRepository;
     private final IRepository<Member> memberRepository;
     private final IRepository<Membership> membershipRepository;
     private final IRepository<Room> roomRepository;
     private final IRepository<Trainer> trainerRepository;
+    private final StartTimeIndex startTimeIndex;
+    private final RoomScheduleIndex roomScheduleIndex;
+    private final TrainerScheduleIndex trainerScheduleIndex;
+    private final MemberScheduleIndex memberScheduleIndex;
+    private final ClassFeatureIndex classFeatureIndex;
+    private final CoEnrollmentIndex coEnrollmentIndex;
+    private final RatingIndex ratingIndex;
+    private final FeedbackTextIndex feedbackTextIndex;
+    private final OccupancyIndex occupancyIndex;
+    private final ReservationLocks reservationLocks = new ReservationLocks();
+    private final EnrollmentRepository enrollmentRepository;
+    private final Map<Integer, Waitlist> waitlists = new ConcurrentHashMap<>();
+    private final UnitOfWork unitOfWork;
+    private final boolean refreshFeedbackIndexes;
+    private final boolean refreshClassIndexes;
+    private final IdAllocator idAllocator;
 
     /**
      * Constructs a FitnessService instance with dependencies for all required repositories.
+     * The fitness class and feedback repositories are wrapped in an {@link IndexedRepository} unless they already are
+     * one, and the indexes used by this service are added to them. If the service wrapped a repository itself, it
+     * brings the indexes up to date with the repository's content before using them, so writes made to the
+     * repository directly are seen at the cost of reading it in full. Passing an IndexedRepository instead promises
+     * that all later writes go through it or the service, and the indexes are used as they are.
+     * IDs of new entities are counted in memory, so this constructor suits repositories that do not outlive the
+     * application.
      * @param equipmentRepository     The repository managing Equipment entities.
      * @param feedbackRepository      The repository managing Feedback entities.
      * @param fitnessClassRepository  The repository managing FitnessClass entities.
@@ -34,14 +95,117 @@ public class FitnessService {
      * @param trainerRepository       The repository managing Trainer entities.
      */
     public FitnessService(IRepository<Equipment> equipmentRepository, IRepository<Feedback> feedbackRepository, IRepository<FitnessClass> fitnessClassRepository, IRepository<Location> locationRepository, IRepository<Member> memberRepository, IRepository<Membership> membershipRepository, IRepository<Room> roomRepository, IRepository<Trainer> trainerRepository) {
+        this(equipmentRepository, feedbackRepository, fitnessClassRepository, locationRepository, memberRepository,
+                membershipRepository, roomRepository, trainerRepository, UnitOfWork.NONE,
+                new HiLoIdAllocator(new HiLoIdAllocator.InMemoryBlockSource()));
+    }
+
+    /**
+     * Constructs a FitnessService instance whose operations run their repository calls as one unit of work each,
+     * e.g. one database transaction per operation when {@code unitOfWork} is a {@link repository.DBRepositoryContext}.
+     * New entities get their IDs from {@code idAllocator}, which should persist its counters as long as the
+     * repositories persist their data. The indexes of the fitness class and feedback repositories are updated once an
+     * operation's unit of work has committed, so an {@link IndexedRepository} passed in should be built with the same
+     * {@code unitOfWork}.
+     * @param equipmentRepository     The repository managing Equipment entities.
+     * @param feedbackRepository      The repository managing Feedback entities.
+     * @param fitnessClassRepository  The repository managing FitnessClass entities.
+     * @param locationRepository      The repository managing Location entities.
+     * @param memberRepository        The repository managing Member entities.
+     * @param membershipRepository    The repository managing Membership entities.
+     * @param roomRepository          The repository managing Room entities.
+     * @param trainerRepository       The repository managing Trainer entities.
+     * @param unitOfWork              Groups the repository calls of each operation.
+     * @param idAllocator             Hands out the IDs of the fitness classes and feedback created by the service, and
+     *                                those returned by {@link #newId(Class)}.
+     * @see #FitnessService(IRepository, IRepository, IRepository, IRepository, IRepository, IRepository, IRepository, IRepository)
+     */
+    public FitnessService(IRepository<Equipment> equipmentRepository, IRepository<Feedback> feedbackRepository, IRepository<FitnessClass> fitnessClassRepository, IRepository<Location> locationRepository, IRepository<Member> memberRepository, IRepository<Membership> membershipRepository, IRepository<Room> roomRepository, IRepository<Trainer> trainerRepository, UnitOfWork unitOfWork, IdAllocator idAllocator) {
+        this.unitOfWork = unitOfWork;
+        this.idAllocator = idAllocator;
         this.equipmentRepository = equipmentRepository;
-        this.feedbackRepository = feedbackRepository;
-        this.fitnessClassRepository = fitnessClassRepository;
+        this.refreshFeedbackIndexes = !(feedbackRepository instanceof IndexedRepository<Feedback>);
+        this.feedbackRepository = feedbackRepository instanceof IndexedRepository<Feedback> indexedFeedback
+                ? indexedFeedback : new IndexedRepository<>(feedbackRepository, unitOfWork);
+        this.refreshClassIndexes = !(fitnessClassRepository instanceof IndexedRepository<FitnessClass>);
+        this.fitnessClassRepository = fitnessClassRepository instanceof IndexedRepository<FitnessClass> indexed
+                ? indexed : new IndexedRepository<>(fitnessClassRepository, unitOfWork);
         this.locationRepository = locationRepository;
         this.memberRepository = memberRepository;
         this.membershipRepository = membershipRepository;
         this.roomRepository = roomRepository;
         this.trainerRepository = trainerRepository;
+        List<RepositoryIndex<FitnessClass>> newClassIndexes = new ArrayList<>();
+        this.startTimeIndex = indexOf(this.fitnessClassRepository, StartTimeIndex.class, StartTimeIndex::new, newClassIndexes);
+        this.roomScheduleIndex = indexOf(this.fitnessClassRepository, RoomScheduleIndex.class, RoomScheduleIndex::new, newClassIndexes);
+        this.trainerScheduleIndex = indexOf(this.fitnessClassRepository, TrainerScheduleIndex.class, TrainerScheduleIndex::new, newClassIndexes);
+        this.memberScheduleIndex = indexOf(this.fitnessClassRepository, MemberScheduleIndex.class, MemberScheduleIndex::new, newClassIndexes);
+        this.classFeatureIndex = indexOf(this.fitnessClassRepository, ClassFeatureIndex.class, ClassFeatureIndex::new, newClassIndexes);
+        this.occupancyIndex = indexOf(this.fitnessClassRepository, OccupancyIndex.class, OccupancyIndex::new, newClassIndexes);
+        this.coEnrollmentIndex = indexOf(this.fitnessClassRepository, CoEnrollmentIndex.class, CoEnrollmentIndex::new, newClassIndexes);
+        ClassTrainerIndex classTrainerIndex = indexOf(this.fitnessClassRepository, ClassTrainerIndex.class, ClassTrainerIndex::new, newClassIndexes);
+        this.fitnessClassRepository.addIndexes(newClassIndexes);
+        List<RepositoryIndex<Feedback>> newFeedbackIndexes = new ArrayList<>();
+        this.ratingIndex = indexOf(this.feedbackRepository, RatingIndex.class,
+                () -> new RatingIndex(classTrainerIndex), newFeedbackIndexes);
+        this.feedbackTextIndex = indexOf(this.feedbackRepository, FeedbackTextIndex.class,
+                () -> new FeedbackTextIndex(classTrainerIndex), newFeedbackIndexes);
+        this.feedbackRepository.addIndexes(newFeedbackIndexes);
+        this.enrollmentRepository = this.fitnessClassRepository.getDelegate() instanceof EnrollmentRepository enrollments
+                ? enrollments : null;
+    }
+
+    /**
+     * Returns the index of the given type already added to a repository, or creates one and collects it in
+     * {@code newIndexes}, so that all new indexes can be filled with a single read of the repository.
+     */
+    private static <E extends HasId, I extends RepositoryIndex<E>> I indexOf(IndexedRepository<E> repository, Class<I> type,
+                                                                            Supplier<I> factory, List<RepositoryIndex<E>> newIndexes) {
+        I index = repository.getIndex(type);
+        if (index == null) {
+            index = factory.get();
+            newIndexes.add(index);
+        }
+        return index;
+    }
+
+    /**
+     * Brings the indexes of the repositories this service wrapped itself up to date with writes made to them directly.
+     * Called before the indexes are read, outside any unit of work.
+     */
+    private void refreshIndexes() {
+        // classes first, since the feedback indexes file ratings under the trainer of their class
+        if (refreshClassIndexes) {
+            fitnessClassRepository.refresh();
+        }
+        if (refreshFeedbackIndexes) {
+            feedbackRepository.refresh();
+        }
+    }
+
+    /**
+     * Reads the fitness classes with the given IDs, skipping those deleted in the meantime.
+     */
+    private List<FitnessClass> readClasses(List<Integer> ids) {
+        List<FitnessClass> classes = new ArrayList<>();
+        for (int id : ids) {
+            FitnessClass fitnessClass = fitnessClassRepository.read(id);
+            if (fitnessClass != null) {
+                classes.add(fitnessClass);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Returns a new ID for an entity of the given type from the ID allocator of this service, for entities created
+     * outside the service, e.g. the members and rooms entered in the UI.
+     * @param type The type of the entity the ID is for.
+     * @return An ID that has not been handed out for this type before.
+     * @throws IllegalStateException If the ID space of the type is exhausted.
+     */
+    public int newId(Class<? extends HasId> type) {
+        return idAllocator.nextId(type);
     }
 
     /**
@@ -89,11 +253,13 @@ public class FitnessService {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than zero.");
         }
-        Equipment existingEquipment = getEquipment(id);
-        existingEquipment.setName(name);
-        existingEquipment.setQuantity(quantity);
-        existingEquipment.setFitnessClasses(fitnessClasses);
-        equipmentRepository.update(existingEquipment);
+        unitOfWork.run(() -> {
+            Equipment existingEquipment = getEquipment(id);
+            existingEquipment.setName(name);
+            existingEquipment.setQuantity(quantity);
+            existingEquipment.setFitnessClasses(fitnessClasses);
+            equipmentRepository.update(existingEquipment);
+        });
     }
 
     /**
@@ -102,11 +268,13 @@ public class FitnessService {
      * @throws IllegalArgumentException if no equipment with the given ID exists.
      */
     public void deleteEquipment(int id) {
-        Equipment existingEquipment = getEquipment(id);
-        if (existingEquipment == null) {
-            throw new IllegalArgumentException("Equipment with ID " + id + " does not exist.");
-        }
-        equipmentRepository.delete(id);
+        unitOfWork.run(() -> {
+            Equipment existingEquipment = getEquipment(id);
+            if (existingEquipment == null) {
+                throw new IllegalArgumentException("Equipment with ID " + id + " does not exist.");
+            }
+            equipmentRepository.delete(id);
+        });
     }
 
     /**
@@ -171,10 +339,12 @@ public class FitnessService {
         if (comment == null || comment.trim().isEmpty()) {
             throw new IllegalArgumentException("Comment cannot be null or empty.");
         }
-        Feedback existingFeedback = getFeedback(id);
-        existingFeedback.setRating(rating);
-        existingFeedback.setComment(comment);
-        feedbackRepository.update(existingFeedback);
+        unitOfWork.run(() -> {
+            Feedback existingFeedback = getFeedback(id);
+            existingFeedback.setRating(rating);
+            existingFeedback.setComment(comment);
+            feedbackRepository.update(existingFeedback);
+        });
     }
 
     /**
@@ -183,11 +353,13 @@ public class FitnessService {
      * @throws IllegalArgumentException if no feedback with the given ID exists.
      */
     public void deleteFeedback(int id) {
-        Feedback existingFeedback = getFeedback(id);
-        if (existingFeedback == null) {
-            throw new IllegalArgumentException("Feedback with ID " + id + " does not exist.");
-        }
-        feedbackRepository.delete(id);
+        unitOfWork.run(() -> {
+            Feedback existingFeedback = getFeedback(id);
+            if (existingFeedback == null) {
+                throw new IllegalArgumentException("Feedback with ID " + id + " does not exist.");
+            }
+            feedbackRepository.delete(id);
+        });
     }
 
     /**
@@ -203,6 +375,47 @@ public class FitnessService {
         return feedbackList;
     }
 
+    /**
+     * Searches the comments of all feedback through the {@link FeedbackTextIndex}.
+     * Case and punctuation are ignored, so "Too crowded!" matches the query "too crowded".
+     * @param query         The words to search for.
+     * @param matchAllTerms true to find feedback containing every word, false to find feedback containing any of them.
+     * @return The matching feedback, in order of their IDs.
+     * @throws IllegalArgumentException if the query contains no words.
+     */
+    public List<Feedback> searchFeedback(String query, boolean matchAllTerms) {
+        return searchFeedback(query, matchAllTerms, null);
+    }
+
+    /**
+     * Searches the comments of the feedback on the classes of one trainer through the {@link FeedbackTextIndex}.
+     * @param trainerId     The ID of the trainer.
+     * @param query         The words to search for.
+     * @param matchAllTerms true to find feedback containing every word, false to find feedback containing any of them.
+     * @return The matching feedback, in order of their IDs.
+     * @throws IllegalArgumentException if the query contains no words.
+     */
+    public List<Feedback> searchTrainerFeedback(int trainerId, String query, boolean matchAllTerms) {
+        return searchFeedback(query, matchAllTerms, trainerId);
+    }
+
+    private List<Feedback> searchFeedback(String query, boolean matchAllTerms, Integer trainerId) {
+        if (FeedbackTextIndex.terms(query).isEmpty()) {
+            throw new IllegalArgumentException("Search query must contain at least one word.");
+        }
+        refreshIndexes();
+        List<Integer> ids = matchAllTerms
+                ? feedbackTextIndex.matchAll(query, trainerId) : feedbackTextIndex.matchAny(query, trainerId);
+        List<Feedback> feedbackList = new ArrayList<>();
+        for (int id : ids) {
+            Feedback feedback = feedbackRepository.read(id);
+            if (feedback != null) {
+                feedbackList.add(feedback);
+            }
+        }
+        return feedbackList;
+    }
+
     /**
      * Retrieves a fitness class by its unique ID.
      * @param id The unique identifier of the fitness class.
@@ -274,31 +487,36 @@ public class FitnessService {
         if (participantsCount < 0) {
             throw new IllegalArgumentException("Participants count cannot be negative.");
         }
-        FitnessClass existingFitnessClass = getFitnessClass(id);
-        existingFitnessClass.setName(name);
-        existingFitnessClass.setStartTime(startTime);
-        existingFitnessClass.setEndTime(endTime);
-        existingFitnessClass.setTrainer(trainer);
-        existingFitnessClass.setRoom(room);
-        existingFitnessClass.setParticipantsCount(participantsCount);
-        existingFitnessClass.setLocation(location);
-        existingFitnessClass.setFeedback(feedback);
-        existingFitnessClass.setMembers(members);
-        existingFitnessClass.setEquipment(equipment);
-        fitnessClassRepository.update(existingFitnessClass);
+        writeAtomically(() -> {
+            FitnessClass existingFitnessClass = getFitnessClass(id);
+            existingFitnessClass.setName(name);
+            existingFitnessClass.setStartTime(startTime);
+            existingFitnessClass.setEndTime(endTime);
+            existingFitnessClass.setTrainer(trainer);
+            existingFitnessClass.setRoom(room);
+            existingFitnessClass.setParticipantsCount(participantsCount);
+            existingFitnessClass.setLocation(location);
+            existingFitnessClass.setFeedback(feedback);
+            existingFitnessClass.setMembers(members);
+            existingFitnessClass.setEquipment(equipment);
+            fitnessClassRepository.update(existingFitnessClass);
+        });
     }
 
     /**
-     * Deletes a fitness class from the repository by its unique ID.
+     * Deletes a fitness class from the repository by its unique ID, together with its waitlist.
      * @param id The unique identifier of the fitness class to delete.
      * @throws IllegalArgumentException if no fitness class with the given ID exists.
      */
     public void deleteFitnessClass(int id) {
-        FitnessClass existingFitnessClass = getFitnessClass(id);
-        if (existingFitnessClass == null) {
-            throw new IllegalArgumentException("Fitness class with ID " + id + " does not exist.");
-        }
-        fitnessClassRepository.delete(id);
+        reservationLocks.withClassLock(id, () -> unitOfWork.run(() -> {
+            FitnessClass existingFitnessClass = getFitnessClass(id);
+            if (existingFitnessClass == null) {
+                throw new IllegalArgumentException("Fitness class with ID " + id + " does not exist.");
+            }
+            fitnessClassRepository.delete(id);
+            unitOfWork.afterCommit(() -> waitlists.remove(id));
+        }));
     }
 
     /**
@@ -357,10 +575,12 @@ public class FitnessService {
         if (address == null || address.trim().isEmpty()) {
             throw new IllegalArgumentException("Location address cannot be null or empty.");
         }
-        Location existingLocation = getLocation(id);
-        existingLocation.setName(name);
-        existingLocation.setAddress(address);
-        locationRepository.update(existingLocation);
+        unitOfWork.run(() -> {
+            Location existingLocation = getLocation(id);
+            existingLocation.setName(name);
+            existingLocation.setAddress(address);
+            locationRepository.update(existingLocation);
+        });
     }
 
     /**
@@ -369,11 +589,13 @@ public class FitnessService {
      * @throws IllegalArgumentException if no location with the given ID exists.
      */
     public void deleteLocation(int id) {
-        Location existingLocation = getLocation(id);
-        if (existingLocation == null) {
-            throw new IllegalArgumentException("Location with ID " + id + " does not exist.");
-        }
-        locationRepository.delete(id);
+        unitOfWork.run(() -> {
+            Location existingLocation = getLocation(id);
+            if (existingLocation == null) {
+                throw new IllegalArgumentException("Location with ID " + id + " does not exist.");
+            }
+            locationRepository.delete(id);
+        });
     }
 
     /**
@@ -423,11 +645,13 @@ public class FitnessService {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Name cannot be null or empty.");
         }
-        Member existingMember = getMember(id);
-        existingMember.setName(name);
-        existingMember.setPassword(password);
-        existingMember.setMembership(membership);
-        memberRepository.update(existingMember);
+        writeAtomically(() -> {
+            Member existingMember = getMember(id);
+            existingMember.setName(name);
+            existingMember.setPassword(password);
+            existingMember.setMembership(membership);
+            memberRepository.update(existingMember);
+        });
     }
 
     /**
@@ -436,11 +660,13 @@ public class FitnessService {
      * @throws IllegalArgumentException if no member with the given ID exists.
      */
     public void deleteMember(int id) {
-        Member existingMember = getMember(id);
-        if (existingMember == null) {
-            throw new IllegalArgumentException("Member with ID " + id + " does not exist.");
-        }
-        memberRepository.delete(id);
+        unitOfWork.run(() -> {
+            Member existingMember = getMember(id);
+            if (existingMember == null) {
+                throw new IllegalArgumentException("Member with ID " + id + " does not exist.");
+            }
+            memberRepository.delete(id);
+        });
     }
 
     /**
@@ -499,10 +725,12 @@ public class FitnessService {
         if (price <= 0) {
             throw new IllegalArgumentException("Price must be greater than zero.");
         }
-        Membership existingMembership = getMembership(id);
-        existingMembership.setType(type);
-        existingMembership.setPrice(price);
-        membershipRepository.update(existingMembership);
+        unitOfWork.run(() -> {
+            Membership existingMembership = getMembership(id);
+            existingMembership.setType(type);
+            existingMembership.setPrice(price);
+            membershipRepository.update(existingMembership);
+        });
     }
     /**
      * Deletes a membership from the repository by its unique ID.
@@ -510,11 +738,13 @@ public class FitnessService {
      * @throws IllegalArgumentException if no membership with the given ID exists.
      */
     public void deleteMembership(int id) {
-        Membership existingMembership = getMembership(id);
-        if (existingMembership == null) {
-            throw new IllegalArgumentException("Membership with ID " + id + " does not exist.");
-        }
-        membershipRepository.delete(id);
+        unitOfWork.run(() -> {
+            Membership existingMembership = getMembership(id);
+            if (existingMembership == null) {
+                throw new IllegalArgumentException("Membership with ID " + id + " does not exist.");
+            }
+            membershipRepository.delete(id);
+        });
     }
 
     /**
@@ -581,11 +811,14 @@ public class FitnessService {
         if (location == null) {
             throw new IllegalArgumentException("Location cannot be null.");
         }
-        Room existingRoom = getRoom(id);
-        existingRoom.setName(name);
-        existingRoom.setMaxCapacity(maxCapacity);
-        existingRoom.setLocation(location);
-        roomRepository.update(existingRoom);
+        unitOfWork.run(() -> {
+            Room existingRoom = getRoom(id);
+            existingRoom.setName(name);
+            existingRoom.setMaxCapacity(maxCapacity);
+            existingRoom.setLocation(location);
+            roomRepository.update(existingRoom);
+        });
+        occupancyIndex.setRoomCapacity(id, maxCapacity);
     }
 
     /**
@@ -594,11 +827,13 @@ public class FitnessService {
      * @throws IllegalArgumentException if no room with the given ID exists.
      */
     public void deleteRoom(int id) {
-        Room existingRoom = getRoom(id);
-        if (existingRoom == null) {
-            throw new IllegalArgumentException("Room with ID " + id + " does not exist.");
-        }
-        roomRepository.delete(id);
+        unitOfWork.run(() -> {
+            Room existingRoom = getRoom(id);
+            if (existingRoom == null) {
+                throw new IllegalArgumentException("Room with ID " + id + " does not exist.");
+            }
+            roomRepository.delete(id);
+        });
     }
 
     /**
@@ -661,11 +896,13 @@ public class FitnessService {
         if (password == null) {
             throw new IllegalArgumentException("Trainer mail cannot be null or empty.");
         }
-        Trainer existingTrainer = getTrainer(id);
-        existingTrainer.setName(name);
-        existingTrainer.setPassword(password);
-        existingTrainer.setSpecialisation(specialisation);
-        trainerRepository.update(existingTrainer);
+        unitOfWork.run(() -> {
+            Trainer existingTrainer = getTrainer(id);
+            existingTrainer.setName(name);
+            existingTrainer.setPassword(password);
+            existingTrainer.setSpecialisation(specialisation);
+            trainerRepository.update(existingTrainer);
+        });
     }
 
     /**
@@ -674,11 +911,13 @@ public class FitnessService {
      * @throws IllegalArgumentException if no trainer with the given ID exists.
      */
     public void deleteTrainer(int id) {
-        Trainer existingTrainer = getTrainer(id);
-        if (existingTrainer == null) {
-            throw new IllegalArgumentException("Trainer with ID " + id + " does not exist.");
-        }
-        trainerRepository.delete(id);
+        unitOfWork.run(() -> {
+            Trainer existingTrainer = getTrainer(id);
+            if (existingTrainer == null) {
+                throw new IllegalArgumentException("Trainer with ID " + id + " does not exist.");
+            }
+            trainerRepository.delete(id);
+        });
     }
 
     /**
@@ -698,39 +937,44 @@ public class FitnessService {
      * Retrieves the upcoming fitness classes for a specific trainer.
      * Only classes that have not yet started and are managed by the given trainer are included.
      * @param trainerId The unique ID of the trainer for whom upcoming classes are to be retrieved.
-     * @return A list of upcoming FitnessClass objects managed by the given trainer.
-     * @throws IllegalArgumentException if no upcoming classes exist for the given trainer.
+     * @return A list of upcoming FitnessClass objects managed by the given trainer, earliest first.
      */
     public List<FitnessClass> getTrainerUpcomingClasses(int trainerId) {
         List<FitnessClass> upcomingClasses = new ArrayList<>();
-        List<FitnessClass> allClasses = fitnessClassRepository.getAll();
-        for (FitnessClass fitnessClass : allClasses) {
-            if(fitnessClass.getTrainer().getId() == trainerId);{
-                if (fitnessClass.getStartTime().isAfter(LocalDateTime.now())) {
-                    upcomingClasses.add(fitnessClass);
-                }
+        for (FitnessClass fitnessClass : getAllUpcomingClasses()) {
+            if (fitnessClass.getTrainer() != null && fitnessClass.getTrainer().getId() == trainerId) {
+                upcomingClasses.add(fitnessClass);
             }
         }
-        if (upcomingClasses != null) {return upcomingClasses;}
-        else throw new IllegalArgumentException("No existing upcoming classes at the moment.");
+        return upcomingClasses;
     }
 
     /**
      * Retrieves all upcoming fitness classes
      * Only classes that have not yet started are included in the result.
-     * @return A list of upcoming FitnessClass objects.
-     * @throws IllegalArgumentException if no upcoming classes are available.
+     * The IDs of the classes are read from the start time index and the classes from the repository, so the cost
+     * depends on the number of upcoming classes only.
+     * @return A list of upcoming FitnessClass objects, earliest first.
      */
     public List<FitnessClass> getAllUpcomingClasses() {
-        List<FitnessClass> upcomingClasses = new ArrayList<>();
-        List<FitnessClass> allClasses = fitnessClassRepository.getAll();
-        for (FitnessClass fitnessClass : allClasses) {
-            if (fitnessClass.getStartTime().isAfter(LocalDateTime.now())) {
-                upcomingClasses.add(fitnessClass);
-            }
+        refreshIndexes();
+        return readClasses(startTimeIndex.startingAfter(LocalDateTime.now()));
+    }
+
+    /**
+     * Retrieves one page of the upcoming fitness classes, earliest first.
+     * Only classes that have not yet started are included in the result.
+     * @param offset The number of upcoming classes to skip.
+     * @param limit  The maximum number of classes to return.
+     * @return At most {@code limit} upcoming FitnessClass objects in ascending order of their start time.
+     * @throws IllegalArgumentException if the offset is negative or the limit is not positive.
+     */
+    public List<FitnessClass> getUpcomingClasses(int offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            throw new IllegalArgumentException("Offset must not be negative and limit must be greater than zero.");
         }
-        if (upcomingClasses != null) {return upcomingClasses;}
-        else throw new IllegalArgumentException("No existing upcoming classes at the moment.");
+        refreshIndexes();
+        return readClasses(startTimeIndex.startingAfter(LocalDateTime.now(), offset, limit));
     }
 
     /**
@@ -755,25 +999,83 @@ public class FitnessService {
     /**
      * Checks for scheduling conflicts when adding a new fitness class to a room.
      * It compares the start and end times of the new class with the existing classes
-     * scheduled in the same room to ensure there is no overlap.
+     * scheduled in the same room to ensure there is no overlap. Only the classes of that room starting around the
+     * requested time are looked at, through the room schedule index.
      * @param fitnessClass The FitnessClass object to be checked for schedule conflicts.
      * @throws IllegalStateException if the room is already booked for the specified time slot.
      */
     public void checkForScheduleCollision(FitnessClass fitnessClass){
-        List<FitnessClass> existingClasses = fitnessClassRepository.getAll();
-        for (FitnessClass existingClass : existingClasses) {
-            if (existingClass.getRoom().getId() == fitnessClass.getRoom().getId() &&
-                    (fitnessClass.getStartTime().isBefore(existingClass.getEndTime()) &&
-                            fitnessClass.getEndTime().isAfter(existingClass.getStartTime()))) {
-                throw new IllegalStateException("The room is already booked for this time slot.");
+        refreshIndexes();
+        if (roomScheduleIndex.overlaps(fitnessClass.getRoom().getId(), fitnessClass.getStartTime(),
+                fitnessClass.getEndTime(), fitnessClass.getId())) {
+            throw new IllegalStateException("The room is already booked for this time slot.");
+        }
+    }
+
+    /**
+     * Checks that the trainer of a fitness class is not already booked for another class overlapping it,
+     * at any location, through the trainer schedule index.
+     * @param fitnessClass The FitnessClass object to be checked for schedule conflicts.
+     * @throws IllegalStateException if the trainer already teaches another class in the specified time slot.
+     */
+    public void checkForTrainerCollision(FitnessClass fitnessClass) {
+        refreshIndexes();
+        if (fitnessClass.getTrainer() != null && trainerScheduleIndex.overlaps(fitnessClass.getTrainer().getId(),
+                fitnessClass.getStartTime(), fitnessClass.getEndTime(), fitnessClass.getId())) {
+            throw new IllegalStateException("The trainer is already booked for this time slot.");
+        }
+    }
+
+    /**
+     * Finds the trainers who are free for the whole given time slot, e.g. to find a substitute.
+     * @param start          The start of the time slot.
+     * @param end            The end of the time slot.
+     * @param specialisation The required specialisation, case-insensitive, or null for any specialisation.
+     * @return The trainers with the given specialisation who teach no class overlapping the time slot.
+     * @throws IllegalArgumentException if the start or end time is null or the end time is before the start time.
+     */
+    public List<Trainer> findAvailableTrainers(LocalDateTime start, LocalDateTime end, String specialisation) {
+        if (start == null || end == null) {
+            throw new IllegalArgumentException("Start time and end time cannot be null.");
+        }
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("End time cannot be before start time.");
+        }
+        refreshIndexes();
+        List<Trainer> availableTrainers = new ArrayList<>();
+        for (Trainer trainer : trainerRepository.getAll()) {
+            if ((specialisation == null || specialisation.equalsIgnoreCase(trainer.getSpecialisation()))
+                    && !trainerScheduleIndex.overlaps(trainer.getId(), start, end, -1)) {
+                availableTrainers.add(trainer);
             }
         }
+        return availableTrainers;
+    }
+
+    /**
+     * Finds the earliest time at or after the given one at which a room is free for the given duration.
+     * @param roomId The ID of the room.
+     * @param from   The earliest acceptable start time.
+     * @param length The length of the class to be scheduled.
+     * @return The earliest start time at which the room is free for the whole duration.
+     * @throws IllegalArgumentException if the room does not exist, or the time or duration is missing or not positive.
+     */
+    public LocalDateTime findNextFreeRoomSlot(int roomId, LocalDateTime from, Duration length) {
+        if (roomRepository.read(roomId) == null) {
+            throw new IllegalArgumentException("Room with ID " + roomId + " does not exist.");
+        }
+        if (from == null || length == null || length.isNegative() || length.isZero()) {
+            throw new IllegalArgumentException("Start time and a positive duration are required.");
+        }
+        refreshIndexes();
+        return roomScheduleIndex.nextFreeSlot(roomId, from, length);
     }
 
     /**
      * Schedules a new fitness class by validating the provided inputs and checking for schedule collisions.
      * If the class is valid and there are no conflicts, it creates and stores the new FitnessClass object
-     * in the repository.
+     * in the repository. The locks of the room and the trainer are held from the collision checks until the class is
+     * stored, so two concurrent schedules for the same room or trainer cannot both pass the checks.
      * @param className The name of the new fitness class.
      * @param startTime The start time of the fitness class.
      * @param endTime The end time of the fitness class.
@@ -785,7 +1087,7 @@ public class FitnessService {
      * @throws IllegalArgumentException If any of the provided parameters are invalid, such as:
      *         - If the room or location does not exist.
      *         - If the start or end time is null or if the end time is before the start time.
-     * @throws IllegalStateException If there is a schedule collision for the room at the given time.
+     * @throws IllegalStateException If there is a schedule collision for the room or the trainer at the given time.
      */
     public void scheduleNewClass(String className, LocalDateTime startTime, LocalDateTime endTime, int trainerId,
                                  int roomId, int participantsCount, int locationId,List<Equipment> equipment) {
@@ -808,59 +1110,94 @@ public class FitnessService {
         List<Member> members = new ArrayList<>();
         FitnessClass newFitnessClass = new FitnessClass(className, startTime, endTime, trainer, room, participantsCount,
                 location, feedback, members, equipment);
-        newFitnessClass.setId(HelperFunctions.randomId());
-        checkForScheduleCollision(newFitnessClass);
-        fitnessClassRepository.create(newFitnessClass);
+        newFitnessClass.setId(idAllocator.nextId(FitnessClass.class));
+        reservationLocks.withRoomAndTrainerLocks(roomId, trainerId, () -> {
+            checkForScheduleCollision(newFitnessClass);
+            checkForTrainerCollision(newFitnessClass);
+            fitnessClassRepository.create(newFitnessClass);
+        });
     }
 
     /**
-     * Helper method to check if two fitness classes are similar based on their trainer and equipment.
-     * Two classes are considered similar if they share the same trainer and at least one common piece of equipment.
-     * @param fitnessClass The first fitness class to compare.
-     * @param targetClass The second fitness class to compare.
-     * @return true if the classes are similar (same trainer and at least one common equipment), false otherwise.
+     * Method to retrieve a list of fitness classes that are similar to a target class.
+     * A class is considered similar if it has the same trainer and at least one common piece of equipment.
+     * Only the upcoming classes of the target's trainer are looked at, through the {@link ClassFeatureIndex}.
+     * @param targetClass The fitness class to compare against other classes.
+     * @return A list of fitness classes that are similar to the target class based on trainer and equipment.
+     * @throws IllegalArgumentException if the target class is null.
      */
-    private boolean findSimilarClasses(FitnessClass fitnessClass, FitnessClass targetClass) {
-        if (fitnessClass == null || targetClass == null) {
-            throw new IllegalArgumentException("Fitness classes must not be null");
-        }
-        if (!fitnessClass.getTrainer().equals(targetClass.getTrainer())) {
-            return false;
+    public List<FitnessClass> getSimilarClasses(FitnessClass targetClass) {
+        if (targetClass == null) {
+            throw new IllegalArgumentException("Target class must not be null.");
         }
-        Set<Equipment> targetEquipmentSet = new HashSet<>(targetClass.getEquipment());
-        for (Equipment equipment : fitnessClass.getEquipment()) {
-            if (targetEquipmentSet.contains(equipment)) {
-                return true;
+        refreshIndexes();
+        List<FitnessClass> similarClasses = new ArrayList<>();
+        for (int classId : classFeatureIndex.sameTrainerAndEquipment(targetClass, LocalDateTime.now())) {
+            FitnessClass fitnessClass = fitnessClassRepository.read(classId);
+            if (fitnessClass != null) {
+                similarClasses.add(fitnessClass);
             }
         }
-        return false;
+        return similarClasses;
     }
 
     /**
-     * Method to retrieve a list of fitness classes that are similar to a target class.
-     * A class is considered similar if it has the same trainer and at least one common piece of equipment.
-     * This method searches through all existing fitness classes in the repository and returns those that match
-     * the criteria of similarity to the provided target class.
+     * Recommends the upcoming classes most similar to a target class, best first.
+     * Candidates are the classes sharing a piece of equipment or the trainer with the target; they are ranked by the
+     * weighted overlap of their equipment, whether they have the same trainer and how close they start to the target.
+     * See {@link ClassFeatureIndex#mostSimilar(FitnessClass, LocalDateTime, int)}.
      * @param targetClass The fitness class to compare against other classes.
-     * @return A list of fitness classes that are similar to the target class based on trainer and equipment.
-     * @throws IllegalArgumentException if no similar classes are found.
+     * @param k           The maximum number of classes to recommend.
+     * @return Up to k recommended classes, most similar first.
+     * @throws IllegalArgumentException if the target class is null or k is negative.
      */
-    public List<FitnessClass> getSimilarClasses(FitnessClass targetClass) {
+    public List<FitnessClass> recommendSimilarClasses(FitnessClass targetClass, int k) {
         if (targetClass == null) {
             throw new IllegalArgumentException("Target class must not be null.");
         }
-        List<FitnessClass> allClasses = fitnessClassRepository.getAll();
-        List<FitnessClass> similarClasses = new ArrayList<>();
-        for (FitnessClass fitnessClass : allClasses) {
-            if (fitnessClass.getId() == targetClass.getId()) {
-                continue;
+        refreshIndexes();
+        List<FitnessClass> recommendations = new ArrayList<>();
+        for (ClassFeatureIndex.ScoredClass scored : classFeatureIndex.mostSimilar(targetClass, LocalDateTime.now(), k)) {
+            FitnessClass fitnessClass = fitnessClassRepository.read(scored.classId());
+            if (fitnessClass != null) {
+                recommendations.add(fitnessClass);
             }
-            if (findSimilarClasses(fitnessClass, targetClass) && fitnessClass.getStartTime().isAfter(LocalDateTime.now())) {
-                similarClasses.add(fitnessClass);
+        }
+        return recommendations;
+    }
+
+    /**
+     * Recommends upcoming classes to a member from the enrolment history of all members: the classes most often taken
+     * together with the classes the member is enrolled in, best first.
+     * Recommendations come from the neighbour table of the {@link CoEnrollmentIndex}, which is refreshed in the
+     * background as enrolments change; see {@link #refreshRecommendations()}.
+     * @param memberId The ID of the member.
+     * @param k        The maximum number of classes to recommend.
+     * @return Up to k recommended classes, best first.
+     * @throws IllegalArgumentException if the member does not exist or k is negative.
+     */
+    public List<FitnessClass> recommendForMember(int memberId, int k) {
+        if (memberRepository.read(memberId) == null) {
+            throw new IllegalArgumentException("Member with ID " + memberId + " does not exist.");
+        }
+        refreshIndexes();
+        List<FitnessClass> recommendations = new ArrayList<>();
+        for (CoEnrollmentIndex.Recommendation recommendation
+                : coEnrollmentIndex.recommendForMember(memberId, LocalDateTime.now(), k)) {
+            FitnessClass fitnessClass = fitnessClassRepository.read(recommendation.classId());
+            if (fitnessClass != null) {
+                recommendations.add(fitnessClass);
             }
         }
-        if (similarClasses != null) {return similarClasses;}
-        return null;
+        return recommendations;
+    }
+
+    /**
+     * Brings the recommendations of {@link #recommendForMember(int, int)} up to date with all enrolments made so far,
+     * instead of waiting for the background refresh.
+     */
+    public void refreshRecommendations() {
+        coEnrollmentIndex.refresh();
     }
 
     /**
@@ -868,26 +1205,54 @@ public class FitnessService {
      * This method checks if the class exists, if the member is already registered, and if there are available slots
      * in the class. If all checks pass, the member is added to the class, and the participant count is updated.
      * The class is then persisted to the repository with the new member and participant count.
+     * Registrations and drops of the same class run one at a time under a per-class lock, so concurrent registrations
+     * can never overbook the class, while registrations for other classes proceed in parallel. The member's lock is
+     * held as well, so two concurrent registrations of the same member cannot both pass the schedule check.
+     * If the class repository is an {@link EnrollmentRepository}, e.g. in database mode, the seat is taken and the
+     * registration recorded by the repository in one atomic operation, which also holds across application instances.
      * @param memberId The ID of the member who wants to register.
      * @param classId The ID of the fitness class to which the member wants to register.
-     * @throws IllegalArgumentException If the fitness class does not exist.
-     * @throws IllegalStateException If the member is already registered for the class or if the class is full.
+     * @throws IllegalArgumentException If the fitness class or the member does not exist.
+     * @throws IllegalStateException If the member is already registered for the class, if the class is full or if the
+     *         member is registered for another class at the same time.
      */
     public void registerToClass(int memberId, int classId) {
-        FitnessClass fitnessClass = fitnessClassRepository.read(classId);
-        if (fitnessClass == null) {
-            throw new IllegalArgumentException("Fitness class with ID " + classId + " does not exist.");
-        }
-        Member member = memberRepository.read(memberId);
-        if (fitnessClass.getMembers().contains(member)) {
-            throw new IllegalStateException("Member is already registered for this class.");
-        }
-        if (fitnessClass.getParticipantsCount() >= fitnessClass.getRoom().getMaxCapacity()) {
-            throw new IllegalStateException("The class is already full.");
-        }
-        fitnessClass.getMembers().add(member);
-        fitnessClass.setParticipantsCount(fitnessClass.getParticipantsCount() + 1);
-        fitnessClassRepository.update(fitnessClass);
+        refreshIndexes();
+        reservationLocks.withClassAndMemberLocks(classId, memberId, () -> writeAtomically(() -> {
+            FitnessClass fitnessClass = fitnessClassRepository.read(classId);
+            if (fitnessClass == null) {
+                throw new IllegalArgumentException("Fitness class with ID " + classId + " does not exist.");
+            }
+            Member member = memberRepository.read(memberId);
+            if (member == null) {
+                throw new IllegalArgumentException("Member with ID " + memberId + " does not exist.");
+            }
+            if (fitnessClass.getMembers().contains(member)) {
+                throw new IllegalStateException("Member is already registered for this class.");
+            }
+            if (fitnessClass.getParticipantsCount() >= fitnessClass.getRoom().getMaxCapacity()) {
+                throw new IllegalStateException("The class is already full.");
+            }
+            if (memberScheduleIndex.overlaps(memberId, fitnessClass.getStartTime(), fitnessClass.getEndTime(), classId)) {
+                throw new IllegalStateException("Member is already registered for another class at this time.");
+            }
+            if (enrollmentRepository != null && !enrollmentRepository.enroll(classId, memberId)) {
+                throw new IllegalStateException("The class is already full.");
+            }
+            fitnessClass.getMembers().add(member);
+            fitnessClass.setParticipantsCount(fitnessClass.getParticipantsCount() + 1);
+            if (enrollmentRepository != null) {
+                fitnessClassRepository.reindex(fitnessClass);
+            } else {
+                fitnessClassRepository.update(fitnessClass);
+            }
+            unitOfWork.afterCommit(() -> {
+                Waitlist waitlist = waitlists.get(classId);
+                if (waitlist != null) {
+                    waitlist.remove(memberId);
+                }
+            });
+        }));
     }
 
     /**
@@ -895,23 +1260,152 @@ public class FitnessService {
      * This method checks if the class exists and if the member is currently registered for the class.
      * If the member is registered, they are removed from the class, and the participant count is updated.
      * The class is then persisted to the repository with the updated member list and participant count.
+     * The freed seat is then given to the first member on the class's waitlist, see {@link #joinWaitlist(int, int)}.
      * @param memberId The ID of the member who wants to drop the class.
      * @param classId The ID of the fitness class the member wants to drop from.
      * @throws IllegalArgumentException If the fitness class does not exist.
      * @throws IllegalStateException If the member is not registered for the class.
      */
     public void dropClass(int memberId, int classId) {
-        FitnessClass fitnessClass = fitnessClassRepository.read(classId);
-        if (fitnessClass == null) {
-            throw new IllegalArgumentException("Fitness class with ID " + classId + " does not exist.");
+        reservationLocks.withClassLock(classId, () -> {
+            writeAtomically(() -> {
+                FitnessClass fitnessClass = fitnessClassRepository.read(classId);
+                if (fitnessClass == null) {
+                    throw new IllegalArgumentException("Fitness class with ID " + classId + " does not exist.");
+                }
+                Member member = memberRepository.read(memberId);
+                if (!fitnessClass.getMembers().contains(member)) {
+                    throw new IllegalStateException("Member is not registered for this class.");
+                }
+                if (enrollmentRepository != null && !enrollmentRepository.withdraw(classId, memberId)) {
+                    throw new IllegalStateException("Member is not registered for this class.");
+                }
+                fitnessClass.getMembers().remove(member);
+                fitnessClass.setParticipantsCount(fitnessClass.getParticipantsCount() - 1);
+                if (enrollmentRepository != null) {
+                    fitnessClassRepository.reindex(fitnessClass);
+                } else {
+                    fitnessClassRepository.update(fitnessClass);
+                }
+            });
+            // after the drop has been committed, so each promotion is a unit of its own that sees the indexes up to date
+            promoteFromWaitlist(classId);
+        });
+    }
+
+    /**
+     * Puts a member on the waitlist of a full fitness class. When a seat is freed by {@link #dropClass(int, int)}, the
+     * first member on the waitlist is registered automatically. Members with a priority membership type (Premium) are
+     * promoted before all others; within the same priority, members are promoted in the order they joined.
+     * <p>The waitlists are kept in memory by this service.</p>
+     * @param memberId The ID of the member who wants to wait for a seat.
+     * @param classId  The ID of the full fitness class.
+     * @throws IllegalArgumentException If the fitness class or the member does not exist.
+     * @throws IllegalStateException If the class still has free seats, or the member is already registered for the
+     *         class or already on its waitlist.
+     */
+    public void joinWaitlist(int memberId, int classId) {
+        reservationLocks.withClassLock(classId, () -> {
+            FitnessClass fitnessClass = fitnessClassRepository.read(classId);
+            if (fitnessClass == null) {
+                throw new IllegalArgumentException("Fitness class with ID " + classId + " does not exist.");
+            }
+            Member member = memberRepository.read(memberId);
+            if (member == null) {
+                throw new IllegalArgumentException("Member with ID " + memberId + " does not exist.");
+            }
+            if (fitnessClass.getMembers().contains(member)) {
+                throw new IllegalStateException("Member is already registered for this class.");
+            }
+            if (!isFull(fitnessClass)) {
+                throw new IllegalStateException("The class still has free seats.");
+            }
+            Waitlist waitlist = waitlists.computeIfAbsent(classId,
+                    id -> new Waitlist(PRIORITY_MEMBERSHIP_TYPES.size() + 1));
+            if (!waitlist.add(memberId, waitlistTier(member))) {
+                throw new IllegalStateException("Member is already on the waitlist of this class.");
+            }
+        });
+    }
+
+    /**
+     * Removes a member from the waitlist of a fitness class.
+     * @param memberId The ID of the member.
+     * @param classId  The ID of the fitness class.
+     * @throws IllegalStateException If the member is not on the waitlist of the class.
+     */
+    public void leaveWaitlist(int memberId, int classId) {
+        reservationLocks.withClassLock(classId, () -> {
+            Waitlist waitlist = waitlists.get(classId);
+            if (waitlist == null || !waitlist.remove(memberId)) {
+                throw new IllegalStateException("Member is not on the waitlist of this class.");
+            }
+        });
+    }
+
+    /**
+     * Retrieves the members waiting for a seat in a fitness class.
+     * @param classId The ID of the fitness class.
+     * @return The IDs of the waiting members, in the order they will be promoted.
+     */
+    public List<Integer> getWaitlist(int classId) {
+        return reservationLocks.withClassLock(classId, () -> {
+            Waitlist waitlist = waitlists.get(classId);
+            return waitlist == null ? new ArrayList<Integer>() : waitlist.toList();
+        });
+    }
+
+    /**
+     * Registers the first member on the waitlist of a class while the class has a free seat.
+     * Members who can no longer be registered, e.g. because they have since booked another class at the same time,
+     * are removed from the waitlist and the next one is tried. Must be called with the lock of the class held and
+     * outside any unit of work.
+     */
+    private void promoteFromWaitlist(int classId) {
+        Waitlist waitlist = waitlists.get(classId);
+        while (waitlist != null && waitlist.peek() != null && !isFull(fitnessClassRepository.read(classId))) {
+            int memberId = waitlist.peek();
+            try {
+                registerToClass(memberId, classId);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                if (isFull(fitnessClassRepository.read(classId))) {
+                    return;
+                }
+                waitlist.remove(memberId);
+            }
         }
-        Member member = memberRepository.read(memberId);
-        if (!fitnessClass.getMembers().contains(member)) {
-            throw new IllegalStateException("Member is not registered for this class.");
+    }
+
+    private static boolean isFull(FitnessClass fitnessClass) {
+        return fitnessClass.getParticipantsCount() >= fitnessClass.getRoom().getMaxCapacity();
+    }
+
+    private static int waitlistTier(Member member) {
+        if (member.getMembership() != null) {
+            for (int tier = 0; tier < PRIORITY_MEMBERSHIP_TYPES.size(); tier++) {
+                if (PRIORITY_MEMBERSHIP_TYPES.get(tier).equalsIgnoreCase(member.getMembership().getType())) {
+                    return tier;
+                }
+            }
+        }
+        return PRIORITY_MEMBERSHIP_TYPES.size();
+    }
+
+    /**
+     * Retrieves the timetable of a member for the week starting on the given day, from the member schedule index.
+     * Only the IDs and times of the classes are returned, so no class or member has to be loaded.
+     * @param memberId  The ID of the member.
+     * @param weekStart The first day of the week.
+     * @return The time slots of the member's classes during that week, in order of their start time.
+     * @throws IllegalArgumentException if the first day of the week is null.
+     */
+    public List<IntervalIndex.TimeSlot> getMemberWeekSchedule(int memberId, LocalDate weekStart) {
+        if (weekStart == null) {
+            throw new IllegalArgumentException("The first day of the week cannot be null.");
         }
-        fitnessClass.getMembers().remove(member);
-        fitnessClass.setParticipantsCount(fitnessClass.getParticipantsCount() - 1);
-        fitnessClassRepository.update(fitnessClass);
+        refreshIndexes();
+        LocalDateTime start = weekStart.atStartOfDay();
+        return memberScheduleIndex.timeSlots(memberId, start, start.plusWeeks(1));
     }
 
     /**
@@ -934,6 +1428,105 @@ public class FitnessService {
         return feedbackList;
     }
 
+    /**
+     * Returns the running rating aggregate of a fitness class: the number of ratings, their sum, the sum of their
+     * squares and a histogram of the ratings 1 to 5. This is an O(1) read that does not load any feedback.
+     * @param classId The ID of the fitness class.
+     * @return The rating aggregate, with a count of 0 if the class has no feedback.
+     */
+    public RatingIndex.RatingStats getClassRating(int classId) {
+        refreshIndexes();
+        return ratingIndex.forClass(classId);
+    }
+
+    /**
+     * Returns the running rating aggregate of a trainer over the feedback on all their classes.
+     * This is an O(1) read that does not load any feedback.
+     * @param trainerId The ID of the trainer.
+     * @return The rating aggregate, with a count of 0 if the trainer has no feedback.
+     */
+    public RatingIndex.RatingStats getTrainerRating(int trainerId) {
+        refreshIndexes();
+        return ratingIndex.forTrainer(trainerId);
+    }
+
+    /**
+     * Ranks the trainers by their average rating, looking only at one rating aggregate per trainer.
+     * @param k          The maximum number of trainers to return.
+     * @param minRatings The minimum number of ratings a trainer needs to be ranked, so that a single rating does not
+     *                   put a trainer on top.
+     * @return Up to k trainers, best average first.
+     * @throws IllegalArgumentException if k is negative.
+     */
+    public List<Trainer> getTopRatedTrainers(int k, int minRatings) {
+        if (k < 0) {
+            throw new IllegalArgumentException("The number of trainers must not be negative.");
+        }
+        refreshIndexes();
+        List<Trainer> trainers = new ArrayList<>();
+        for (int trainerId : ratingIndex.trainersByAverage(minRatings)) {
+            if (trainers.size() == k) {
+                break;
+            }
+            Trainer trainer = trainerRepository.read(trainerId);
+            if (trainer != null) {
+                trainers.add(trainer);
+            }
+        }
+        return trainers;
+    }
+
+    /**
+     * Computes the utilisation and fill rate of every room and location, and the peak hours of every location, from
+     * the classes starting in the given months. Rooms are taken to be open {@link #OPENING_HOURS_PER_DAY} every day.
+     * The aggregates of each month are computed once from a columnar snapshot of its classes and cached by the
+     * {@link OccupancyIndex} until its schedule changes, so repeated reports only merge the monthly aggregates.
+     * @param from The first month, inclusive.
+     * @param to   The last month, inclusive.
+     * @return The occupancy report of the months.
+     * @throws IllegalArgumentException if the last month is before the first.
+     */
+    public OccupancyReport getOccupancyReport(YearMonth from, YearMonth to) {
+        refreshIndexes();
+        OccupancyIndex.Occupancy occupancy = occupancyIndex.occupancy(from, to);
+        long days = ChronoUnit.DAYS.between(from.atDay(1), to.plusMonths(1).atDay(1));
+        long openMinutes = days * OPENING_HOURS_PER_DAY.toMinutes();
+
+        Map<Integer, Integer> roomLocations = new HashMap<>();
+        for (Room room : roomRepository.getAll()) {
+            roomLocations.put(room.getId(), room.getLocation() == null ? null : room.getLocation().getId());
+        }
+        Map<Integer, Double> roomUtilisation = new HashMap<>();
+        Map<Integer, Double> roomFillRate = new HashMap<>();
+        Map<Integer, long[]> locationTotals = new HashMap<>();
+        for (OccupancyIndex.RoomUsage usage : occupancy.rooms().values()) {
+            roomUtilisation.put(usage.roomId(), (double) usage.bookedMinutes() / openMinutes);
+            roomFillRate.put(usage.roomId(), usage.fillRate());
+            roomLocations.putIfAbsent(usage.roomId(), usage.locationId());
+        }
+        for (Map.Entry<Integer, Integer> room : roomLocations.entrySet()) {
+            if (room.getValue() == null) {
+                continue;
+            }
+            long[] totals = locationTotals.computeIfAbsent(room.getValue(), key -> new long[4]);
+            OccupancyIndex.RoomUsage usage = occupancy.rooms().get(room.getKey());
+            totals[0]++;
+            if (usage != null) {
+                totals[1] += usage.bookedMinutes();
+                totals[2] += usage.participants();
+                totals[3] += usage.seats();
+            }
+        }
+        Map<Integer, Double> locationUtilisation = new HashMap<>();
+        Map<Integer, Double> locationFillRate = new HashMap<>();
+        locationTotals.forEach((locationId, totals) -> {
+            locationUtilisation.put(locationId, (double) totals[1] / (totals[0] * openMinutes));
+            locationFillRate.put(locationId, totals[3] == 0 ? 0 : (double) totals[2] / totals[3]);
+        });
+        return new OccupancyReport(roomUtilisation, roomFillRate, locationUtilisation, locationFillRate,
+                occupancy.peakHours());
+    }
+
     /**
      * Retrieves all fitness classes taught by a specific trainer.
      * This method fetches all the available fitness classes and filters them based on the trainer's ID. It returns a list
@@ -1015,33 +1608,23 @@ public class FitnessService {
 
     /**
      * Sorts all upcoming fitness classes in ascending order by their start time.
-     * This method retrieves a list of all upcoming fitness classes and sorts them so that the earliest-starting class
-     * appears first. Useful for displaying the next available classes to users.
+     * The start time index already returns the upcoming classes with the earliest-starting class first, so no sorting
+     * is needed. Useful for displaying the next available classes to users.
      * @return A list of FitnessClass objects, sorted by their start time in ascending order.
      */
     public List<FitnessClass> sortUpcomingClassesASC() {
-        List<FitnessClass> fitnessClasses = getAllUpcomingClasses();
-        if (fitnessClasses == null) {
-            throw new IllegalArgumentException("No upcoming classes available.");
-        }
-        fitnessClasses.sort(Comparator.comparing(FitnessClass::getStartTime));
-        return fitnessClasses;
+        return getAllUpcomingClasses();
     }
 
     /**
      * Sorts all upcoming fitness classes for a specific trainer in ascending order by their start time.
-     * This method filters the list of all fitness classes to include only those assigned to the specified trainer, then sorts
-     * them so that the earliest-starting class appears first.
+     * This method filters the upcoming classes, which the start time index returns earliest first, to include only
+     * those assigned to the specified trainer.
      * @param trainerId The ID of the trainer whose classes are to be sorted.
      * @return A list of FitnessClass objects for the specified trainer, sorted by their start time in ascending order.
      */
     public List<FitnessClass> sortUpcomingTrainerClassesASC(int trainerId) {
-        List<FitnessClass> fitnessClasses = getTrainerUpcomingClasses(trainerId);
-        if (fitnessClasses == null) {
-            throw new IllegalArgumentException("No upcoming classes available.");
-        }
-        fitnessClasses.sort(Comparator.comparing(FitnessClass::getStartTime));
-        return fitnessClasses;
+        return getTrainerUpcomingClasses(trainerId);
     }
 
     /**
@@ -1083,11 +1666,63 @@ public class FitnessService {
             throw new IllegalArgumentException("Fitness class with ID " + classId + " does not exist.");
         }
         Feedback feedback = new Feedback(member, fitnessClass, rating, feedbackContent);
-        feedback.setId(HelperFunctions.randomId());
-        feedbackRepository.create(feedback);
-        fitnessClass.getFeedback().add(feedback);
-        fitnessClassRepository.update(fitnessClass);
+        feedback.setId(idAllocator.nextId(Feedback.class));
+        reservationLocks.withClassLock(classId, () -> unitOfWork.run(() -> {
+            feedbackRepository.create(feedback);
+            retryOnConflict(() -> {
+                FitnessClass current = getFitnessClass(classId);
+                List<Feedback> classFeedback = new ArrayList<>(current.getFeedback());
+                if (!classFeedback.contains(feedback)) {
+                    classFeedback.add(feedback);
+                }
+                current.setFeedback(classFeedback);
+                fitnessClassRepository.update(current);
+            });
+        }));
         System.out.println("Feedback added successfully");
     }
 
+    /**
+     * Runs a read-modify-write operation, starting it again when the repository rejects its write because the entity
+     * has been changed by another writer in the meantime (optimistic concurrency, see {@link Versioned}).
+     * <p>The operation must read the entities it changes itself, so that every attempt starts from their current
+     * state; the repositories drop stale cached instances when they reject a write.</p>
+     * @param operation The operation to run.
+     * @param <R>       The type of the result.
+     * @return The result of the first attempt that did not conflict.
+     * @throws ConcurrentModificationException If the operation still conflicts after {@value #MAX_CONFLICT_ATTEMPTS} attempts.
+     */
+    public <R> R retryOnConflict(Supplier<R> operation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.get();
+            } catch (ConcurrentModificationException e) {
+                if (attempt == MAX_CONFLICT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a read-modify-write operation as one unit of work, starting it again when its write conflicts with another
+     * writer.
+     */
+    private void writeAtomically(Runnable operation) {
+        unitOfWork.run(() -> retryOnConflict(operation));
+    }
+
+    /**
+     * Runs a read-modify-write operation, starting it again when its write conflicts with another writer.
+     * @param operation The operation to run.
+     * @throws ConcurrentModificationException If the operation still conflicts after {@value #MAX_CONFLICT_ATTEMPTS} attempts.
+     * @see #retryOnConflict(Supplier)
+     */
+    public void retryOnConflict(Runnable operation) {
+        retryOnConflict(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
 }
@@ -0,0 +1,46 @@
+package service;
+
+import java.time.DayOfWeek;
+import java.util.Map;
+
+/**
+ * Room and location analytics over a range of months, as computed by
+ * {@link FitnessService#getOccupancyReport(java.time.YearMonth, java.time.YearMonth)}.
+ * Utilisation is booked hours / open hours; fill rate is registered participants / seats offered by the classes.
+ * @param roomUtilisation     The utilisation of each room, by room ID.
+ * @param roomFillRate        The fill rate of the classes of each room, by room ID.
+ * @param locationUtilisation The utilisation of all rooms of each location together, by location ID.
+ * @param locationFillRate    The fill rate of the classes of each location, by location ID.
+ * @param peakHours           The participant-minutes in each hour of the week, Monday 0:00 first, by location ID.
+ */
+public record OccupancyReport(Map<Integer, Double> roomUtilisation, Map<Integer, Double> roomFillRate,
+                              Map<Integer, Double> locationUtilisation, Map<Integer, Double> locationFillRate,
+                              Map<Integer, long[]> peakHours) {
+
+    /**
+     * Returns the busiest hour of the week of a location, i.e. the one with the most participant-minutes.
+     * @param locationId The ID of the location.
+     * @return The hour of the week (day * 24 + hour, Monday 0:00 is 0), or -1 if the location had no participants.
+     */
+    public int busiestHour(int locationId) {
+        long[] heatmap = peakHours.get(locationId);
+        int busiest = -1;
+        if (heatmap != null) {
+            for (int hour = 0; hour < heatmap.length; hour++) {
+                if (heatmap[hour] > 0 && (busiest < 0 || heatmap[hour] > heatmap[busiest])) {
+                    busiest = hour;
+                }
+            }
+        }
+        return busiest;
+    }
+
+    /**
+     * Formats an hour of the week, e.g. "MONDAY 18:00".
+     * @param hourOfWeek The hour of the week as returned by {@link #busiestHour(int)}.
+     * @return The day and hour.
+     */
+    public static String formatHourOfWeek(int hourOfWeek) {
+        return DayOfWeek.of(hourOfWeek / 24 + 1) + String.format(" %02d:00", hourOfWeek % 24);
+    }
+}
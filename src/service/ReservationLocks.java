@@ -0,0 +1,101 @@
+package service;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serialises the seat reservations of each fitness class without serialising the whole service.
+ * <p>Class IDs are mapped onto a fixed number of lock stripes, so registrations for different classes usually run in
+ * parallel while the check-then-act sequence of one class (read the participants count, compare it with the room
+ * capacity, add the member, store the class) runs under that class's lock. The locks are reentrant, so a reservation
+ * may trigger another one for the same class.</p>
+ * <p>Members, rooms and trainers have stripes of their own, for check-then-act sequences on their schedules. To rule
+ * out deadlocks, locks are always taken in the order class, member and room, trainer, and a thread holding a member
+ * lock takes no further lock.</p>
+ */
+final class ReservationLocks {
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] classStripes = stripes();
+    private final ReentrantLock[] memberStripes = stripes();
+    private final ReentrantLock[] roomStripes = stripes();
+    private final ReentrantLock[] trainerStripes = stripes();
+
+    /**
+     * Runs the given work while holding the lock of the given class.
+     * @param classId The ID of the fitness class.
+     * @param work    The work to run.
+     * @param <R>     The type of the result.
+     * @return The result of the work.
+     */
+    <R> R withClassLock(int classId, Supplier<R> work) {
+        return withLocks(work, classStripes[stripe(classId)]);
+    }
+
+    /**
+     * Runs the given work while holding the lock of the given class.
+     * @param classId The ID of the fitness class.
+     * @param work    The work to run.
+     */
+    void withClassLock(int classId, Runnable work) {
+        withLocks(supplier(work), classStripes[stripe(classId)]);
+    }
+
+    /**
+     * Runs the given work while holding the locks of the given class and member, e.g. to check a member's schedule
+     * and book a seat for them in one step.
+     * @param classId  The ID of the fitness class.
+     * @param memberId The ID of the member.
+     * @param work     The work to run.
+     */
+    void withClassAndMemberLocks(int classId, int memberId, Runnable work) {
+        withLocks(supplier(work), classStripes[stripe(classId)], memberStripes[stripe(memberId)]);
+    }
+
+    /**
+     * Runs the given work while holding the locks of the given room and trainer, e.g. to check their schedules and
+     * book a new class in one step.
+     * @param roomId    The ID of the room.
+     * @param trainerId The ID of the trainer.
+     * @param work      The work to run.
+     */
+    void withRoomAndTrainerLocks(int roomId, int trainerId, Runnable work) {
+        withLocks(supplier(work), roomStripes[stripe(roomId)], trainerStripes[stripe(trainerId)]);
+    }
+
+    private static <R> R withLocks(Supplier<R> work, ReentrantLock... locks) {
+        int locked = 0;
+        try {
+            for (ReentrantLock lock : locks) {
+                lock.lock();
+                locked++;
+            }
+            return work.get();
+        } finally {
+            while (locked > 0) {
+                locks[--locked].unlock();
+            }
+        }
+    }
+
+    private static Supplier<Void> supplier(Runnable work) {
+        return () -> {
+            work.run();
+            return null;
+        };
+    }
+
+    private static ReentrantLock[] stripes() {
+        ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        return stripes;
+    }
+
+    private static int stripe(int id) {
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
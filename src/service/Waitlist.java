@@ -0,0 +1,87 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * The waitlist of one fitness class: members waiting for a seat, in priority tiers that are each served first come,
+ * first served.
+ * <p>Every tier is an insertion-ordered set of member IDs, so joining, leaving and promoting the head are all O(1);
+ * finding the head only looks at the fixed number of tiers. Not thread-safe: callers hold the lock of the class.</p>
+ */
+final class Waitlist {
+
+    private final List<LinkedHashSet<Integer>> tiers = new ArrayList<>();
+
+    /**
+     * Constructs an empty waitlist with the given number of priority tiers.
+     * @param tierCount The number of tiers; tier 0 is served first.
+     */
+    Waitlist(int tierCount) {
+        for (int i = 0; i < tierCount; i++) {
+            tiers.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Adds a member at the end of the given tier.
+     * @param memberId The ID of the member.
+     * @param tier     The priority tier of the member.
+     * @return false if the member is already waiting.
+     */
+    boolean add(int memberId, int tier) {
+        if (contains(memberId)) {
+            return false;
+        }
+        return tiers.get(tier).add(memberId);
+    }
+
+    /**
+     * Removes a member from the waitlist.
+     * @param memberId The ID of the member.
+     * @return false if the member was not waiting.
+     */
+    boolean remove(int memberId) {
+        for (LinkedHashSet<Integer> tier : tiers) {
+            if (tier.remove(memberId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the member to be promoted next, without removing them.
+     * @return The ID of the member, or null if nobody is waiting.
+     */
+    Integer peek() {
+        for (LinkedHashSet<Integer> tier : tiers) {
+            Iterator<Integer> iterator = tier.iterator();
+            if (iterator.hasNext()) {
+                return iterator.next();
+            }
+        }
+        return null;
+    }
+
+    boolean contains(int memberId) {
+        for (LinkedHashSet<Integer> tier : tiers) {
+            if (tier.contains(memberId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the waiting members in the order they will be promoted.
+     * @return The member IDs.
+     */
+    List<Integer> toList() {
+        List<Integer> memberIds = new ArrayList<>();
+        tiers.forEach(memberIds::addAll);
+        return memberIds;
+    }
+}
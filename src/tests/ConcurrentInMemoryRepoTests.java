@@ -0,0 +1,158 @@
+package tests;
+
+import model.Location;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.ConcurrentInMemoryRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the ConcurrentInMemoryRepository class.
+ * These tests validate the CRUD operations and that they stay atomic when several threads use the repository at once.
+ */
+public class ConcurrentInMemoryRepoTests {
+
+    private static final int THREADS = 8;
+
+    private ConcurrentInMemoryRepository<Location> repository;
+
+    /**
+     * Set up a new repository instance before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        repository = new ConcurrentInMemoryRepository<>();
+    }
+
+    /**
+     * Tests the basic CRUD operations and the exceptions for duplicate and missing IDs.
+     */
+    @Test
+    public void testCrudOperations() {
+        repository.create(location(1));
+        assertThrows(IllegalArgumentException.class, () -> repository.create(location(1)));
+
+        Location updated = location(1);
+        updated.setName("Renamed");
+        repository.update(updated);
+        assertSame(updated, repository.read(1));
+        assertThrows(IllegalArgumentException.class, () -> repository.update(location(2)));
+
+        repository.delete(1);
+        assertNull(repository.read(1));
+        assertThrows(IllegalArgumentException.class, () -> repository.delete(1));
+    }
+
+    /**
+     * Tests that a rejected bulk operation leaves the repository as it was.
+     */
+    @Test
+    public void testRejectedBulkOperationsAreUndone() {
+        repository.create(location(1));
+        assertThrows(IllegalArgumentException.class, () -> repository.createAll(List.of(location(2), location(1))));
+        assertNull(repository.read(2));
+
+        Location original = repository.read(1);
+        assertThrows(IllegalArgumentException.class, () -> repository.updateAll(List.of(location(1), location(3))));
+        assertSame(original, repository.read(1));
+
+        assertThrows(IllegalArgumentException.class, () -> repository.deleteAll(1, 3));
+        assertSame(original, repository.read(1));
+    }
+
+    /**
+     * Tests that the live view can be iterated while other threads change the repository.
+     */
+    @Test
+    public void testValuesViewToleratesConcurrentChanges() {
+        for (int id = 0; id < 100; id++) {
+            repository.create(location(id));
+        }
+        Collection<Location> values = repository.values();
+        int seen = 0;
+        for (Location location : values) {
+            repository.delete(location.getId());
+            repository.create(location(location.getId() + 1000));
+            if (++seen == 100) {
+                break;
+            }
+        }
+        assertEquals(100, values.size());
+        assertThrows(UnsupportedOperationException.class, () -> values.clear());
+    }
+
+    /**
+     * Tests that only one of several threads creating the same ID succeeds.
+     */
+    @Test
+    public void testConcurrentCreateOfSameIdSucceedsOnce() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        runConcurrently(thread -> {
+            for (int id = 0; id < 1000; id++) {
+                try {
+                    repository.create(location(id));
+                    created.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    // another thread was first
+                }
+            }
+        });
+        assertEquals(1000, created.get());
+        assertEquals(1000, repository.getAll().size());
+    }
+
+    /**
+     * Tests that concurrent read-modify-write operations through compute do not lose updates.
+     */
+    @Test
+    public void testConcurrentComputeLosesNoUpdates() throws Exception {
+        repository.create(location(1));
+        runConcurrently(thread -> {
+            for (int i = 0; i < 1000; i++) {
+                repository.compute(1, current -> {
+                    Location next = location(1);
+                    next.setAddress(String.valueOf(Integer.parseInt(current.getAddress()) + 1));
+                    return next;
+                });
+            }
+        });
+        assertEquals(String.valueOf(THREADS * 1000), repository.read(1).getAddress());
+        assertThrows(IllegalArgumentException.class, () -> repository.compute(2, current -> current));
+    }
+
+    private void runConcurrently(IntConsumerTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int index = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(index);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    private interface IntConsumerTask {
+        void run(int thread);
+    }
+
+    private static Location location(int id) {
+        Location location = new Location("Location " + id, "0");
+        location.setId(id);
+        return location;
+    }
+}
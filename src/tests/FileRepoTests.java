@@ -2,6 +2,7 @@ package tests;
 
 import Helpers.HelperFunctions;
 import model.HasId;
+import model.Location;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import repository.FileRepository;
@@ -9,6 +10,7 @@ import repository.FileRepository;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -208,4 +210,67 @@ public class FileRepoTests {
         List<HasId> allEntities = repository.getAll();
         assertTrue(allEntities.isEmpty());
     }
+
+    /**
+     * Tests the createAll and deleteAll operations for adding and removing several entities at once.
+     * Verifies that the file reflects both bulk changes.
+     */
+    @Test
+    public void testCreateAllAndDeleteAllEntities() {
+        Location entity1 = new Location("Location 1", "Street 1");
+        entity1.setId(1);
+        Location entity2 = new Location("Location 2", "Street 2");
+        entity2.setId(2);
+        Location entity3 = new Location("Location 3", "Street 3");
+        entity3.setId(3);
+        FileRepository<Location> locations = new FileRepository<>(filePath);
+        locations.createAll(List.of(entity1, entity2, entity3));
+        assertEquals(3, locations.getAll().size());
+        locations.deleteAll(1, 2);
+        List<Location> allEntities = locations.getAll();
+        assertEquals(1, allEntities.size());
+        assertEquals(3, allEntities.get(0).getId());
+    }
+
+    /**
+     * Tests the write-behind mode when the flush interval has not elapsed yet.
+     * Verifies that mutations are visible through the repository immediately, and reach the file on close.
+     */
+    @Test
+    public void testWriteBehindFlushesOnClose() throws IOException {
+        File file = File.createTempFile("writeBehind", ".txt");
+        file.delete();
+        FileRepository<Location> writeBehind = new FileRepository<>(file.getPath(), 60_000, 1000);
+        Location location = new Location("Downtown", "Main Street 1");
+        location.setId(1);
+        writeBehind.create(location);
+        assertNotNull(writeBehind.read(1));
+        assertFalse(file.exists());
+        writeBehind.close();
+        assertNotNull(new FileRepository<Location>(file.getPath()).read(1));
+        file.delete();
+    }
+
+    /**
+     * Tests the write-behind mode when the number of pending mutations reaches the threshold.
+     * Verifies that the background thread writes them without waiting for the flush interval.
+     */
+    @Test
+    public void testWriteBehindFlushesWhenDirtyCountReached() throws IOException, InterruptedException {
+        File file = File.createTempFile("writeBehind", ".txt");
+        file.delete();
+        FileRepository<Location> writeBehind = new FileRepository<>(file.getPath(), 60_000, 2);
+        for (int id = 1; id <= 2; id++) {
+            Location location = new Location("Location " + id, "Street " + id);
+            location.setId(id);
+            writeBehind.create(location);
+        }
+        FileRepository<Location> reader = new FileRepository<>(file.getPath());
+        for (int attempt = 0; attempt < 50 && reader.getAll().size() < 2; attempt++) {
+            Thread.sleep(100);
+        }
+        assertEquals(2, reader.getAll().size());
+        writeBehind.close();
+        file.delete();
+    }
 }
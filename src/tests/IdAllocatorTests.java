@@ -0,0 +1,104 @@
+package tests;
+
+import model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.FileBlockSource;
+import repository.HiLoIdAllocator;
+import repository.IdAllocator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Unit tests for the HiLoIdAllocator and its block sources.
+ * These tests validate that IDs are handed out in blocks per entity type, that the file counter carries on after a
+ * restart, and that concurrent callers never get the same ID.
+ */
+public class IdAllocatorTests {
+
+    private File directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("ids").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Test that every entity type gets its own sequence of IDs and that a new block starts where the last one ended.
+     */
+    @Test
+    public void testIdsAreHandedOutInBlocksPerType() {
+        IdAllocator allocator = new HiLoIdAllocator(new HiLoIdAllocator.InMemoryBlockSource(), 3);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(HiLoIdAllocator.FIRST_ID + i, allocator.nextId(FitnessClass.class));
+        }
+        assertEquals(HiLoIdAllocator.FIRST_ID, allocator.nextId(Feedback.class));
+    }
+
+    /**
+     * Test that an allocator started on an existing counter file skips the blocks reserved before,
+     * including the unused rest of the last one.
+     */
+    @Test
+    public void testFileCounterSurvivesRestart() {
+        IdAllocator first = new HiLoIdAllocator(new FileBlockSource(directory.getPath()), 10);
+        assertEquals(HiLoIdAllocator.FIRST_ID, first.nextId(FitnessClass.class));
+        assertEquals(HiLoIdAllocator.FIRST_ID + 1, first.nextId(FitnessClass.class));
+
+        IdAllocator restarted = new HiLoIdAllocator(new FileBlockSource(directory.getPath()), 10);
+        assertEquals(HiLoIdAllocator.FIRST_ID + 10, restarted.nextId(FitnessClass.class));
+        assertEquals(HiLoIdAllocator.FIRST_ID, restarted.nextId(Feedback.class));
+    }
+
+    /**
+     * Test that many threads drawing IDs from two allocators sharing one counter file never get the same ID.
+     */
+    @Test
+    public void testConcurrentCallersNeverCollide() throws Exception {
+        FileBlockSource blockSource = new FileBlockSource(directory.getPath());
+        List<IdAllocator> allocators = List.of(new HiLoIdAllocator(blockSource, 7),
+                new HiLoIdAllocator(blockSource, 7));
+        int threads = 16;
+        int idsPerThread = 500;
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            IdAllocator allocator = allocators.get(thread % 2);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < idsPerThread; i++) {
+                    assertTrue(ids.add(allocator.nextId(Feedback.class)));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(threads * idsPerThread, ids.size());
+    }
+}
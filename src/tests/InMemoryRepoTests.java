@@ -2,13 +2,21 @@ package tests;
 
 import Helpers.HelperFunctions;
 import model.HasId;
+import model.Location;
+import model.Member;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import repository.InMemoryRepository;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 /**
  * Unit tests for the InMemoryRepository class.
@@ -197,4 +205,158 @@ public class InMemoryRepoTests {
         List<HasId> allEntities = repository.getAll();
         assertTrue(allEntities.isEmpty());
     }
+
+    /**
+     * Tests the createAll operation for adding several entities at once.
+     * Verifies that all of them are added.
+     */
+    @Test
+    public void testCreateAllEntities() {
+        HasId entity1 = new HasId() {
+            private int id = 1;
+            @Override public int getId() {return id;}
+            @Override public void setId(int id) {this.id = id;}
+        };
+        HasId entity2 = new HasId() {
+            private int id = 2;
+            @Override public int getId() {return id;}
+            @Override public void setId(int id) {this.id = id;}
+        };
+        repository.createAll(List.of(entity1, entity2));
+        assertNotNull(repository.read(1));
+        assertNotNull(repository.read(2));
+        assertEquals(2, repository.getAll().size());
+    }
+
+    /**
+     * Tests the createAll operation when one of the entities has an ID that already exists.
+     * Verifies that an exception is thrown and that none of the entities is added.
+     */
+    @Test
+    public void testCreateAllEntitiesWithDuplicateId() {
+        HasId entity1 = new HasId() {
+            private int id = 1;
+            @Override public int getId() {return id;}
+            @Override public void setId(int id) {this.id = id;}
+        };
+        HasId entity2 = new HasId() {
+            private int id = 2;
+            @Override public int getId() {return id;}
+            @Override public void setId(int id) {this.id = id;}
+        };
+        HasId entity3 = new HasId() {
+            private int id = 1;
+            @Override public int getId() {return id;}
+            @Override public void setId(int id) {this.id = id;}
+        };
+        repository.create(entity1);
+        assertThrows(IllegalArgumentException.class, () -> {
+            repository.createAll(List.of(entity2, entity3));
+        });
+        assertNull(repository.read(2));
+        assertEquals(1, repository.getAll().size());
+    }
+
+    /**
+     * Tests the deleteAll operation for removing several entities at once.
+     * Verifies that all of them are removed.
+     */
+    @Test
+    public void testDeleteAllEntities() {
+        HasId entity1 = new HasId() {
+            private int id = 1;
+            @Override public int getId() {return id;}
+            @Override public void setId(int id) {this.id = id;}
+        };
+        HasId entity2 = new HasId() {
+            private int id = 2;
+            @Override public int getId() {return id;}
+            @Override public void setId(int id) {this.id = id;}
+        };
+        HasId entity3 = new HasId() {
+            private int id = 3;
+            @Override public int getId() {return id;}
+            @Override public void setId(int id) {this.id = id;}
+        };
+        repository.createAll(List.of(entity1, entity2, entity3));
+        repository.deleteAll(1, 3);
+        List<HasId> allEntities = repository.getAll();
+        assertEquals(1, allEntities.size());
+        assertEquals(2, allEntities.get(0).getId());
+    }
+
+    /**
+     * Tests the deleteAll operation when one of the IDs does not exist.
+     * Verifies that an exception is thrown and that no entity is removed.
+     */
+    @Test
+    public void testDeleteAllNonExistentEntity() {
+        HasId entity = new HasId() {
+            private int id = 1;
+            @Override public int getId() {return id;}
+            @Override public void setId(int id) {this.id = id;}
+        };
+        repository.create(entity);
+        assertThrows(IllegalArgumentException.class, () -> {
+            repository.deleteAll(1, 9999);
+        });
+        assertNotNull(repository.read(1));
+    }
+
+    /**
+     * Tests a long random sequence of creates and deletes against a HashMap holding the expected content.
+     * Verifies that the repository stays consistent while its table grows and entries are removed from probe chains.
+     */
+    @Test
+    public void testRandomCreatesAndDeletes() {
+        Map<Integer, HasId> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int id = random.nextInt(5000) * 1024;
+            if (expected.containsKey(id)) {
+                repository.delete(id);
+                expected.remove(id);
+            } else {
+                Location location = new Location("Location " + id, "Street " + id);
+                location.setId(id);
+                repository.create(location);
+                expected.put(id, location);
+            }
+        }
+        assertEquals(expected.size(), repository.getAll().size());
+        for (int id = 0; id < 5000 * 1024; id += 1024) {
+            assertSame(expected.get(id), repository.read(id));
+        }
+    }
+
+    /**
+     * Tests the version check of versioned entities.
+     * Verifies that an update made on a copy read before another update is rejected and leaves the stored entity as it
+     * was, and that every accepted update increments the version.
+     */
+    @Test
+    public void testStaleVersionIsRejected() {
+        repository.create(member(1, "Maria"));
+        repository.create(member(2, "Ana"));
+        Member first = member(1, "Maria A.");
+        Member second = member(1, "Maria B.");
+        repository.update(first);
+        assertEquals(1, first.getVersion());
+
+        assertThrows(ConcurrentModificationException.class, () -> repository.update(second));
+        assertThrows(ConcurrentModificationException.class, () -> repository.updateAll(List.of(member(2, "Ana B."), second)));
+        assertSame(first, repository.read(1));
+        assertEquals("Ana", ((Member) repository.read(2)).getName());
+        assertEquals(0, second.getVersion());
+
+        second.setVersion(first.getVersion());
+        repository.update(second);
+        assertEquals(2, ((Member) repository.read(1)).getVersion());
+    }
+
+    private static Member member(int id, String name) {
+        Member member = new Member(name, "password", LocalDateTime.of(2024, 1, 15, 10, 30), null, new ArrayList<>());
+        member.setId(id);
+        return member;
+    }
 }
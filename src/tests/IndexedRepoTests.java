@@ -0,0 +1,330 @@
+package tests;
+
+import model.Equipment;
+import model.Feedback;
+import model.FitnessClass;
+import model.Member;
+import model.Room;
+import model.Trainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.InMemoryRepository;
+import repository.ClassFeatureIndex;
+import repository.ClassTrainerIndex;
+import repository.CoEnrollmentIndex;
+import repository.IndexedRepository;
+import repository.RatingIndex;
+import repository.RoomScheduleIndex;
+import repository.StartTimeIndex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the IndexedRepository class and the indexes it maintains.
+ * These tests validate that the indexes follow the writes made through the repository.
+ */
+public class IndexedRepoTests {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+    private IndexedRepository<FitnessClass> repository;
+    private StartTimeIndex startTimeIndex;
+
+    /**
+     * Set up an indexed in-memory repository holding one class before each test.
+     * The class already in the repository must be picked up when the index is added.
+     */
+    @BeforeEach
+    public void setUp() {
+        repository = new IndexedRepository<>(new InMemoryRepository<>());
+        repository.create(fitnessClass(1, NOW.plusHours(3)));
+        startTimeIndex = repository.getOrAddIndex(StartTimeIndex.class, StartTimeIndex::new);
+    }
+
+    /**
+     * Tests that the classes starting after a given time are returned in order, without past classes.
+     */
+    @Test
+    public void testStartingAfterReturnsUpcomingClassesInOrder() {
+        repository.createAll(List.of(fitnessClass(2, NOW.plusHours(1)), fitnessClass(3, NOW.minusHours(1)),
+                fitnessClass(4, NOW.plusHours(1))));
+
+        assertEquals(List.of(2, 4, 1), startTimeIndex.startingAfter(NOW));
+        assertSame(startTimeIndex, repository.getOrAddIndex(StartTimeIndex.class, StartTimeIndex::new));
+    }
+
+    /**
+     * Tests that a class changed in place is moved in the index when it is updated, and dropped when it is deleted.
+     */
+    @Test
+    public void testUpdateMovesAndDeleteRemovesClass() {
+        FitnessClass fitnessClass = repository.read(1);
+        fitnessClass.setStartTime(NOW.minusDays(1));
+        repository.update(fitnessClass);
+        assertTrue(startTimeIndex.startingAfter(NOW).isEmpty());
+        assertEquals(1, startTimeIndex.startingAfter(NOW.minusDays(2)).size());
+
+        repository.delete(1);
+        assertTrue(startTimeIndex.startingAfter(NOW.minusDays(2)).isEmpty());
+    }
+
+    /**
+     * Tests that a write rejected by the wrapped repository does not change the index.
+     */
+    @Test
+    public void testRejectedWriteLeavesIndexUnchanged() {
+        assertThrows(IllegalArgumentException.class, () -> repository.create(fitnessClass(1, NOW.plusDays(5))));
+        assertEquals(List.of(1), startTimeIndex.startingAfter(NOW));
+        assertEquals(NOW.plusHours(3), repository.read(1).getStartTime());
+    }
+
+    /**
+     * Tests that writes made to the wrapped repository directly are picked up by a refresh: new classes are indexed,
+     * changed ones moved and deleted ones dropped.
+     */
+    @Test
+    public void testRefreshPicksUpDirectWrites() {
+        repository.getDelegate().create(fitnessClass(2, NOW.plusHours(1)));
+        FitnessClass moved = repository.read(1);
+        moved.setStartTime(NOW.minusHours(1));
+        repository.getDelegate().update(moved);
+        assertEquals(List.of(1), startTimeIndex.startingAfter(NOW));
+
+        repository.refresh();
+        assertEquals(List.of(2), startTimeIndex.startingAfter(NOW));
+
+        repository.getDelegate().delete(2);
+        repository.refresh();
+        assertTrue(startTimeIndex.startingAfter(NOW).isEmpty());
+        assertEquals(List.of(1), startTimeIndex.startingAfter(NOW.minusDays(1)));
+    }
+
+    /**
+     * Tests that indexes added together are filled from a single read of the wrapped repository.
+     */
+    @Test
+    public void testAddIndexesReadsRepositoryOnce() {
+        int[] reads = {0};
+        IndexedRepository<FitnessClass> counted = new IndexedRepository<>(new InMemoryRepository<>() {
+            @Override
+            public List<FitnessClass> getAll() {
+                reads[0]++;
+                return super.getAll();
+            }
+        });
+        counted.getDelegate().create(inRoom(fitnessClass(2, NOW), room(7)));
+        StartTimeIndex startTimes = new StartTimeIndex();
+        RoomScheduleIndex rooms = new RoomScheduleIndex();
+        counted.addIndexes(List.of(startTimes, rooms));
+
+        assertEquals(1, reads[0]);
+        assertEquals(1, startTimes.startingAfter(NOW.minusHours(1)).size());
+        assertTrue(rooms.overlaps(7, NOW, NOW.plusMinutes(30), -1));
+        assertSame(rooms, counted.getIndex(RoomScheduleIndex.class));
+    }
+
+    /**
+     * Tests paging through the upcoming classes.
+     */
+    @Test
+    public void testPaging() {
+        for (int id = 2; id <= 10; id++) {
+            repository.create(fitnessClass(id, NOW.plusHours(3 + id)));
+        }
+        assertEquals(List.of(5, 6, 7), startTimeIndex.startingAfter(NOW, 4, 3));
+        assertEquals(2, startTimeIndex.startingAfter(NOW, 8, 3).size());
+    }
+
+    /**
+     * Tests the overlap checks of the room schedule: only overlapping classes of the same room collide,
+     * back-to-back classes do not, a class does not collide with itself, and long classes are still found after
+     * another long class has been shortened or deleted.
+     */
+    @Test
+    public void testRoomOverlaps() {
+        RoomScheduleIndex rooms = repository.getOrAddIndex(RoomScheduleIndex.class, RoomScheduleIndex::new);
+        Room room = room(7);
+        repository.create(inRoom(fitnessClass(2, NOW), room));
+        repository.create(inRoom(fitnessClass(3, NOW.plusHours(1)), room(8)));
+
+        assertTrue(rooms.overlaps(7, NOW.plusMinutes(30), NOW.plusMinutes(90), -1));
+        assertFalse(rooms.overlaps(7, NOW.plusHours(1), NOW.plusHours(2), -1));
+        assertFalse(rooms.overlaps(7, NOW.minusHours(1), NOW, -1));
+        assertFalse(rooms.overlaps(7, NOW, NOW.plusHours(1), 2));
+        assertEquals(List.of(3), rooms.overlapping(8, NOW, NOW.plusDays(1), -1));
+
+        repository.create(inRoom(fitnessClass(4, NOW.minusHours(5)), room));
+        repository.read(4).setEndTime(NOW.plusHours(5));
+        repository.update(repository.read(4));
+        assertEquals(List.of(4, 2), rooms.overlapping(7, NOW.plusMinutes(10), NOW.plusMinutes(20), -1));
+
+        repository.create(inRoom(fitnessClass(5, NOW.minusHours(6)), room));
+        repository.read(5).setEndTime(NOW.plusHours(4));
+        repository.update(repository.read(5));
+        repository.read(4).setEndTime(NOW.minusHours(4));
+        repository.update(repository.read(4));
+        assertEquals(List.of(5, 2), rooms.overlapping(7, NOW.plusMinutes(10), NOW.plusMinutes(20), -1));
+        repository.delete(5);
+        assertEquals(List.of(2), rooms.overlapping(7, NOW.plusMinutes(10), NOW.plusMinutes(20), -1));
+    }
+
+    /**
+     * Tests the search for the next free slot of a room.
+     */
+    @Test
+    public void testNextFreeSlot() {
+        RoomScheduleIndex rooms = repository.getOrAddIndex(RoomScheduleIndex.class, RoomScheduleIndex::new);
+        Room room = room(7);
+        repository.create(inRoom(fitnessClass(2, NOW), room));
+        repository.create(inRoom(fitnessClass(3, NOW.plusMinutes(90)), room));
+        repository.create(inRoom(fitnessClass(4, NOW.plusMinutes(150)), room));
+
+        assertEquals(NOW.minusHours(2), rooms.nextFreeSlot(7, NOW.minusHours(2), Duration.ofHours(1)));
+        assertEquals(NOW.minusMinutes(30), rooms.nextFreeSlot(7, NOW.minusMinutes(30), Duration.ofMinutes(30)));
+        assertEquals(NOW.plusHours(1), rooms.nextFreeSlot(7, NOW.minusMinutes(20), Duration.ofMinutes(30)));
+        assertEquals(NOW.plusMinutes(210), rooms.nextFreeSlot(7, NOW.minusMinutes(30), Duration.ofHours(1)));
+        assertEquals(NOW, rooms.nextFreeSlot(9, NOW, Duration.ofHours(1)));
+    }
+
+    /**
+     * Tests that similar classes are ranked by shared equipment, trainer and start time, that only the best K are
+     * returned, and that past classes and classes sharing nothing with the target are left out.
+     */
+    @Test
+    public void testMostSimilarRanksCandidates() {
+        ClassFeatureIndex features = repository.getOrAddIndex(ClassFeatureIndex.class, ClassFeatureIndex::new);
+        Equipment mat = equipment(1);
+        Equipment block = equipment(2);
+        FitnessClass target = withFeatures(fitnessClass(10, NOW.plusDays(1)), trainer(1), mat, block);
+        repository.createAll(List.of(target,
+                withFeatures(fitnessClass(2, NOW.plusDays(2)), trainer(1), mat),
+                withFeatures(fitnessClass(3, NOW.plusDays(2)), trainer(2), mat, block),
+                withFeatures(fitnessClass(4, NOW.plusDays(30)), trainer(2), mat),
+                withFeatures(fitnessClass(5, NOW.plusDays(1)), trainer(3)),
+                withFeatures(fitnessClass(6, NOW.minusDays(1)), trainer(1), block)));
+
+        List<ClassFeatureIndex.ScoredClass> best = features.mostSimilar(target, NOW, 2);
+        assertEquals(2, best.size());
+        assertEquals(3, best.get(0).classId());
+        assertEquals(2, best.get(1).classId());
+        List<ClassFeatureIndex.ScoredClass> all = features.mostSimilar(target, NOW, 10);
+        assertEquals(List.of(3, 2, 4), all.stream().map(ClassFeatureIndex.ScoredClass::classId).toList());
+        assertEquals(List.of(2), features.sameTrainerAndEquipment(target, NOW));
+
+        repository.delete(3);
+        assertEquals(2, features.mostSimilar(target, NOW, 1).get(0).classId());
+    }
+
+    /**
+     * Tests that members are recommended the upcoming classes most often taken together with theirs, and that the
+     * recommendations follow new enrolments once the index is refreshed.
+     */
+    @Test
+    public void testCoEnrollmentRecommendations() {
+        CoEnrollmentIndex coEnrollment = repository.getOrAddIndex(CoEnrollmentIndex.class, CoEnrollmentIndex::new);
+        FitnessClass popular = withMembers(fitnessClass(2, NOW.plusDays(1)), 1, 2, 3);
+        repository.createAll(List.of(popular,
+                withMembers(fitnessClass(3, NOW.plusDays(2)), 1, 2),
+                withMembers(fitnessClass(4, NOW.plusDays(3)), 3),
+                withMembers(fitnessClass(5, NOW.plusDays(4)), 4),
+                withMembers(fitnessClass(6, NOW.minusDays(1)), 1, 2)));
+        coEnrollment.refresh();
+
+        assertEquals(List.of(3, 6, 4), coEnrollment.neighbours(2).stream()
+                .map(CoEnrollmentIndex.Recommendation::classId).toList());
+        assertEquals(2 / Math.sqrt(6), coEnrollment.neighbours(2).get(0).score(), 1e-6);
+        assertEquals(List.of(3), recommended(coEnrollment, 3, 5));
+        assertEquals(List.of(), recommended(coEnrollment, 4, 5));
+
+        withMembers(popular, 4);
+        repository.update(popular);
+        coEnrollment.refresh();
+        assertEquals(List.of(3, 4), recommended(coEnrollment, 4, 5));
+        assertEquals(List.of(3), recommended(coEnrollment, 4, 1));
+
+        repository.delete(3);
+        coEnrollment.refresh();
+        assertEquals(List.of(4), recommended(coEnrollment, 4, 5));
+    }
+
+    /**
+     * Tests that the ratings of a class follow its trainer as kept by the class trainer index, without the rating
+     * index being told, and that deleting a class drops its trainer.
+     */
+    @Test
+    public void testRatingsFollowClassTrainerIndex() {
+        ClassTrainerIndex classTrainers = repository.getOrAddIndex(ClassTrainerIndex.class, ClassTrainerIndex::new);
+        IndexedRepository<Feedback> feedbackRepository = new IndexedRepository<>(new InMemoryRepository<>());
+        RatingIndex ratings = feedbackRepository.getOrAddIndex(RatingIndex.class, () -> new RatingIndex(classTrainers));
+        FitnessClass fitnessClass = withFeatures(fitnessClass(2, NOW), trainer(1));
+        repository.create(fitnessClass);
+        Feedback feedback = new Feedback(null, fitnessClass, 4, "good");
+        feedback.setId(1);
+        feedbackRepository.create(feedback);
+        assertEquals(1, ratings.forTrainer(1).count());
+
+        repository.update(withFeatures(fitnessClass(2, NOW), trainer(2)));
+        assertEquals(0, ratings.forTrainer(1).count());
+        assertEquals(4, ratings.forTrainer(2).sum());
+        assertEquals(Integer.valueOf(2), classTrainers.trainerOf(2));
+
+        repository.delete(2);
+        assertFalse(classTrainers.contains(2));
+        assertEquals(1, ratings.forClass(2).count());
+    }
+
+    private static List<Integer> recommended(CoEnrollmentIndex coEnrollment, int memberId, int k) {
+        return coEnrollment.recommendForMember(memberId, NOW, k).stream()
+                .map(CoEnrollmentIndex.Recommendation::classId).toList();
+    }
+
+    private static FitnessClass withMembers(FitnessClass fitnessClass, int... memberIds) {
+        for (int memberId : memberIds) {
+            Member member = new Member("Member " + memberId, "password", NOW, null, new ArrayList<>());
+            member.setId(memberId);
+            fitnessClass.getMembers().add(member);
+        }
+        return fitnessClass;
+    }
+
+    private static Equipment equipment(int id) {
+        Equipment equipment = new Equipment("Equipment " + id, 10, new ArrayList<>());
+        equipment.setId(id);
+        return equipment;
+    }
+
+    private static Trainer trainer(int id) {
+        Trainer trainer = new Trainer("Trainer " + id, "password", "none");
+        trainer.setId(id);
+        return trainer;
+    }
+
+    private static FitnessClass withFeatures(FitnessClass fitnessClass, Trainer trainer, Equipment... equipment) {
+        fitnessClass.setTrainer(trainer);
+        fitnessClass.getEquipment().addAll(List.of(equipment));
+        return fitnessClass;
+    }
+
+    private static Room room(int id) {
+        Room room = new Room("Room " + id, 20, null);
+        room.setId(id);
+        return room;
+    }
+
+    private static FitnessClass inRoom(FitnessClass fitnessClass, Room room) {
+        fitnessClass.setRoom(room);
+        return fitnessClass;
+    }
+
+    private static FitnessClass fitnessClass(int id, LocalDateTime startTime) {
+        FitnessClass fitnessClass = new FitnessClass("Class " + id, startTime, startTime.plusHours(1), null, null, 0,
+                null, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        fitnessClass.setId(id);
+        return fitnessClass;
+    }
+}
@@ -0,0 +1,171 @@
+package tests;
+
+import model.Location;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.LogStructuredFileRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * Unit tests for the LogStructuredFileRepository class.
+ * These tests validate the CRUD operations, recovery of the index when the log is reopened,
+ * and compaction of superseded records.
+ */
+public class LogStructuredFileRepoTests {
+
+    private LogStructuredFileRepository<Location> repository;
+    private File file;
+
+    /**
+     * Set up a new repository on an empty temporary log file before each test.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = File.createTempFile("repository", ".log");
+        file.delete();
+        repository = new LogStructuredFileRepository<>(file.getPath());
+    }
+
+    /**
+     * Close the repository and remove the log file after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        repository.close();
+        file.delete();
+    }
+
+    /**
+     * Tests the create and read operations.
+     * Verifies that a created entity can be read back and that a duplicate ID is ignored.
+     */
+    @Test
+    public void testCreateAndReadEntity() {
+        Location entity1 = location(1);
+        Location entity2 = location(1);
+        repository.create(entity1);
+        repository.create(entity2);
+        assertNotNull(repository.read(1));
+        assertEquals(1, repository.getAll().size());
+        assertNull(repository.read(9999));
+    }
+
+    /**
+     * Tests the update and delete operations.
+     * Verifies that only existing entities are updated and that deleted entities can no longer be read.
+     */
+    @Test
+    public void testUpdateAndDeleteEntity() {
+        Location entity = location(1);
+        Location unknown = location(2);
+        repository.create(entity);
+        repository.update(entity);
+        repository.update(unknown);
+        assertNull(repository.read(2));
+        repository.delete(1);
+        assertNull(repository.read(1));
+        assertTrue(repository.getAll().isEmpty());
+    }
+
+    /**
+     * Tests that reopening the log rebuilds the index from the appended records.
+     */
+    @Test
+    public void testReopenRecoversEntities() {
+        Location entity1 = location(1);
+        Location entity2 = location(2);
+        Location entity3 = location(3);
+        repository.createAll(List.of(entity1, entity2, entity3));
+        repository.deleteAll(2);
+        repository.close();
+        repository = new LogStructuredFileRepository<>(file.getPath());
+        assertNotNull(repository.read(1));
+        assertNull(repository.read(2));
+        assertNotNull(repository.read(3));
+        assertEquals(2, repository.getAll().size());
+    }
+
+    /**
+     * Tests that a torn record at the end of the log is cut off when the log is reopened.
+     */
+    @Test
+    public void testReopenDiscardsTornRecord() throws IOException {
+        Location entity = location(1);
+        repository.create(entity);
+        repository.close();
+        long validSize = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(validSize);
+            raf.write(new byte[]{0, 0, 0, 42, 1, 2, 3});
+        }
+        repository = new LogStructuredFileRepository<>(file.getPath());
+        assertNotNull(repository.read(1));
+        assertEquals(validSize, repository.getFileSize());
+    }
+
+    /**
+     * Tests that compaction drops superseded and deleted records but keeps every live entity.
+     */
+    @Test
+    public void testCompactKeepsLiveEntities() {
+        Location entity1 = location(1);
+        Location entity2 = location(2);
+        repository.createAll(List.of(entity1, entity2));
+        for (int i = 0; i < 10; i++) {
+            repository.update(entity1);
+        }
+        repository.delete(2);
+        long sizeBefore = repository.getFileSize();
+        repository.compact();
+        assertTrue(repository.getFileSize() < sizeBefore);
+        assertNotNull(repository.read(1));
+        assertNull(repository.read(2));
+        assertEquals(1, repository.getAll().size());
+    }
+
+    /**
+     * Tests that records written while a compaction runs are carried over to the compacted log, including deletions,
+     * and survive reopening it.
+     */
+    @Test
+    public void testCompactKeepsConcurrentWrites() throws InterruptedException {
+        for (int i = 1; i <= 200; i++) {
+            repository.create(location(i));
+        }
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 200; i++) {
+                Location updated = location(i);
+                updated.setName("Updated " + i);
+                repository.update(updated);
+                if (i % 10 == 0) {
+                    repository.delete(i);
+                }
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            repository.compact();
+        }
+        writer.join();
+        repository.compact();
+
+        repository.close();
+        repository = new LogStructuredFileRepository<>(file.getPath());
+        assertEquals(180, repository.getAll().size());
+        assertEquals("Updated 199", repository.read(199).getName());
+        assertNull(repository.read(200));
+    }
+
+    private static Location location(int id) {
+        Location location = new Location("Location " + id, "Street " + id);
+        location.setId(id);
+        return location;
+    }
+}
@@ -0,0 +1,196 @@
+package tests;
+
+import model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.MappedFileRepository;
+import repository.MappedRepositoryContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+/**
+ * Unit tests for the MappedFileRepository class and its binary entity codecs.
+ * These tests validate the CRUD operations, the resolution of references stored as IDs,
+ * and that the data survives reopening the files.
+ */
+public class MappedFileRepoTests {
+
+    private File directory;
+    private MappedRepositoryContext context;
+
+    private Location location;
+    private Membership membership;
+    private Trainer trainer;
+    private Room room;
+    private Member member;
+    private FitnessClass fitnessClass;
+
+    /**
+     * Set up a context on an empty temporary directory and store a small object graph before each test.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mapped").toFile();
+        context = new MappedRepositoryContext(directory.getPath());
+
+        location = new Location("Downtown", "Main Street 1");
+        location.setId(1);
+        membership = new Membership("Premium", 49.99f);
+        membership.setId(2);
+        trainer = new Trainer("Alex", "secret", "Yoga");
+        trainer.setId(3);
+        room = new Room("Studio A", 20, location);
+        room.setId(4);
+        member = new Member("Maria", "password", LocalDateTime.of(2024, 1, 15, 10, 30), membership, new ArrayList<>());
+        member.setId(5);
+        fitnessClass = new FitnessClass("Morning Yoga", LocalDateTime.of(2030, 5, 1, 8, 0),
+                LocalDateTime.of(2030, 5, 1, 9, 0), trainer, room, 1, location,
+                new ArrayList<>(), new ArrayList<>(List.of(member)), new ArrayList<>());
+        fitnessClass.setId(6);
+        member.getFitnessClasses().add(fitnessClass);
+
+        context.getLocationRepository().create(location);
+        context.getMembershipRepository().create(membership);
+        context.getTrainerRepository().create(trainer);
+        context.getRoomRepository().create(room);
+        context.getMemberRepository().create(member);
+        context.getFitnessClassRepository().create(fitnessClass);
+    }
+
+    /**
+     * Close the context and remove the data files after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        context.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Tests that the fields of an entity and its references are decoded correctly.
+     */
+    @Test
+    public void testReadResolvesReferences() {
+        FitnessClass read = context.getFitnessClassRepository().read(6);
+        assertNotNull(read);
+        assertEquals("Morning Yoga", read.getName());
+        assertEquals(LocalDateTime.of(2030, 5, 1, 8, 0), read.getStartTime());
+        assertEquals("Alex", read.getTrainer().getName());
+        assertEquals("Studio A", read.getRoom().getName());
+        assertEquals("Downtown", read.getRoom().getLocation().getName());
+        assertEquals(1, read.getMembers().size());
+        assertEquals(49.99f, read.getMembers().get(0).getMembership().getPrice(), 0.001);
+    }
+
+    /**
+     * Tests that cyclic references resolve to the same instance instead of being decoded again.
+     */
+    @Test
+    public void testCyclicReferencesShareInstances() {
+        FitnessClass read = context.getFitnessClassRepository().read(6);
+        Member readMember = read.getMembers().get(0);
+        assertSame(read, readMember.getFitnessClasses().get(0));
+        assertSame(read.getLocation(), read.getRoom().getLocation());
+    }
+
+    /**
+     * Tests the update and delete operations.
+     * Verifies that the latest state is read back and that references to deleted entities are dropped.
+     */
+    @Test
+    public void testUpdateAndDelete() {
+        MappedFileRepository<Trainer> trainers = context.getTrainerRepository();
+        trainer.setSpecialisation("Pilates");
+        trainers.update(trainer);
+        assertEquals("Pilates", trainers.read(3).getSpecialisation());
+
+        context.getMemberRepository().delete(5);
+        assertNull(context.getMemberRepository().read(5));
+        assertTrue(context.getFitnessClassRepository().read(6).getMembers().isEmpty());
+    }
+
+    /**
+     * Tests the version check of versioned entities: of two copies read at the same version, only the first update
+     * is accepted, and the version survives reopening the files.
+     */
+    @Test
+    public void testStaleUpdateIsRejected() {
+        MappedFileRepository<FitnessClass> classes = context.getFitnessClassRepository();
+        FitnessClass first = classes.read(6);
+        FitnessClass second = classes.read(6);
+        first.setName("Evening Yoga");
+        classes.update(first);
+        assertEquals(1, first.getVersion());
+
+        second.setName("Noon Yoga");
+        assertThrows(ConcurrentModificationException.class, () -> classes.update(second));
+        assertEquals(0, second.getVersion());
+
+        context.close();
+        context = new MappedRepositoryContext(directory.getPath());
+        FitnessClass reopened = context.getFitnessClassRepository().read(6);
+        assertEquals("Evening Yoga", reopened.getName());
+        assertEquals(1, reopened.getVersion());
+    }
+
+    /**
+     * Tests that the data is found again after the files are closed and reopened, also after a compaction.
+     */
+    @Test
+    public void testReopenAfterCompaction() {
+        MappedFileRepository<Location> locations = context.getLocationRepository();
+        for (int i = 0; i < 100; i++) {
+            location.setName("Downtown " + i);
+            locations.update(location);
+        }
+        int usedBefore = locations.getUsedSize();
+        locations.compact();
+        assertTrue(locations.getUsedSize() < usedBefore);
+        context.close();
+
+        context = new MappedRepositoryContext(directory.getPath());
+        assertEquals("Downtown 99", context.getLocationRepository().read(1).getName());
+        assertEquals(1, context.getFitnessClassRepository().getAll().size());
+        assertEquals("Downtown 99", context.getFitnessClassRepository().read(6).getLocation().getName());
+    }
+
+    /**
+     * Tests that a record whose checksum does not match is dropped with the rest of the file when it is reopened,
+     * and that the earlier records are kept.
+     */
+    @Test
+    public void testDamagedTailIsDropped() throws IOException {
+        location.setName("Uptown");
+        context.getLocationRepository().update(location);
+        context.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "Location.dat"), "rw")) {
+            file.seek(8);
+            long end = file.readLong();
+            file.seek(end - 5);
+            int last = file.read();
+            file.seek(end - 5);
+            file.write(last ^ 0xFF);
+        }
+
+        context = new MappedRepositoryContext(directory.getPath());
+        MappedFileRepository<Location> locations = context.getLocationRepository();
+        assertEquals("Downtown", locations.read(1).getName());
+        location.setName("Midtown");
+        locations.update(location);
+        assertEquals("Midtown", locations.read(1).getName());
+    }
+}
@@ -0,0 +1,256 @@
+package tests;
+
+import model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.ConcurrentInMemoryRepository;
+import service.FitnessService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress tests for the seat reservation of FitnessService.registerToClass and the booking of new classes.
+ * Many threads register different members for the same classes at once; the classes must never be overbooked, and
+ * members, rooms and trainers never double-booked.
+ */
+public class ReservationStressTests {
+
+    private static final int THREADS = 16;
+    private static final int MEMBERS = 4000;
+    private static final int CAPACITY = 50;
+
+    private FitnessService service;
+    private ConcurrentInMemoryRepository<FitnessClass> fitnessClassRepository;
+
+    /**
+     * Set up a service on thread-safe repositories with many members and two classes in a small room.
+     */
+    @BeforeEach
+    public void setUp() {
+        fitnessClassRepository = new ConcurrentInMemoryRepository<>();
+        ConcurrentInMemoryRepository<Member> memberRepository = new ConcurrentInMemoryRepository<>();
+        service = new FitnessService(new ConcurrentInMemoryRepository<>(), new ConcurrentInMemoryRepository<>(),
+                fitnessClassRepository, new ConcurrentInMemoryRepository<>(), memberRepository,
+                new ConcurrentInMemoryRepository<>(), new ConcurrentInMemoryRepository<>(),
+                new ConcurrentInMemoryRepository<>());
+
+        for (int id = 1; id <= MEMBERS; id++) {
+            Member member = new Member("Member " + id, "password", LocalDateTime.of(2024, 1, 1, 0, 0), null,
+                    new ArrayList<>());
+            member.setId(id);
+            memberRepository.create(member);
+        }
+        Room room = new Room("Studio", CAPACITY, null);
+        room.setId(1);
+        Trainer trainer = new Trainer("Trainer", "password", "yoga");
+        trainer.setId(1);
+        LocalDateTime start = LocalDateTime.of(2035, 1, 1, 10, 0);
+        for (int id = 1; id <= 2; id++) {
+            FitnessClass fitnessClass = new FitnessClass("Class " + id, start.plusDays(id), start.plusDays(id).plusHours(1),
+                    trainer, room, 0, null, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            fitnessClass.setId(id);
+            service.addFitnessClass(fitnessClass);
+        }
+    }
+
+    /**
+     * Hammers one class with thousands of concurrent registrations and checks that exactly its capacity succeeds.
+     */
+    @Test
+    public void testConcurrentRegistrationsNeverOverbook() throws Exception {
+        AtomicInteger registered = new AtomicInteger();
+        AtomicInteger full = new AtomicInteger();
+        runConcurrently(memberId -> {
+            try {
+                service.registerToClass(memberId, 1);
+                registered.incrementAndGet();
+            } catch (IllegalStateException e) {
+                full.incrementAndGet();
+            }
+        });
+
+        FitnessClass fitnessClass = fitnessClassRepository.read(1);
+        assertEquals(CAPACITY, registered.get());
+        assertEquals(MEMBERS - CAPACITY, full.get());
+        assertEquals(CAPACITY, fitnessClass.getParticipantsCount());
+        assertEquals(CAPACITY, fitnessClass.getMembers().size());
+    }
+
+    /**
+     * Registers and drops members of two classes concurrently and checks that the counts stay consistent.
+     */
+    @Test
+    public void testConcurrentRegisterAndDropKeepCountsConsistent() throws Exception {
+        runConcurrently(memberId -> {
+            int classId = memberId % 2 + 1;
+            try {
+                service.registerToClass(memberId, classId);
+                if (memberId % 3 == 0) {
+                    service.dropClass(memberId, classId);
+                }
+            } catch (IllegalStateException e) {
+                // class is full
+            }
+        });
+
+        for (int classId = 1; classId <= 2; classId++) {
+            FitnessClass fitnessClass = fitnessClassRepository.read(classId);
+            assertTrue(fitnessClass.getParticipantsCount() <= CAPACITY);
+            assertEquals(fitnessClass.getMembers().size(), fitnessClass.getParticipantsCount());
+        }
+    }
+
+    /**
+     * Fills a class, lets the remaining members join its waitlist while registered members drop out concurrently, and
+     * checks that every freed seat is taken from the waitlist without overbooking the class.
+     */
+    @Test
+    public void testConcurrentDropsPromoteFromWaitlist() throws Exception {
+        for (int memberId = 1; memberId <= CAPACITY; memberId++) {
+            service.registerToClass(memberId, 1);
+        }
+        AtomicInteger waiting = new AtomicInteger();
+        runConcurrently(memberId -> {
+            if (memberId <= CAPACITY) {
+                if (memberId % 2 == 0) {
+                    service.dropClass(memberId, 1);
+                }
+                return;
+            }
+            while (true) {
+                try {
+                    service.joinWaitlist(memberId, 1);
+                    waiting.incrementAndGet();
+                    return;
+                } catch (IllegalStateException e) {
+                    // a seat was free, so register instead, unless another member took it first
+                }
+                try {
+                    service.registerToClass(memberId, 1);
+                    return;
+                } catch (IllegalStateException e) {
+                    // class is full again
+                }
+            }
+        });
+
+        FitnessClass fitnessClass = fitnessClassRepository.read(1);
+        assertEquals(CAPACITY, fitnessClass.getParticipantsCount());
+        assertEquals(CAPACITY, fitnessClass.getMembers().size());
+        List<Integer> waitlist = service.getWaitlist(1);
+        assertEquals(MEMBERS - CAPACITY - CAPACITY / 2, waitlist.size());
+        for (Member member : fitnessClass.getMembers()) {
+            assertFalse(waitlist.contains(member.getId()));
+        }
+        assertTrue(waiting.get() >= waitlist.size());
+    }
+
+    /**
+     * Registers every member for two overlapping classes at once, from two threads, and checks that each member ends
+     * up in exactly one of them.
+     */
+    @Test
+    public void testConcurrentRegistrationsNeverDoubleBookMember() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2035, 2, 1, 10, 0);
+        for (int id = 3; id <= 4; id++) {
+            Room room = new Room("Hall " + id, MEMBERS, null);
+            room.setId(id);
+            Trainer trainer = new Trainer("Trainer " + id, "password", "yoga");
+            trainer.setId(id);
+            FitnessClass fitnessClass = new FitnessClass("Class " + id, start, start.plusHours(1), trainer, room, 0, null,
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            fitnessClass.setId(id);
+            service.addFitnessClass(fitnessClass);
+        }
+        AtomicInteger registered = new AtomicInteger();
+        runConcurrently(task -> {
+            try {
+                service.registerToClass((task + 1) / 2, 3 + task % 2);
+                registered.incrementAndGet();
+            } catch (IllegalStateException e) {
+                // already booked for the other class
+            }
+        });
+
+        assertEquals(MEMBERS / 2, registered.get());
+        List<Member> inBoth = new ArrayList<>(fitnessClassRepository.read(3).getMembers());
+        inBoth.retainAll(fitnessClassRepository.read(4).getMembers());
+        assertTrue(inBoth.isEmpty());
+    }
+
+    /**
+     * Schedules many classes for the same room and time slot concurrently, each with its own trainer, and checks that
+     * exactly one of them is booked. The class repository is slowed down so that the schedules overlap.
+     */
+    @Test
+    public void testConcurrentSchedulesNeverDoubleBookRoom() throws Exception {
+        ConcurrentInMemoryRepository<FitnessClass> slowRepository = new ConcurrentInMemoryRepository<>() {
+            @Override
+            public void create(FitnessClass obj) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.create(obj);
+            }
+        };
+        FitnessService scheduling = new FitnessService(new ConcurrentInMemoryRepository<>(),
+                new ConcurrentInMemoryRepository<>(), slowRepository, new ConcurrentInMemoryRepository<>(),
+                new ConcurrentInMemoryRepository<>(), new ConcurrentInMemoryRepository<>(),
+                new ConcurrentInMemoryRepository<>(), new ConcurrentInMemoryRepository<>());
+        Location location = new Location("Gym", "Street 1");
+        location.setId(1);
+        scheduling.addLocation(location);
+        Room room = new Room("Studio", CAPACITY, location);
+        room.setId(1);
+        scheduling.addRoom(room);
+        for (int id = 1; id <= MEMBERS; id++) {
+            Trainer trainer = new Trainer("Trainer " + id, "password", "yoga");
+            trainer.setId(id);
+            scheduling.addTrainer(trainer);
+        }
+        LocalDateTime start = LocalDateTime.of(2035, 3, 1, 10, 0);
+        AtomicInteger scheduled = new AtomicInteger();
+        runConcurrently(trainerId -> {
+            try {
+                scheduling.scheduleNewClass("Class", start, start.plusHours(1), trainerId, 1, 0, 1, new ArrayList<>());
+                scheduled.incrementAndGet();
+            } catch (IllegalStateException e) {
+                // the room is booked
+            }
+        });
+
+        assertEquals(1, scheduled.get());
+        assertEquals(1, slowRepository.getAll().size());
+    }
+
+    private void runConcurrently(MemberTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int memberId = 1; memberId <= MEMBERS; memberId++) {
+            int id = memberId;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(id);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    private interface MemberTask {
+        void run(int memberId);
+    }
+}
@@ -11,8 +11,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Unit tests for the FitnessService methods.
@@ -299,4 +302,528 @@ public class ServiceTests {
         assertTrue(result.isEmpty()); // No upcoming classes
     }
 
+    /**
+     * Tests that a trainer cannot be scheduled for two overlapping classes, even in different rooms,
+     * and that only free trainers with the requested specialisation are offered as substitutes.
+     */
+    @Test
+    void testTrainerDoubleBookingAndAvailableTrainers() {
+        Location location = new Location("Gym A", "123 Main St");
+        location.setId(1);
+        service.addLocation(location);
+        Room room1 = new Room("room1", 30, location);
+        room1.setId(1);
+        Room room2 = new Room("room2", 30, location);
+        room2.setId(2);
+        service.addRoom(room1);
+        service.addRoom(room2);
+        Trainer trainer1 = new Trainer("John Doe", "1234", "yoga");
+        trainer1.setId(1);
+        Trainer trainer2 = new Trainer("Jane Smith", "5678", "yoga");
+        trainer2.setId(2);
+        Trainer trainer3 = new Trainer("Max Power", "9012", "cardio");
+        trainer3.setId(3);
+        service.addTrainer(trainer1);
+        service.addTrainer(trainer2);
+        service.addTrainer(trainer3);
+
+        LocalDateTime start = LocalDateTime.of(2035, 8, 10, 10, 0);
+        service.scheduleNewClass("yoga", start, start.plusHours(1), 1, 1, 0, 1, new ArrayList<>());
+
+        // Same trainer, other room, overlapping time
+        assertThrows(IllegalStateException.class, () ->
+                service.scheduleNewClass("yoga", start.plusMinutes(30), start.plusHours(2), 1, 2, 0, 1, new ArrayList<>()));
+        // Back-to-back class of the same trainer is fine
+        service.scheduleNewClass("yoga", start.plusHours(1), start.plusHours(2), 1, 2, 0, 1, new ArrayList<>());
+
+        List<Trainer> substitutes = service.findAvailableTrainers(start, start.plusMinutes(30), "Yoga");
+        assertEquals(1, substitutes.size());
+        assertSame(trainer2, substitutes.get(0));
+        assertEquals(2, service.findAvailableTrainers(start, start.plusMinutes(30), null).size());
+    }
+
+    /**
+     * Tests that a member cannot register for two overlapping classes, and that the week schedule of the member
+     * lists the classes of that week in order.
+     */
+    @Test
+    void testRegisterToOverlappingClassAndWeekSchedule() {
+        Location location = new Location("Gym A", "123 Main St");
+        Room room1 = new Room("room1", 30, location);
+        room1.setId(1);
+        Room room2 = new Room("room2", 30, location);
+        room2.setId(2);
+        Member member = new Member("Maria", "password", LocalDateTime.of(2024, 1, 15, 10, 30), null, new ArrayList<>());
+        member.setId(1);
+        service.addMember(member);
+
+        LocalDateTime monday = LocalDateTime.of(2035, 8, 6, 10, 0);
+        FitnessClass class1 = new FitnessClass("yoga", monday.plusDays(2), monday.plusDays(2).plusHours(1),
+                null, room1, 0, location, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        class1.setId(1);
+        FitnessClass class2 = new FitnessClass("cardio", monday.plusDays(2).plusMinutes(30), monday.plusDays(2).plusHours(2),
+                null, room2, 0, location, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        class2.setId(2);
+        FitnessClass class3 = new FitnessClass("pilates", monday, monday.plusHours(1),
+                null, room2, 0, location, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        class3.setId(3);
+        fitnessClassIRepository.createAll(List.of(class1, class2, class3));
+
+        service.registerToClass(1, 1);
+        assertThrows(IllegalStateException.class, () -> service.registerToClass(1, 2));
+        service.registerToClass(1, 3);
+
+        List<IntervalIndex.TimeSlot> week = service.getMemberWeekSchedule(1, monday.toLocalDate());
+        assertEquals(2, week.size());
+        assertEquals(3, week.get(0).classId());
+        assertEquals(1, week.get(1).classId());
+        assertEquals(monday.plusDays(2), week.get(1).start());
+
+        service.dropClass(1, 1);
+        service.registerToClass(1, 2);
+        assertEquals(2, service.getMemberWeekSchedule(1, monday.toLocalDate()).get(1).classId());
+        assertTrue(service.getMemberWeekSchedule(1, monday.toLocalDate().plusWeeks(1)).isEmpty());
+    }
+
+    /**
+     * Tests that members can only wait for a full class, that Premium members are promoted first and that a seat freed
+     * by a dropped member goes to the head of the waitlist, and that deleting the class drops its waitlist.
+     */
+    @Test
+    void testWaitlistPromotesPremiumMembersFirst() {
+        Room room = new Room("room1", 1, null);
+        room.setId(1);
+        FitnessClass fitnessClass = new FitnessClass("yoga", LocalDateTime.of(2035, 8, 10, 10, 0),
+                LocalDateTime.of(2035, 8, 10, 11, 0), null, room, 0, null,
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        fitnessClass.setId(1);
+        fitnessClassIRepository.create(fitnessClass);
+        String[] membershipTypes = {"Basic", "Basic", "Student", "Premium"};
+        for (int id = 1; id <= membershipTypes.length; id++) {
+            Member member = new Member("Member " + id, "password", LocalDateTime.of(2024, 1, 15, 10, 30),
+                    new Membership(membershipTypes[id - 1], 200), new ArrayList<>());
+            member.setId(id);
+            service.addMember(member);
+        }
+
+        assertThrows(IllegalStateException.class, () -> service.joinWaitlist(2, 1));
+        service.registerToClass(1, 1);
+        assertThrows(IllegalStateException.class, () -> service.joinWaitlist(1, 1));
+        service.joinWaitlist(2, 1);
+        service.joinWaitlist(3, 1);
+        service.joinWaitlist(4, 1);
+        assertThrows(IllegalStateException.class, () -> service.joinWaitlist(3, 1));
+        assertEquals(List.of(4, 2, 3), service.getWaitlist(1));
+
+        service.dropClass(1, 1);
+        assertEquals(1, fitnessClass.getParticipantsCount());
+        assertSame(service.getMember(4), fitnessClass.getMembers().get(0));
+        assertEquals(List.of(2, 3), service.getWaitlist(1));
+
+        service.leaveWaitlist(2, 1);
+        assertThrows(IllegalStateException.class, () -> service.leaveWaitlist(2, 1));
+        service.dropClass(4, 1);
+        assertSame(service.getMember(3), fitnessClass.getMembers().get(0));
+        assertTrue(service.getWaitlist(1).isEmpty());
+
+        service.joinWaitlist(2, 1);
+        service.deleteFitnessClass(1);
+        assertTrue(service.getWaitlist(1).isEmpty());
+    }
+
+    /**
+     * Tests that registrations are delegated to a class repository that enrols members atomically in its own storage,
+     * and that its verdict wins over the participants count known to the service.
+     */
+    @Test
+    void testRegisterToClassUsesEnrollmentRepository() {
+        EnrollingRepository enrollingRepository = new EnrollingRepository();
+        IRepository<Member> memberRepository = new InMemoryRepository<>();
+        FitnessService enrollingService = new FitnessService(new InMemoryRepository<>(), new InMemoryRepository<>(),
+                enrollingRepository, new InMemoryRepository<>(), memberRepository, new InMemoryRepository<>(),
+                new InMemoryRepository<>(), new InMemoryRepository<>());
+        Member member = new Member("Maria", "password", LocalDateTime.of(2024, 1, 15, 10, 30), null, new ArrayList<>());
+        member.setId(1);
+        memberRepository.create(member);
+        FitnessClass fitnessClass = new FitnessClass("yoga", LocalDateTime.of(2035, 8, 10, 10, 0),
+                LocalDateTime.of(2035, 8, 10, 11, 0), null, new Room("room1", 30, null), 0, null,
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        fitnessClass.setId(1);
+        enrollingRepository.create(fitnessClass);
+
+        enrollingRepository.seatsLeft = 0;
+        assertThrows(IllegalStateException.class, () -> enrollingService.registerToClass(1, 1));
+        assertEquals(0, fitnessClass.getParticipantsCount());
+
+        enrollingRepository.seatsLeft = 1;
+        enrollingService.registerToClass(1, 1);
+        assertEquals(1, fitnessClass.getParticipantsCount());
+        assertEquals(0, enrollingRepository.updates);
+        enrollingService.dropClass(1, 1);
+        assertEquals(0, fitnessClass.getParticipantsCount());
+        assertEquals(1, enrollingRepository.seatsLeft);
+    }
+
+    /**
+     * Tests that an operation whose write conflicts with another writer is run again, and that the conflict is passed
+     * on once the attempts are used up.
+     */
+    @Test
+    void testRetryOnConflict() {
+        int[] attempts = {0};
+        assertEquals("done", service.retryOnConflict(() -> {
+            if (++attempts[0] < 3) {
+                throw new ConcurrentModificationException("conflict");
+            }
+            return "done";
+        }));
+        assertEquals(3, attempts[0]);
+
+        attempts[0] = 0;
+        assertThrows(ConcurrentModificationException.class, () -> service.retryOnConflict(() -> {
+            attempts[0]++;
+            throw new ConcurrentModificationException("conflict");
+        }));
+        assertEquals(5, attempts[0]);
+    }
+
+    /**
+     * Tests that every operation runs as one unit of work, including the promotion from the waitlist triggered by a
+     * dropped class, and that a failing operation leaves its unit with the exception.
+     */
+    @Test
+    void testOperationsRunAsOneUnitOfWork() {
+        RecordingUnitOfWork unitOfWork = new RecordingUnitOfWork();
+        IRepository<FitnessClass> classRepository = new InMemoryRepository<>();
+        IRepository<Member> memberRepository = new InMemoryRepository<>();
+        FitnessService transactionalService = new FitnessService(new InMemoryRepository<>(), new InMemoryRepository<>(),
+                classRepository, new InMemoryRepository<>(), memberRepository, new InMemoryRepository<>(),
+                new InMemoryRepository<>(), new InMemoryRepository<>(), unitOfWork,
+                new HiLoIdAllocator(new HiLoIdAllocator.InMemoryBlockSource()));
+        for (int id = 1; id <= 2; id++) {
+            Member member = new Member("Member " + id, "password", LocalDateTime.of(2024, 1, 15, 10, 30), null,
+                    new ArrayList<>());
+            member.setId(id);
+            memberRepository.create(member);
+        }
+        FitnessClass fitnessClass = new FitnessClass("yoga", LocalDateTime.of(2035, 8, 10, 10, 0),
+                LocalDateTime.of(2035, 8, 10, 11, 0), null, new Room("room1", 1, null), 0, null,
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        fitnessClass.setId(1);
+        classRepository.create(fitnessClass);
+
+        transactionalService.registerToClass(1, 1);
+        transactionalService.joinWaitlist(2, 1);
+        transactionalService.dropClass(1, 1);
+        // the drop and the promotion from the waitlist commit one after the other
+        assertEquals(3, unitOfWork.units);
+        assertSame(memberRepository.read(2), fitnessClass.getMembers().get(0));
+
+        assertThrows(IllegalArgumentException.class, () -> transactionalService.deleteMember(99));
+        assertEquals(4, unitOfWork.units);
+        assertEquals(1, unitOfWork.failed);
+
+        assertThrows(IllegalArgumentException.class, () -> transactionalService.updateLocation(99, "Downtown", "Main Street 1"));
+        assertThrows(IllegalArgumentException.class, () -> transactionalService.deleteTrainer(99));
+        assertEquals(6, unitOfWork.units);
+        assertEquals(3, unitOfWork.failed);
+    }
+
+    /**
+     * Test that a unit of work which fails after a write leaves the indexes of the service as they were: the feedback
+     * created before the failing class update is not rated, and a registration failing after its update leaves the
+     * member's schedule free.
+     */
+    @Test
+    void testIndexesIgnoreWritesOfFailedUnitOfWork() {
+        RecordingUnitOfWork unitOfWork = new RecordingUnitOfWork();
+        boolean[] failUpdates = {true};
+        IRepository<FitnessClass> classRepository = new InMemoryRepository<>() {
+            @Override
+            public void update(FitnessClass obj) {
+                super.update(obj);
+                if (failUpdates[0]) {
+                    throw new IllegalStateException("Connection lost before commit");
+                }
+            }
+        };
+        IRepository<Member> memberRepository = new InMemoryRepository<>();
+        // wrapped by the caller, so the service trusts its indexes instead of refreshing them from the repositories,
+        // which cannot roll the failed writes back
+        FitnessService transactionalService = new FitnessService(new InMemoryRepository<>(),
+                new IndexedRepository<>(new InMemoryRepository<>(), unitOfWork),
+                new IndexedRepository<>(classRepository, unitOfWork), new InMemoryRepository<>(), memberRepository,
+                new InMemoryRepository<>(), new InMemoryRepository<>(), new InMemoryRepository<>(), unitOfWork,
+                new HiLoIdAllocator(new HiLoIdAllocator.InMemoryBlockSource()));
+        Member member = new Member("Member", "password", LocalDateTime.of(2024, 1, 15, 10, 30), null, new ArrayList<>());
+        member.setId(1);
+        memberRepository.create(member);
+        Trainer trainer = new Trainer("Trainer", "password", "yoga");
+        trainer.setId(1);
+        for (int id = 1; id <= 2; id++) {
+            FitnessClass fitnessClass = new FitnessClass("yoga", LocalDateTime.of(2035, 8, 10, 10, 0),
+                    LocalDateTime.of(2035, 8, 10, 11, 0), trainer, new Room("room" + id, 5, null), 0, null,
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            fitnessClass.setId(id);
+            classRepository.create(fitnessClass);
+        }
+
+        assertThrows(IllegalStateException.class, () -> transactionalService.addFeedbackForClass(1, 1, "Great", 5));
+        assertEquals(0, transactionalService.getClassRating(1).count());
+        assertEquals(0, transactionalService.getTrainerRating(1).count());
+
+        assertThrows(IllegalStateException.class, () -> transactionalService.registerToClass(1, 1));
+        // a real rollback would undo the update as well
+        classRepository.read(1).getMembers().clear();
+        classRepository.read(1).setParticipantsCount(0);
+        failUpdates[0] = false;
+        transactionalService.registerToClass(1, 2);
+        assertEquals(1, classRepository.read(2).getParticipantsCount());
+        assertEquals(2, unitOfWork.failed);
+    }
+
+    /**
+     * Test that the rating aggregates of classes and trainers follow the feedback as it is added, updated and deleted,
+     * that trainers are ranked by their average rating, and that the ratings of a class move to its new trainer.
+     */
+    @Test
+    void testRatingAggregatesFollowFeedbackWrites() {
+        Trainer[] trainers = new Trainer[3];
+        for (int id = 1; id <= 2; id++) {
+            trainers[id] = new Trainer("Trainer " + id, "password", "yoga");
+            trainers[id].setId(id);
+            service.addTrainer(trainers[id]);
+            Member member = new Member("Member " + id, "password", LocalDateTime.of(2024, 1, 15, 10, 30), null,
+                    new ArrayList<>());
+            member.setId(id);
+            service.addMember(member);
+        }
+        int[] trainerOfClass = {0, 1, 1, 2};
+        for (int id = 1; id <= 3; id++) {
+            FitnessClass fitnessClass = new FitnessClass("Class " + id, LocalDateTime.of(2024, 8, id, 10, 0),
+                    LocalDateTime.of(2024, 8, id, 11, 0), trainers[trainerOfClass[id]], null, 0, null,
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            fitnessClass.setId(id);
+            fitnessClassIRepository.create(fitnessClass);
+        }
+
+        service.addFeedbackForClass(1, 1, "Great", 5);
+        service.addFeedbackForClass(2, 1, "Good", 4);
+        service.addFeedbackForClass(1, 2, "Okay", 3);
+        service.addFeedbackForClass(2, 3, "Meh", 2);
+
+        RatingIndex.RatingStats classRating = service.getClassRating(1);
+        assertEquals(2, classRating.count());
+        assertEquals(4.5, classRating.average(), 1e-9);
+        assertEquals(0.25, classRating.variance(), 1e-9);
+        assertEquals(1, classRating.countOf(5));
+        assertEquals(3, service.getTrainerRating(1).count());
+        assertEquals(4.0, service.getTrainerRating(1).average(), 1e-9);
+        assertEquals(List.of(trainers[1], trainers[2]), service.getTopRatedTrainers(5, 1));
+        assertEquals(List.of(trainers[1]), service.getTopRatedTrainers(5, 2));
+
+        Feedback okay = service.getClassFeedback(2).get(0);
+        service.updateFeedback(okay.getId(), 1, "Bad");
+        assertEquals(0, service.getTrainerRating(1).countOf(3));
+        assertEquals(10, service.getTrainerRating(1).sum());
+        assertEquals(1.0, service.getClassRating(2).average(), 1e-9);
+
+        Feedback great = service.getClassFeedback(1).get(0);
+        service.deleteFeedback(great.getId());
+        assertEquals(1, service.getClassRating(1).count());
+        assertEquals(4, service.getClassRating(1).sum());
+        assertEquals(0, service.getTrainerRating(1).countOf(5));
+        assertEquals(0, service.getClassRating(99).count());
+
+        FitnessClass second = fitnessClassIRepository.read(2);
+        service.updateFitnessClass(2, second.getName(), second.getStartTime(), second.getEndTime(), trainers[2],
+                new Room("room1", 10, null), 0, null, second.getFeedback(), second.getMembers(), second.getEquipment());
+        assertEquals(1, service.getTrainerRating(1).count());
+        assertEquals(4, service.getTrainerRating(1).sum());
+        assertEquals(2, service.getTrainerRating(2).count());
+        assertEquals(3, service.getTrainerRating(2).sum());
+    }
+
+    /**
+     * Test that feedback comments are found by all or any of the query words, regardless of case and punctuation,
+     * that the search can be limited to one trainer, that updated and deleted comments are searched as they are now, and
+     * that the feedback of a class moves to its new trainer.
+     */
+    @Test
+    void testSearchFeedbackComments() {
+        Member member = new Member("Member", "password", LocalDateTime.of(2024, 1, 15, 10, 30), null, new ArrayList<>());
+        member.setId(1);
+        service.addMember(member);
+        for (int id = 1; id <= 2; id++) {
+            Trainer trainer = new Trainer("Trainer " + id, "password", "yoga");
+            trainer.setId(id);
+            FitnessClass fitnessClass = new FitnessClass("Class " + id, LocalDateTime.of(2024, 8, id, 10, 0),
+                    LocalDateTime.of(2024, 8, id, 11, 0), trainer, null, 0, null,
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            fitnessClass.setId(id);
+            fitnessClassIRepository.create(fitnessClass);
+        }
+        service.addFeedbackForClass(1, 1, "Way too crowded!", 2);
+        service.addFeedbackForClass(1, 1, "Great music, a bit crowded", 4);
+        service.addFeedbackForClass(1, 2, "The music was too loud", 3);
+
+        assertEquals(List.of("Way too crowded!"), comments(service.searchFeedback("TOO crowded", true)));
+        assertEquals(3, service.searchFeedback("crowded music", false).size());
+        assertEquals(List.of("Great music, a bit crowded"), comments(service.searchTrainerFeedback(1, "music", true)));
+        assertTrue(service.searchFeedback("yoga", false).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> service.searchFeedback(" ?! ", true));
+
+        Feedback loud = service.searchFeedback("loud", true).get(0);
+        service.updateFeedback(loud.getId(), 3, "Nice and quiet");
+        assertTrue(service.searchFeedback("loud", true).isEmpty());
+        assertEquals(1, service.searchTrainerFeedback(2, "quiet", true).size());
+        service.deleteFeedback(loud.getId());
+        assertTrue(service.searchFeedback("quiet", true).isEmpty());
+
+        FitnessClass first = fitnessClassIRepository.read(1);
+        Trainer secondTrainer = new Trainer("Trainer 2", "password", "yoga");
+        secondTrainer.setId(2);
+        service.updateFitnessClass(1, first.getName(), first.getStartTime(), first.getEndTime(), secondTrainer,
+                new Room("room1", 10, null), 0, null, first.getFeedback(), first.getMembers(), first.getEquipment());
+        assertTrue(service.searchTrainerFeedback(1, "crowded", false).isEmpty());
+        assertEquals(2, service.searchTrainerFeedback(2, "crowded", false).size());
+    }
+
+    private static List<String> comments(List<Feedback> feedbackList) {
+        return feedbackList.stream().map(Feedback::getComment).toList();
+    }
+
+    /**
+     * Test the utilisation, fill rates and peak hours of rooms and locations over one and two months, and that the
+     * cached aggregates of a month are recomputed after a class of that month or its room changes.
+     */
+    @Test
+    void testOccupancyReport() {
+        Location location = new Location("Gym A", "123 Main St");
+        location.setId(1);
+        Room small = new Room("small", 10, location);
+        small.setId(1);
+        Room large = new Room("large", 20, location);
+        large.setId(2);
+        service.addRoom(small);
+        service.addRoom(large);
+        FitnessClass mondayEvening = new FitnessClass("yoga", LocalDateTime.of(2030, 1, 7, 18, 0),
+                LocalDateTime.of(2030, 1, 7, 19, 30), null, small, 5, location,
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        mondayEvening.setId(1);
+        FitnessClass tuesdayMorning = new FitnessClass("spinning", LocalDateTime.of(2030, 1, 8, 9, 0),
+                LocalDateTime.of(2030, 1, 8, 10, 0), null, large, 20, location,
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        tuesdayMorning.setId(2);
+        FitnessClass februaryMonday = new FitnessClass("yoga", LocalDateTime.of(2030, 2, 4, 18, 0),
+                LocalDateTime.of(2030, 2, 4, 19, 0), null, small, 10, location,
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        februaryMonday.setId(3);
+        fitnessClassIRepository.createAll(List.of(mondayEvening, tuesdayMorning, februaryMonday));
+        double januaryOpenMinutes = 31 * FitnessService.OPENING_HOURS_PER_DAY.toMinutes();
+
+        OccupancyReport january = service.getOccupancyReport(YearMonth.of(2030, 1), YearMonth.of(2030, 1));
+        assertEquals(90 / januaryOpenMinutes, january.roomUtilisation().get(1), 1e-9);
+        assertEquals(0.5, january.roomFillRate().get(1), 1e-9);
+        assertEquals(1.0, january.roomFillRate().get(2), 1e-9);
+        assertEquals(150 / (2 * januaryOpenMinutes), january.locationUtilisation().get(1), 1e-9);
+        assertEquals(25.0 / 30, january.locationFillRate().get(1), 1e-9);
+        assertEquals(300, january.peakHours().get(1)[18]);
+        assertEquals(150, january.peakHours().get(1)[19]);
+        assertEquals(24 + 9, january.busiestHour(1));
+
+        OccupancyReport twoMonths = service.getOccupancyReport(YearMonth.of(2030, 1), YearMonth.of(2030, 2));
+        assertEquals(150.0 / (59 * FitnessService.OPENING_HOURS_PER_DAY.toMinutes()),
+                twoMonths.roomUtilisation().get(1), 1e-9);
+        assertEquals(0.75, twoMonths.roomFillRate().get(1), 1e-9);
+
+        tuesdayMorning.setParticipantsCount(0);
+        fitnessClassIRepository.update(tuesdayMorning);
+        twoMonths = service.getOccupancyReport(YearMonth.of(2030, 1), YearMonth.of(2030, 2));
+        assertEquals(0.0, twoMonths.roomFillRate().get(2), 1e-9);
+        assertEquals(900, twoMonths.peakHours().get(1)[18]);
+        assertEquals("MONDAY 18:00", OccupancyReport.formatHourOfWeek(twoMonths.busiestHour(1)));
+        twoMonths.peakHours().get(1)[18] = 0;
+        assertEquals(900, service.getOccupancyReport(YearMonth.of(2030, 1), YearMonth.of(2030, 2)).peakHours().get(1)[18]);
+
+        service.updateRoom(1, "small", 20, location);
+        twoMonths = service.getOccupancyReport(YearMonth.of(2030, 1), YearMonth.of(2030, 2));
+        assertEquals(15.0 / 40, twoMonths.roomFillRate().get(1), 1e-9);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getOccupancyReport(YearMonth.of(2030, 2), YearMonth.of(2030, 1)));
+    }
+
+    /**
+     * A unit of work that counts the outermost units it runs and those that failed. Like a transaction, it runs the
+     * actions queued with {@link #afterCommit(Runnable)} when the outermost unit succeeds and drops them when it fails.
+     */
+    private static class RecordingUnitOfWork implements UnitOfWork {
+        private final List<Runnable> afterCommit = new ArrayList<>();
+        private int depth;
+        private int units;
+        private int failed;
+
+        @Override
+        public <R> R run(Supplier<R> work) {
+            if (depth++ == 0) {
+                units++;
+            }
+            R result;
+            try {
+                result = work.get();
+            } catch (RuntimeException e) {
+                if (depth == 1) {
+                    failed++;
+                    afterCommit.clear();
+                }
+                throw e;
+            } finally {
+                depth--;
+            }
+            if (depth == 0) {
+                List<Runnable> actions = new ArrayList<>(afterCommit);
+                afterCommit.clear();
+                actions.forEach(Runnable::run);
+            }
+            return result;
+        }
+
+        @Override
+        public void afterCommit(Runnable action) {
+            if (depth == 0) {
+                action.run();
+            } else {
+                afterCommit.add(action);
+            }
+        }
+    }
+
+    /**
+     * An in-memory class repository that takes seats from its own counter, like the database does.
+     */
+    private static class EnrollingRepository extends InMemoryRepository<FitnessClass> implements EnrollmentRepository {
+        private int seatsLeft;
+        private int updates;
+
+        @Override
+        public boolean enroll(int classId, int memberId) {
+            if (seatsLeft == 0) {
+                return false;
+            }
+            seatsLeft--;
+            return true;
+        }
+
+        @Override
+        public boolean withdraw(int classId, int memberId) {
+            seatsLeft++;
+            return true;
+        }
+
+        @Override
+        public void update(FitnessClass obj) {
+            updates++;
+            super.update(obj);
+        }
+    }
 }
@@ -0,0 +1,155 @@
+package tests;
+
+import model.Location;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.SnapshotWalRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Unit tests for the SnapshotWalRepository class.
+ * These tests validate that the data is recovered from the snapshot and the write-ahead log after a restart,
+ * and that snapshots replace the log segments they cover.
+ */
+public class SnapshotWalRepoTests {
+
+    private File directory;
+    private String basePath;
+    private SnapshotWalRepository<Location> repository;
+
+    /**
+     * Set up a new repository in an empty temporary directory before each test.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal").toFile();
+        basePath = new File(directory, "Location").getPath();
+        repository = new SnapshotWalRepository<>(basePath, 1000);
+    }
+
+    /**
+     * Close the repository and remove its files after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        repository.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Tests that mutations logged without any snapshot are replayed from the log after a restart.
+     */
+    @Test
+    public void testRecoverFromLogOnly() {
+        repository.createAll(List.of(location(1), location(2), location(3)));
+        Location updated = location(2);
+        updated.setName("Renamed");
+        repository.update(updated);
+        repository.delete(3);
+        repository.close();
+
+        repository = new SnapshotWalRepository<>(basePath, 1000);
+        assertEquals(2, repository.getAll().size());
+        assertEquals("Renamed", repository.read(2).getName());
+        assertNull(repository.read(3));
+    }
+
+    /**
+     * Tests that the snapshot is loaded and only the mutations logged after it are replayed.
+     */
+    @Test
+    public void testRecoverFromSnapshotAndLogTail() {
+        repository.createAll(List.of(location(1), location(2)));
+        repository.snapshot();
+        repository.delete(1);
+        repository.create(location(3));
+        repository.close();
+
+        repository = new SnapshotWalRepository<>(basePath, 1000);
+        assertNull(repository.read(1));
+        assertNotNull(repository.read(2));
+        assertNotNull(repository.read(3));
+    }
+
+    /**
+     * Tests that a torn record at the end of the log is ignored during recovery.
+     */
+    @Test
+    public void testRecoverIgnoresTornRecord() throws IOException {
+        repository.create(location(1));
+        repository.close();
+        File[] segments = directory.listFiles((dir, name) -> name.startsWith("Location.wal."));
+        try (RandomAccessFile raf = new RandomAccessFile(segments[0], "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[]{0, 0, 0, 99, 1, 2});
+        }
+
+        repository = new SnapshotWalRepository<>(basePath, 1000);
+        assertEquals(1, repository.getAll().size());
+        repository.create(location(2));
+        repository.close();
+
+        repository = new SnapshotWalRepository<>(basePath, 1000);
+        assertEquals(2, repository.getAll().size());
+    }
+
+    /**
+     * Tests that bytes left at the end of the current segment by a failed write are cut off before the next record is
+     * logged, so the records logged after the failure are recovered after a restart.
+     */
+    @Test
+    public void testFailedWriteDoesNotHideLaterRecords() throws IOException {
+        repository.create(location(1));
+        File[] segments = directory.listFiles((dir, name) -> name.startsWith("Location.wal."));
+        try (RandomAccessFile raf = new RandomAccessFile(segments[0], "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[]{0, 0, 0, 99, 1, 2});
+        }
+        repository.create(location(2));
+        repository.create(location(3));
+        repository.close();
+
+        repository = new SnapshotWalRepository<>(basePath, 1000);
+        assertEquals(3, repository.getAll().size());
+    }
+
+    /**
+     * Tests that reaching the snapshot threshold takes a snapshot and removes the covered log segments.
+     */
+    @Test
+    public void testSnapshotReplacesCoveredSegments() throws InterruptedException {
+        repository.close();
+        repository = new SnapshotWalRepository<>(basePath, 5);
+        for (int id = 1; id <= 12; id++) {
+            repository.create(location(id));
+        }
+        File snapshot = new File(directory, "Location.snapshot");
+        for (int attempt = 0; attempt < 50 && !snapshot.exists(); attempt++) {
+            Thread.sleep(100);
+        }
+        repository.snapshot();
+        assertTrue(snapshot.exists());
+        assertEquals(1, directory.listFiles((dir, name) -> name.startsWith("Location.wal.")).length);
+        repository.close();
+
+        repository = new SnapshotWalRepository<>(basePath, 5);
+        assertEquals(12, repository.getAll().size());
+    }
+
+    private static Location location(int id) {
+        Location location = new Location("Location " + id, "Street " + id);
+        location.setId(id);
+        return location;
+    }
+}